@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.util.Locale;
+
+/**
+ * The modes in which an animation clock can operate.
+ *
+ * @see XCAnimationClockType
+ */
+
+public enum XCAnimationClockMode
+{
+  /**
+   * Tracked animations play in real time, exactly as they would without
+   * the clock.
+   */
+
+  REAL,
+
+  /**
+   * Tracked animations are paused as soon as they start, and only move
+   * when the clock is explicitly advanced.
+   */
+
+  VIRTUAL;
+
+  /**
+   * The name of the system property (and JUnit configuration parameter)
+   * that selects the initial mode of the commander's animation clock.
+   * The value is the name of a mode, such as {@code virtual}.
+   */
+
+  public static final String PROPERTY_CLOCK = "xoanon.animation.clock";
+
+  /**
+   * Parse a mode name, ignoring case.
+   *
+   * @param name The name
+   *
+   * @return The mode
+   *
+   * @throws IllegalArgumentException If the name is not a mode name
+   */
+
+  public static XCAnimationClockMode ofName(
+    final String name)
+  {
+    return valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * @return The mode named by the {@link #PROPERTY_CLOCK} system property,
+   * or {@link #REAL} if the property is not set
+   */
+
+  public static XCAnimationClockMode defaultMode()
+  {
+    final var name = System.getProperty(PROPERTY_CLOCK);
+    if (name == null || name.isBlank()) {
+      return REAL;
+    }
+    return ofName(name);
+  }
+}
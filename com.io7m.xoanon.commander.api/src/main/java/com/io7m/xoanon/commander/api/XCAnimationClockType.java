@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.animation.Animation;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>A clock that controls the progress of tracked JavaFX animations.</p>
+ *
+ * <p>In {@link XCAnimationClockMode#VIRTUAL} mode, a tracked animation is
+ * paused as soon as it starts playing, and then only moves when the clock is
+ * advanced. Advancing the clock jumps every held animation forward by the
+ * given amount of animation time (scaled by the animation's rate) using
+ * {@link Animation#jumpTo(javafx.util.Duration)}. An animation that reaches
+ * the end of its total duration is stopped and its {@code onFinished}
+ * handler is executed immediately, on the JavaFX application thread, as
+ * part of the advance. Animations started by those handlers are held and
+ * advanced in turn. Tests that use transitions and timelines can therefore
+ * complete in milliseconds regardless of the animations' lengths.</p>
+ *
+ * <p>In {@link XCAnimationClockMode#REAL} mode, tracked animations play
+ * normally. Switching from virtual to real mode resumes every held
+ * animation from its current position.</p>
+ *
+ * <p>JavaFX does not expose a way to discover running animations, so only
+ * animations passed to {@link #track(Animation)} are controlled. The
+ * commander tracks its own animations.</p>
+ */
+
+public interface XCAnimationClockType
+{
+  /**
+   * @return The current clock mode
+   */
+
+  @XCOnAnyThread
+  XCAnimationClockMode mode();
+
+  /**
+   * Set the clock mode.
+   *
+   * @param mode The mode
+   *
+   * @return The operation in progress
+   */
+
+  @XCOnAnyThread
+  CompletableFuture<Void> setMode(XCAnimationClockMode mode);
+
+  /**
+   * Start tracking the given animation. Tracking ends automatically when the
+   * animation stops. If the animation is already running and the clock is
+   * in virtual mode, the animation is held immediately.
+   *
+   * @param animation The animation
+   * @param <A>       The type of animation
+   *
+   * @return {@code animation}
+   */
+
+  @XCOnFXThread
+  <A extends Animation> A track(A animation);
+
+  /**
+   * Advance all held animations by the given amount of time. This has no
+   * effect in real mode.
+   *
+   * @param time The amount of time
+   *
+   * @return The operation in progress
+   */
+
+  @XCOnAnyThread
+  CompletableFuture<Void> advance(Duration time);
+
+  /**
+   * Jump all held animations to their ends, executing their {@code onFinished}
+   * handlers. Animations that cycle indefinitely have no end and remain
+   * held. This has no effect in real mode.
+   *
+   * @return The operation in progress
+   */
+
+  @XCOnAnyThread
+  CompletableFuture<Void> advanceToEnd();
+}
@@ -18,6 +18,7 @@ package com.io7m.xoanon.commander.api;
 
 import javafx.stage.Stage;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -64,12 +65,35 @@ public interface XCCommanderType extends AutoCloseable
   void sendToBack();
 
   /**
-   * @return A robot for automated tests
+   * @return A robot for automated tests, using the backend named by
+   * {@link XCRobotBackends#defaultBackend()}
    */
 
   @XCOnAnyThread
   CompletableFuture<XCRobotType> robot();
 
+  /**
+   * Obtain a robot that delivers input using the named backend. The
+   * standard backends are named in {@link XCRobotBackends}; additional
+   * backends may be provided as {@link XCRobotBackendFactoryType} services.
+   * A future that fails with {@link java.util.NoSuchElementException} is
+   * returned if no backend exists with the given name.
+   *
+   * @param backend The backend name
+   *
+   * @return A robot for automated tests
+   */
+
+  @XCOnAnyThread
+  CompletableFuture<XCRobotType> robot(String backend);
+
+  /**
+   * @return Every robot created so far, for any backend
+   */
+
+  @XCOnAnyThread
+  List<XCRobotType> robots();
+
   /**
    * Create a new stage, initializing it using the given function.
    *
@@ -109,6 +133,17 @@ public interface XCCommanderType extends AutoCloseable
   @XCOnAnyThread
   CompletableFuture<Void> stageCloseAll();
 
+  /**
+   * The commander's animation clock. The clock's initial mode is taken from
+   * {@link XCAnimationClockMode#defaultMode()}. The commander's own splash
+   * screen animations are tracked by the clock.
+   *
+   * @return The animation clock
+   */
+
+  @XCOnAnyThread
+  XCAnimationClockType animationClock();
+
   /**
    * Set the application info to be displayed by the commander window.
    *
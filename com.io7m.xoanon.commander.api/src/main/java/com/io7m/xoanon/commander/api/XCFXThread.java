@@ -14,7 +14,6 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
-
 package com.io7m.xoanon.commander.api;
 
 import javafx.application.Platform;
@@ -25,6 +24,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Functions to execute code on the JavaFX application thread.
@@ -35,6 +35,9 @@ public final class XCFXThread
   private static final Logger LOG =
     LoggerFactory.getLogger(XCFXThread.class);
 
+  private static final AtomicLong PENDING =
+    new AtomicLong();
+
   private XCFXThread()
   {
 
@@ -65,8 +68,10 @@ public final class XCFXThread
       return future;
     }
 
+    PENDING.incrementAndGet();
     try {
       Platform.runLater(() -> {
+        PENDING.decrementAndGet();
         try {
           future.complete(supplier.execute());
         } catch (final Throwable e) {
@@ -75,12 +80,24 @@ public final class XCFXThread
         }
       });
     } catch (final Throwable e) {
+      PENDING.decrementAndGet();
       LOG.debug("error: ", e);
       future.completeExceptionally(e);
     }
     return future;
   }
 
+  /**
+   * @return The number of functions submitted through this class that are
+   * waiting in the JavaFX event queue and have not yet started executing
+   */
+
+  @XCOnAnyThread
+  public static long pendingTasks()
+  {
+    return PENDING.get();
+  }
+
   /**
    * Run the given code on the FX thread and wait for it to complete.
    *
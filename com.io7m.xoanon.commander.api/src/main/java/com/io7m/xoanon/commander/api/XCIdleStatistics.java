@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Information about a completed wait for the JavaFX application to become
+ * idle.
+ *
+ * @param pulses      The number of JavaFX pulses observed during the wait
+ * @param checks      The number of times the idle conditions were checked
+ * @param timeSettled The wall-clock time that elapsed before the
+ *                    application settled
+ */
+
+public record XCIdleStatistics(
+  long pulses,
+  long checks,
+  Duration timeSettled)
+{
+  /**
+   * Information about a completed wait for the JavaFX application to become
+   * idle.
+   *
+   * @param pulses      The number of JavaFX pulses observed during the wait
+   * @param checks      The number of times the idle conditions were checked
+   * @param timeSettled The wall-clock time that elapsed before the
+   *                    application settled
+   */
+
+  public XCIdleStatistics
+  {
+    Objects.requireNonNull(timeSettled, "timeSettled");
+  }
+}
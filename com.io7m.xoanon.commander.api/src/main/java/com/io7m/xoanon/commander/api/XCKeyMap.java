@@ -14,7 +14,6 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
-
 package com.io7m.xoanon.commander.api;
 
 import java.io.Serializable;
@@ -69,4 +68,33 @@ public record XCKeyMap(
     }
     return List.copyOf(codes);
   }
+
+  /**
+   * Map a sequence of characters to key codes.
+   *
+   * @param characters The input characters
+   *
+   * @return The keycodes
+   */
+
+  public List<XCKey> toCodes(
+    final CharSequence characters)
+  {
+    final var length =
+      characters.length();
+    final var codes =
+      new ArrayList<XCKey>(length);
+
+    for (int index = 0; index < length; ++index) {
+      final var character = characters.charAt(index);
+      final var key = this.keys().get(Character.valueOf(character));
+      if (key == null) {
+        throw new IllegalArgumentException(
+          "No key mapping is known for character '%s'"
+            .formatted(Character.valueOf(character)));
+      }
+      codes.add(key);
+    }
+    return List.copyOf(codes);
+  }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.scene.Node;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * The result of executing a batch of node queries in a single task on the
+ * JavaFX application thread.
+ *
+ * @param results      The result of each query, in the order in which the
+ *                     queries were given
+ * @param nodesVisited The total number of nodes examined for the batch
+ * @param duration     The time spent executing the batch on the JavaFX
+ *                     application thread
+ */
+
+public record XCNodeBatchResult(
+  Map<XCNodeQuery<?>, XCNodeQueryResult<?>> results,
+  long nodesVisited,
+  Duration duration)
+{
+  /**
+   * The result of executing a batch of node queries in a single task on the
+   * JavaFX application thread.
+   *
+   * @param results      The result of each query, in the order in which the
+   *                     queries were given
+   * @param nodesVisited The total number of nodes examined for the batch
+   * @param duration     The time spent executing the batch on the JavaFX
+   *                     application thread
+   */
+
+  public XCNodeBatchResult
+  {
+    results = Collections.unmodifiableMap(new LinkedHashMap<>(results));
+    Objects.requireNonNull(duration, "duration");
+  }
+
+  /**
+   * @param query The query
+   * @param <T>   The type of nodes
+   *
+   * @return The result of the given query
+   *
+   * @throws IllegalArgumentException If the query was not part of the batch
+   */
+
+  @SuppressWarnings("unchecked")
+  public <T extends Node> XCNodeQueryResult<T> result(
+    final XCNodeQuery<T> query)
+    throws IllegalArgumentException
+  {
+    final var result = this.results.get(query);
+    if (result == null) {
+      throw new IllegalArgumentException(
+        "Query %s is not part of this batch".formatted(query)
+      );
+    }
+    return (XCNodeQueryResult<T>) result;
+  }
+
+  /**
+   * @param query The query
+   * @param <T>   The type of nodes
+   *
+   * @return The first node matched by the given query
+   *
+   * @throws NoSuchElementException If the query matched nothing
+   */
+
+  public <T extends Node> T first(
+    final XCNodeQuery<T> query)
+    throws NoSuchElementException
+  {
+    final var nodes = this.result(query).nodes();
+    if (nodes.isEmpty()) {
+      throw new NoSuchElementException(
+        "No element matching %s".formatted(query)
+      );
+    }
+    return nodes.get(0);
+  }
+
+  /**
+   * @return The queries that matched nothing
+   */
+
+  public List<XCNodeQuery<?>> missing()
+  {
+    return this.results.entrySet()
+      .stream()
+      .filter(e -> e.getValue().nodes().isEmpty())
+      .<XCNodeQuery<?>>map(Map.Entry::getKey)
+      .toList();
+  }
+
+  /**
+   * Require that every query in the batch matched at least one node.
+   *
+   * @return this
+   *
+   * @throws NoSuchElementException Listing every query that matched nothing
+   */
+
+  public XCNodeBatchResult requireComplete()
+    throws NoSuchElementException
+  {
+    final var missing = this.missing();
+    if (!missing.isEmpty()) {
+      throw new NoSuchElementException(
+        "No elements matching: %s".formatted(
+          missing.stream()
+            .map(XCNodeQuery::toString)
+            .collect(Collectors.joining(", "))
+        )
+      );
+    }
+    return this;
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.scene.Node;
+import javafx.scene.control.Labeled;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * <p>An immutable query that matches nodes in a scene graph.</p>
+ *
+ * <p>A query matches nodes of a given type, and may additionally require an
+ * exact ID, a set of style classes, the exact text of a {@link Labeled}
+ * node, and an arbitrary predicate. The conditions are compiled into a
+ * sequence of checks, ordered from cheapest to most expensive, when the query
+ * is constructed; a query may therefore be constructed once and executed any
+ * number of times. Queries may also limit the number of results, in which
+ * case traversal stops as soon as enough nodes have been found.</p>
+ *
+ * @param <T> The type of matched nodes
+ */
+
+public final class XCNodeQuery<T extends Node>
+{
+  private final Class<T> type;
+  private final Optional<String> id;
+  private final Set<String> styleClasses;
+  private final Optional<String> text;
+  private final Optional<Predicate<? super T>> predicate;
+  private final int limit;
+  private final List<Predicate<Node>> checks;
+
+  private XCNodeQuery(
+    final Class<T> inType,
+    final Optional<String> inId,
+    final Set<String> inStyleClasses,
+    final Optional<String> inText,
+    final Optional<Predicate<? super T>> inPredicate,
+    final int inLimit)
+  {
+    this.type =
+      Objects.requireNonNull(inType, "type");
+    this.id =
+      Objects.requireNonNull(inId, "id");
+    this.styleClasses =
+      Objects.requireNonNull(inStyleClasses, "styleClasses");
+    this.text =
+      Objects.requireNonNull(inText, "text");
+    this.predicate =
+      Objects.requireNonNull(inPredicate, "predicate");
+
+    if (inLimit < 1) {
+      throw new IllegalArgumentException(
+        "Limit %d must be positive".formatted(Integer.valueOf(inLimit))
+      );
+    }
+
+    this.limit = inLimit;
+    this.checks = this.compile();
+  }
+
+  /**
+   * Create a query that matches all nodes of the given type.
+   *
+   * @param type The type
+   * @param <T>  The type of nodes
+   *
+   * @return A new query
+   */
+
+  public static <T extends Node> XCNodeQuery<T> of(
+    final Class<T> type)
+  {
+    return new XCNodeQuery<>(
+      type,
+      Optional.empty(),
+      Set.of(),
+      Optional.empty(),
+      Optional.empty(),
+      Integer.MAX_VALUE
+    );
+  }
+
+  /**
+   * Create a query that matches all nodes.
+   *
+   * @return A new query
+   */
+
+  public static XCNodeQuery<Node> any()
+  {
+    return of(Node.class);
+  }
+
+  private List<Predicate<Node>> compile()
+  {
+    final var results = new ArrayList<Predicate<Node>>(5);
+
+    if (this.type != Node.class) {
+      final var t = this.type;
+      results.add(t::isInstance);
+    }
+
+    if (this.id.isPresent()) {
+      final var i = this.id.get();
+      results.add(node -> i.equals(node.getId()));
+    }
+
+    if (this.styleClasses.size() == 1) {
+      final var c = this.styleClasses.iterator().next();
+      results.add(node -> node.getStyleClass().contains(c));
+    } else if (!this.styleClasses.isEmpty()) {
+      final var cs = this.styleClasses;
+      results.add(node -> node.getStyleClass().containsAll(cs));
+    }
+
+    if (this.text.isPresent()) {
+      final var x = this.text.get();
+      results.add(node -> {
+        return node instanceof final Labeled labeled
+               && x.equals(labeled.getText());
+      });
+    }
+
+    if (this.predicate.isPresent()) {
+      final var p = this.predicate.get();
+      final var t = this.type;
+      results.add(node -> p.test(t.cast(node)));
+    }
+
+    return List.copyOf(results);
+  }
+
+  /**
+   * @param newId The ID
+   *
+   * @return A query that additionally requires the given ID
+   */
+
+  public XCNodeQuery<T> withId(
+    final String newId)
+  {
+    return new XCNodeQuery<>(
+      this.type,
+      Optional.of(newId),
+      this.styleClasses,
+      this.text,
+      this.predicate,
+      this.limit
+    );
+  }
+
+  /**
+   * @param styleClass The style class
+   *
+   * @return A query that additionally requires the given style class
+   */
+
+  public XCNodeQuery<T> withStyleClass(
+    final String styleClass)
+  {
+    Objects.requireNonNull(styleClass, "styleClass");
+
+    final var newClasses = new LinkedHashSet<>(this.styleClasses);
+    newClasses.add(styleClass);
+    return new XCNodeQuery<>(
+      this.type,
+      this.id,
+      Set.copyOf(newClasses),
+      this.text,
+      this.predicate,
+      this.limit
+    );
+  }
+
+  /**
+   * @param newText The text
+   *
+   * @return A query that additionally requires a {@link Labeled} node with
+   * exactly the given text
+   */
+
+  public XCNodeQuery<T> withText(
+    final String newText)
+  {
+    return new XCNodeQuery<>(
+      this.type,
+      this.id,
+      this.styleClasses,
+      Optional.of(newText),
+      this.predicate,
+      this.limit
+    );
+  }
+
+  /**
+   * @param newPredicate The predicate
+   *
+   * @return A query that additionally requires the given predicate (and
+   * any predicate that was already present)
+   */
+
+  public XCNodeQuery<T> withPredicate(
+    final Predicate<? super T> newPredicate)
+  {
+    Objects.requireNonNull(newPredicate, "predicate");
+
+    final Predicate<? super T> combined;
+    if (this.predicate.isPresent()) {
+      final var existing = this.predicate.get();
+      combined = node -> existing.test(node) && newPredicate.test(node);
+    } else {
+      combined = newPredicate;
+    }
+
+    return new XCNodeQuery<>(
+      this.type,
+      this.id,
+      this.styleClasses,
+      this.text,
+      Optional.of(combined),
+      this.limit
+    );
+  }
+
+  /**
+   * @param newLimit The maximum number of results
+   *
+   * @return A query that returns at most the given number of results
+   */
+
+  public XCNodeQuery<T> withLimit(
+    final int newLimit)
+  {
+    return new XCNodeQuery<>(
+      this.type,
+      this.id,
+      this.styleClasses,
+      this.text,
+      this.predicate,
+      newLimit
+    );
+  }
+
+  /**
+   * @return A query that returns at most one result
+   */
+
+  public XCNodeQuery<T> first()
+  {
+    return this.withLimit(1);
+  }
+
+  /**
+   * @return The type of matched nodes
+   */
+
+  public Class<T> type()
+  {
+    return this.type;
+  }
+
+  /**
+   * @return The required ID, if any
+   */
+
+  public Optional<String> id()
+  {
+    return this.id;
+  }
+
+  /**
+   * @return The required style classes
+   */
+
+  public Set<String> styleClasses()
+  {
+    return this.styleClasses;
+  }
+
+  /**
+   * @return The required text, if any
+   */
+
+  public Optional<String> text()
+  {
+    return this.text;
+  }
+
+  /**
+   * @return The maximum number of results
+   */
+
+  public int limit()
+  {
+    return this.limit;
+  }
+
+  /**
+   * Determine if the given node matches the query. This must be called on
+   * the JavaFX application thread.
+   *
+   * @param node The node
+   *
+   * @return {@code true} if the node matches
+   */
+
+  @XCOnFXThread
+  public boolean matches(
+    final Node node)
+  {
+    for (final var check : this.checks) {
+      if (!check.test(node)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString()
+  {
+    final var builder = new StringBuilder(64);
+    builder.append("[XCNodeQuery ");
+    builder.append(this.type.getSimpleName());
+    this.id.ifPresent(x -> builder.append(" #").append(x));
+    for (final var c : this.styleClasses) {
+      builder.append(" .").append(c);
+    }
+    this.text.ifPresent(x -> builder.append(" '").append(x).append('\''));
+    this.predicate.ifPresent(x -> builder.append(" (predicate)"));
+    if (this.limit != Integer.MAX_VALUE) {
+      builder.append(" limit ").append(this.limit);
+    }
+    builder.append(']');
+    return builder.toString();
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The result of counting or visiting the nodes matched by a query, without
+ * collecting them.
+ *
+ * @param matches      The number of matched nodes
+ * @param nodesVisited The number of nodes examined during traversal
+ * @param duration     The time spent on the JavaFX application thread
+ */
+
+public record XCNodeQueryCount(
+  long matches,
+  long nodesVisited,
+  Duration duration)
+{
+  /**
+   * The result of counting or visiting the nodes matched by a query, without
+   * collecting them.
+   *
+   * @param matches      The number of matched nodes
+   * @param nodesVisited The number of nodes examined during traversal
+   * @param duration     The time spent on the JavaFX application thread
+   */
+
+  public XCNodeQueryCount
+  {
+    Objects.requireNonNull(duration, "duration");
+  }
+}
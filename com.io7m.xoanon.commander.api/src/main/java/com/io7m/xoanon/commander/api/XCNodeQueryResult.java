@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.scene.Node;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The result of executing a node query.
+ *
+ * @param nodes        The matched nodes, in depth-first order
+ * @param nodesVisited The number of nodes examined during traversal
+ * @param duration     The time spent executing the query on the JavaFX
+ *                     application thread
+ * @param <T>          The type of matched nodes
+ */
+
+public record XCNodeQueryResult<T extends Node>(
+  List<T> nodes,
+  long nodesVisited,
+  Duration duration)
+{
+  /**
+   * The result of executing a node query.
+   *
+   * @param nodes        The matched nodes, in depth-first order
+   * @param nodesVisited The number of nodes examined during traversal
+   * @param duration     The time spent executing the query on the JavaFX
+   *                     application thread
+   */
+
+  public XCNodeQueryResult
+  {
+    nodes = List.copyOf(nodes);
+    Objects.requireNonNull(duration, "duration");
+  }
+}
@@ -14,45 +14,30 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
+package com.io7m.xoanon.commander.api;
 
-package com.io7m.xoanon.tests;
+import javafx.scene.Node;
 
-import java.time.Clock;
-import java.time.Instant;
-import java.time.ZoneId;
+/**
+ * A visitor that is called on the JavaFX application thread with each node
+ * matched by a query, during traversal.
+ *
+ * @param <T> The type of nodes
+ */
 
-public final class XCFakeClock extends Clock
+public interface XCNodeVisitorType<T extends Node>
 {
-  private long time;
-
-  public XCFakeClock()
-  {
-    this.time = 0L;
-  }
-
-  @Override
-  public ZoneId getZone()
-  {
-    return ZoneId.of("UTC");
-  }
-
-  @Override
-  public Clock withZone(
-    final ZoneId zone)
-  {
-    return this;
-  }
-
-  @Override
-  public Instant instant()
-  {
-    ++this.time;
-    return Instant.ofEpochSecond(this.time);
-  }
-
-  public void setTime(
-    final Instant newTime)
-  {
-    this.time = newTime.getEpochSecond();
-  }
+  /**
+   * Visit a matched node.
+   *
+   * @param node The node
+   *
+   * @return {@code true} if traversal should continue
+   *
+   * @throws Exception On errors
+   */
+
+  @XCOnFXThread
+  boolean visit(T node)
+    throws Exception;
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The timestamps of a series of JavaFX pulses. Timestamps are expressed in
+ * nanoseconds, using the same time base as
+ * {@link javafx.animation.AnimationTimer#handle(long)}.
+ *
+ * @param timestamps The pulse timestamps, in the order that the pulses
+ *                   occurred
+ */
+
+public record XCPulseTimestamps(
+  List<Long> timestamps)
+{
+  /**
+   * The timestamps of a series of JavaFX pulses.
+   *
+   * @param timestamps The pulse timestamps, in the order that the pulses
+   *                   occurred
+   */
+
+  public XCPulseTimestamps
+  {
+    timestamps = List.copyOf(
+      Objects.requireNonNull(timestamps, "timestamps"));
+  }
+
+  /**
+   * @return The number of pulses observed
+   */
+
+  public int count()
+  {
+    return this.timestamps.size();
+  }
+
+  /**
+   * @return The time elapsed between the first and last observed pulses
+   */
+
+  public Duration elapsed()
+  {
+    if (this.timestamps.size() < 2) {
+      return Duration.ZERO;
+    }
+
+    final var first =
+      this.timestamps.get(0).longValue();
+    final var last =
+      this.timestamps.get(this.timestamps.size() - 1).longValue();
+
+    return Duration.ofNanos(last - first);
+  }
+}
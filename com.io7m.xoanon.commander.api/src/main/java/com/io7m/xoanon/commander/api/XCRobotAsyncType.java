@@ -0,0 +1,799 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.beans.Observable;
+import javafx.concurrent.Worker;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Control;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.stage.Stage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * <p>The asynchronous interface to a robot.</p>
+ *
+ * <p>Every operation returns immediately with a future representing the
+ * operation in progress. Operations are executed strictly in the order in
+ * which they are submitted: an operation does not begin until the operation
+ * submitted before it has completed (successfully or otherwise). Callers may
+ * therefore queue a whole sequence of interactions without waiting for each
+ * one, or may chain operations that depend on the results of earlier ones
+ * using {@link CompletableFuture#thenCompose(java.util.function.Function)}.</p>
+ *
+ * <p>Futures fail with {@link java.util.concurrent.TimeoutException} if an
+ * operation does not complete within the configured timeout, and with
+ * {@link java.util.NoSuchElementException} if a find operation does not
+ * locate a node.</p>
+ *
+ * @see XCRobotType#async()
+ */
+
+public interface XCRobotAsyncType
+{
+  /**
+   * Execute {@code f} on the UI thread.
+   *
+   * @param f The runnable
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<Void> execute(Runnable f);
+
+  /**
+   * Evaluate {@code f} on the UI thread.
+   *
+   * @param f   The function
+   * @param <T> The type of results
+   *
+   * @return The operation in progress
+   */
+
+  <T> CompletableFuture<T> evaluate(XCFXThreadOperationType<T> f);
+
+  /**
+   * Click on the given node using the primary mouse button.
+   *
+   * @param node The node
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#click(Node)
+   */
+
+  CompletableFuture<Void> click(Node node);
+
+  /**
+   * Double-click on the given node using the primary mouse button.
+   *
+   * @param node The node
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#doubleClick(Node)
+   */
+
+  CompletableFuture<Void> doubleClick(Node node);
+
+  /**
+   * Point the mouse cursor at the given node.
+   *
+   * @param node The node
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#pointAt(Node)
+   */
+
+  CompletableFuture<Void> pointAt(Node node);
+
+  /**
+   * Type the given key codes on the given node.
+   *
+   * @param node  The node
+   * @param codes The codes
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#type(Node, List)
+   */
+
+  CompletableFuture<Void> type(
+    Node node,
+    List<XCKey> codes);
+
+  /**
+   * Type the given text on the given node.
+   *
+   * @param node The node
+   * @param text The text
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#typeText(Node, String)
+   */
+
+  CompletableFuture<Void> typeText(
+    Node node,
+    String text);
+
+  /**
+   * Type the given key codes on whatever node currently has focus.
+   *
+   * @param codes The codes
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#type(List)
+   */
+
+  CompletableFuture<Void> type(List<XCKey> codes);
+
+  /**
+   * Type the given text on whatever node currently has focus.
+   *
+   * @param text The text
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#typeText(String)
+   */
+
+  CompletableFuture<Void> typeText(String text);
+
+  /**
+   * Type the given raw key code on whatever node currently has focus.
+   *
+   * @param code The code
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#typeRaw(KeyCode)
+   */
+
+  CompletableFuture<Void> typeRaw(KeyCode code);
+
+  /**
+   * Type the given raw key code on the given node.
+   *
+   * @param node The node
+   * @param code The code
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotInteractionsType#typeRaw(Node, KeyCode)
+   */
+
+  CompletableFuture<Void> typeRaw(
+    Node node,
+    KeyCode code);
+
+  /**
+   * Find all nodes of the given type in the given stage.
+   *
+   * @param clazz The type
+   * @param stage The stage
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<List<T>> findAllInStage(
+    Class<T> clazz,
+    Stage stage);
+
+  /**
+   * Find all nodes of the given type under the given parent.
+   *
+   * @param clazz  The type
+   * @param parent The parent
+   * @param <T>    The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<List<T>> findAll(
+    Class<T> clazz,
+    Parent parent);
+
+  /**
+   * Find the node with the given ID in the given stage.
+   * The first matching node of any type is cast to {@code T}, and the
+   * operation fails with {@link ClassCastException} if it is not a
+   * {@code T}.
+   *
+   * @param clazz The type
+   * @param stage The stage
+   * @param id    The ID
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<T> findWithId(
+    Class<T> clazz,
+    Stage stage,
+    String id);
+
+  /**
+   * Find the node with the given ID under the given root.
+   * The first matching node of any type is cast to {@code T}, and the
+   * operation fails with {@link ClassCastException} if it is not a
+   * {@code T}.
+   *
+   * @param clazz The type
+   * @param root  The root
+   * @param id    The ID
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<T> findWithId(
+    Class<T> clazz,
+    Parent root,
+    String id);
+
+  /**
+   * Find the node with the given ID in any showing stage.
+   * The first matching node of any type is cast to {@code T}, and the
+   * operation fails with {@link ClassCastException} if it is not a
+   * {@code T}.
+   *
+   * @param clazz The type
+   * @param id    The ID
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<T> findWithIdInAnyStage(
+    Class<T> clazz,
+    String id);
+
+  /**
+   * Find the labelled node with the given text in any showing stage.
+   * The first matching node of any type is cast to {@code T}, and the
+   * operation fails with {@link ClassCastException} if it is not a
+   * {@code T}.
+   *
+   * @param clazz The type
+   * @param text  The text
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<T> findWithTextInAnyStage(
+    Class<T> clazz,
+    String text);
+
+  /**
+   * Find the labelled node with the given text in the given stage.
+   * The first matching node of any type is cast to {@code T}, and the
+   * operation fails with {@link ClassCastException} if it is not a
+   * {@code T}.
+   *
+   * @param clazz The type
+   * @param stage The stage
+   * @param text  The text
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<T> findWithText(
+    Class<T> clazz,
+    Stage stage,
+    String text);
+
+  /**
+   * Find the labelled node with the given text under the given parent.
+   * The first matching node of any type is cast to {@code T}, and the
+   * operation fails with {@link ClassCastException} if it is not a
+   * {@code T}.
+   *
+   * @param clazz  The type
+   * @param parent The parent
+   * @param text   The text
+   * @param <T>    The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<T> findWithText(
+    Class<T> clazz,
+    Parent parent,
+    String text);
+
+  /**
+   * Find all nodes of the given type with the given CSS class in the given
+   * stage.
+   *
+   * @param clazz    The type
+   * @param stage    The stage
+   * @param cssClass The CSS class
+   * @param <T>      The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<List<T>> findAllWithClassInStage(
+    Class<T> clazz,
+    Stage stage,
+    String cssClass);
+
+  /**
+   * Find all nodes of the given type with the given CSS class under the
+   * given parent.
+   *
+   * @param clazz    The type
+   * @param parent   The parent
+   * @param cssClass The CSS class
+   * @param <T>      The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<List<T>> findAllWithClass(
+    Class<T> clazz,
+    Parent parent,
+    String cssClass);
+
+  /**
+   * Find all nodes of the given type with the given CSS class in any showing
+   * stage.
+   *
+   * @param clazz    The type
+   * @param cssClass The CSS class
+   * @param <T>      The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<List<T>> findAllWithClassInAnyStage(
+    Class<T> clazz,
+    String cssClass);
+
+  /**
+   * Execute the given query over the given parent and all of its
+   * descendants.
+   *
+   * @param query The query
+   * @param root  The root node
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<XCNodeQueryResult<T>> query(
+    XCNodeQuery<T> query,
+    Parent root);
+
+  /**
+   * Execute the given query over the scene of the given stage.
+   *
+   * @param query The query
+   * @param stage The stage
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<XCNodeQueryResult<T>> queryInStage(
+    XCNodeQuery<T> query,
+    Stage stage);
+
+  /**
+   * Execute the given query over the scenes of all showing windows.
+   *
+   * @param query The query
+   * @param <T>   The type of node
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<XCNodeQueryResult<T>> queryInAnyStage(
+    XCNodeQuery<T> query);
+
+  /**
+   * Execute all of the given queries over the given parent and all of its
+   * descendants in a single task.
+   *
+   * @param queries The queries
+   * @param root    The root node
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCNodeBatchResult> queryBatch(
+    List<? extends XCNodeQuery<?>> queries,
+    Parent root);
+
+  /**
+   * Execute all of the given queries over the scene of the given stage in a
+   * single task.
+   *
+   * @param queries The queries
+   * @param stage   The stage
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCNodeBatchResult> queryBatchInStage(
+    List<? extends XCNodeQuery<?>> queries,
+    Stage stage);
+
+  /**
+   * Execute all of the given queries over the scenes of all showing windows
+   * in a single task.
+   *
+   * @param queries The queries
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCNodeBatchResult> queryBatchInAnyStage(
+    List<? extends XCNodeQuery<?>> queries);
+
+  /**
+   * Count the nodes matched by the given query under the given parent.
+   *
+   * @param query The query
+   * @param root  The root node
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCNodeQueryCount> count(
+    XCNodeQuery<?> query,
+    Parent root);
+
+  /**
+   * Count the nodes matched by the given query in the scene of the given
+   * stage.
+   *
+   * @param query The query
+   * @param stage The stage
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCNodeQueryCount> countInStage(
+    XCNodeQuery<?> query,
+    Stage stage);
+
+  /**
+   * Count the nodes matched by the given query in the scenes of all showing
+   * windows.
+   *
+   * @param query The query
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCNodeQueryCount> countInAnyStage(
+    XCNodeQuery<?> query);
+
+  /**
+   * Call the given visitor with each node matched by the given query under
+   * the given parent.
+   *
+   * @param query   The query
+   * @param root    The root node
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<XCNodeQueryCount> visit(
+    XCNodeQuery<T> query,
+    Parent root,
+    XCNodeVisitorType<? super T> visitor);
+
+  /**
+   * Call the given visitor with each node matched by the given query in the
+   * scene of the given stage.
+   *
+   * @param query   The query
+   * @param stage   The stage
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<XCNodeQueryCount> visitInStage(
+    XCNodeQuery<T> query,
+    Stage stage,
+    XCNodeVisitorType<? super T> visitor);
+
+  /**
+   * Call the given visitor with each node matched by the given query in the
+   * scenes of all showing windows.
+   *
+   * @param query   The query
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The operation in progress
+   */
+
+  <T extends Node> CompletableFuture<XCNodeQueryCount> visitInAnyStage(
+    XCNodeQuery<T> query,
+    XCNodeVisitorType<? super T> visitor);
+
+  /**
+   * Capture an immutable snapshot of the scene graph of the given stage.
+   *
+   * @param stage The stage
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<XCSceneSnapshot> snapshot(
+    Stage stage);
+
+  /**
+   * Scroll the given virtualized control so that the item at the given
+   * index is in view, and return the cell displaying it.
+   *
+   * @param control The control
+   * @param index   The item index
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotCellsType#cellAt(Control, int)
+   */
+
+  CompletableFuture<IndexedCell<?>> cellAt(
+    Control control,
+    int index);
+
+  /**
+   * Scroll the given virtualized control so that the first item matching
+   * the given predicate is in view, and return the cell displaying it.
+   *
+   * @param control   The control
+   * @param predicate The predicate applied to items
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotCellsType#cellWhere(Control, Predicate)
+   */
+
+  CompletableFuture<IndexedCell<?>> cellWhere(
+    Control control,
+    Predicate<Object> predicate);
+
+  /**
+   * Find the node with the given ID in the given stage.
+   *
+   * @param stage The stage
+   * @param id    The ID
+   *
+   * @return The operation in progress
+   */
+
+  default CompletableFuture<Node> findWithId(
+    final Stage stage,
+    final String id)
+  {
+    return this.findWithId(Node.class, stage, id);
+  }
+
+  /**
+   * Find the node with the given ID in any showing stage.
+   *
+   * @param id The ID
+   *
+   * @return The operation in progress
+   */
+
+  default CompletableFuture<Node> findWithIdInAnyStage(
+    final String id)
+  {
+    return this.findWithIdInAnyStage(Node.class, id);
+  }
+
+  /**
+   * Find the labelled node with the given text in the given stage.
+   *
+   * @param stage The stage
+   * @param text  The text
+   *
+   * @return The operation in progress
+   */
+
+  default CompletableFuture<Node> findWithText(
+    final Stage stage,
+    final String text)
+  {
+    return this.findWithText(Node.class, stage, text);
+  }
+
+  /**
+   * Wait for the given stage to close.
+   *
+   * @param stage        The stage
+   * @param milliseconds The timeout
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<Void> waitForStageToClose(
+    Stage stage,
+    long milliseconds);
+
+  /**
+   * Wait for the given stage to show.
+   *
+   * @param stage        The stage
+   * @param milliseconds The timeout
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<Void> waitForStageToShow(
+    Stage stage,
+    long milliseconds);
+
+  /**
+   * Wait for the given stage to become focused.
+   *
+   * @param stage        The stage
+   * @param milliseconds The timeout
+   *
+   * @return The operation in progress
+   */
+
+  CompletableFuture<Void> waitForStageFocused(
+    Stage stage,
+    long milliseconds);
+
+  /**
+   * Wait for the given number of pulses.
+   *
+   * @param pulses The number of pulses
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#waitForPulseCount(int)
+   */
+
+  CompletableFuture<XCPulseTimestamps> waitForPulseCount(int pulses);
+
+  /**
+   * Wait until a node matching the given query is attached to the scene of
+   * a showing window.
+   *
+   * @param query        The query
+   * @param milliseconds The maximum number of milliseconds to wait
+   * @param <T>          The type of node
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#awaitNode(XCNodeQuery, long)
+   */
+
+  <T extends Node> CompletableFuture<T> awaitNode(
+    XCNodeQuery<T> query,
+    long milliseconds);
+
+  /**
+   * Wait until no node matching the given query is attached to the scene of
+   * a showing window.
+   *
+   * @param query        The query
+   * @param milliseconds The maximum number of milliseconds to wait
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#awaitNodeGone(XCNodeQuery, long)
+   */
+
+  CompletableFuture<Void> awaitNodeGone(
+    XCNodeQuery<?> query,
+    long milliseconds);
+
+  /**
+   * Wait until the application is idle.
+   *
+   * @param milliseconds The timeout
+   * @param workers      The workers that must not be running
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#waitForIdle(long, List)
+   */
+
+  CompletableFuture<XCIdleStatistics> waitForIdle(
+    long milliseconds,
+    List<? extends Worker<?>> workers);
+
+  /**
+   * Wait until the application is idle.
+   *
+   * @param milliseconds The timeout
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#waitForIdle(long)
+   */
+
+  default CompletableFuture<XCIdleStatistics> waitForIdle(
+    final long milliseconds)
+  {
+    return this.waitForIdle(milliseconds, List.of());
+  }
+
+  /**
+   * Wait until the given predicate returns {@code true}.
+   *
+   * @param ms          The timeout
+   * @param observables The observables that can affect the predicate
+   * @param predicate   The predicate
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#waitUntilObserving(long, List, BooleanSupplier)
+   */
+
+  CompletableFuture<XCWaitStatistics> waitUntilObserving(
+    long ms,
+    List<? extends Observable> observables,
+    BooleanSupplier predicate);
+
+  /**
+   * Wait until the given predicate returns {@code true}.
+   *
+   * @param ms        The timeout
+   * @param predicate The predicate
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotWaitingType#waitUntil(long, BooleanSupplier)
+   */
+
+  default CompletableFuture<XCWaitStatistics> waitUntil(
+    final long ms,
+    final BooleanSupplier predicate)
+  {
+    return this.waitUntilObserving(ms, List.of(), predicate);
+  }
+
+  /**
+   * Capture the area of the screen occupied by the given node.
+   *
+   * @param node The node
+   *
+   * @return The operation in progress
+   *
+   * @see XCRobotType#screenCapture(Node)
+   */
+
+  CompletableFuture<WritableImage> screenCapture(Node node);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.scene.robot.Robot;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * The context in which a robot backend is created.
+ *
+ * @param keyMap A supplier of the key map for the current keyboard layout.
+ *               The key map grows as characters are probed on demand, so
+ *               backends should obtain it when it is needed rather than
+ *               keeping the key map supplied at creation.
+ * @param robot  The JavaFX robot owned by the commander
+ */
+
+public record XCRobotBackendContext(
+  Supplier<XCKeyMap> keyMap,
+  Robot robot)
+{
+  /**
+   * The context in which a robot backend is created.
+   *
+   * @param keyMap A supplier of the key map for the current keyboard layout
+   * @param robot  The JavaFX robot owned by the commander
+   */
+
+  public XCRobotBackendContext
+  {
+    Objects.requireNonNull(keyMap, "keyMap");
+    Objects.requireNonNull(robot, "robot");
+  }
+}
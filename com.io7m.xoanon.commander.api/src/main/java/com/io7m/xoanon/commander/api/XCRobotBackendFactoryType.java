@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+/**
+ * <p>A factory of robot backends.</p>
+ *
+ * <p>Factories are discovered using {@link java.util.ServiceLoader}, and are
+ * selected by name. The names of the backends provided by the commander
+ * itself are given in {@link XCRobotBackends}.</p>
+ */
+
+public interface XCRobotBackendFactoryType
+{
+  /**
+   * @return The name of the backends produced by this factory
+   */
+
+  String name();
+
+  /**
+   * Create a new backend.
+   *
+   * @param context The context in which the backend will be used
+   *
+   * @return A new backend
+   *
+   * @throws Exception On errors
+   */
+
+  XCRobotBackendType create(XCRobotBackendContext context)
+    throws Exception;
+}
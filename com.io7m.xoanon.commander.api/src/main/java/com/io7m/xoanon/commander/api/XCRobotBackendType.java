@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+/**
+ * <p>The low-level input operations used by the robot.</p>
+ *
+ * <p>Backends are provided by {@link XCRobotBackendFactoryType} services.
+ * All methods other than {@link #name()}, {@link #requiresWindowFocus()},
+ * and {@link #isSynchronous()} are only ever called on the JavaFX
+ * application thread.</p>
+ */
+
+public interface XCRobotBackendType
+{
+  /**
+   * @return The name of the backend
+   */
+
+  String name();
+
+  /**
+   * @return {@code true} if the backend delivers input through the windowing
+   * system, and therefore requires that target windows be brought to the
+   * front and focused before input is sent to them
+   */
+
+  boolean requiresWindowFocus();
+
+  /**
+   * @return {@code true} if the backend dispatches the events for each input
+   * operation before the operation returns, and so there is never any need
+   * to wait for input to be delivered
+   */
+
+  boolean isSynchronous();
+
+  /**
+   * @return The current mouse pointer position in screen coordinates
+   */
+
+  @XCOnFXThread
+  Point2D mousePosition();
+
+  /**
+   * Move the mouse pointer.
+   *
+   * @param position The position in screen coordinates
+   */
+
+  @XCOnFXThread
+  void mouseMove(Point2D position);
+
+  /**
+   * Press a mouse button.
+   *
+   * @param button The button
+   */
+
+  @XCOnFXThread
+  void mousePress(MouseButton button);
+
+  /**
+   * Release a mouse button.
+   *
+   * @param button The button
+   */
+
+  @XCOnFXThread
+  void mouseRelease(MouseButton button);
+
+  /**
+   * Press a key.
+   *
+   * @param code The key
+   */
+
+  @XCOnFXThread
+  void keyPress(KeyCode code);
+
+  /**
+   * Release a key.
+   *
+   * @param code The key
+   */
+
+  @XCOnFXThread
+  void keyRelease(KeyCode code);
+
+  /**
+   * Type a key (press and release it).
+   *
+   * @param code The key
+   */
+
+  @XCOnFXThread
+  void keyType(KeyCode code);
+
+  /**
+   * Capture the contents of the screen.
+   *
+   * @param bounds The area to capture in screen coordinates
+   *
+   * @return The captured image
+   */
+
+  @XCOnFXThread
+  WritableImage screenCapture(Rectangle2D bounds);
+}
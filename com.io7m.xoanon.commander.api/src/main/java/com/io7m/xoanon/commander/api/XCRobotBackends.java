@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+/**
+ * The names of the standard robot input backends, and the means by which
+ * a backend is selected.
+ *
+ * @see XCCommanderType#robot(String)
+ * @see XCRobotBackendFactoryType
+ */
+
+public final class XCRobotBackends
+{
+  /**
+   * The backend that delivers input through the operating system using the
+   * standard JavaFX robot. Input delivered by this backend is subject to
+   * the window manager: target windows must be focused, and the mouse
+   * pointer really moves.
+   */
+
+  public static final String JAVAFX = "javafx";
+
+  /**
+   * The backend that constructs {@code MouseEvent} and {@code KeyEvent}
+   * values and fires them directly at the target nodes on the JavaFX
+   * application thread. Window focus and the real mouse pointer position
+   * are irrelevant to this backend.
+   */
+
+  public static final String SYNTHETIC = "synthetic";
+
+  /**
+   * The name of the system property (and JUnit configuration parameter)
+   * that selects the default backend used by {@link XCCommanderType#robot()}.
+   */
+
+  public static final String PROPERTY_BACKEND = "xoanon.robot.backend";
+
+  /**
+   * @return The name of the default backend, taken from the
+   * {@link #PROPERTY_BACKEND} system property, or {@link #JAVAFX} if the
+   * property is not set
+   */
+
+  public static String defaultBackend()
+  {
+    final var name = System.getProperty(PROPERTY_BACKEND);
+    if (name == null || name.isBlank()) {
+      return JAVAFX;
+    }
+    return name.trim();
+  }
+
+  private XCRobotBackends()
+  {
+
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.scene.control.Control;
+import javafx.scene.control.IndexedCell;
+
+import java.util.function.Predicate;
+
+/**
+ * <p>Robot functions related to the cells of virtualized controls.</p>
+ *
+ * <p>A {@code ListView}, {@code TableView}, {@code TreeView}, or
+ * {@code TreeTableView} only creates cells for the items that are currently
+ * in view, so a cell for an arbitrary item cannot be found by searching the
+ * scene graph. These functions scroll the control to the requested item
+ * using the control's own {@code scrollTo} method, lay the control out so
+ * that the cell is created, and return the cell from the control's
+ * {@code VirtualFlow}. If layout does not produce the cell immediately,
+ * the robot waits for one pulse and tries again.</p>
+ *
+ * <p>For a {@code TableView} or {@code TreeTableView}, the returned cell is
+ * the row; the cells for individual columns are its descendants. For a
+ * {@code TreeView} or {@code TreeTableView}, indices refer to the visible
+ * (expanded) rows, and predicates are applied to the values of the tree
+ * items.</p>
+ */
+
+public interface XCRobotCellsType
+{
+  /**
+   * Scroll the given control so that the item at the given index is in view,
+   * and return the cell displaying it.
+   *
+   * @param control The control
+   * @param index   The item index
+   *
+   * @return The cell
+   *
+   * @throws Exception On errors, if the control is not a supported
+   *                   virtualized control, or if the index is out of range
+   */
+
+  IndexedCell<?> cellAt(
+    Control control,
+    int index)
+    throws Exception;
+
+  /**
+   * Scroll the given control so that the first item matching the given
+   * predicate is in view, and return the cell displaying it.
+   *
+   * @param control   The control
+   * @param predicate The predicate applied to items
+   *
+   * @return The cell
+   *
+   * @throws Exception On errors, if the control is not a supported
+   *                   virtualized control, or if no item matches
+   */
+
+  IndexedCell<?> cellWhere(
+    Control control,
+    Predicate<Object> predicate)
+    throws Exception;
+}
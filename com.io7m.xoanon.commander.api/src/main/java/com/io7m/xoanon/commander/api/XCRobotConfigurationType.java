@@ -100,12 +100,120 @@ public interface XCRobotConfigurationType
   void setTimePauseBetweenDoubleClickMilliseconds(long ms);
 
   /**
-   * Release all keys, all mouse buttons, and reset any temporary
-   * configuration state (such as {@link #slowMotionEnable()}). If a window
-   * is provided, warp the cursor back to the center of that window.
+   * @return {@code true} if input acknowledgement is enabled
+   *
+   * @see #setInputAcknowledgementEnabled(boolean)
+   */
+
+  boolean isInputAcknowledgementEnabled();
+
+  /**
+   * <p>Enable or disable input acknowledgement.</p>
+   *
+   * <p>When input acknowledgement is enabled, each keyboard and mouse
+   * operation returns as soon as JavaFX has dispatched the corresponding
+   * {@code KeyEvent} or {@code MouseEvent} to the target scene. The
+   * configured "after mouse operation" and "after keyboard operation" pause
+   * times are then treated as upper bounds on the time to wait for an event,
+   * rather than as fixed delays. When input acknowledgement is disabled, the
+   * robot pauses for the full configured time after each operation.</p>
+   *
+   * <p>Slow motion mode, if enabled, takes precedence.</p>
+   *
+   * @param enabled {@code true} if acknowledgement should be enabled
+   */
+
+  void setInputAcknowledgementEnabled(boolean enabled);
+
+  /**
+   * @return The maximum number of keys typed per JavaFX application thread task
+   *
+   * @see #setTypingBatchSize(int)
+   */
+
+  int typingBatchSize();
+
+  /**
+   * Set the maximum number of keys that will be typed in a single task on
+   * the JavaFX application thread. Typing operations are compiled into a
+   * sequence of key presses and releases, and the sequence is executed in
+   * batches of at most this many keys. The robot pauses (or waits for
+   * acknowledgement) once per batch, rather than once per key.
+   *
+   * @param keys The number of keys
+   */
+
+  void setTypingBatchSize(int keys);
+
+  /**
+   * @return The typing throughput, in characters per second, measured over
+   * the most recent typing operation
+   */
+
+  double typingCharactersPerSecond();
+
+  /**
+   * @return {@code true} if scene graph indexing is enabled
+   *
+   * @see #setSceneIndexEnabled(boolean)
+   */
+
+  boolean isSceneIndexEnabled();
+
+  /**
+   * <p>Enable or disable scene graph indexing.</p>
+   *
+   * <p>When indexing is enabled, the robot maintains an index for each
+   * scene it searches, mapping IDs, style classes, node types, and the text
+   * of labelled nodes to the nodes that have them. The index is kept current
+   * by listeners on the scene graph, and find operations over stages are
+   * answered from the index rather than by traversing the whole graph.
+   * Results from an index are returned in the same depth-first order as an
+   * unindexed search.</p>
+   *
+   * <p>Disabling indexing discards all indexes and removes their
+   * listeners.</p>
+   *
+   * @param enabled {@code true} if indexing should be enabled
+   *
+   * @see XCRobotType#sceneIndexStatistics()
+   */
+
+  void setSceneIndexEnabled(boolean enabled);
+
+  /**
+   * Release all keys and mouse buttons pressed by the robot, and reset any
+   * temporary configuration state (such as {@link #slowMotionEnable()}). If
+   * a window is provided, warp the cursor back to the center of that window.
+   *
+   * @param window The window
+   *
+   * @throws Exception On errors
+   *
+   * @see XCRobotResetMode#RELEASE_PRESSED
+   */
+
+  default void reset(
+    final Optional<Window> window)
+    throws Exception
+  {
+    this.reset(window, XCRobotResetMode.RELEASE_PRESSED);
+  }
+
+  /**
+   * Release keys and mouse buttons according to the given mode, and reset
+   * any temporary configuration state (such as {@link #slowMotionEnable()}).
+   * If a window is provided, warp the cursor back to the center of that
+   * window.
    *
    * @param window The window
+   * @param mode   The reset mode
+   *
+   * @throws Exception On errors
    */
-  void reset(Optional<Window> window)
+
+  void reset(
+    Optional<Window> window,
+    XCRobotResetMode mode)
     throws Exception;
 }
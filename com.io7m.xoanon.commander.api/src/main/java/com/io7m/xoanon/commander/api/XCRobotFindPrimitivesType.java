@@ -232,4 +232,242 @@ public interface XCRobotFindPrimitivesType
     Class<T> clazz,
     String cssClass)
     throws Exception;
+
+  /**
+   * Execute the given query over the given parent and all of its
+   * descendants. The scene graph is traversed iteratively in depth-first
+   * order, and traversal stops as soon as the query's limit is reached.
+   *
+   * @param query The query
+   * @param root  The root node
+   * @param <T>   The type of node
+   *
+   * @return The query result
+   *
+   * @throws Exception On errors
+   */
+
+  <T extends Node> XCNodeQueryResult<T> query(
+    XCNodeQuery<T> query,
+    Parent root)
+    throws Exception;
+
+  /**
+   * Execute the given query over the scene of the given stage.
+   *
+   * @param query The query
+   * @param stage The stage
+   * @param <T>   The type of node
+   *
+   * @return The query result
+   *
+   * @throws Exception On errors
+   */
+
+  <T extends Node> XCNodeQueryResult<T> queryInStage(
+    XCNodeQuery<T> query,
+    Stage stage)
+    throws Exception;
+
+  /**
+   * Execute the given query over the scenes of all showing windows. The
+   * query's limit applies to the combined results.
+   *
+   * @param query The query
+   * @param <T>   The type of node
+   *
+   * @return The query result
+   *
+   * @throws Exception On errors
+   */
+
+  <T extends Node> XCNodeQueryResult<T> queryInAnyStage(
+    XCNodeQuery<T> query)
+    throws Exception;
+
+  /**
+   * Execute all of the given queries over the given parent and all of its
+   * descendants in a single task on the JavaFX application thread. Queries
+   * that match nothing are reported in the result rather than raising
+   * errors.
+   *
+   * @param queries The queries
+   * @param root    The root node
+   *
+   * @return The batch result
+   *
+   * @throws Exception On errors
+   *
+   * @see XCNodeBatchResult#missing()
+   * @see XCNodeBatchResult#requireComplete()
+   */
+
+  XCNodeBatchResult queryBatch(
+    List<? extends XCNodeQuery<?>> queries,
+    Parent root)
+    throws Exception;
+
+  /**
+   * Execute all of the given queries over the scene of the given stage in a
+   * single task on the JavaFX application thread. Queries that match
+   * nothing are reported in the result rather than raising errors.
+   *
+   * @param queries The queries
+   * @param stage   The stage
+   *
+   * @return The batch result
+   *
+   * @throws Exception On errors
+   */
+
+  XCNodeBatchResult queryBatchInStage(
+    List<? extends XCNodeQuery<?>> queries,
+    Stage stage)
+    throws Exception;
+
+  /**
+   * Execute all of the given queries over the scenes of all showing windows
+   * in a single task on the JavaFX application thread. Queries that match
+   * nothing are reported in the result rather than raising errors.
+   *
+   * @param queries The queries
+   *
+   * @return The batch result
+   *
+   * @throws Exception On errors
+   */
+
+  XCNodeBatchResult queryBatchInAnyStage(
+    List<? extends XCNodeQuery<?>> queries)
+    throws Exception;
+
+  /**
+   * Capture an immutable snapshot of the scene graph of the given stage in
+   * a single task on the JavaFX application thread. The snapshot may then
+   * be inspected from any thread without further access to the JavaFX
+   * application thread.
+   *
+   * @param stage The stage
+   *
+   * @return The snapshot, or an empty snapshot if the stage has no scene
+   *
+   * @throws Exception On errors
+   */
+
+  XCSceneSnapshot snapshot(
+    Stage stage)
+    throws Exception;
+
+  /**
+   * Count the nodes matched by the given query under the given parent,
+   * without collecting them. The query's limit, if any, bounds the count.
+   *
+   * @param query The query
+   * @param root  The root node
+   *
+   * @return The count
+   *
+   * @throws Exception On errors
+   */
+
+  XCNodeQueryCount count(
+    XCNodeQuery<?> query,
+    Parent root)
+    throws Exception;
+
+  /**
+   * Count the nodes matched by the given query in the scene of the given
+   * stage, without collecting them.
+   *
+   * @param query The query
+   * @param stage The stage
+   *
+   * @return The count
+   *
+   * @throws Exception On errors
+   */
+
+  XCNodeQueryCount countInStage(
+    XCNodeQuery<?> query,
+    Stage stage)
+    throws Exception;
+
+  /**
+   * Count the nodes matched by the given query in the scenes of all showing
+   * windows, without collecting them.
+   *
+   * @param query The query
+   *
+   * @return The count
+   *
+   * @throws Exception On errors
+   */
+
+  XCNodeQueryCount countInAnyStage(
+    XCNodeQuery<?> query)
+    throws Exception;
+
+  /**
+   * Call the given visitor on the JavaFX application thread with each node
+   * matched by the given query under the given parent, during traversal.
+   * Traversal stops when the visitor returns {@code false}, or when the
+   * query's limit is reached. No results are collected.
+   *
+   * @param query   The query
+   * @param root    The root node
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The number of nodes visited
+   *
+   * @throws Exception On errors, including errors raised by the visitor
+   */
+
+  <T extends Node> XCNodeQueryCount visit(
+    XCNodeQuery<T> query,
+    Parent root,
+    XCNodeVisitorType<? super T> visitor)
+    throws Exception;
+
+  /**
+   * Call the given visitor on the JavaFX application thread with each node
+   * matched by the given query in the scene of the given stage.
+   *
+   * @param query   The query
+   * @param stage   The stage
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The number of nodes visited
+   *
+   * @throws Exception On errors, including errors raised by the visitor
+   *
+   * @see #visit(XCNodeQuery, Parent, XCNodeVisitorType)
+   */
+
+  <T extends Node> XCNodeQueryCount visitInStage(
+    XCNodeQuery<T> query,
+    Stage stage,
+    XCNodeVisitorType<? super T> visitor)
+    throws Exception;
+
+  /**
+   * Call the given visitor on the JavaFX application thread with each node
+   * matched by the given query in the scenes of all showing windows.
+   *
+   * @param query   The query
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The number of nodes visited
+   *
+   * @throws Exception On errors, including errors raised by the visitor
+   *
+   * @see #visit(XCNodeQuery, Parent, XCNodeVisitorType)
+   */
+
+  <T extends Node> XCNodeQueryCount visitInAnyStage(
+    XCNodeQuery<T> query,
+    XCNodeVisitorType<? super T> visitor)
+    throws Exception;
 }
@@ -20,7 +20,9 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.stage.Stage;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Convenient extensions to the robot functions related to finding nodes.
@@ -197,4 +199,107 @@ public interface XCRobotFindType extends XCRobotFindPrimitivesType
   {
     return this.findAllWithClassInAnyStage(Node.class, cssClass);
   }
+
+  /**
+   * Find the nodes with each of the given IDs in a single task on the
+   * JavaFX application thread.
+   *
+   * @param stage The stage within which to search
+   * @param ids   The IDs
+   *
+   * @return The nodes, keyed by ID, in the order given
+   *
+   * @throws Exception On errors, or if any of the IDs cannot be found
+   */
+
+  default Map<String, Node> findWithIds(
+    final Stage stage,
+    final List<String> ids)
+    throws Exception
+  {
+    final var queries =
+      ids.stream()
+        .map(id -> XCNodeQuery.any().withId(id).first())
+        .toList();
+
+    final var batch =
+      this.queryBatchInStage(queries, stage)
+        .requireComplete();
+
+    final var results = new LinkedHashMap<String, Node>(ids.size());
+    for (final var query : queries) {
+      results.put(query.id().orElseThrow(), batch.first(query));
+    }
+    return results;
+  }
+
+  /**
+   * Find at most {@code limit} descendants of the given {@code parent} that
+   * are of type {@code clazz} (or some subtype of it). Traversal stops as
+   * soon as enough nodes have been found.
+   *
+   * @param clazz  The class
+   * @param parent The parent
+   * @param limit  The maximum number of results
+   * @param <T>    The type of descendants
+   *
+   * @return The matching descendants
+   *
+   * @throws Exception On errors
+   */
+
+  default <T extends Node> List<T> findAll(
+    final Class<T> clazz,
+    final Parent parent,
+    final int limit)
+    throws Exception
+  {
+    return this.query(XCNodeQuery.of(clazz).withLimit(limit), parent)
+      .nodes();
+  }
+
+  /**
+   * Find at most {@code limit} nodes in the given stage that are of type
+   * {@code clazz} (or some subtype of it). Traversal stops as soon as enough
+   * nodes have been found.
+   *
+   * @param clazz The class
+   * @param stage The stage
+   * @param limit The maximum number of results
+   * @param <T>   The type of descendants
+   *
+   * @return The matching nodes
+   *
+   * @throws Exception On errors
+   */
+
+  default <T extends Node> List<T> findAllInStage(
+    final Class<T> clazz,
+    final Stage stage,
+    final int limit)
+    throws Exception
+  {
+    return this.queryInStage(XCNodeQuery.of(clazz).withLimit(limit), stage)
+      .nodes();
+  }
+
+  /**
+   * Determine whether the given query matches any node in the given stage.
+   * Traversal stops at the first match, and no results are collected.
+   *
+   * @param query The query
+   * @param stage The stage
+   *
+   * @return {@code true} if at least one node matches
+   *
+   * @throws Exception On errors
+   */
+
+  default boolean existsInStage(
+    final XCNodeQuery<?> query,
+    final Stage stage)
+    throws Exception
+  {
+    return this.countInStage(query.first(), stage).matches() > 0L;
+  }
 }
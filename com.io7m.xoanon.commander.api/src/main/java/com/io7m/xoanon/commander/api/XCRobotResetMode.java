@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+/**
+ * The means by which a robot releases keys and mouse buttons on reset.
+ *
+ * @see XCRobotConfigurationType#reset(java.util.Optional, XCRobotResetMode)
+ */
+
+public enum XCRobotResetMode
+{
+  /**
+   * Release only those keys and mouse buttons that the robot has pressed
+   * and not yet released.
+   */
+
+  RELEASE_PRESSED,
+
+  /**
+   * Release every key and every mouse button, regardless of whether the
+   * robot pressed them. This is considerably more expensive, and is only
+   * useful if something other than the robot may have left input in a
+   * pressed state.
+   */
+
+  RELEASE_ALL
+}
@@ -16,21 +16,28 @@
 
 package com.io7m.xoanon.commander.api;
 
+import javafx.scene.Node;
+import javafx.scene.image.WritableImage;
 import javafx.scene.robot.Robot;
 
 /**
  * A robot that can send events to JavaFX nodes. All methods submit work to the
  * JavaFX application thread, and block until the operations have completed on
- * that thread (up to a configurable timeout value).
+ * that thread (up to a configurable timeout value). With the exception of
+ * {@link #execute(Runnable)} and {@link #evaluate(XCFXThreadOperationType)},
+ * blocking methods fail with {@link IllegalStateException} if called on the
+ * JavaFX application thread.
  */
 
 public interface XCRobotType
   extends XCRobotFindType,
-  XCRobotInteractionsType, XCRobotConfigurationType, XCRobotWaitingType
+  XCRobotInteractionsType, XCRobotConfigurationType, XCRobotWaitingType,
+  XCRobotCellsType
 {
   /**
    * Execute {@code f} on the UI thread, and wait for it to complete
-   * (subject to the configured timeout).
+   * (subject to the configured timeout). If this method is called on the UI
+   * thread, {@code f} is executed immediately.
    *
    * @param f The runnable
    *
@@ -43,7 +50,8 @@ public interface XCRobotType
 
   /**
    * Evaluate {@code f} on the UI thread, and wait for it to complete
-   * (subject to the configured timeout).
+   * (subject to the configured timeout). If this method is called on the UI
+   * thread, {@code f} is evaluated immediately.
    *
    * @param f   The function
    * @param <T> The type of results
@@ -62,4 +70,53 @@ public interface XCRobotType
    */
 
   Robot robot();
+
+  /**
+   * The robot tracks the currently focused window, and does not bring a
+   * stage to the front before interacting with one of its nodes if that
+   * stage is already focused.
+   *
+   * @return Statistics on how often stages needed to be brought to the front
+   */
+
+  XCFocusStatistics focusStatistics();
+
+  /**
+   * @return Statistics on the size and update cost of the robot's scene
+   * graph indexes
+   *
+   * @see #setSceneIndexEnabled(boolean)
+   */
+
+  XCSceneIndexStatistics sceneIndexStatistics();
+
+  /**
+   * @return The name of the backend used to deliver input
+   *
+   * @see XCRobotBackends
+   */
+
+  String backendName();
+
+  /**
+   * Capture the area of the screen occupied by the given node, using the
+   * robot's backend.
+   *
+   * @param node The node
+   *
+   * @return The captured image
+   *
+   * @throws Exception On errors
+   */
+
+  WritableImage screenCapture(Node node)
+    throws Exception;
+
+  /**
+   * @return The asynchronous interface to this robot. The blocking and
+   * asynchronous interfaces share the same queue of operations and the same
+   * configuration.
+   */
+
+  XCRobotAsyncType async();
 }
@@ -14,11 +14,14 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
-
 package com.io7m.xoanon.commander.api;
 
+import javafx.beans.Observable;
+import javafx.concurrent.Worker;
+import javafx.scene.Node;
 import javafx.stage.Stage;
 
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BooleanSupplier;
 
@@ -29,7 +32,9 @@ import java.util.function.BooleanSupplier;
 public interface XCRobotWaitingType
 {
   /**
-   * Wait for the default stage to close.
+   * Wait for the given stage to close. The wait observes the stage's
+   * {@code showing} property, and the calling thread is not woken until
+   * the stage closes, or the timeout expires.
    *
    * @param stage        The stage
    * @param milliseconds The time to wait in milliseconds
@@ -43,30 +48,210 @@ public interface XCRobotWaitingType
     throws Exception;
 
   /**
-   * Do nothing for the given number of JavaFX frames.
+   * Wait for the given stage to be showing. The wait observes the stage's
+   * {@code showing} property, and the calling thread is not woken until
+   * the stage is showing, or the timeout expires.
+   *
+   * @param stage        The stage
+   * @param milliseconds The time to wait in milliseconds
+   *
+   * @throws Exception On errors
+   */
+
+  void waitForStageToShow(
+    Stage stage,
+    long milliseconds)
+    throws Exception;
+
+  /**
+   * Wait for the given stage to be showing and focused. The wait observes
+   * the stage's {@code showing} and {@code focused} properties, and the
+   * calling thread is not woken until the stage is focused, or the timeout
+   * expires.
+   *
+   * @param stage        The stage
+   * @param milliseconds The time to wait in milliseconds
+   *
+   * @throws Exception On errors
+   */
+
+  void waitForStageFocused(
+    Stage stage,
+    long milliseconds)
+    throws Exception;
+
+  /**
+   * Do nothing for the given number of JavaFX frames. Frames are counted
+   * as JavaFX pulses; the JavaFX application thread is not blocked.
    *
    * @param frames The frames
    *
    * @throws Exception On errors
+   * @see #waitForPulseCount(int)
+   */
+
+  default void waitForFrames(
+    final int frames)
+    throws Exception
+  {
+    this.waitForPulseCount(frames);
+  }
+
+  /**
+   * Wait for exactly the given number of JavaFX pulses to occur, and return
+   * the timestamps of those pulses. The JavaFX application thread is not
+   * blocked.
+   *
+   * @param pulses The number of pulses
+   *
+   * @return The timestamps of the observed pulses
+   *
+   * @throws Exception On errors
    */
 
-  void waitForFrames(int frames)
+  XCPulseTimestamps waitForPulseCount(int pulses)
     throws Exception;
 
   /**
-   * Wait until the given predicate is true. The predicate is evaluated
-   * repeatedly on the JavaFX UI thread.
+   * Wait until the given predicate is true. The predicate is evaluated on the
+   * JavaFX UI thread once when the wait begins, and then once per JavaFX
+   * pulse until it returns {@code true}. The calling thread is not woken
+   * until the predicate is true, or the timeout expires.
    *
    * @param ms        The maximum number of milliseconds to wait
    * @param predicate The predicate to evaluate
    *
+   * @return Information about the cost of the wait
+   *
+   * @throws TimeoutException If the predicate does not return {@code true}
+   *                          before {@code ms} milliseconds have elapsed.
+   * @throws Exception        On errors
+   */
+
+  default XCWaitStatistics waitUntil(
+    final long ms,
+    final BooleanSupplier predicate)
+    throws TimeoutException, Exception
+  {
+    return this.waitUntilObserving(ms, List.of(), predicate);
+  }
+
+  /**
+   * Wait until the given predicate is true. The predicate is evaluated on the
+   * JavaFX UI thread once when the wait begins, once per JavaFX pulse, and
+   * additionally whenever any of the given observables are invalidated. The
+   * calling thread is not woken until the predicate is true, or the timeout
+   * expires.
+   *
+   * @param ms          The maximum number of milliseconds to wait
+   * @param observables The observables that can affect the predicate
+   * @param predicate   The predicate to evaluate
+   *
+   * @return Information about the cost of the wait
+   *
    * @throws TimeoutException If the predicate does not return {@code true}
    *                          before {@code ms} milliseconds have elapsed.
    * @throws Exception        On errors
    */
 
-  void waitUntil(
+  XCWaitStatistics waitUntilObserving(
     long ms,
+    List<? extends Observable> observables,
     BooleanSupplier predicate)
     throws TimeoutException, Exception;
+
+  /**
+   * Wait until the application has finished reacting to whatever was last
+   * done to it. The application is considered idle when no functions
+   * submitted through {@link XCFXThread} are waiting to execute, the root of
+   * every showing scene has been laid out, and no JavaFX pulse has occurred
+   * for a short quiet period (three frames). Because JavaFX only schedules
+   * pulses while an {@code Animation} or {@code AnimationTimer} is running,
+   * or while a scene has a pending CSS or layout pass, the absence of pulses
+   * implies the absence of all three. The UI thread is never blocked and the
+   * wait does not itself cause pulses.
+   *
+   * @param milliseconds The maximum number of milliseconds to wait
+   *
+   * @return The time taken for the application to settle
+   *
+   * @throws TimeoutException If the application does not become idle in time
+   * @throws Exception        On errors
+   */
+
+  default XCIdleStatistics waitForIdle(
+    final long milliseconds)
+    throws TimeoutException, Exception
+  {
+    return this.waitForIdle(milliseconds, List.of());
+  }
+
+  /**
+   * Wait until the application is idle, and additionally until none of the
+   * given workers (such as {@code javafx.concurrent.Task} values) are
+   * running.
+   *
+   * @param milliseconds The maximum number of milliseconds to wait
+   * @param workers      The workers that must not be running
+   *
+   * @return The time taken for the application to settle
+   *
+   * @throws TimeoutException If the application does not become idle in time
+   * @throws Exception        On errors
+   * @see #waitForIdle(long)
+   */
+
+  XCIdleStatistics waitForIdle(
+    long milliseconds,
+    List<? extends Worker<?>> workers)
+    throws TimeoutException, Exception;
+
+  /**
+   * Wait until a node matching the given query is attached to the scene of
+   * a showing window. The scene graphs of all showing windows are searched
+   * once when the wait begins. After that, the wait observes
+   * {@link javafx.stage.Window#getWindows()}, the windows' scenes, and the
+   * children of every parent, and searches the subtrees that become
+   * attached. The wait also observes the ID, style classes, and text of
+   * every attached node, and checks a node again when any of these change.
+   * Other properties are not observed: a query that uses an arbitrary
+   * predicate has that predicate re-checked only on structural changes, when
+   * nodes are attached. No pulses are requested by the wait itself.
+   *
+   * @param query        The query
+   * @param milliseconds The maximum number of milliseconds to wait
+   * @param <T>          The type of node
+   *
+   * @return The first matching node
+   *
+   * @throws TimeoutException If no matching node appears in time
+   * @throws Exception        On errors
+   */
+
+  <T extends Node> T awaitNode(
+    XCNodeQuery<T> query,
+    long milliseconds)
+    throws TimeoutException, Exception;
+
+  /**
+   * Wait until no node matching the given query is attached to the scene of
+   * a showing window. The matching nodes are found once when the wait
+   * begins, and are then tracked as subtrees are attached and detached
+   * and as windows are shown and hidden. A node is checked again when its
+   * ID, style classes, or text change, so that nodes that stop matching
+   * without being detached are observed. A query that uses an arbitrary
+   * predicate has that predicate re-checked only on structural changes. No
+   * pulses are requested by the wait itself.
+   *
+   * @param query        The query
+   * @param milliseconds The maximum number of milliseconds to wait
+   *
+   * @throws TimeoutException If a matching node remains after the timeout
+   * @throws Exception        On errors
+   */
+
+  void awaitNodeGone(
+    XCNodeQuery<?> query,
+    long milliseconds)
+    throws TimeoutException, Exception;
 }
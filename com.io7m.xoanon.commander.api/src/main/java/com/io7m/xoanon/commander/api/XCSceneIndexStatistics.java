@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Statistics on the scene graph indexes maintained by a robot.
+ *
+ * @param scenes     The number of scenes currently indexed
+ * @param nodes      The number of nodes currently indexed
+ * @param entries    The number of key-to-node entries currently held across
+ *                   all of the id, style class, type, and text indexes
+ * @param listeners  The number of listeners currently registered on indexed
+ *                   nodes
+ * @param updates    The total number of incremental updates applied in
+ *                   response to scene graph changes
+ * @param updateTime The total time spent applying incremental updates
+ * @param queries    The total number of queries answered from an index
+ */
+
+public record XCSceneIndexStatistics(
+  int scenes,
+  long nodes,
+  long entries,
+  long listeners,
+  long updates,
+  Duration updateTime,
+  long queries)
+{
+  /**
+   * Statistics on the scene graph indexes maintained by a robot.
+   *
+   * @param scenes     The number of scenes currently indexed
+   * @param nodes      The number of nodes currently indexed
+   * @param entries    The number of key-to-node entries currently held across
+   *                   all of the id, style class, type, and text indexes
+   * @param listeners  The number of listeners currently registered on indexed
+   *                   nodes
+   * @param updates    The total number of incremental updates applied in
+   *                   response to scene graph changes
+   * @param updateTime The total time spent applying incremental updates
+   * @param queries    The total number of queries answered from an index
+   */
+
+  public XCSceneIndexStatistics
+  {
+    Objects.requireNonNull(updateTime, "updateTime");
+  }
+}
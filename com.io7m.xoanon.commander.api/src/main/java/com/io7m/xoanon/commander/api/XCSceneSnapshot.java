@@ -0,0 +1,790 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Labeled;
+import javafx.scene.control.TextInputControl;
+import javafx.scene.text.Text;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * <p>An immutable, compact copy of a scene graph.</p>
+ *
+ * <p>A snapshot is captured in a single pass on the JavaFX application
+ * thread, and records the type, ID, style classes, text, scene-relative
+ * bounds, and position in the tree of every node. Nodes are numbered in
+ * depth-first order starting from {@code 0} for the root, and all
+ * attributes are held in primitive arrays indexed by node number, with
+ * strings shared through a single table. Once captured, a snapshot holds no
+ * references to the scene graph (other than to node classes), and may be
+ * searched, compared, and asserted on from any thread.</p>
+ *
+ * <p>Methods that take a node number throw {@link IndexOutOfBoundsException}
+ * if the number is not in the range {@code [0, size())}.</p>
+ *
+ * <p>The text of a node is the text of a {@link Labeled},
+ * {@link TextInputControl}, or {@link Text} node.</p>
+ */
+
+public final class XCSceneSnapshot
+{
+  private final String[] strings;
+  private final Map<String, Integer> stringIndices;
+  private final Class<?>[] typeTable;
+  private final int[] types;
+  private final int[] ids;
+  private final int[] texts;
+  private final int[] classOffsets;
+  private final int[] classes;
+  private final int[] parents;
+  private final int[] depths;
+  private final int[] subtreeEnds;
+  private final double[] bounds;
+  private final Duration captureTime;
+  private volatile String[] pathsCached;
+
+  private XCSceneSnapshot(
+    final String[] inStrings,
+    final Map<String, Integer> inStringIndices,
+    final Class<?>[] inTypeTable,
+    final int[] inTypes,
+    final int[] inIds,
+    final int[] inTexts,
+    final int[] inClassOffsets,
+    final int[] inClasses,
+    final int[] inParents,
+    final int[] inDepths,
+    final int[] inSubtreeEnds,
+    final double[] inBounds,
+    final Duration inCaptureTime)
+  {
+    this.strings = inStrings;
+    this.stringIndices = inStringIndices;
+    this.typeTable = inTypeTable;
+    this.types = inTypes;
+    this.ids = inIds;
+    this.texts = inTexts;
+    this.classOffsets = inClassOffsets;
+    this.classes = inClasses;
+    this.parents = inParents;
+    this.depths = inDepths;
+    this.subtreeEnds = inSubtreeEnds;
+    this.bounds = inBounds;
+    this.captureTime = inCaptureTime;
+  }
+
+  /**
+   * @return An empty snapshot
+   */
+
+  public static XCSceneSnapshot empty()
+  {
+    return new XCSceneSnapshot(
+      new String[0],
+      Map.of(),
+      new Class<?>[0],
+      new int[0],
+      new int[0],
+      new int[0],
+      new int[]{0},
+      new int[0],
+      new int[0],
+      new int[0],
+      new int[0],
+      new double[0],
+      Duration.ZERO
+    );
+  }
+
+  /**
+   * Capture a snapshot of the given node and all of its descendants.
+   *
+   * @param root The root node
+   *
+   * @return A snapshot
+   */
+
+  @XCOnFXThread
+  public static XCSceneSnapshot capture(
+    final Node root)
+  {
+    Objects.requireNonNull(root, "root");
+
+    final var timeThen = System.nanoTime();
+
+    /*
+     * Collect the nodes in depth-first order, along with their parents and
+     * depths. Children are pushed in reverse so that they are numbered in
+     * the order in which they appear in the scene graph.
+     */
+
+    final var pending = new ArrayDeque<Pending>(64);
+    final var visited = new ArrayList<Pending>(256);
+    pending.push(new Pending(root, -1, 0));
+
+    var classCount = 0;
+    while (!pending.isEmpty()) {
+      final var current = pending.pop();
+      final var index = visited.size();
+      visited.add(current);
+
+      final var node = current.node();
+      classCount += node.getStyleClass().size();
+      if (node instanceof final Parent parent) {
+        final var children = parent.getChildrenUnmodifiable();
+        final var depth = current.depth() + 1;
+        for (int c = children.size() - 1; c >= 0; --c) {
+          pending.push(new Pending(children.get(c), index, depth));
+        }
+      }
+    }
+
+    final var count = visited.size();
+    final var stringTable = new StringTable();
+    final var typeIndices = new HashMap<Class<?>, Integer>();
+    final var typeList = new ArrayList<Class<?>>();
+
+    final var outTypes = new int[count];
+    final var outIds = new int[count];
+    final var outTexts = new int[count];
+    final var outClassOffsets = new int[count + 1];
+    final var outClasses = new int[classCount];
+    final var outParents = new int[count];
+    final var outDepths = new int[count];
+    final var outSubtreeEnds = new int[count];
+    final var outBounds = new double[count * 4];
+
+    var classIndex = 0;
+    for (int index = 0; index < count; ++index) {
+      final var current = visited.get(index);
+      final var node = current.node();
+
+      final var type = node.getClass();
+      outTypes[index] = typeIndices.computeIfAbsent(type, t -> {
+        typeList.add(t);
+        return Integer.valueOf(typeList.size() - 1);
+      }).intValue();
+
+      outIds[index] = stringTable.intern(node.getId());
+      outTexts[index] = stringTable.intern(textOf(node));
+
+      outClassOffsets[index] = classIndex;
+      for (final var styleClass : node.getStyleClass()) {
+        outClasses[classIndex] = stringTable.intern(styleClass);
+        ++classIndex;
+      }
+
+      outParents[index] = current.parent();
+      outDepths[index] = current.depth();
+      outSubtreeEnds[index] = index + 1;
+
+      final var nodeBounds = node.localToScene(node.getBoundsInLocal());
+      final var base = index * 4;
+      outBounds[base] = nodeBounds.getMinX();
+      outBounds[base + 1] = nodeBounds.getMinY();
+      outBounds[base + 2] = nodeBounds.getWidth();
+      outBounds[base + 3] = nodeBounds.getHeight();
+    }
+    outClassOffsets[count] = classIndex;
+
+    /*
+     * In depth-first order, the descendants of a node occupy a contiguous
+     * range immediately following it. Propagate the end of each range
+     * upwards to the parent.
+     */
+
+    for (int index = count - 1; index > 0; --index) {
+      final var parent = outParents[index];
+      if (outSubtreeEnds[index] > outSubtreeEnds[parent]) {
+        outSubtreeEnds[parent] = outSubtreeEnds[index];
+      }
+    }
+
+    return new XCSceneSnapshot(
+      stringTable.strings.toArray(new String[0]),
+      Map.copyOf(stringTable.indices),
+      typeList.toArray(new Class<?>[0]),
+      outTypes,
+      outIds,
+      outTexts,
+      outClassOffsets,
+      outClasses,
+      outParents,
+      outDepths,
+      outSubtreeEnds,
+      outBounds,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  @XCOnFXThread
+  private static String textOf(
+    final Node node)
+  {
+    if (node instanceof final Labeled labeled) {
+      return labeled.getText();
+    }
+    if (node instanceof final TextInputControl input) {
+      return input.getText();
+    }
+    if (node instanceof final Text text) {
+      return text.getText();
+    }
+    return null;
+  }
+
+  /**
+   * @return The number of nodes in the snapshot
+   */
+
+  public int size()
+  {
+    return this.types.length;
+  }
+
+  /**
+   * @return The time taken to capture the snapshot on the JavaFX
+   * application thread
+   */
+
+  public Duration captureTime()
+  {
+    return this.captureTime;
+  }
+
+  /**
+   * @return An estimate of the memory used by the snapshot, in bytes
+   */
+
+  public long estimatedSizeBytes()
+  {
+    long size = 0L;
+    size += 4L * this.types.length;
+    size += 4L * this.ids.length;
+    size += 4L * this.texts.length;
+    size += 4L * this.classOffsets.length;
+    size += 4L * this.classes.length;
+    size += 4L * this.parents.length;
+    size += 4L * this.depths.length;
+    size += 4L * this.subtreeEnds.length;
+    size += 8L * this.bounds.length;
+    size += 8L * this.typeTable.length;
+    for (final var string : this.strings) {
+      size += 40L + string.length();
+    }
+    size += 32L * this.stringIndices.size();
+    return size;
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The type of the node
+   */
+
+  public Class<?> type(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.typeTable[this.types[node]];
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The ID of the node, if any
+   */
+
+  public Optional<String> id(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.string(this.ids[node]);
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The text of the node, if any
+   */
+
+  public Optional<String> text(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.string(this.texts[node]);
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The style classes of the node
+   */
+
+  public List<String> styleClasses(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    final var start = this.classOffsets[node];
+    final var end = this.classOffsets[node + 1];
+    final var results = new ArrayList<String>(end - start);
+    for (int index = start; index < end; ++index) {
+      results.add(this.strings[this.classes[index]]);
+    }
+    return List.copyOf(results);
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The bounds of the node in scene coordinates
+   */
+
+  public Rectangle2D bounds(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    final var base = node * 4;
+    return new Rectangle2D(
+      this.bounds[base],
+      this.bounds[base + 1],
+      this.bounds[base + 2],
+      this.bounds[base + 3]
+    );
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The parent of the node, or {@code -1} for the root
+   */
+
+  public int parent(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.parents[node];
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The depth of the node, where the root has depth {@code 0}
+   */
+
+  public int depth(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.depths[node];
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The children of the node, in scene graph order
+   */
+
+  public int[] children(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    final var end = this.subtreeEnds[node];
+    final var results = IntStream.builder();
+    for (int child = node + 1; child < end; child = this.subtreeEnds[child]) {
+      results.add(child);
+    }
+    return results.build().toArray();
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The number of descendants of the node
+   */
+
+  public int descendantCount(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.subtreeEnds[node] - node - 1;
+  }
+
+  /**
+   * Find all nodes matching the given predicate over node numbers.
+   *
+   * @param predicate The predicate
+   *
+   * @return The matching node numbers, in depth-first order
+   */
+
+  public int[] find(
+    final IntPredicate predicate)
+  {
+    return IntStream.range(0, this.size())
+      .filter(predicate)
+      .toArray();
+  }
+
+  /**
+   * @param id The ID
+   *
+   * @return The nodes with the given ID
+   */
+
+  public int[] findWithId(
+    final String id)
+  {
+    final var key = this.stringIndexOf(id);
+    if (key < 0) {
+      return new int[0];
+    }
+    return this.find(node -> this.ids[node] == key);
+  }
+
+  /**
+   * @param text The text
+   *
+   * @return The nodes with exactly the given text
+   */
+
+  public int[] findWithText(
+    final String text)
+  {
+    final var key = this.stringIndexOf(text);
+    if (key < 0) {
+      return new int[0];
+    }
+    return this.find(node -> this.texts[node] == key);
+  }
+
+  /**
+   * @param styleClass The style class
+   *
+   * @return The nodes with the given style class
+   */
+
+  public int[] findWithStyleClass(
+    final String styleClass)
+  {
+    final var key = this.stringIndexOf(styleClass);
+    if (key < 0) {
+      return new int[0];
+    }
+
+    return this.find(node -> {
+      final var end = this.classOffsets[node + 1];
+      for (int index = this.classOffsets[node]; index < end; ++index) {
+        if (this.classes[index] == key) {
+          return true;
+        }
+      }
+      return false;
+    });
+  }
+
+  /**
+   * @param type The type
+   *
+   * @return The nodes of the given type (or a subtype of it)
+   */
+
+  public int[] findWithType(
+    final Class<? extends Node> type)
+  {
+    final var matching = new boolean[this.typeTable.length];
+    for (int index = 0; index < this.typeTable.length; ++index) {
+      matching[index] = type.isAssignableFrom(this.typeTable[index]);
+    }
+    return this.find(node -> matching[this.types[node]]);
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return The path of the node from the root, such as
+   * {@code VBox/HBox[1]/Button[0]}, where each number is the position of
+   * the node among its siblings
+   */
+
+  public String path(
+    final int node)
+  {
+    Objects.checkIndex(node, this.size());
+
+    return this.paths()[node];
+  }
+
+  /**
+   * @param node The node number
+   *
+   * @return A humanly-readable description of the node
+   */
+
+  public String describe(
+    final int node)
+  {
+    final var builder = new StringBuilder(64);
+    builder.append(this.type(node).getSimpleName());
+    this.id(node).ifPresent(x -> builder.append('#').append(x));
+    for (final var styleClass : this.styleClasses(node)) {
+      builder.append('.').append(styleClass);
+    }
+    this.text(node).ifPresent(x -> builder.append(" '").append(x).append('\''));
+    return builder.toString();
+  }
+
+  /**
+   * Compare this snapshot against a newer snapshot. Nodes are matched by
+   * path.
+   *
+   * @param newer The newer snapshot
+   *
+   * @return The differences, in depth-first order of this snapshot followed
+   * by nodes added in the newer snapshot
+   */
+
+  public List<XCSceneSnapshotDifference> differences(
+    final XCSceneSnapshot newer)
+  {
+    Objects.requireNonNull(newer, "newer");
+
+    final var oldPaths = this.paths();
+    final var newPaths = newer.paths();
+    final var newIndices = new HashMap<String, Integer>(newPaths.length);
+    for (int index = 0; index < newPaths.length; ++index) {
+      newIndices.put(newPaths[index], Integer.valueOf(index));
+    }
+
+    final var results = new ArrayList<XCSceneSnapshotDifference>();
+    final var matched = new boolean[newPaths.length];
+    for (int index = 0; index < oldPaths.length; ++index) {
+      final var path = oldPaths[index];
+      final var other = newIndices.get(path);
+      if (other == null) {
+        results.add(new XCSceneSnapshotDifference(
+          XCSceneSnapshotDifference.Kind.REMOVED, path, this.describe(index)
+        ));
+        continue;
+      }
+
+      final var otherIndex = other.intValue();
+      matched[otherIndex] = true;
+
+      final var changes = new ArrayList<String>();
+      compare(changes, "id", this.id(index), newer.id(otherIndex));
+      compare(changes, "text", this.text(index), newer.text(otherIndex));
+      compare(
+        changes,
+        "classes",
+        this.styleClasses(index),
+        newer.styleClasses(otherIndex)
+      );
+      compare(
+        changes,
+        "bounds",
+        this.bounds(index),
+        newer.bounds(otherIndex)
+      );
+
+      if (!changes.isEmpty()) {
+        results.add(new XCSceneSnapshotDifference(
+          XCSceneSnapshotDifference.Kind.CHANGED,
+          path,
+          String.join(", ", changes)
+        ));
+      }
+    }
+
+    for (int index = 0; index < newPaths.length; ++index) {
+      if (!matched[index]) {
+        results.add(new XCSceneSnapshotDifference(
+          XCSceneSnapshotDifference.Kind.ADDED,
+          newPaths[index],
+          newer.describe(index)
+        ));
+      }
+    }
+    return List.copyOf(results);
+  }
+
+  private static void compare(
+    final List<String> changes,
+    final String name,
+    final Object older,
+    final Object newer)
+  {
+    if (!Objects.equals(older, newer)) {
+      changes.add("%s: %s -> %s".formatted(name, older, newer));
+    }
+  }
+
+  /*
+   * The paths are computed on first use and then shared. Computing them twice
+   * in a race is harmless, as the results are identical.
+   */
+
+  private String[] paths()
+  {
+    final var cached = this.pathsCached;
+    if (cached != null) {
+      return cached;
+    }
+
+    final var count = this.size();
+    final var results = new String[count];
+    final var childCounts = new int[count];
+
+    for (int index = 0; index < count; ++index) {
+      final var name = this.type(index).getSimpleName();
+      final var parent = this.parents[index];
+      if (parent < 0) {
+        results[index] = name;
+      } else {
+        final var position = childCounts[parent];
+        childCounts[parent] = position + 1;
+        results[index] = "%s/%s[%d]".formatted(
+          results[parent], name, Integer.valueOf(position));
+      }
+    }
+
+    this.pathsCached = results;
+    return results;
+  }
+
+  private Optional<String> string(
+    final int index)
+  {
+    if (index < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(this.strings[index]);
+  }
+
+  private int stringIndexOf(
+    final String text)
+  {
+    Objects.requireNonNull(text, "text");
+
+    final var index = this.stringIndices.get(text);
+    if (index == null) {
+      return -1;
+    }
+    return index.intValue();
+  }
+
+  @Override
+  public String toString()
+  {
+    return "[XCSceneSnapshot %d nodes, %s]".formatted(
+      Integer.valueOf(this.size()),
+      this.captureTime
+    );
+  }
+
+  @Override
+  public boolean equals(
+    final Object other)
+  {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof final XCSceneSnapshot that)) {
+      return false;
+    }
+    return Arrays.equals(this.strings, that.strings)
+           && Arrays.equals(this.typeTable, that.typeTable)
+           && Arrays.equals(this.types, that.types)
+           && Arrays.equals(this.ids, that.ids)
+           && Arrays.equals(this.texts, that.texts)
+           && Arrays.equals(this.classOffsets, that.classOffsets)
+           && Arrays.equals(this.classes, that.classes)
+           && Arrays.equals(this.parents, that.parents)
+           && Arrays.equals(this.bounds, that.bounds);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(
+      Integer.valueOf(Arrays.hashCode(this.types)),
+      Integer.valueOf(Arrays.hashCode(this.parents)),
+      Integer.valueOf(Arrays.hashCode(this.bounds))
+    );
+  }
+
+  private record Pending(
+    Node node,
+    int parent,
+    int depth)
+  {
+
+  }
+
+  private static final class StringTable
+  {
+    private final HashMap<String, Integer> indices;
+    private final ArrayList<String> strings;
+
+    StringTable()
+    {
+      this.indices = new HashMap<>();
+      this.strings = new ArrayList<>();
+    }
+
+    int intern(
+      final String text)
+    {
+      if (text == null) {
+        return -1;
+      }
+
+      final var existing = this.indices.get(text);
+      if (existing != null) {
+        return existing.intValue();
+      }
+
+      final var index = this.strings.size();
+      this.strings.add(text);
+      this.indices.put(text, Integer.valueOf(index));
+      return index;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.util.Objects;
+
+/**
+ * A difference between two scene graph snapshots.
+ *
+ * @param kind        The kind of difference
+ * @param path        The path of the node within the scene graph
+ * @param description A humanly-readable description of the difference
+ *
+ * @see XCSceneSnapshot#differences(XCSceneSnapshot)
+ */
+
+public record XCSceneSnapshotDifference(
+  Kind kind,
+  String path,
+  String description)
+{
+  /**
+   * A difference between two scene graph snapshots.
+   *
+   * @param kind        The kind of difference
+   * @param path        The path of the node within the scene graph
+   * @param description A humanly-readable description of the difference
+   */
+
+  public XCSceneSnapshotDifference
+  {
+    Objects.requireNonNull(kind, "kind");
+    Objects.requireNonNull(path, "path");
+    Objects.requireNonNull(description, "description");
+  }
+
+  /**
+   * The kind of difference.
+   */
+
+  public enum Kind
+  {
+    /**
+     * The node is present only in the newer snapshot.
+     */
+
+    ADDED,
+
+    /**
+     * The node is present only in the older snapshot.
+     */
+
+    REMOVED,
+
+    /**
+     * The node is present in both snapshots, but its ID, style classes,
+     * text, or bounds differ.
+     */
+
+    CHANGED
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Information about the cost of a completed wait operation.
+ *
+ * @param evaluations  The number of times the condition was evaluated
+ * @param timeFXThread The total time spent evaluating the condition on the
+ *                     JavaFX application thread
+ * @param timeElapsed  The total wall-clock time spent waiting
+ */
+
+public record XCWaitStatistics(
+  long evaluations,
+  Duration timeFXThread,
+  Duration timeElapsed)
+{
+  /**
+   * Information about the cost of a completed wait operation.
+   *
+   * @param evaluations  The number of times the condition was evaluated
+   * @param timeFXThread The total time spent evaluating the condition on the
+   *                     JavaFX application thread
+   * @param timeElapsed  The total wall-clock time spent waiting
+   */
+
+  public XCWaitStatistics
+  {
+    Objects.requireNonNull(timeFXThread, "timeFXThread");
+    Objects.requireNonNull(timeElapsed, "timeElapsed");
+  }
+}
@@ -23,6 +23,7 @@ module com.io7m.xoanon.commander.api
   requires static org.osgi.annotation.bundle;
   requires static org.osgi.annotation.versioning;
 
+  requires javafx.controls;
   requires javafx.graphics;
   requires org.slf4j;
 
@@ -0,0 +1,362 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCAnimationClockMode;
+import com.io7m.xoanon.commander.api.XCAnimationClockType;
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import javafx.animation.Animation;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.ActionEvent;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import static com.io7m.xoanon.commander.api.XCAnimationClockMode.VIRTUAL;
+
+/**
+ * The default animation clock.
+ */
+
+public final class XCAnimationClock implements XCAnimationClockType
+{
+  /*
+   * The maximum number of times that animations started by onFinished
+   * handlers will be run to completion in a single advanceToEnd() call.
+   * This protects against animations that endlessly restart each other.
+   */
+
+  private static final int MAXIMUM_ROUNDS = 1000;
+
+  private final IdentityHashMap<Animation, Tracked> tracked;
+  private volatile XCAnimationClockMode mode;
+
+  /**
+   * The default animation clock.
+   *
+   * @param inMode The initial mode
+   */
+
+  public XCAnimationClock(
+    final XCAnimationClockMode inMode)
+  {
+    this.mode = Objects.requireNonNull(inMode, "mode");
+    this.tracked = new IdentityHashMap<>();
+  }
+
+  private static long toNanos(
+    final javafx.util.Duration time)
+  {
+    return (long) (time.toMillis() * 1_000_000.0);
+  }
+
+  private static javafx.util.Duration fromNanos(
+    final long nanos)
+  {
+    return javafx.util.Duration.millis((double) nanos / 1_000_000.0);
+  }
+
+  private static boolean hasEnd(
+    final Animation animation)
+  {
+    final var total = animation.getTotalDuration();
+    return !total.isIndefinite() && !total.isUnknown();
+  }
+
+  /*
+   * Determine the position of the animation on its whole timeline (across
+   * all cycles), which is what Animation.jumpTo() expects. The animation only
+   * exposes its position within the current cycle, and not the index of the
+   * current cycle, so an animation with more than one cycle is assumed to be
+   * in the cycle in which play() starts it: the first cycle when playing
+   * forwards, and the last cycle when playing backwards. In a reversed cycle
+   * of an auto-reversing animation, the position within the cycle runs from
+   * the end of the cycle to the start.
+   */
+
+  private static long positionOf(
+    final Animation animation)
+  {
+    final var current = toNanos(animation.getCurrentTime());
+    final var count = animation.getCycleCount();
+    if (count == 1 || animation.getRate() >= 0.0 || !hasEnd(animation)) {
+      return current;
+    }
+
+    final var cycle = toNanos(animation.getCycleDuration());
+    final var last = count - 1;
+    if (animation.isAutoReverse() && last % 2 == 1) {
+      return (last * cycle) + (cycle - current);
+    }
+    return (last * cycle) + current;
+  }
+
+  @Override
+  public XCAnimationClockMode mode()
+  {
+    return this.mode;
+  }
+
+  @Override
+  public CompletableFuture<Void> setMode(
+    final XCAnimationClockMode newMode)
+  {
+    Objects.requireNonNull(newMode, "mode");
+
+    return XCFXThread.runV(() -> {
+      this.mode = newMode;
+
+      for (final var track : List.copyOf(this.tracked.values())) {
+        switch (newMode) {
+          case REAL -> track.release();
+          case VIRTUAL -> {
+            if (track.animation.getStatus() == Animation.Status.RUNNING) {
+              track.hold();
+            }
+          }
+        }
+      }
+    });
+  }
+
+  @Override
+  @XCOnFXThread
+  public <A extends Animation> A track(
+    final A animation)
+  {
+    Objects.requireNonNull(animation, "animation");
+
+    if (this.tracked.containsKey(animation)) {
+      return animation;
+    }
+
+    final var track = new Tracked(animation);
+    this.tracked.put(animation, track);
+    animation.statusProperty().addListener(track);
+
+    if (this.mode == VIRTUAL
+        && animation.getStatus() == Animation.Status.RUNNING) {
+      track.hold();
+    }
+    return animation;
+  }
+
+  @Override
+  public CompletableFuture<Void> advance(
+    final Duration time)
+  {
+    Objects.requireNonNull(time, "time");
+
+    if (time.isNegative()) {
+      throw new IllegalArgumentException(
+        "Time %s must be non-negative".formatted(time)
+      );
+    }
+
+    return XCFXThread.runV(() -> this.advanceNow(time.toNanos()));
+  }
+
+  @Override
+  public CompletableFuture<Void> advanceToEnd()
+  {
+    return XCFXThread.runV(this::advanceToEndNow);
+  }
+
+  @XCOnFXThread
+  private void advanceNow(
+    final long nanos)
+  {
+    this.settle();
+
+    for (final var track : List.copyOf(this.tracked.values())) {
+      if (!track.held) {
+        continue;
+      }
+
+      /*
+       * A negative rate plays the animation backwards, towards the start of
+       * its timeline. Cycles (and the direction of reversed cycles) are
+       * handled by jumpTo(), given a position on the whole timeline.
+       */
+
+      final var animation = track.animation;
+      final var rate = animation.getRate();
+      track.position += (long) ((double) nanos * rate);
+
+      if (rate < 0.0) {
+        if (track.position <= 0L) {
+          track.position = 0L;
+          if (hasEnd(animation)) {
+            this.finish(track);
+            continue;
+          }
+        }
+      } else if (hasEnd(animation)
+                 && track.position >= toNanos(animation.getTotalDuration())) {
+        this.finish(track);
+        continue;
+      }
+
+      animation.jumpTo(fromNanos(track.position));
+    }
+
+    /*
+     * Hold any animations that were started by onFinished handlers.
+     */
+
+    this.settle();
+  }
+
+  @XCOnFXThread
+  private void advanceToEndNow()
+  {
+    for (int round = 0; round < MAXIMUM_ROUNDS; ++round) {
+      this.settle();
+
+      final var finishing =
+        this.tracked.values()
+          .stream()
+          .filter(track -> track.held && hasEnd(track.animation))
+          .toList();
+
+      if (finishing.isEmpty()) {
+        return;
+      }
+
+      for (final var track : finishing) {
+        this.finish(track);
+      }
+    }
+  }
+
+  /*
+   * Hold any animations that started playing since the last settle.
+   * Animations cannot safely be paused from inside their own status
+   * listeners, so the listeners only mark the animations, and the pause
+   * happens here.
+   */
+
+  @XCOnFXThread
+  private void settle()
+  {
+    for (final var track : List.copyOf(this.tracked.values())) {
+      if (!track.pendingHold) {
+        continue;
+      }
+
+      track.pendingHold = false;
+      if (this.mode == VIRTUAL
+          && track.animation.getStatus() == Animation.Status.RUNNING) {
+        track.animation.pause();
+        track.animation.jumpTo(fromNanos(track.position));
+        track.held = true;
+      }
+    }
+  }
+
+  @XCOnFXThread
+  private void finish(
+    final Tracked track)
+  {
+    final var animation = track.animation;
+    if (animation.getRate() < 0.0) {
+      animation.jumpTo(javafx.util.Duration.ZERO);
+    } else {
+      animation.jumpTo(animation.getTotalDuration());
+    }
+    track.held = false;
+    animation.stop();
+
+    final var handler = animation.getOnFinished();
+    if (handler != null) {
+      handler.handle(new ActionEvent(animation, null));
+    }
+  }
+
+  @XCOnFXThread
+  private void untrack(
+    final Tracked track)
+  {
+    track.animation.statusProperty().removeListener(track);
+    this.tracked.remove(track.animation);
+  }
+
+  private final class Tracked
+    implements ChangeListener<Animation.Status>
+  {
+    private final Animation animation;
+    private long position;
+    private boolean held;
+    private boolean pendingHold;
+
+    Tracked(
+      final Animation inAnimation)
+    {
+      this.animation = inAnimation;
+    }
+
+    @Override
+    public void changed(
+      final ObservableValue<? extends Animation.Status> observable,
+      final Animation.Status statusThen,
+      final Animation.Status statusNow)
+    {
+      switch (statusNow) {
+        case RUNNING -> {
+          if (XCAnimationClock.this.mode == VIRTUAL) {
+            if (!this.held) {
+              this.position = positionOf(this.animation);
+            }
+            this.pendingHold = true;
+            Platform.runLater(XCAnimationClock.this::settle);
+          }
+        }
+        case STOPPED -> XCAnimationClock.this.untrack(this);
+        case PAUSED -> {
+
+        }
+      }
+    }
+
+    @XCOnFXThread
+    void hold()
+    {
+      this.animation.pause();
+      this.position = positionOf(this.animation);
+      this.pendingHold = false;
+      this.held = true;
+    }
+
+    @XCOnFXThread
+    void release()
+    {
+      this.pendingHold = false;
+      if (this.held) {
+        this.held = false;
+        if (this.animation.getStatus() == Animation.Status.PAUSED) {
+          this.animation.play();
+        }
+      }
+    }
+  }
+}
@@ -17,11 +17,18 @@
 package com.io7m.xoanon.commander.internal;
 
 import com.io7m.xoanon.commander.XBVersion;
+import com.io7m.xoanon.commander.api.XCAnimationClockMode;
+import com.io7m.xoanon.commander.api.XCAnimationClockType;
 import com.io7m.xoanon.commander.api.XCApplicationInfo;
 import com.io7m.xoanon.commander.api.XCCommanderType;
 import com.io7m.xoanon.commander.api.XCFXThread;
 import com.io7m.xoanon.commander.api.XCKey;
 import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.api.XCOnAnyThread;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCRobotBackendContext;
+import com.io7m.xoanon.commander.api.XCRobotBackendFactoryType;
+import com.io7m.xoanon.commander.api.XCRobotBackends;
 import com.io7m.xoanon.commander.api.XCRobotType;
 import com.io7m.xoanon.commander.api.XCTestInfo;
 import com.io7m.xoanon.commander.api.XCTestState;
@@ -32,7 +39,6 @@ import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.geometry.Point2D;
 import javafx.scene.Parent;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
@@ -40,7 +46,6 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
-import javafx.scene.input.MouseButton;
 import javafx.scene.layout.Pane;
 import javafx.scene.robot.Robot;
 import javafx.scene.shape.Rectangle;
@@ -54,16 +59,18 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URL;
 import java.nio.file.Paths;
-import java.time.Clock;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -73,9 +80,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 
 import static javafx.animation.Interpolator.LINEAR;
@@ -109,7 +116,6 @@ import static javafx.scene.input.KeyCode.QUOTE;
 import static javafx.scene.input.KeyCode.QUOTEDBL;
 import static javafx.scene.input.KeyCode.RIGHT_PARENTHESIS;
 import static javafx.scene.input.KeyCode.SEMICOLON;
-import static javafx.scene.input.KeyCode.SHIFT;
 import static javafx.scene.input.KeyCode.SLASH;
 import static javafx.scene.input.KeyCode.STAR;
 import static javafx.scene.input.KeyCode.SUBTRACT;
@@ -129,17 +135,38 @@ public final class XCCommander
   private static final Set<KeyCode> ALL_KEY_CODES =
     generateAllAllowedKeyCodes();
 
+  /**
+   * The name of the system property that specifies the maximum length of
+   * time, in milliseconds, that the commander waits for a window to become
+   * focused before continuing anyway.
+   */
+
+  public static final String PROPERTY_FOCUS_TIMEOUT =
+    "xoanon.stage.focus_timeout";
+
+  /**
+   * The default maximum length of time, in milliseconds, that the commander
+   * waits for a window to become focused.
+   */
+
+  public static final long DEFAULT_FOCUS_TIMEOUT = 500L;
+
   private final ScheduledExecutorService executor;
   private final XBStrings strings;
   private final Stage stage;
   private final ObservableList<XCTestInfo> testsList;
-  private final AtomicReference<XCKeyMap> keyMap;
-  private final XCKeyMapCache keyMapCache;
-  private final AtomicReference<XCRobot> robot;
+  private final XCKeyMapIncremental keyMap;
+  private final AtomicBoolean keyMapLoaded;
+  private final XCKeyMapIncremental.StoreType keyMapCache;
+  private final ConcurrentHashMap<String, XCRobot> robots;
   private final Robot baseRobot;
+  private final XCInputLedger keyMapInput;
   private final AtomicBoolean testsStarted;
   private final OffsetDateTime timeStarted;
   private final Set<String> testsRegistered;
+  private final XCAnimationClock animationClock;
+  private final XCWaitEngine waits;
+  private final long focusTimeout;
   private volatile int stagesCreatedCount;
   private volatile int stagesReleasedCount;
   private volatile XCTestState testsStateWorst;
@@ -213,17 +240,53 @@ public final class XCCommander
 
     this.testsList =
       FXCollections.observableArrayList();
-    this.keyMap =
-      new AtomicReference<>();
+    this.keyMapLoaded =
+      new AtomicBoolean(false);
     this.keyMapCache =
-      new XCKeyMapCache(
-        Clock.systemUTC(),
-        Paths.get(System.getProperty("java.io.tmpdir"))
-      );
-    this.robot =
-      new AtomicReference<>();
+      new XCKeyMapCacheLazy(() -> {
+        return new XCKeyMapCache(
+          Paths.get(System.getProperty("java.io.tmpdir")),
+          XCKeyMapFingerprint.ofCurrentEnvironment()
+        );
+      });
+    this.robots =
+      new ConcurrentHashMap<>();
     this.baseRobot =
       new Robot();
+    this.keyMapInput =
+      new XCInputLedger(new XCRobotBackendJavaFX(this.baseRobot));
+    this.keyMap =
+      new XCKeyMapIncremental(
+        ALL_KEY_CODES,
+        this::keyMapProbe,
+        this.keyMapCache,
+        this.executor
+      );
+    this.animationClock =
+      new XCAnimationClock(XCAnimationClockMode.defaultMode());
+    this.waits =
+      new XCWaitEngine();
+    this.focusTimeout =
+      focusTimeoutConfigured();
+  }
+
+  private static long focusTimeoutConfigured()
+  {
+    final var property = System.getProperty(PROPERTY_FOCUS_TIMEOUT);
+    if (property == null) {
+      return DEFAULT_FOCUS_TIMEOUT;
+    }
+
+    try {
+      return Math.max(0L, Long.parseLong(property));
+    } catch (final NumberFormatException e) {
+      LOG.warn(
+        "ignoring unparseable {} value '{}'",
+        PROPERTY_FOCUS_TIMEOUT,
+        property
+      );
+      return DEFAULT_FOCUS_TIMEOUT;
+    }
   }
 
   /*
@@ -282,15 +345,6 @@ public final class XCCommander
     return Set.copyOf(codes);
   }
 
-  private static void pause()
-  {
-    try {
-      Thread.sleep(2L * 16L);
-    } catch (final InterruptedException e) {
-      Thread.currentThread().interrupt();
-    }
-  }
-
   @Override
   public void initialize(
     final URL location,
@@ -371,10 +425,22 @@ public final class XCCommander
     this.status.setText("Waiting...");
     this.statusName.setText(this.testsStateWorst.name());
 
+    /*
+     * With a virtual clock, the splash fade completes immediately, so there
+     * is no reason to keep it on screen for a second of real time.
+     */
+
+    final long splashDelay;
+    if (this.animationClock.mode() == XCAnimationClockMode.VIRTUAL) {
+      splashDelay = 0L;
+    } else {
+      splashDelay = 1L;
+    }
+
     this.splash.setVisible(true);
     this.executor.schedule(
       () -> Platform.runLater(this::splashHide),
-      1L,
+      splashDelay,
       TimeUnit.SECONDS
     );
 
@@ -452,8 +518,14 @@ public final class XCCommander
     fade.setFromValue(1.0);
     fade.setToValue(0.0);
     fade.setInterpolator(LINEAR);
-    fade.playFromStart();
     fade.setOnFinished(event -> this.splash.setVisible(false));
+    this.animationClock.track(fade).playFromStart();
+
+    /*
+     * With a virtual clock, nothing else would ever advance the splash.
+     */
+
+    this.animationClock.advanceToEnd();
   }
 
   private void splashShow(
@@ -474,7 +546,10 @@ public final class XCCommander
     fade.setToValue(1.0);
     fade.setInterpolator(LINEAR);
     fade.setOnFinished(event -> pause.playFromStart());
-    fade.playFromStart();
+
+    this.animationClock.track(pause);
+    this.animationClock.track(fade).playFromStart();
+    this.animationClock.advanceToEnd();
   }
 
   @Override
@@ -505,10 +580,19 @@ public final class XCCommander
     });
     closeLatch.await(30L, TimeUnit.SECONDS);
 
+    for (final var robot : this.robots.values()) {
+      robot.close();
+    }
     this.executor.shutdown();
     return null;
   }
 
+  @Override
+  public XCAnimationClockType animationClock()
+  {
+    return this.animationClock;
+  }
+
   @Override
   public Stage stage()
   {
@@ -581,15 +665,15 @@ public final class XCCommander
   @Override
   public CompletableFuture<XCKeyMap> keyMap()
   {
-    final var existing = this.keyMap.get();
-    if (existing != null) {
-      return CompletableFuture.completedFuture(existing);
+    if (this.keyMapLoaded.get()) {
+      return CompletableFuture.completedFuture(this.keyMap.current());
     }
 
     final var future = new CompletableFuture<XCKeyMap>();
     this.executor.execute(() -> {
       try {
-        future.complete(this.keyMapLoadCachedOrGenerate());
+        this.keyMapLoad();
+        future.complete(this.keyMap.current());
       } catch (final Throwable e) {
         future.completeExceptionally(e);
       }
@@ -606,19 +690,60 @@ public final class XCCommander
   @Override
   public CompletableFuture<XCRobotType> robot()
   {
-    final var existing = this.robot.get();
+    return this.robot(XCRobotBackends.defaultBackend());
+  }
+
+  @Override
+  public CompletableFuture<XCRobotType> robot(
+    final String backend)
+  {
+    Objects.requireNonNull(backend, "backend");
+
+    final var existing = this.robots.get(backend);
     if (existing != null) {
       return CompletableFuture.completedFuture(existing);
     }
 
     return this.keyMap()
       .thenApply(k -> {
-        final var newRobot = new XCRobot(k, this.baseRobot);
-        this.robot.set(newRobot);
-        return newRobot;
+        return this.robots.computeIfAbsent(backend, this::robotCreate);
       });
   }
 
+  @Override
+  public List<XCRobotType> robots()
+  {
+    return List.copyOf(this.robots.values());
+  }
+
+  private XCRobot robotCreate(
+    final String name)
+  {
+    final var factory =
+      ServiceLoader.load(XCRobotBackendFactoryType.class)
+        .stream()
+        .map(ServiceLoader.Provider::get)
+        .filter(f -> Objects.equals(f.name(), name))
+        .findFirst()
+        .orElseThrow(() -> {
+          return new NoSuchElementException(
+            "No robot backend named '%s'".formatted(name)
+          );
+        });
+
+    LOG.debug("creating robot backend {} ({})", name, factory.getClass());
+
+    try {
+      final var context =
+        new XCRobotBackendContext(this.keyMap::current, this.baseRobot);
+      return new XCRobot(this.keyMap, this.baseRobot, factory.create(context));
+    } catch (final RuntimeException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @Override
   public CompletableFuture<Stage> stageNew(
     final Consumer<Stage> onCreate)
@@ -640,19 +765,29 @@ public final class XCCommander
       });
 
     /*
-     * Fetch the stage after a short delay. This gives time for the stage
-     * to fully open and display any configured scene.
+     * Complete the future when the stage has been focused. This indicates
+     * that the stage has fully opened and is displaying any configured scene.
      */
 
-    final var future = new CompletableFuture<Stage>();
-    this.executor.schedule(() -> {
-      try {
-        future.complete(stageFuture.get());
-      } catch (final Throwable e) {
-        future.completeExceptionally(e);
-      }
-    }, 100L, TimeUnit.MILLISECONDS);
-    return future;
+    return stageFuture.thenCompose(this::stageWaitForFocus);
+  }
+
+  /*
+   * Wait until the given stage is showing and focused. Some window managers
+   * do not focus new windows, so the wait is bounded by the configured focus
+   * timeout, and the stage is returned regardless.
+   */
+
+  @XCOnAnyThread
+  private CompletableFuture<Stage> stageWaitForFocus(
+    final Stage target)
+  {
+    return this.waits.waitUntilFocused(target)
+      .completeOnTimeout(
+        null,
+        this.focusTimeout,
+        TimeUnit.MILLISECONDS)
+      .thenApply(statistics -> target);
   }
 
   @Override
@@ -710,117 +845,195 @@ public final class XCCommander
   }
 
   /*
-   * Check if there's a suitable cached keymap. If there isn't, generate one.
+   * Load the initial keymap from the cache or, if there is no cached keymap,
+   * derive as much of one as possible from the keyboard layout. A cached
+   * keymap is checked by typing a small sample of its keys; otherwise, no
+   * keys are probed here, and characters that are not in the initial keymap
+   * are probed on demand when they are first typed. The cache is locked
+   * throughout so that, of several processes starting at once, only one
+   * derives the keymap and the others load the result.
    */
 
-  private XCKeyMap keyMapLoadCachedOrGenerate()
+  private void keyMapLoad()
+    throws IOException
   {
-    final var cached = this.keyMapCache.load();
-    if (cached.isPresent()) {
-      final var newMap = cached.get();
-      this.keyMap.set(newMap);
-      return newMap;
+    if (this.keyMapLoaded.get()) {
+      return;
     }
 
-    for (var attempt = 0; attempt < 3; ++attempt) {
-      final XCKeyMap generated;
-      try {
-        generated = this.keyMapGenerate();
-        this.keyMap.set(generated);
-        this.keyMapCache.save(generated);
-        return generated;
-      } catch (final Exception e) {
-        // Failed to generate a keymap
+    final var timeStart = System.nanoTime();
+    try (var ignored = this.keyMapCache.lock()) {
+      final var cached = this.keyMapCache.load();
+      if (cached.isPresent()) {
+        this.keyMap.addAll(cached.get().keys());
+        this.keyMapValidate();
+      } else {
+        final var derivation =
+          XCXKBDerivation.ofActiveLayout(ALL_KEY_CODES);
+
+        LOG.debug(
+          "Derived {} key mappings from the keyboard layout "
+          + "({} key codes unresolved)",
+          Integer.valueOf(derivation.keys().size()),
+          Integer.valueOf(derivation.unresolved().size()));
+
+        this.keyMap.addAll(derivation.keys());
+        if (!derivation.keys().isEmpty()) {
+          this.keyMapCache.save(this.keyMap.current());
+        }
       }
     }
 
-    throw new IllegalStateException("Failed to generate a keymap.");
+    LOG.info(
+      "Loaded key map of size {} in {}",
+      Integer.valueOf(this.keyMap.current().keys().size()),
+      java.time.Duration.ofNanos(System.nanoTime() - timeStart));
+
+    this.keyMapLoaded.set(true);
+  }
+
+  /*
+   * Check a sample of the loaded keymap against the keyboard. Only the key
+   * codes of sampled keys that produce the wrong characters are probed
+   * again; any other mappings that the cached keymap got wrong are caught
+   * in later runs, or when typing with them fails. If validation itself
+   * fails, the cached keymap is used as it is.
+   */
+
+  private void keyMapValidate()
+  {
+    final var property =
+      System.getProperty(XCKeyMapValidation.PROPERTY_VALIDATE);
+
+    if ("false".equals(property)) {
+      return;
+    }
+
+    final var sample =
+      XCKeyMapValidation.sample(
+        this.keyMap.current(),
+        XCKeyMapValidation.DEFAULT_SAMPLE_SIZE,
+        RandomGenerator.getDefault()
+      );
+
+    if (sample.isEmpty()) {
+      return;
+    }
+
+    final var timeStart = System.nanoTime();
+    try {
+      this.keyMapValidateSample(sample, timeStart);
+    } catch (final Exception e) {
+      LOG.warn("Unable to validate the cached key map: ", e);
+    }
+  }
+
+  private void keyMapValidateSample(
+    final Map<XCKey, Character> sample,
+    final long timeStart)
+    throws Exception
+  {
+    final var mismatches =
+      this.keyMapWithProber(prober -> {
+        return XCKeyMapValidation.mismatches(
+          sample,
+          prober.type(List.copyOf(sample.keySet()))
+        );
+      });
+
+    if (mismatches.isEmpty()) {
+      LOG.info(
+        "Validated cached key map ({} keys sampled) in {}",
+        Integer.valueOf(sample.size()),
+        java.time.Duration.ofNanos(System.nanoTime() - timeStart));
+      return;
+    }
+
+    final var codes = EnumSet.noneOf(KeyCode.class);
+    for (final var key : mismatches) {
+      codes.add(key.code());
+    }
+
+    LOG.info(
+      "Cached key map disagrees with the keyboard for {} of {} sampled "
+      + "keys; reprobing {}",
+      Integer.valueOf(mismatches.size()),
+      Integer.valueOf(sample.size()),
+      codes);
+
+    this.keyMap.replace(codes, this.keyMapProbe(codes));
+    this.keyMapCache.save(this.keyMap.current());
   }
 
   /**
-   * Generate a keymap by pressing every non-special key on the keyboard
-   * and recording what happens. The mapping can then be used to work backwards
-   * from characters to keys when attempting to send key events to components.
+   * Probe the given key codes by typing each of them (with and without
+   * shift) into the input field and recording what happens. The keys are
+   * typed in pipelined batches; see {@link XCKeyMapProber}.
    *
-   * @return A keymap
+   * @param codes The key codes
+   *
+   * @return The characters produced by the key codes
    *
    * @throws Exception On errors
    */
 
-  private XCKeyMap keyMapGenerate()
+  private Map<Character, XCKey> keyMapProbe(
+    final Set<KeyCode> codes)
+    throws Exception
+  {
+    return this.keyMapWithProber(prober -> {
+      final var probed = prober.probe(codes);
+      LOG.debug(
+        "Probed {} key codes in {} batches",
+        Integer.valueOf(codes.size()),
+        Integer.valueOf(prober.batchCount()));
+      return probed;
+    });
+  }
+
+  /*
+   * Bring the commander window to the front, enable the input field, and
+   * run the given function with a prober that types into the field. Probing
+   * may happen in the middle of a test, so the window that was focused
+   * beforehand is focused again afterwards; otherwise, robot operations that
+   * have no target node would send input to the commander window.
+   */
+
+  private <T> T keyMapWithProber(
+    final ProberFunctionType<T> function)
     throws Exception
   {
+    final var previous = new AtomicReference<Window>();
+
     try {
 
       /*
        * For keymap generation, the commander window must be at the front.
        */
 
-      Platform.runLater(this.stage::toFront);
-      Thread.sleep(250L);
-
-      Platform.runLater(() -> {
-        this.input.setDisable(false);
+      XCFXThread.runVWait(1L, TimeUnit.SECONDS, () -> {
+        previous.set(focusedWindow());
+        this.stage.toFront();
       });
+      this.stageWaitForFocusNow(this.stage);
 
-      Platform.runLater(() -> {
+      XCFXThread.runVWait(1L, TimeUnit.SECONDS, () -> {
+        this.input.setDisable(false);
         this.input.requestFocus();
-      });
-
-      Platform.runLater(() -> {
         this.status.setText("Generating keymap...");
+        this.progress.setProgress(-1.0);
+        this.diagnosticsUnlock();
       });
 
-      Platform.runLater(this::diagnosticsUnlock);
-
-      final var newMappings =
-        new ConcurrentHashMap<Character, XCKey>();
-
-      final var index = new AtomicInteger(1);
-      final var count = ALL_KEY_CODES.size();
-
-      for (final var code : ALL_KEY_CODES) {
-        Platform.runLater(() -> {
-          this.progress.setProgress(
-            index.doubleValue() / (double) count
-          );
-        });
+      final var result =
+        function.apply(new XCKeyMapProber(this.keyMapInput, this.input));
 
-        for (var attempt = 0; attempt < 2; ++attempt) {
-          this.keyMapGenerateOneCharacter(newMappings, code);
-        }
-
-        Platform.requestNextPulse();
-        Platform.runLater(index::incrementAndGet);
-      }
-
-      Platform.requestNextPulse();
-      Platform.runLater(() -> {
+      XCFXThread.runVWait(1L, TimeUnit.SECONDS, () -> {
         this.status.setText("Generated keymap.");
-      });
-
-      Platform.runLater(() -> {
+        this.progress.setProgress(1.0);
         this.input.clear();
-      });
-
-      Platform.runLater(() -> {
         this.input.setDisable(true);
       });
-
-      final var latch = new CountDownLatch(1);
-      Platform.runLater(latch::countDown);
-      latch.await();
-
-      LOG.debug(
-        "Generated key map of size {}",
-        Integer.valueOf(newMappings.size()));
-
-      if (newMappings.size() < 88) {
-        throw new IOException("Key mappings incomplete: >= 88 keys required.");
-      }
-
-      final var result = new XCKeyMap(Map.copyOf(newMappings));
-      this.keyMap.set(result);
       return result;
     } catch (final Throwable e) {
       Platform.runLater(this::diagnosticsLock);
@@ -828,113 +1041,80 @@ public final class XCCommander
     } finally {
       Platform.requestNextPulse();
       this.releaseAllKeys();
+      this.keyMapRestoreFocus(previous.get());
     }
   }
 
-  private void keyMapGenerateOneCharacter(
-    final ConcurrentHashMap<Character, XCKey> newMappings,
-    final KeyCode code)
+  @XCOnFXThread
+  private static Window focusedWindow()
   {
-    Platform.runLater(() -> {
-      LOG.trace("check {}", code);
-      this.status.setText("Generating keymap: Checking text for %s".formatted(
-        code));
-
-      final var bounds =
-        this.input.localToScreen(this.input.getBoundsInLocal());
-      final var target =
-        new Point2D(bounds.getCenterX(), bounds.getCenterY());
-
-      this.baseRobot.mouseMove(target);
-      this.baseRobot.mouseClick(MouseButton.PRIMARY);
-    });
-
-    this.keyMapGenerateOneCharacterNoModifiers(newMappings, code);
-    this.keyMapGenerateOneCharacterShift(newMappings, code);
+    for (final var window : Window.getWindows()) {
+      if (window.isShowing() && window.isFocused()) {
+        return window;
+      }
+    }
+    return null;
   }
 
-  private void keyMapGenerateOneCharacterShift(
-    final ConcurrentHashMap<Character, XCKey> newMappings,
-    final KeyCode code)
+  private void keyMapRestoreFocus(
+    final Window window)
   {
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      this.input.clear();
-    });
-
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      this.baseRobot.keyPress(SHIFT);
-    });
-
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      this.baseRobot.keyType(code);
-    });
-
-    pause();
+    if (!(window instanceof final Stage previousStage)) {
+      return;
+    }
+    if (Objects.equals(previousStage, this.stage)) {
+      return;
+    }
 
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      this.baseRobot.keyRelease(SHIFT);
-    });
+    try {
+      final var showing =
+        XCFXThread.runAndWait(1L, TimeUnit.SECONDS, () -> {
+          if (!previousStage.isShowing()) {
+            return Boolean.FALSE;
+          }
+          previousStage.toFront();
+          previousStage.requestFocus();
+          return Boolean.TRUE;
+        });
 
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      final var text = this.input.getText();
-      LOG.trace("SHIFT code {} -> '{}'", code, text);
-      if (text.isEmpty()) {
-        return;
+      if (showing.booleanValue()) {
+        this.stageWaitForFocusNow(previousStage);
       }
-      final var characters = text.toCharArray();
-      final var character = characters[0];
-
-      newMappings.put(
-        Character.valueOf(character),
-        new XCKey(code, true, false, false)
-      );
-    });
+    } catch (final Exception e) {
+      LOG.debug("unable to restore focus to {}: ", previousStage, e);
+    }
   }
 
-  private void keyMapGenerateOneCharacterNoModifiers(
-    final ConcurrentHashMap<Character, XCKey> newMappings,
-    final KeyCode code)
-  {
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      this.input.clear();
-    });
-
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      this.baseRobot.keyType(code);
-    });
-
-    pause();
+  /*
+   * Wait for the given stage to become focused from the executor. The focus
+   * timeout is applied by the wait itself; the extra second only guards
+   * against a JavaFX application thread that has stopped responding.
+   */
 
-    Platform.requestNextPulse();
-    Platform.runLater(() -> {
-      final var text = this.input.getText();
-      LOG.trace("code {} -> '{}'", code, text);
-      if (text.isEmpty()) {
-        return;
-      }
-      final var characters = text.toCharArray();
-      final var character = characters[0];
+  private void stageWaitForFocusNow(
+    final Stage target)
+    throws Exception
+  {
+    this.stageWaitForFocus(target)
+      .get(this.focusTimeout + 1_000L, TimeUnit.MILLISECONDS);
+  }
 
-      newMappings.put(
-        Character.valueOf(character),
-        new XCKey(code, false, false, false)
-      );
-    });
+  private interface ProberFunctionType<T>
+  {
+    T apply(XCKeyMapProber prober)
+      throws Exception;
   }
 
+  /*
+   * Release any keys and buttons that keymap generation left pressed. The
+   * ledger records exactly which inputs are held, so this is typically a
+   * single task that releases nothing at all.
+   */
+
   private void releaseAllKeys()
   {
-    for (final var code : ALL_KEY_CODES) {
-      Platform.runLater(() -> this.baseRobot.keyRelease(code));
-      Platform.requestNextPulse();
-    }
+    Platform.runLater(this.keyMapInput::releasePressed);
+    Platform.requestNextPulse();
   }
 
   private void diagnosticsUnlock()
@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCFocusStatistics;
+import com.io7m.xoanon.commander.api.XCOnAnyThread;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.stage.Window;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A tracker of the currently focused window.</p>
+ *
+ * <p>The tracker listens to the {@code focused} property of every window in
+ * {@link Window#getWindows()}, and records the focused window so that the
+ * robot can determine, without searching the window list, whether a stage
+ * needs to be brought to the front before interacting with it. The check is
+ * made on the JavaFX application thread in the same operation that would
+ * otherwise bring the stage to the front.</p>
+ *
+ * <p>The tracker must be closed when it is no longer needed in order to
+ * remove its listeners.</p>
+ */
+
+public final class XCFocusTracker
+{
+  private final InvalidationListener onFocusChanged;
+  private final ListChangeListener<Window> onWindowsChanged;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private Window focused;
+  private boolean closed;
+
+  /**
+   * A tracker of the currently focused window.
+   */
+
+  public XCFocusTracker()
+  {
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.onFocusChanged = observable -> this.update();
+    this.onWindowsChanged = this::onWindowsChanged;
+    XCFXThread.runV(this::start);
+  }
+
+  @XCOnFXThread
+  private void start()
+  {
+    if (this.closed) {
+      return;
+    }
+
+    final var windows = Window.getWindows();
+    windows.addListener(this.onWindowsChanged);
+    for (final var window : windows) {
+      window.focusedProperty().addListener(this.onFocusChanged);
+    }
+    this.update();
+  }
+
+  @XCOnFXThread
+  private void onWindowsChanged(
+    final ListChangeListener.Change<? extends Window> change)
+  {
+    while (change.next()) {
+      for (final var window : change.getRemoved()) {
+        window.focusedProperty().removeListener(this.onFocusChanged);
+      }
+      for (final var window : change.getAddedSubList()) {
+        window.focusedProperty().addListener(this.onFocusChanged);
+      }
+    }
+    this.update();
+  }
+
+  @XCOnFXThread
+  private void update()
+  {
+    Window result = null;
+    for (final var window : Window.getWindows()) {
+      if (window.isShowing() && window.isFocused()) {
+        result = window;
+        break;
+      }
+    }
+    this.focused = result;
+  }
+
+  @XCOnFXThread
+  private void stop()
+  {
+    if (this.closed) {
+      return;
+    }
+
+    final var windows = Window.getWindows();
+    windows.removeListener(this.onWindowsChanged);
+    for (final var window : windows) {
+      window.focusedProperty().removeListener(this.onFocusChanged);
+    }
+    this.focused = null;
+    this.closed = true;
+  }
+
+  /**
+   * Remove all listeners installed by the tracker. After closing, no window
+   * is considered to be focused.
+   */
+
+  @XCOnAnyThread
+  public void close()
+  {
+    XCFXThread.runV(this::stop);
+  }
+
+  /**
+   * Determine if the window containing the given node is currently focused,
+   * and record the outcome as a hit or a miss.
+   *
+   * @param node The node
+   *
+   * @return {@code true} if the window is known to be focused
+   */
+
+  @XCOnFXThread
+  public boolean checkFocused(
+    final Node node)
+  {
+    final var scene = node.getScene();
+    final var window = scene != null ? scene.getWindow() : null;
+    final var current = this.focused;
+
+    if (window != null && window == current && window.isShowing()) {
+      this.hits.incrementAndGet();
+      return true;
+    }
+
+    this.misses.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * @return The hit and miss counts so far
+   */
+
+  @XCOnAnyThread
+  public XCFocusStatistics statistics()
+  {
+    return new XCFocusStatistics(this.hits.get(), this.misses.get());
+  }
+}
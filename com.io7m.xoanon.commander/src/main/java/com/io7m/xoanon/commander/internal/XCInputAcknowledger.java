@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCOnAnyThread;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.event.EventType;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * <p>Functions to determine when input events sent by the robot have actually
+ * been dispatched.</p>
+ *
+ * <p>Each function installs a temporary event filter on a scene, and returns
+ * a future that is completed once a matching event has been dispatched. The
+ * future is completed only after the event has been fully processed (so that
+ * any events that JavaFX synthesizes in response, such as mouse clicks, have
+ * also been dispatched). The filter is removed when the future completes for
+ * any reason, including cancellation.</p>
+ *
+ * <p>All functions may be called from any thread. When called from a thread
+ * other than the JavaFX application thread, the filter is installed by a task
+ * submitted to the JavaFX event queue, and is therefore guaranteed to be in
+ * place before any subsequently submitted tasks are executed.</p>
+ */
+
+public final class XCInputAcknowledger
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(XCInputAcknowledger.class);
+
+  private final XCRobotBackendType backend;
+
+  /**
+   * Functions to determine when input events have been dispatched.
+   *
+   * @param inBackend The backend used to send events
+   */
+
+  public XCInputAcknowledger(
+    final XCRobotBackendType inBackend)
+  {
+    this.backend = Objects.requireNonNull(inBackend, "backend");
+  }
+
+  @XCOnFXThread
+  private static Optional<Scene> focusedScene()
+  {
+    return Window.getWindows()
+      .stream()
+      .filter(Window::isShowing)
+      .filter(Window::isFocused)
+      .map(Window::getScene)
+      .filter(Objects::nonNull)
+      .findFirst();
+  }
+
+  @XCOnFXThread
+  private static Point2D centerOf(
+    final Node node)
+  {
+    final var bounds = node.localToScreen(node.getBoundsInLocal());
+    return new Point2D(bounds.getCenterX(), bounds.getCenterY());
+  }
+
+  /**
+   * Expect that the given key will be released in the scene of the given
+   * node or, if no node is provided, the scene of the currently focused
+   * window.
+   *
+   * @param node The node
+   * @param code The key code
+   *
+   * @return A future that completes when the key release is dispatched
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<Void> expectKeyReleased(
+    final Optional<Node> node,
+    final KeyCode code)
+  {
+    return this.expectKeyReleased(node, code, 1);
+  }
+
+  /**
+   * Expect that the given key will be released the given number of times in
+   * the scene of the given node or, if no node is provided, the scene of the
+   * currently focused window. A key that appears more than once in a batch
+   * of input must be counted, or the first release would complete the
+   * future early.
+   *
+   * @param node  The node
+   * @param code  The key code
+   * @param count The number of releases
+   *
+   * @return A future that completes when the last key release is dispatched
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<Void> expectKeyReleased(
+    final Optional<Node> node,
+    final KeyCode code,
+    final int count)
+  {
+    Objects.requireNonNull(node, "node");
+    Objects.requireNonNull(code, "code");
+
+    final var remaining = new AtomicInteger(count);
+    return this.expect(
+      () -> node.map(Node::getScene).or(XCInputAcknowledger::focusedScene),
+      KeyEvent.KEY_RELEASED,
+      event -> event.getCode() == code && remaining.decrementAndGet() <= 0
+    );
+  }
+
+  /**
+   * Expect that the given mouse button will be released in the scene of the
+   * given node.
+   *
+   * @param node   The node
+   * @param button The mouse button
+   *
+   * @return A future that completes when the button release is dispatched
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<Void> expectMouseReleased(
+    final Node node,
+    final MouseButton button)
+  {
+    Objects.requireNonNull(node, "node");
+    Objects.requireNonNull(button, "button");
+
+    return this.expect(
+      () -> Optional.ofNullable(node.getScene()),
+      MouseEvent.MOUSE_RELEASED,
+      event -> event.getButton() == button
+    );
+  }
+
+  /**
+   * Expect that the mouse pointer will arrive at the center of the given
+   * node. If the pointer is already there, the returned future completes
+   * immediately.
+   *
+   * @param node The node
+   *
+   * @return A future that completes when the pointer movement is dispatched
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<Void> expectMouseMovedTo(
+    final Node node)
+  {
+    Objects.requireNonNull(node, "node");
+
+    final var future = new CompletableFuture<Void>();
+    XCFXThread.runV(() -> {
+      final var target = centerOf(node);
+      if (this.backend.mousePosition().distance(target) < 1.0) {
+        future.complete(null);
+        return;
+      }
+
+      this.install(
+        future,
+        Optional.ofNullable(node.getScene()),
+        MouseEvent.ANY,
+        event -> {
+          final var position =
+            new Point2D(event.getScreenX(), event.getScreenY());
+          return position.distance(target) < 1.0;
+        }
+      );
+    });
+    return future;
+  }
+
+  private <T extends Event> CompletableFuture<Void> expect(
+    final SceneSupplierType sceneSupplier,
+    final EventType<T> type,
+    final Predicate<? super T> matches)
+  {
+    final var future = new CompletableFuture<Void>();
+    XCFXThread.runV(() -> {
+      this.install(future, sceneSupplier.scene(), type, matches);
+    });
+    return future;
+  }
+
+  @XCOnFXThread
+  private <T extends Event> void install(
+    final CompletableFuture<Void> future,
+    final Optional<Scene> sceneOpt,
+    final EventType<T> type,
+    final Predicate<? super T> matches)
+  {
+    if (future.isDone()) {
+      return;
+    }
+
+    if (sceneOpt.isEmpty()) {
+      future.completeExceptionally(
+        new NoSuchElementException("No scene available to observe events.")
+      );
+      return;
+    }
+
+    final var scene = sceneOpt.get();
+    final EventHandler<T> filter = event -> {
+      if (!future.isDone() && matches.test(event)) {
+        LOG.trace("acknowledged {}", event.getEventType());
+        Platform.runLater(() -> future.complete(null));
+      }
+    };
+
+    scene.addEventFilter(type, filter);
+    future.whenComplete((ignored, exception) -> {
+      XCFXThread.runV(() -> scene.removeEventFilter(type, filter));
+    });
+  }
+
+  private interface SceneSupplierType
+  {
+    @XCOnFXThread
+    Optional<Scene> scene();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>A backend that records which keys and mouse buttons have been pressed
+ * and not yet released, delegating all operations to an underlying
+ * backend.</p>
+ *
+ * <p>The ledger allows input state to be reset by releasing only those keys
+ * and buttons that are actually held, rather than by releasing every key
+ * code that exists. Like all backends, the ledger is confined to the JavaFX
+ * application thread.</p>
+ */
+
+public final class XCInputLedger implements XCRobotBackendType
+{
+  private final XCRobotBackendType delegate;
+  private final EnumSet<KeyCode> keysPressed;
+  private final EnumSet<MouseButton> buttonsPressed;
+
+  /**
+   * A ledger of pressed input.
+   *
+   * @param inDelegate The underlying backend
+   */
+
+  public XCInputLedger(
+    final XCRobotBackendType inDelegate)
+  {
+    this.delegate =
+      Objects.requireNonNull(inDelegate, "delegate");
+    this.keysPressed =
+      EnumSet.noneOf(KeyCode.class);
+    this.buttonsPressed =
+      EnumSet.noneOf(MouseButton.class);
+  }
+
+  /**
+   * @return The keys currently held
+   */
+
+  @XCOnFXThread
+  public List<KeyCode> keysPressed()
+  {
+    return List.copyOf(this.keysPressed);
+  }
+
+  /**
+   * @return The mouse buttons currently held
+   */
+
+  @XCOnFXThread
+  public List<MouseButton> buttonsPressed()
+  {
+    return List.copyOf(this.buttonsPressed);
+  }
+
+  /**
+   * Release every key and mouse button that is currently held.
+   *
+   * @return The number of keys and buttons released
+   */
+
+  @XCOnFXThread
+  public int releasePressed()
+  {
+    final var keys = this.keysPressed();
+    final var buttons = this.buttonsPressed();
+
+    for (final var key : keys) {
+      this.keyRelease(key);
+    }
+    for (final var button : buttons) {
+      this.mouseRelease(button);
+    }
+    return keys.size() + buttons.size();
+  }
+
+  @Override
+  public String name()
+  {
+    return this.delegate.name();
+  }
+
+  @Override
+  public boolean requiresWindowFocus()
+  {
+    return this.delegate.requiresWindowFocus();
+  }
+
+  @Override
+  public boolean isSynchronous()
+  {
+    return this.delegate.isSynchronous();
+  }
+
+  @Override
+  public Point2D mousePosition()
+  {
+    return this.delegate.mousePosition();
+  }
+
+  @Override
+  public void mouseMove(
+    final Point2D position)
+  {
+    this.delegate.mouseMove(position);
+  }
+
+  @Override
+  public void mousePress(
+    final MouseButton button)
+  {
+    this.buttonsPressed.add(button);
+    this.delegate.mousePress(button);
+  }
+
+  @Override
+  public void mouseRelease(
+    final MouseButton button)
+  {
+    this.buttonsPressed.remove(button);
+    this.delegate.mouseRelease(button);
+  }
+
+  @Override
+  public void keyPress(
+    final KeyCode code)
+  {
+    this.keysPressed.add(code);
+    this.delegate.keyPress(code);
+  }
+
+  @Override
+  public void keyRelease(
+    final KeyCode code)
+  {
+    this.keysPressed.remove(code);
+    this.delegate.keyRelease(code);
+  }
+
+  @Override
+  public void keyType(
+    final KeyCode code)
+  {
+    this.delegate.keyType(code);
+  }
+
+  @Override
+  public WritableImage screenCapture(
+    final Rectangle2D bounds)
+  {
+    return this.delegate.screenCapture(bounds);
+  }
+}
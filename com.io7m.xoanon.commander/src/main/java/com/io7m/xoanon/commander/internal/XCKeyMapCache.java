@@ -16,57 +16,216 @@
 
 package com.io7m.xoanon.commander.internal;
 
+import com.io7m.xoanon.commander.api.XCKey;
 import com.io7m.xoanon.commander.api.XCKeyMap;
+import javafx.scene.input.KeyCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.FileTime;
-import java.time.Clock;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
- * A simple cache for key maps.
+ * <p>A simple cache for key maps.</p>
+ *
+ * <p>One file is kept per {@link XCKeyMapFingerprint}, so a key map is only
+ * ever loaded in the environment in which it was created, no matter how old
+ * it is. The file format is:</p>
+ *
+ * <ul>
+ *   <li>The magic number {@code XOKM} and a format version.</li>
+ *   <li>The full fingerprint, guarding against file name hash collisions.</li>
+ *   <li>The number of keys, followed by each key as a character, a key code
+ *   name, and a set of modifier flags.</li>
+ *   <li>A CRC32 checksum of everything preceding it.</li>
+ * </ul>
+ *
+ * <p>Processes that share a cache (such as forked test JVMs) coordinate
+ * through a lock file beside the cache file; see {@link #lock()}.</p>
  */
 
 public final class XCKeyMapCache
+  implements XCKeyMapIncremental.StoreType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(XCKeyMapCache.class);
 
-  private static final StandardOpenOption[] FILE_OPTIONS = {
-    WRITE, CREATE, TRUNCATE_EXISTING,
-  };
+  private static final int MAGIC = 0x584f4b4d;
+  private static final int VERSION = 1;
+
+  private static final int FLAG_SHIFT = 0b001;
+  private static final int FLAG_ALT = 0b010;
+  private static final int FLAG_CONTROL = 0b100;
+
+  private static final Duration LOCK_TIMEOUT =
+    Duration.ofSeconds(60L);
+  private static final long LOCK_POLL_MILLISECONDS = 50L;
+
+  /*
+   * File locks are held on behalf of the whole JVM, and an attempt to lock
+   * a file that the JVM already holds fails rather than waiting. Threads
+   * within the JVM therefore first take an ordinary lock associated with the
+   * lock file, shared by every cache instance that uses that file.
+   */
+
+  private static final ConcurrentHashMap<Path, ReentrantLock> PROCESS_LOCKS =
+    new ConcurrentHashMap<>();
 
-  private final Path temporaryDirectory;
-  private final Clock clock;
+  private final Path directory;
+  private final XCKeyMapFingerprint fingerprint;
+  private final ReentrantLock processLock;
 
   /**
    * A simple cache for key maps.
    *
-   * @param inClock The clock
-   * @param inDirectory The temporary directory
+   * @param inDirectory   The temporary directory
+   * @param inFingerprint The fingerprint of the current environment
    */
 
   public XCKeyMapCache(
-    final Clock inClock,
-    final Path inDirectory)
+    final Path inDirectory,
+    final XCKeyMapFingerprint inFingerprint)
+  {
+    this.directory =
+      Objects.requireNonNull(inDirectory, "directory")
+        .resolve("xoanon");
+    this.fingerprint =
+      Objects.requireNonNull(inFingerprint, "fingerprint");
+    this.processLock =
+      PROCESS_LOCKS.computeIfAbsent(
+        this.lockFile().toAbsolutePath().normalize(),
+        path -> new ReentrantLock()
+      );
+  }
+
+  /**
+   * @return The file that holds the key map for the current fingerprint
+   */
+
+  public Path file()
+  {
+    return this.directory.resolve(
+      "keymap-%s.bin".formatted(this.fingerprint.hash())
+    );
+  }
+
+  /**
+   * @return The lock file for the current fingerprint
+   */
+
+  public Path lockFile()
+  {
+    return this.directory.resolve(
+      "keymap-%s.lock".formatted(this.fingerprint.hash())
+    );
+  }
+
+  /**
+   * <p>Acquire exclusive access to the cache for the current fingerprint,
+   * across all threads and processes. The lock is not reentrant: a thread
+   * that already holds it and calls this method again fails with
+   * {@link java.nio.channels.OverlappingFileLockException} rather than
+   * blocking.</p>
+   *
+   * <p>If the lock cannot be acquired within a minute (because, for
+   * example, the process holding it is stuck), the caller proceeds without
+   * it rather than waiting forever.</p>
+   *
+   * @return The lock
+   *
+   * @throws IOException On errors
+   */
+
+  @Override
+  public Closeable lock()
+    throws IOException
   {
-    this.clock =
-      Objects.requireNonNull(inClock, "inClock");
-    this.temporaryDirectory =
-      Objects.requireNonNull(inDirectory, "temporaryDirectory");
+    final var timeThen = System.nanoTime();
+    final var deadline = timeThen + LOCK_TIMEOUT.toNanos();
+
+    try {
+      if (!this.processLock.tryLock(
+        LOCK_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+        LOG.warn("timed out waiting for the keymap cache lock");
+        return () -> {
+
+        };
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+
+    try {
+      Files.createDirectories(this.directory);
+
+      final var file = this.lockFile();
+      final var channel = FileChannel.open(file, CREATE, WRITE);
+      try {
+        while (true) {
+          final FileLock lock = channel.tryLock();
+          if (lock != null) {
+            LOG.debug(
+              "acquired keymap cache lock {} in {}",
+              file,
+              Duration.ofNanos(System.nanoTime() - timeThen));
+            return () -> {
+              try {
+                lock.release();
+                channel.close();
+              } finally {
+                this.processLock.unlock();
+              }
+            };
+          }
+
+          if (System.nanoTime() >= deadline) {
+            LOG.warn(
+              "timed out waiting for the keymap cache lock {}; ignoring it",
+              file);
+            channel.close();
+            this.processLock.unlock();
+            return () -> {
+
+            };
+          }
+          Thread.sleep(LOCK_POLL_MILLISECONDS);
+        }
+      } catch (final Exception e) {
+        channel.close();
+        throw e;
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.processLock.unlock();
+      throw new IOException(e);
+    } catch (final IOException | RuntimeException e) {
+      this.processLock.unlock();
+      throw e;
+    }
   }
 
   /**
@@ -75,50 +234,36 @@ public final class XCKeyMapCache
    * @return The cached map
    */
 
+  @Override
   public Optional<XCKeyMap> load()
   {
+    final var keyMapFile = this.file();
+    final var timeThen = System.nanoTime();
+
     try {
-      final var xoanonDir =
-        Files.createDirectories(this.temporaryDirectory.resolve("xoanon"));
-      final var keyMapFile =
-        xoanonDir.resolve("keymap.bin");
-
-      final var time =
-        Files.getLastModifiedTime(keyMapFile);
-      final var timeOldest =
-        Instant.now(this.clock).minus(1L, ChronoUnit.HOURS);
-      final var timeOldestAcceptable =
-        FileTime.from(timeOldest);
-
-      if (time.compareTo(timeOldestAcceptable) < 0) {
-        LOG.info(
-          "keymap cache file {} is older than {}, ignoring it",
-          keyMapFile,
-          time);
+      if (!Files.isRegularFile(keyMapFile)) {
+        LOG.debug("no keymap cache file {}", keyMapFile);
         return Optional.empty();
       }
 
-      try (var input = Files.newInputStream(keyMapFile)) {
-        try (var objectInput = new ObjectInputStream(input)) {
-          final var map = (XCKeyMap) objectInput.readObject();
-          final var keyCount = map.keys().size();
-          if (keyCount < 88) {
-            LOG.info(
-              "keymap cache file {} only contains {} keys; ignoring it",
-              keyMapFile,
-              Integer.valueOf(keyCount)
-            );
-            return Optional.empty();
-          }
+      final var map = this.decode(Files.readAllBytes(keyMapFile));
+      if (map.isEmpty()) {
+        return Optional.empty();
+      }
 
-          LOG.info(
-            "loaded keymap cache from {} ({} keys)",
-            keyMapFile,
-            Integer.valueOf(keyCount)
-          );
-          return Optional.of(map);
-        }
+      final var keyCount = map.get().keys().size();
+      if (keyCount == 0) {
+        LOG.info("keymap cache file {} is empty; ignoring it", keyMapFile);
+        return Optional.empty();
       }
+
+      LOG.info(
+        "loaded keymap cache from {} ({} keys) in {}",
+        keyMapFile,
+        Integer.valueOf(keyCount),
+        Duration.ofNanos(System.nanoTime() - timeThen)
+      );
+      return map;
     } catch (final Exception e) {
       LOG.debug("failed to read keymap cache file: ", e);
       return Optional.empty();
@@ -131,27 +276,159 @@ public final class XCKeyMapCache
    * @param keyMap The key map
    */
 
+  @Override
   public void save(
     final XCKeyMap keyMap)
   {
     Objects.requireNonNull(keyMap, "keyMap");
 
+    final var keyMapFile = this.file();
+    final var timeThen = System.nanoTime();
+
     try {
-      final var xoanonDir =
-        Files.createDirectories(this.temporaryDirectory.resolve("xoanon"));
-      final var keyMapFile =
-        xoanonDir.resolve("keymap.bin");
-
-      try (var output = Files.newOutputStream(keyMapFile, FILE_OPTIONS)) {
-        try (var objectOutput = new ObjectOutputStream(output)) {
-          objectOutput.writeObject(keyMap);
-          objectOutput.flush();
-        }
+      Files.createDirectories(this.directory);
+
+      /*
+       * The file is written in full to a temporary file and then moved into
+       * place, so that readers never observe a partially written file.
+       */
+
+      final var temporary =
+        Files.createTempFile(this.directory, "keymap-", ".tmp");
+
+      try {
+        Files.write(temporary, this.encode(keyMap));
+        Files.move(temporary, keyMapFile, ATOMIC_MOVE, REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temporary);
       }
 
-      LOG.info("wrote keymap cache to {}", keyMapFile);
+      LOG.info(
+        "wrote keymap cache to {} ({} keys) in {}",
+        keyMapFile,
+        Integer.valueOf(keyMap.keys().size()),
+        Duration.ofNanos(System.nanoTime() - timeThen)
+      );
     } catch (final Exception e) {
       LOG.debug("failed to write keymap cache file: ", e);
     }
   }
+
+  private byte[] encode(
+    final XCKeyMap keyMap)
+    throws IOException
+  {
+    final var bytes = new ByteArrayOutputStream(4096);
+    try (var output = new DataOutputStream(bytes)) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeUTF(this.fingerprint.display());
+      output.writeUTF(this.fingerprint.locale());
+      output.writeUTF(this.fingerprint.layout());
+      output.writeUTF(this.fingerprint.variant());
+      output.writeUTF(this.fingerprint.javafxVersion());
+
+      final var keys = keyMap.keys();
+      output.writeInt(keys.size());
+      for (final var entry : keys.entrySet()) {
+        final var key = entry.getValue();
+        output.writeChar(entry.getKey().charValue());
+        output.writeUTF(key.code().name());
+        output.writeByte(flagsOf(key));
+      }
+
+      final var checksum = new CRC32();
+      checksum.update(bytes.toByteArray());
+      output.writeInt((int) checksum.getValue());
+    }
+    return bytes.toByteArray();
+  }
+
+  private static int flagsOf(
+    final XCKey key)
+  {
+    var flags = 0;
+    if (key.isShift()) {
+      flags |= FLAG_SHIFT;
+    }
+    if (key.isAlt()) {
+      flags |= FLAG_ALT;
+    }
+    if (key.isControl()) {
+      flags |= FLAG_CONTROL;
+    }
+    return flags;
+  }
+
+  private Optional<XCKeyMap> decode(
+    final byte[] data)
+    throws IOException
+  {
+    final var file = this.file();
+
+    if (data.length < 12) {
+      LOG.info("keymap cache file {} is truncated; ignoring it", file);
+      return Optional.empty();
+    }
+
+    final var checksum = new CRC32();
+    checksum.update(data, 0, data.length - 4);
+    final var expected = ByteBuffer.wrap(data, data.length - 4, 4).getInt();
+    if ((int) checksum.getValue() != expected) {
+      LOG.info("keymap cache file {} is corrupt; ignoring it", file);
+      return Optional.empty();
+    }
+
+    try (var input = new DataInputStream(
+      new ByteArrayInputStream(data, 0, data.length - 4))) {
+      if (input.readInt() != MAGIC) {
+        LOG.info("keymap cache file {} is not a keymap; ignoring it", file);
+        return Optional.empty();
+      }
+
+      final var version = input.readInt();
+      if (version != VERSION) {
+        LOG.info(
+          "keymap cache file {} has unsupported version {}; ignoring it",
+          file,
+          Integer.valueOf(version));
+        return Optional.empty();
+      }
+
+      final var fileFingerprint =
+        new XCKeyMapFingerprint(
+          input.readUTF(),
+          input.readUTF(),
+          input.readUTF(),
+          input.readUTF(),
+          input.readUTF()
+        );
+
+      if (!Objects.equals(fileFingerprint, this.fingerprint)) {
+        LOG.info(
+          "keymap cache file {} belongs to a different environment; "
+          + "ignoring it",
+          file);
+        return Optional.empty();
+      }
+
+      final var count = input.readInt();
+      final var keys = new HashMap<Character, XCKey>(Math.max(count, 16));
+      for (int index = 0; index < count; ++index) {
+        final var character = Character.valueOf(input.readChar());
+        final var code = KeyCode.valueOf(input.readUTF());
+        final var flags = input.readUnsignedByte();
+        keys.put(
+          character,
+          new XCKey(
+            code,
+            (flags & FLAG_SHIFT) != 0,
+            (flags & FLAG_ALT) != 0,
+            (flags & FLAG_CONTROL) != 0
+          )
+        );
+      }
+      return Optional.of(new XCKeyMap(Map.copyOf(keys)));
+    }
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCKeyMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * <p>A key map store that creates the underlying store on first use.</p>
+ *
+ * <p>Creating a {@link XCKeyMapCache} requires the fingerprint of the current
+ * environment, and determining that runs external processes. Deferring
+ * creation keeps that work off whichever thread constructs the store.</p>
+ */
+
+public final class XCKeyMapCacheLazy
+  implements XCKeyMapIncremental.StoreType
+{
+  private final Supplier<XCKeyMapIncremental.StoreType> creator;
+  private XCKeyMapIncremental.StoreType store;
+
+  /**
+   * A key map store that creates the underlying store on first use.
+   *
+   * @param inCreator A function that creates the underlying store
+   */
+
+  public XCKeyMapCacheLazy(
+    final Supplier<XCKeyMapIncremental.StoreType> inCreator)
+  {
+    this.creator =
+      Objects.requireNonNull(inCreator, "creator");
+  }
+
+  private synchronized XCKeyMapIncremental.StoreType store()
+  {
+    if (this.store == null) {
+      this.store =
+        Objects.requireNonNull(this.creator.get(), "store");
+    }
+    return this.store;
+  }
+
+  @Override
+  public Closeable lock()
+    throws IOException
+  {
+    return this.store().lock();
+  }
+
+  @Override
+  public Optional<XCKeyMap> load()
+  {
+    return this.store().load();
+  }
+
+  @Override
+  public void save(
+    final XCKeyMap keyMap)
+  {
+    this.store().save(keyMap);
+  }
+}
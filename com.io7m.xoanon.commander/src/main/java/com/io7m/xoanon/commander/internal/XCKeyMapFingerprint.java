@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The properties of the environment that determine which characters the
+ * keys on the keyboard produce. A cached key map is only valid in an
+ * environment with the same fingerprint as the one in which it was created.
+ *
+ * @param display       The X display
+ * @param locale        The default locale
+ * @param layout        The XKB layout
+ * @param variant       The XKB layout variant
+ * @param javafxVersion The JavaFX runtime version
+ */
+
+public record XCKeyMapFingerprint(
+  String display,
+  String locale,
+  String layout,
+  String variant,
+  String javafxVersion)
+{
+  /**
+   * The properties of the environment that determine which characters the
+   * keys on the keyboard produce.
+   *
+   * @param display       The X display
+   * @param locale        The default locale
+   * @param layout        The XKB layout
+   * @param variant       The XKB layout variant
+   * @param javafxVersion The JavaFX runtime version
+   */
+
+  public XCKeyMapFingerprint
+  {
+    Objects.requireNonNull(display, "display");
+    Objects.requireNonNull(locale, "locale");
+    Objects.requireNonNull(layout, "layout");
+    Objects.requireNonNull(variant, "variant");
+    Objects.requireNonNull(javafxVersion, "javafxVersion");
+  }
+
+  /**
+   * Determine the fingerprint of the current environment. Any property that
+   * cannot be determined is empty.
+   *
+   * @return The fingerprint
+   */
+
+  public static XCKeyMapFingerprint ofCurrentEnvironment()
+  {
+    var layout = "";
+    var variant = "";
+
+    final var display = System.getenv("DISPLAY");
+    if (display != null) {
+      final var query = XCXKBResolver.setxkbmap("-query").orElse("");
+      for (final var line : query.split("\n")) {
+        final var separator = line.indexOf(':');
+        if (separator < 0) {
+          continue;
+        }
+        final var name = line.substring(0, separator).trim();
+        final var value = line.substring(separator + 1).trim();
+        switch (name) {
+          case "layout" -> layout = value;
+          case "variant" -> variant = value;
+          default -> {
+
+          }
+        }
+      }
+    }
+
+    return new XCKeyMapFingerprint(
+      Objects.requireNonNullElse(display, ""),
+      Locale.getDefault().toLanguageTag(),
+      layout,
+      variant,
+      System.getProperty(
+        "javafx.runtime.version",
+        System.getProperty("javafx.version", ""))
+    );
+  }
+
+  /**
+   * @return A short hexadecimal hash of the fingerprint, suitable for use
+   * in file names
+   */
+
+  public String hash()
+  {
+    final var text =
+      String.join(
+        "\u0000",
+        this.display,
+        this.locale,
+        this.layout,
+        this.variant,
+        this.javafxVersion
+      );
+
+    try {
+      final var digest =
+        MessageDigest.getInstance("SHA-256")
+          .digest(text.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(Arrays.copyOf(digest, 8));
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.api.XCOnAnyThread;
+import javafx.scene.input.KeyCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>A key map that grows on demand.</p>
+ *
+ * <p>The map starts from whatever is already known (typically the contents
+ * of the cache, or whatever could be derived from the keyboard layout).
+ * When text is converted to keys and a character has no mapping, only the
+ * key codes that are likely to produce that character are probed; if none
+ * of them do, every key code that has not yet been probed is tried. A
+ * character that cannot be produced by any key is then a miss for that
+ * character alone.</p>
+ *
+ * <p>Probing is performed on the given executor, which must not be the
+ * JavaFX application thread, and is never performed for more than one
+ * character at a time. The store is locked for the duration of probing, and
+ * is reloaded once the lock is held, so that processes sharing a display
+ * do not probe at the same time, and do not probe for characters that
+ * another process has already found.</p>
+ */
+
+public final class XCKeyMapIncremental
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(XCKeyMapIncremental.class);
+
+  private final Set<KeyCode> codes;
+  private final ProberType prober;
+  private final StoreType store;
+  private final Executor executor;
+  private final AtomicReference<XCKeyMap> current;
+  private final EnumSet<KeyCode> probed;
+
+  /**
+   * A key map that grows on demand.
+   *
+   * @param inCodes    The key codes that may be probed
+   * @param inProber   The function used to probe key codes
+   * @param inStore    The store to which the map is saved whenever probing
+   *                   adds mappings
+   * @param inExecutor The executor on which probing is performed
+   */
+
+  public XCKeyMapIncremental(
+    final Set<KeyCode> inCodes,
+    final ProberType inProber,
+    final StoreType inStore,
+    final Executor inExecutor)
+  {
+    this.codes =
+      Set.copyOf(Objects.requireNonNull(inCodes, "codes"));
+    this.prober =
+      Objects.requireNonNull(inProber, "prober");
+    this.store =
+      Objects.requireNonNull(inStore, "store");
+    this.executor =
+      Objects.requireNonNull(inExecutor, "executor");
+    this.current =
+      new AtomicReference<>(XCKeyMap.empty());
+    this.probed =
+      EnumSet.noneOf(KeyCode.class);
+  }
+
+  /**
+   * @return The mappings known so far
+   */
+
+  @XCOnAnyThread
+  public XCKeyMap current()
+  {
+    return this.current.get();
+  }
+
+  /**
+   * Add the given mappings. Existing mappings take precedence. The key codes
+   * of the added mappings are considered to have been probed.
+   *
+   * @param keys The mappings
+   */
+
+  @XCOnAnyThread
+  public void addAll(
+    final Map<Character, XCKey> keys)
+  {
+    Objects.requireNonNull(keys, "keys");
+
+    synchronized (this.probed) {
+      for (final var key : keys.values()) {
+        this.probed.add(key.code());
+      }
+    }
+
+    this.current.updateAndGet(existing -> {
+      final var merged = new HashMap<>(keys);
+      merged.putAll(existing.keys());
+      return new XCKeyMap(Map.copyOf(merged));
+    });
+  }
+
+  /**
+   * Replace every mapping that uses one of the given key codes with the
+   * given mappings, which are typically the result of probing those key
+   * codes again. Other existing mappings take precedence over the given
+   * mappings. The given key codes are considered to have been probed.
+   *
+   * @param codes The key codes
+   * @param keys  The mappings
+   */
+
+  @XCOnAnyThread
+  public void replace(
+    final Set<KeyCode> codes,
+    final Map<Character, XCKey> keys)
+  {
+    Objects.requireNonNull(codes, "codes");
+    Objects.requireNonNull(keys, "keys");
+
+    synchronized (this.probed) {
+      this.probed.addAll(codes);
+    }
+
+    this.current.updateAndGet(existing -> {
+      final var merged = new HashMap<Character, XCKey>();
+      existing.keys().forEach((character, key) -> {
+        if (!codes.contains(key.code())) {
+          merged.put(character, key);
+        }
+      });
+      keys.forEach(merged::putIfAbsent);
+      return new XCKeyMap(Map.copyOf(merged));
+    });
+  }
+
+  /**
+   * Map a sequence of characters to keys, probing for any characters that
+   * have no known mapping.
+   *
+   * @param characters The characters
+   *
+   * @return The keys, or a future that fails with
+   * {@link IllegalArgumentException} if some character cannot be produced
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<List<XCKey>> toCodes(
+    final CharSequence characters)
+  {
+    Objects.requireNonNull(characters, "characters");
+
+    final var text = characters.toString();
+    final var missing = this.missing(text);
+    if (missing.isEmpty()) {
+      return CompletableFuture.completedFuture(
+        this.current.get().toCodes(text)
+      );
+    }
+
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        this.resolve(this.missing(text));
+      } catch (final Exception e) {
+        throw new CompletionException(e);
+      }
+      return this.current.get().toCodes(text);
+    }, this.executor);
+  }
+
+  private Set<Character> missing(
+    final String text)
+  {
+    final var keys = this.current.get().keys();
+    final var result = new LinkedHashSet<Character>();
+    for (int index = 0; index < text.length(); ++index) {
+      final var c = Character.valueOf(text.charAt(index));
+      if (!keys.containsKey(c)) {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
+  private void resolve(
+    final Set<Character> missing)
+    throws Exception
+  {
+    try (var ignored = this.store.lock()) {
+      this.store.load().ifPresent(map -> this.addAll(map.keys()));
+      this.resolveLocked(missing);
+    }
+  }
+
+  private void resolveLocked(
+    final Set<Character> missing)
+    throws Exception
+  {
+    final var before = this.current.get();
+
+    for (final var character : missing) {
+      if (this.current.get().keys().containsKey(character)) {
+        continue;
+      }
+
+      var candidates = this.candidatesFor(character.charValue());
+      while (!candidates.isEmpty()) {
+        LOG.debug(
+          "probing {} key codes for '{}'",
+          Integer.valueOf(candidates.size()),
+          character);
+
+        final var found = this.prober.probe(candidates);
+        synchronized (this.probed) {
+          this.probed.addAll(candidates);
+        }
+        this.addAll(found);
+
+        if (found.containsKey(character)) {
+          break;
+        }
+        candidates = this.candidatesFor(character.charValue());
+      }
+    }
+
+    final var after = this.current.get();
+    if (!Objects.equals(before, after)) {
+      this.store.save(after);
+    }
+  }
+
+  /*
+   * The unprobed key codes whose nominal character is the given character
+   * (or its lowercase form, for characters typed with shift). If there are
+   * no such key codes, every unprobed key code is a candidate.
+   */
+
+  private Set<KeyCode> candidatesFor(
+    final char character)
+  {
+    final var unprobed = EnumSet.noneOf(KeyCode.class);
+    synchronized (this.probed) {
+      for (final var code : this.codes) {
+        if (!this.probed.contains(code)) {
+          unprobed.add(code);
+        }
+      }
+    }
+
+    final var lower = Character.toLowerCase(character);
+    final var likely = EnumSet.noneOf(KeyCode.class);
+    for (final var code : unprobed) {
+      final var nominal = XCXKBKeysyms.nominalCharacter(code);
+      if (nominal.isPresent()) {
+        final var c = nominal.get().charValue();
+        if (c == character || c == lower) {
+          likely.add(code);
+        }
+      }
+    }
+
+    return likely.isEmpty() ? unprobed : likely;
+  }
+
+  /**
+   * A function that probes key codes.
+   */
+
+  public interface ProberType
+  {
+    /**
+     * Probe the given key codes.
+     *
+     * @param codes The key codes
+     *
+     * @return The characters produced by the key codes
+     *
+     * @throws Exception On errors
+     */
+
+    Map<Character, XCKey> probe(Set<KeyCode> codes)
+      throws Exception;
+  }
+
+  /**
+   * A store for key maps that may be shared with other processes.
+   */
+
+  public interface StoreType
+  {
+    /**
+     * Acquire exclusive access to the store. Access is exclusive across
+     * processes, and is released when the returned value is closed.
+     *
+     * @return The lock
+     *
+     * @throws IOException On errors
+     */
+
+    Closeable lock()
+      throws IOException;
+
+    /**
+     * @return The stored key map, if any
+     */
+
+    Optional<XCKeyMap> load();
+
+    /**
+     * Save the key map to the store.
+     *
+     * @param keyMap The key map
+     */
+
+    void save(XCKeyMap keyMap);
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import javafx.geometry.Point2D;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A pipelined key prober.</p>
+ *
+ * <p>The prober types a whole batch of keys into a text field in a single
+ * task on the JavaFX application thread, following each key with a newline,
+ * and then reads the field once. Each line of the resulting text is the
+ * output of one key. If the text does not contain exactly one line per key
+ * (because, for example, a dead key swallowed a newline), the batch is split
+ * in half and each half is probed again. Keys whose lines contain more than
+ * one character are probed again individually.</p>
+ */
+
+public final class XCKeyMapProber
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(XCKeyMapProber.class);
+
+  private static final XCKey SEPARATOR =
+    new XCKey(KeyCode.ENTER, false, false, false);
+
+  /*
+   * The terminator produces no text; its release is acknowledged to
+   * determine that every preceding key event has been processed.
+   */
+
+  private static final XCKey TERMINATOR =
+    new XCKey(KeyCode.END, false, false, false);
+
+  private static final long TIMEOUT_SECONDS = 5L;
+
+  private final XCRobotBackendType input;
+  private final XCInputAcknowledger acknowledger;
+  private final TextArea field;
+  private int batchCount;
+
+  /**
+   * A pipelined key prober.
+   *
+   * @param inInput The backend used to type keys
+   * @param inField The text field into which keys are typed
+   */
+
+  public XCKeyMapProber(
+    final XCRobotBackendType inInput,
+    final TextArea inField)
+  {
+    this.input =
+      Objects.requireNonNull(inInput, "input");
+    this.field =
+      Objects.requireNonNull(inField, "field");
+    this.acknowledger =
+      new XCInputAcknowledger(inInput);
+  }
+
+  /**
+   * Decode the text produced by typing {@code count} keys, each followed by
+   * a newline.
+   *
+   * @param count The number of keys typed
+   * @param text  The text
+   *
+   * @return The output of each key, or nothing if the text does not
+   * contain exactly one line per key
+   */
+
+  public static Optional<List<String>> decode(
+    final int count,
+    final String text)
+  {
+    Objects.requireNonNull(text, "text");
+
+    final var lines = text.split("\n", -1);
+    if (lines.length != count + 1 || !lines[count].isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(List.of(lines).subList(0, count));
+  }
+
+  /**
+   * @return The number of batches typed so far
+   */
+
+  public int batchCount()
+  {
+    return this.batchCount;
+  }
+
+  /**
+   * Probe the given key codes, both with and without shift. Where two keys
+   * produce the same character, the key without shift is preferred.
+   *
+   * @param codes The key codes
+   *
+   * @return The characters produced by the keys
+   *
+   * @throws Exception On errors
+   */
+
+  public Map<Character, XCKey> probe(
+    final Set<KeyCode> codes)
+    throws Exception
+  {
+    Objects.requireNonNull(codes, "codes");
+
+    final var probes = new ArrayList<XCKey>(codes.size() * 2);
+    for (final var code : codes) {
+      probes.add(new XCKey(code, false, false, false));
+      probes.add(new XCKey(code, true, false, false));
+    }
+
+    final var results = new HashMap<Character, XCKey>();
+    if (!probes.isEmpty()) {
+      this.probeBatch(probes, results);
+    }
+    return Map.copyOf(results);
+  }
+
+  /**
+   * Type exactly the given keys in a single batch, and return the output of
+   * each key.
+   *
+   * @param keys The keys
+   *
+   * @return The output of each key, or nothing if the output could not be
+   * decoded
+   *
+   * @throws Exception On errors
+   */
+
+  public Optional<List<String>> type(
+    final List<XCKey> keys)
+    throws Exception
+  {
+    Objects.requireNonNull(keys, "keys");
+
+    if (keys.isEmpty()) {
+      return Optional.of(List.of());
+    }
+    return decode(keys.size(), this.typeAndRead(keys));
+  }
+
+  private void probeBatch(
+    final List<XCKey> probes,
+    final Map<Character, XCKey> results)
+    throws Exception
+  {
+    final var text = this.typeAndRead(probes);
+
+    /*
+     * A single key that could not be decoded is treated the way that the
+     * original one-key-at-a-time prober treated every key: the first
+     * character of the output, if any, is taken to be the key's character.
+     */
+
+    if (probes.size() == 1) {
+      final var key = probes.get(0);
+      final var line = text.split("\n", -1)[0];
+      LOG.trace("{} -> '{}'", key, line);
+      if (!line.isEmpty()) {
+        record(results, line.charAt(0), key);
+      }
+      return;
+    }
+
+    final var decoded = decode(probes.size(), text);
+    if (decoded.isEmpty()) {
+      LOG.debug(
+        "batch of {} keys could not be decoded; splitting",
+        Integer.valueOf(probes.size()));
+      final var half = probes.size() / 2;
+      this.probeBatch(probes.subList(0, half), results);
+      this.probeBatch(probes.subList(half, probes.size()), results);
+      return;
+    }
+
+    final var lines = decoded.get();
+    final var ambiguous = new ArrayList<XCKey>();
+    for (int index = 0; index < probes.size(); ++index) {
+      final var key = probes.get(index);
+      final var line = lines.get(index);
+      LOG.trace("{} -> '{}'", key, line);
+
+      switch (line.length()) {
+        case 0 -> {
+
+        }
+        case 1 -> record(results, line.charAt(0), key);
+        default -> ambiguous.add(key);
+      }
+    }
+
+    for (final var key : ambiguous) {
+      this.probeBatch(List.of(key), results);
+    }
+  }
+
+  private static void record(
+    final Map<Character, XCKey> results,
+    final char c,
+    final XCKey key)
+  {
+    final var character = Character.valueOf(c);
+    final var existing = results.get(character);
+    if (existing == null || (existing.isShift() && !key.isShift())) {
+      results.put(character, key);
+    }
+  }
+
+  /*
+   * Clear and click the field, type the given keys each followed by a
+   * separator, and return the resulting text. Each step waits for the
+   * input it sent to be acknowledged, so there are no fixed delays.
+   */
+
+  private String typeAndRead(
+    final List<XCKey> probes)
+    throws Exception
+  {
+    ++this.batchCount;
+
+    final var keys = new ArrayList<XCKey>(probes.size() * 2 + 1);
+    for (final var probe : probes) {
+      keys.add(probe);
+      keys.add(SEPARATOR);
+    }
+    keys.add(TERMINATOR);
+
+    final var sequence =
+      XCKeySequence.compile(keys);
+
+    final var clicked =
+      this.acknowledger.expectMouseReleased(this.field, MouseButton.PRIMARY);
+
+    XCFXThread.runV(() -> {
+      this.field.clear();
+
+      final var bounds =
+        this.field.localToScreen(this.field.getBoundsInLocal());
+      final var target =
+        new Point2D(bounds.getCenterX(), bounds.getCenterY());
+
+      this.input.mouseMove(target);
+      this.input.mousePress(MouseButton.PRIMARY);
+      this.input.mouseRelease(MouseButton.PRIMARY);
+    });
+    clicked.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    final var typed =
+      this.acknowledger.expectKeyReleased(
+        Optional.of(this.field), TERMINATOR.code());
+
+    XCFXThread.runV(() -> {
+      for (final var operation : sequence.operations()) {
+        switch (operation.kind()) {
+          case PRESS -> this.input.keyPress(operation.code());
+          case RELEASE -> this.input.keyRelease(operation.code());
+          case TYPE -> this.input.keyType(operation.code());
+        }
+      }
+    });
+    typed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    return XCFXThread.runAndWait(
+      TIMEOUT_SECONDS,
+      TimeUnit.SECONDS,
+      this.field::getText
+    );
+  }
+}
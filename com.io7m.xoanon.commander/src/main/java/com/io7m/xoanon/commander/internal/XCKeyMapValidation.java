@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCKeyMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * <p>Functions to check a cached key map against the keyboard.</p>
+ *
+ * <p>A small sample of the mappings in a key map, some with shift and some
+ * without, is typed in a single batch. If every key produces the character
+ * that the key map claims that it does, the key map is accepted. Otherwise,
+ * only the key codes of the keys that disagreed need to be probed again.</p>
+ */
+
+public final class XCKeyMapValidation
+{
+  /**
+   * The name of the system property that, if set to {@code false}, disables
+   * validation of cached key maps.
+   */
+
+  public static final String PROPERTY_VALIDATE = "xoanon.keymap.validate";
+
+  /**
+   * The default number of keys sampled at each shift level.
+   */
+
+  public static final int DEFAULT_SAMPLE_SIZE = 4;
+
+  private XCKeyMapValidation()
+  {
+
+  }
+
+  /**
+   * Choose a sample of the mappings in the given key map. Up to
+   * {@code count} mappings are chosen from the unshifted keys, and up to
+   * {@code count} from the shifted keys. Keys using other modifiers are
+   * never chosen.
+   *
+   * @param keyMap The key map
+   * @param count  The number of keys to sample at each shift level
+   * @param random A random number generator
+   *
+   * @return The sampled keys, and the characters they are expected to produce
+   */
+
+  public static Map<XCKey, Character> sample(
+    final XCKeyMap keyMap,
+    final int count,
+    final RandomGenerator random)
+  {
+    Objects.requireNonNull(keyMap, "keyMap");
+    Objects.requireNonNull(random, "random");
+
+    final var plain = new ArrayList<Map.Entry<Character, XCKey>>();
+    final var shifted = new ArrayList<Map.Entry<Character, XCKey>>();
+    for (final var entry : keyMap.keys().entrySet()) {
+      final var key = entry.getValue();
+      if (key.isAlt() || key.isControl()) {
+        continue;
+      }
+      if (key.isShift()) {
+        shifted.add(entry);
+      } else {
+        plain.add(entry);
+      }
+    }
+
+    final var result = new LinkedHashMap<XCKey, Character>();
+    sampleInto(result, plain, count, random);
+    sampleInto(result, shifted, count, random);
+    return result;
+  }
+
+  private static void sampleInto(
+    final Map<XCKey, Character> result,
+    final List<Map.Entry<Character, XCKey>> entries,
+    final int count,
+    final RandomGenerator random)
+  {
+    /*
+     * The entries are sorted first so that the sample depends only on the
+     * random number generator, and not on the iteration order of the map.
+     */
+
+    entries.sort(Map.Entry.comparingByKey());
+    for (int index = entries.size() - 1; index > 0; --index) {
+      Collections.swap(entries, index, random.nextInt(index + 1));
+    }
+
+    var taken = 0;
+    for (final var entry : entries) {
+      if (taken >= count) {
+        break;
+      }
+      if (result.putIfAbsent(entry.getValue(), entry.getKey()) == null) {
+        ++taken;
+      }
+    }
+  }
+
+  /**
+   * Determine which of the sampled keys did not produce the characters
+   * expected of them.
+   *
+   * @param sample  The sampled keys
+   * @param outputs The output of each sampled key, in the order of the
+   *                sample, or nothing if the output could not be decoded
+   *
+   * @return The keys that did not produce the expected characters
+   */
+
+  public static Set<XCKey> mismatches(
+    final Map<XCKey, Character> sample,
+    final Optional<List<String>> outputs)
+  {
+    Objects.requireNonNull(sample, "sample");
+    Objects.requireNonNull(outputs, "outputs");
+
+    if (outputs.isEmpty() || outputs.get().size() != sample.size()) {
+      return Set.copyOf(sample.keySet());
+    }
+
+    final var lines = outputs.get();
+    final var result = new HashSet<XCKey>();
+    var index = 0;
+    for (final var entry : sample.entrySet()) {
+      final var expected = String.valueOf(entry.getValue().charValue());
+      if (!expected.equals(lines.get(index))) {
+        result.add(entry.getKey());
+      }
+      ++index;
+    }
+    return Set.copyOf(result);
+  }
+}
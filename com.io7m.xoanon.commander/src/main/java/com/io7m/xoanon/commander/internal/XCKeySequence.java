@@ -0,0 +1,266 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import javafx.scene.input.KeyCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static javafx.scene.input.KeyCode.ALT;
+import static javafx.scene.input.KeyCode.CONTROL;
+import static javafx.scene.input.KeyCode.SHIFT;
+
+/**
+ * <p>A precomputed sequence of robot keyboard operations.</p>
+ *
+ * <p>A sequence is compiled from a list of keys. Modifier keys are pressed
+ * when the first key in a run of keys requiring them is typed, and are
+ * released only when a key that does not require them is encountered (or
+ * at the end of the sequence). Typing "HELLO" therefore presses and releases
+ * {@code SHIFT} exactly once.</p>
+ *
+ * @param operations The operations
+ * @param keyCount   The number of keys typed by the sequence
+ */
+
+public record XCKeySequence(
+  List<Operation> operations,
+  int keyCount)
+{
+  /**
+   * A precomputed sequence of robot keyboard operations.
+   *
+   * @param operations The operations
+   * @param keyCount   The number of keys typed by the sequence
+   */
+
+  public XCKeySequence
+  {
+    operations = List.copyOf(operations);
+  }
+
+  /**
+   * Compile a sequence of operations from the given keys.
+   *
+   * @param keys The keys
+   *
+   * @return A sequence of operations
+   */
+
+  public static XCKeySequence compile(
+    final List<XCKey> keys)
+  {
+    Objects.requireNonNull(keys, "keys");
+
+    final var operations =
+      new ArrayList<Operation>(keys.size() + 8);
+
+    var shift = false;
+    var alt = false;
+    var control = false;
+
+    for (final var key : keys) {
+      if (control && !key.isControl()) {
+        operations.add(new Operation(OperationKind.RELEASE, CONTROL));
+        control = false;
+      }
+      if (alt && !key.isAlt()) {
+        operations.add(new Operation(OperationKind.RELEASE, ALT));
+        alt = false;
+      }
+      if (shift && !key.isShift()) {
+        operations.add(new Operation(OperationKind.RELEASE, SHIFT));
+        shift = false;
+      }
+
+      if (!shift && key.isShift()) {
+        operations.add(new Operation(OperationKind.PRESS, SHIFT));
+        shift = true;
+      }
+      if (!alt && key.isAlt()) {
+        operations.add(new Operation(OperationKind.PRESS, ALT));
+        alt = true;
+      }
+      if (!control && key.isControl()) {
+        operations.add(new Operation(OperationKind.PRESS, CONTROL));
+        control = true;
+      }
+
+      operations.add(new Operation(OperationKind.TYPE, key.code()));
+    }
+
+    if (control) {
+      operations.add(new Operation(OperationKind.RELEASE, CONTROL));
+    }
+    if (alt) {
+      operations.add(new Operation(OperationKind.RELEASE, ALT));
+    }
+    if (shift) {
+      operations.add(new Operation(OperationKind.RELEASE, SHIFT));
+    }
+
+    return new XCKeySequence(operations, keys.size());
+  }
+
+  /**
+   * Split the sequence into batches, each of which types at most
+   * {@code keysPerBatch} keys. Any trailing modifier releases are placed in
+   * the final batch.
+   *
+   * @param keysPerBatch The maximum number of keys typed per batch
+   *
+   * @return The batches
+   */
+
+  public List<Batch> batches(
+    final int keysPerBatch)
+  {
+    final var size =
+      Math.max(1, keysPerBatch);
+    final var batches =
+      new ArrayList<Batch>();
+
+    var current = new ArrayList<Operation>();
+    var typed = 0;
+    for (final var operation : this.operations) {
+      if (operation.kind() == OperationKind.TYPE && typed == size) {
+        batches.add(new Batch(current));
+        current = new ArrayList<>();
+        typed = 0;
+      }
+      current.add(operation);
+      if (operation.kind() == OperationKind.TYPE) {
+        ++typed;
+      }
+    }
+
+    if (!current.isEmpty()) {
+      batches.add(new Batch(current));
+    }
+    return List.copyOf(batches);
+  }
+
+  /**
+   * The kind of operation.
+   */
+
+  public enum OperationKind
+  {
+    /**
+     * Press a key.
+     */
+
+    PRESS,
+
+    /**
+     * Release a key.
+     */
+
+    RELEASE,
+
+    /**
+     * Type a key (press and then release it).
+     */
+
+    TYPE
+  }
+
+  /**
+   * A single operation.
+   *
+   * @param kind The kind of operation
+   * @param code The key code
+   */
+
+  public record Operation(
+    OperationKind kind,
+    KeyCode code)
+  {
+    /**
+     * A single operation.
+     *
+     * @param kind The kind of operation
+     * @param code The key code
+     */
+
+    public Operation
+    {
+      Objects.requireNonNull(kind, "kind");
+      Objects.requireNonNull(code, "code");
+    }
+  }
+
+  /**
+   * A batch of operations that will be executed in a single task on the
+   * JavaFX application thread.
+   *
+   * @param operations The operations
+   */
+
+  public record Batch(
+    List<Operation> operations)
+  {
+    /**
+     * A batch of operations.
+     *
+     * @param operations The operations
+     */
+
+    public Batch
+    {
+      operations = List.copyOf(operations);
+    }
+
+    /**
+     * @return The last key that will be released by this batch
+     */
+
+    public KeyCode lastReleased()
+    {
+      for (int index = this.operations.size() - 1; index >= 0; --index) {
+        final var operation = this.operations.get(index);
+        if (operation.kind() != OperationKind.PRESS) {
+          return operation.code();
+        }
+      }
+      return this.operations.get(this.operations.size() - 1).code();
+    }
+
+    /**
+     * @param code The key code
+     *
+     * @return The number of times that the given key will be released by this
+     * batch
+     */
+
+    public int releaseCount(
+      final KeyCode code)
+    {
+      var count = 0;
+      for (final var operation : this.operations) {
+        if (operation.kind() != OperationKind.PRESS
+            && operation.code() == code) {
+          ++count;
+        }
+      }
+      return count;
+    }
+  }
+}
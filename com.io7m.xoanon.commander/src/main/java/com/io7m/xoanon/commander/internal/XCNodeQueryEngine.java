@@ -0,0 +1,513 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCNodeBatchResult;
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCNodeQueryCount;
+import com.io7m.xoanon.commander.api.XCNodeQueryResult;
+import com.io7m.xoanon.commander.api.XCNodeVisitorType;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.stage.Window;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Functions to execute node queries over scene graphs.
+ */
+
+public final class XCNodeQueryEngine
+{
+  private XCNodeQueryEngine()
+  {
+
+  }
+
+  /**
+   * @return The root nodes of the scenes of all showing windows
+   */
+
+  @XCOnFXThread
+  public static List<Node> showingRoots()
+  {
+    final var roots = new ArrayList<Node>();
+    for (final var window : Window.getWindows()) {
+      if (!window.isShowing()) {
+        continue;
+      }
+      final var scene = window.getScene();
+      if (scene != null) {
+        roots.add(scene.getRoot());
+      }
+    }
+    return roots;
+  }
+
+  /**
+   * Execute a query over the given root nodes, in order.
+   *
+   * @param query The query
+   * @param roots The root nodes
+   * @param <T>   The type of nodes
+   *
+   * @return The query result
+   */
+
+  @XCOnFXThread
+  public static <T extends Node> XCNodeQueryResult<T> execute(
+    final XCNodeQuery<T> query,
+    final List<? extends Node> roots)
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var type =
+      query.type();
+    final var limit =
+      query.limit();
+    final var results =
+      new ArrayList<T>();
+
+    /*
+     * Traverse the graph iteratively so that very deep scene graphs cannot
+     * exhaust the stack. Children are pushed in reverse so that nodes are
+     * visited in the same depth-first order as a recursive walk.
+     */
+
+    final var stack = new ArrayDeque<Node>(64);
+    for (int index = roots.size() - 1; index >= 0; --index) {
+      stack.push(roots.get(index));
+    }
+
+    long visited = 0L;
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      ++visited;
+
+      if (query.matches(node)) {
+        results.add(type.cast(node));
+        if (results.size() >= limit) {
+          break;
+        }
+      }
+
+      if (node instanceof final Parent parent) {
+        final var children = parent.getChildrenUnmodifiable();
+        for (int index = children.size() - 1; index >= 0; --index) {
+          stack.push(children.get(index));
+        }
+      }
+    }
+
+    return new XCNodeQueryResult<>(
+      results,
+      visited,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  /**
+   * Traverse the given root nodes, in order, calling the visitor with each
+   * matched node. No results are collected. Traversal stops when the
+   * visitor returns {@code false}, or when the query's limit is reached.
+   *
+   * @param query   The query
+   * @param roots   The root nodes
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The number of matches and the traversal cost
+   *
+   * @throws Exception On errors raised by the visitor
+   */
+
+  @XCOnFXThread
+  public static <T extends Node> XCNodeQueryCount visit(
+    final XCNodeQuery<T> query,
+    final List<? extends Node> roots,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var type =
+      query.type();
+    final var limit =
+      query.limit();
+
+    final var stack = new ArrayDeque<Node>(64);
+    for (int index = roots.size() - 1; index >= 0; --index) {
+      stack.push(roots.get(index));
+    }
+
+    long matches = 0L;
+    long visited = 0L;
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      ++visited;
+
+      if (query.matches(node)) {
+        ++matches;
+        if (!visitor.visit(type.cast(node)) || matches >= limit) {
+          break;
+        }
+      }
+
+      if (node instanceof final Parent parent) {
+        final var children = parent.getChildrenUnmodifiable();
+        for (int index = children.size() - 1; index >= 0; --index) {
+          stack.push(children.get(index));
+        }
+      }
+    }
+
+    return new XCNodeQueryCount(
+      matches,
+      visited,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  /**
+   * Call the visitor with each node matched by the query using the given
+   * scene indexes, in order.
+   *
+   * @param query   The query
+   * @param indexes The scene indexes
+   * @param visitor The visitor
+   * @param <T>     The type of nodes
+   *
+   * @return The number of matches and the traversal cost
+   *
+   * @throws Exception On errors raised by the visitor
+   */
+
+  @XCOnFXThread
+  public static <T extends Node> XCNodeQueryCount visitIndexed(
+    final XCNodeQuery<T> query,
+    final List<XCSceneIndex> indexes,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var type =
+      query.type();
+    final var limit =
+      query.limit();
+
+    long matches = 0L;
+    long visited = 0L;
+
+    /*
+     * The visitor may modify the scene graph, and therefore the index, so
+     * each candidate set is copied before it is visited.
+     */
+
+    search:
+    for (final var index : indexes) {
+      for (final var node : List.copyOf(index.candidates(query))) {
+        ++visited;
+
+        if (query.matches(node)) {
+          ++matches;
+          if (!visitor.visit(type.cast(node)) || matches >= limit) {
+            break search;
+          }
+        }
+      }
+    }
+
+    return new XCNodeQueryCount(
+      matches,
+      visited,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  /**
+   * Count the nodes matched by the query over the given root nodes, without
+   * collecting them.
+   *
+   * @param query The query
+   * @param roots The root nodes
+   *
+   * @return The number of matches and the traversal cost
+   */
+
+  @XCOnFXThread
+  public static XCNodeQueryCount count(
+    final XCNodeQuery<?> query,
+    final List<? extends Node> roots)
+  {
+    try {
+      return visit(query, roots, node -> true);
+    } catch (final Exception e) {
+      // The visitor cannot raise exceptions.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Count the nodes matched by the query using the given scene indexes.
+   *
+   * @param query   The query
+   * @param indexes The scene indexes
+   *
+   * @return The number of matches and the traversal cost
+   */
+
+  @XCOnFXThread
+  public static XCNodeQueryCount countIndexed(
+    final XCNodeQuery<?> query,
+    final List<XCSceneIndex> indexes)
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var limit =
+      query.limit();
+
+    long matches = 0L;
+    long visited = 0L;
+
+    search:
+    for (final var index : indexes) {
+      for (final var node : index.candidates(query)) {
+        ++visited;
+
+        if (query.matches(node)) {
+          ++matches;
+          if (matches >= limit) {
+            break search;
+          }
+        }
+      }
+    }
+
+    return new XCNodeQueryCount(
+      matches,
+      visited,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  /**
+   * Execute a query over the given root node.
+   *
+   * @param query The query
+   * @param root  The root node
+   * @param <T>   The type of nodes
+   *
+   * @return The query result
+   */
+
+  @XCOnFXThread
+  public static <T extends Node> XCNodeQueryResult<T> execute(
+    final XCNodeQuery<T> query,
+    final Node root)
+  {
+    return execute(query, List.of(root));
+  }
+
+  /**
+   * Execute a query using the given scene indexes, in order. Only the
+   * candidate nodes supplied by each index are examined.
+   *
+   * @param query   The query
+   * @param indexes The scene indexes
+   * @param <T>     The type of nodes
+   *
+   * @return The query result
+   */
+
+  @XCOnFXThread
+  public static <T extends Node> XCNodeQueryResult<T> executeIndexed(
+    final XCNodeQuery<T> query,
+    final List<XCSceneIndex> indexes)
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var type =
+      query.type();
+    final var limit =
+      query.limit();
+    final var results =
+      new ArrayList<T>();
+
+    long visited = 0L;
+    for (final var index : indexes) {
+      if (results.size() >= limit) {
+        break;
+      }
+
+      for (final var node : index.candidates(query)) {
+        ++visited;
+
+        if (query.matches(node)) {
+          results.add(type.cast(node));
+          if (results.size() >= limit) {
+            break;
+          }
+        }
+      }
+    }
+
+    return new XCNodeQueryResult<>(
+      results,
+      visited,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  /**
+   * Execute a batch of queries over the given root nodes with a single
+   * traversal. Every node is tested against each query that has not yet
+   * reached its limit, and traversal stops as soon as all queries have
+   * reached their limits. The result of each query reports the number of
+   * nodes visited up to the point that the query was satisfied, and the
+   * duration of the whole batch.
+   *
+   * @param queries The queries
+   * @param roots   The root nodes
+   *
+   * @return The batch result
+   */
+
+  @XCOnFXThread
+  public static XCNodeBatchResult executeBatch(
+    final List<? extends XCNodeQuery<?>> queries,
+    final List<? extends Node> roots)
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var count =
+      queries.size();
+    final var matches =
+      new ArrayList<List<Node>>(count);
+    final var visits =
+      new long[count];
+    final var done =
+      new boolean[count];
+
+    for (int index = 0; index < count; ++index) {
+      matches.add(new ArrayList<>());
+    }
+
+    final var stack = new ArrayDeque<Node>(64);
+    for (int index = roots.size() - 1; index >= 0; --index) {
+      stack.push(roots.get(index));
+    }
+
+    var remaining = count;
+    long visited = 0L;
+    while (remaining > 0 && !stack.isEmpty()) {
+      final var node = stack.pop();
+      ++visited;
+
+      for (int index = 0; index < count; ++index) {
+        if (done[index]) {
+          continue;
+        }
+
+        final var query = queries.get(index);
+        if (query.matches(node)) {
+          final var nodes = matches.get(index);
+          nodes.add(node);
+          if (nodes.size() >= query.limit()) {
+            done[index] = true;
+            visits[index] = visited;
+            --remaining;
+          }
+        }
+      }
+
+      if (node instanceof final Parent parent) {
+        final var children = parent.getChildrenUnmodifiable();
+        for (int index = children.size() - 1; index >= 0; --index) {
+          stack.push(children.get(index));
+        }
+      }
+    }
+
+    final var duration =
+      Duration.ofNanos(System.nanoTime() - timeThen);
+    final var results =
+      new LinkedHashMap<XCNodeQuery<?>, XCNodeQueryResult<?>>(count);
+
+    for (int index = 0; index < count; ++index) {
+      final var query = queries.get(index);
+      final var queryVisits = done[index] ? visits[index] : visited;
+      results.put(
+        query,
+        resultOf(query, matches.get(index), queryVisits, duration)
+      );
+    }
+    return new XCNodeBatchResult(results, visited, duration);
+  }
+
+  /**
+   * Execute a batch of queries using the given scene indexes.
+   *
+   * @param queries The queries
+   * @param indexes The scene indexes
+   *
+   * @return The batch result
+   */
+
+  @XCOnFXThread
+  public static XCNodeBatchResult executeBatchIndexed(
+    final List<? extends XCNodeQuery<?>> queries,
+    final List<XCSceneIndex> indexes)
+  {
+    final var timeThen =
+      System.nanoTime();
+    final var results =
+      new LinkedHashMap<XCNodeQuery<?>, XCNodeQueryResult<?>>(queries.size());
+
+    long visited = 0L;
+    for (final var query : queries) {
+      final var result = executeIndexed(query, indexes);
+      visited += result.nodesVisited();
+      results.put(query, result);
+    }
+
+    return new XCNodeBatchResult(
+      results,
+      visited,
+      Duration.ofNanos(System.nanoTime() - timeThen)
+    );
+  }
+
+  private static <T extends Node> XCNodeQueryResult<T> resultOf(
+    final XCNodeQuery<T> query,
+    final List<Node> nodes,
+    final long visited,
+    final Duration duration)
+  {
+    final var type = query.type();
+    final var typed = new ArrayList<T>(nodes.size());
+    for (final var node : nodes) {
+      typed.add(type.cast(node));
+    }
+    return new XCNodeQueryResult<>(typed, visited, duration);
+  }
+}
@@ -18,405 +18,374 @@ package com.io7m.xoanon.commander.internal;
 
 import com.io7m.xoanon.commander.api.XCFXThread;
 import com.io7m.xoanon.commander.api.XCFXThreadOperationType;
+import com.io7m.xoanon.commander.api.XCFocusStatistics;
+import com.io7m.xoanon.commander.api.XCIdleStatistics;
 import com.io7m.xoanon.commander.api.XCKey;
-import com.io7m.xoanon.commander.api.XCKeyMap;
-import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCNodeBatchResult;
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCNodeQueryCount;
+import com.io7m.xoanon.commander.api.XCNodeQueryResult;
+import com.io7m.xoanon.commander.api.XCNodeVisitorType;
+import com.io7m.xoanon.commander.api.XCPulseTimestamps;
+import com.io7m.xoanon.commander.api.XCRobotAsyncType;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import com.io7m.xoanon.commander.api.XCRobotResetMode;
 import com.io7m.xoanon.commander.api.XCRobotType;
+import com.io7m.xoanon.commander.api.XCSceneIndexStatistics;
+import com.io7m.xoanon.commander.api.XCSceneSnapshot;
+import com.io7m.xoanon.commander.api.XCWaitStatistics;
 import javafx.application.Platform;
-import javafx.geometry.Point2D;
+import javafx.beans.Observable;
+import javafx.concurrent.Worker;
 import javafx.scene.Node;
 import javafx.scene.Parent;
-import javafx.scene.control.Labeled;
+import javafx.scene.control.Control;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
-import javafx.scene.input.MouseButton;
 import javafx.scene.robot.Robot;
 import javafx.stage.Stage;
 import javafx.stage.Window;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.time.Duration;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.Collection;
-import java.util.LinkedList;
+
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BooleanSupplier;
-import java.util.stream.Stream;
-
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static javafx.scene.input.KeyCode.ALT;
-import static javafx.scene.input.KeyCode.CONTROL;
-import static javafx.scene.input.KeyCode.SHIFT;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
- * The basic bot implementation.
+ * The basic bot implementation. This is a blocking layer over
+ * {@link XCRobotAsync}: every operation submits the corresponding
+ * asynchronous operation and waits for it to complete.
  */
 
 public final class XCRobot implements XCRobotType
 {
-  private static final Logger LOG =
-    LoggerFactory.getLogger(XCRobot.class);
-
-  private static final KeyCode[] ALL_KEY_CODES =
-    KeyCode.values();
-
-  private static final List<MouseButton> ALL_MOUSE_BUTTONS =
-    Stream.of(MouseButton.values())
-      .filter(b -> b != MouseButton.NONE)
-      .toList();
-
-  private final XCKeyMap keyMap;
+  private final XCKeyMapIncremental keyMap;
   private final Robot robot;
-  private final AtomicBoolean slowMotion;
-  private volatile long timeout;
-  private volatile long timePauseAfterMouseOp;
-  private volatile long timePauseBetweenDoubleClick;
-  private volatile long timePauseAfterKeyboardOp;
+  private final XCRobotAsync async;
 
   /**
    * The basic bot implementation.
    *
    * @param inKeyMap    The keyboard map
    * @param inBaseRobot The base JavaFX robot
+   * @param inBackend   The backend used to deliver input
    */
 
   public XCRobot(
-    final XCKeyMap inKeyMap,
-    final Robot inBaseRobot)
+    final XCKeyMapIncremental inKeyMap,
+    final Robot inBaseRobot,
+    final XCRobotBackendType inBackend)
   {
     this.keyMap =
       Objects.requireNonNull(inKeyMap, "keyMap");
     this.robot =
       Objects.requireNonNull(inBaseRobot, "inBaseRobot");
-    this.timeout =
-      1000L;
-    this.timePauseAfterMouseOp =
-      150L;
-    this.timePauseAfterKeyboardOp =
-      48L;
-    this.timePauseBetweenDoubleClick =
-      50L;
-
-    this.slowMotion =
-      new AtomicBoolean(false);
+    this.async =
+      new XCRobotAsync(this.keyMap, inBackend);
   }
 
-  @XCOnFXThread
-  private static Node opSearchWithText(
-    final Node node,
-    final String text)
+  /*
+   * Start an asynchronous operation and wait for it. Failures are reported
+   * as an ExecutionException wrapping the underlying cause, except for
+   * timeouts, which are reported directly as TimeoutException values.
+   *
+   * Operations are performed partly on the JavaFX application thread, and so
+   * blocking that thread while waiting for one would deadlock; calls from
+   * that thread fail immediately instead. The wait is checked at intervals
+   * of the robot timeout, and if the JavaFX application thread does not
+   * respond within the timeout, the operation is cancelled.
+   */
+
+  private <T> T await(
+    final Supplier<CompletableFuture<T>> operation)
+    throws Exception
   {
-    if (node instanceof final Labeled label) {
-      if (Objects.equals(label.getText(), text)) {
-        return label;
-      }
-    }
+    checkNotFXThread();
 
-    if (node instanceof final Parent parent) {
-      for (final var child : parent.getChildrenUnmodifiable()) {
-        final var result = opSearchWithText(child, text);
-        if (result != null) {
-          return result;
+    final var future = operation.get();
+    try {
+      while (true) {
+        final var timeout = this.async.timeoutMilliseconds();
+        try {
+          return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+          checkResponsive(future, timeout);
         }
       }
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof final TimeoutException timeout) {
+        throw new TimeoutException(timeout.getMessage());
+      }
+      throw e;
+    } catch (final InterruptedException e) {
+      future.cancel(false);
+      throw e;
     }
-
-    return null;
   }
 
-  @XCOnFXThread
-  private static <T> void opSearchWithClass(
-    final LinkedList<T> results,
-    final Class<T> clazz,
-    final Node node,
-    final String cssClass)
+  private static void checkNotFXThread()
   {
-    final boolean ofType =
-      clazz.isAssignableFrom(node.getClass());
-    final boolean hasClass =
-      node.getStyleClass().contains(cssClass);
-
-    if (ofType && hasClass) {
-      results.add(clazz.cast(node));
+    if (Platform.isFxApplicationThread()) {
+      throw new IllegalStateException(
+        "Blocking robot operations cannot be performed on the JavaFX "
+        + "application thread."
+      );
     }
+  }
 
-    if (node instanceof final Parent parent) {
-      for (final var child : parent.getChildrenUnmodifiable()) {
-        opSearchWithClass(results, clazz, child, cssClass);
-      }
+  private static void checkResponsive(
+    final CompletableFuture<?> future,
+    final long timeout)
+    throws InterruptedException, TimeoutException
+  {
+    try {
+      XCFXThread.run(() -> null).get(timeout, TimeUnit.MILLISECONDS);
+    } catch (final ExecutionException e) {
+      // A no-op cannot fail.
+      throw new IllegalStateException(e);
+    } catch (final TimeoutException e) {
+      future.cancel(false);
+      throw new TimeoutException(
+        "The JavaFX application thread did not respond within %d ms."
+          .formatted(Long.valueOf(timeout))
+      );
     }
   }
 
-  @XCOnFXThread
-  private static <T> void opSearchWithType(
-    final Collection<T> results,
-    final Class<T> clazz,
-    final Node node)
+  /*
+   * Map text to keys, probing for any characters that are not yet in the
+   * key map. A character that cannot be typed is reported directly as an
+   * IllegalArgumentException, as it always has been.
+   */
+
+  private List<XCKey> keyCodesOf(
+    final String text)
+    throws Exception
   {
-    if (clazz.isAssignableFrom(node.getClass())) {
-      results.add(clazz.cast(node));
-    }
+    checkNotFXThread();
 
-    if (node instanceof final Parent parent) {
-      for (final var child : parent.getChildrenUnmodifiable()) {
-        opSearchWithType(results, clazz, child);
+    try {
+      return this.keyMap.toCodes(text).get();
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof final IllegalArgumentException cause) {
+        throw cause;
       }
+      throw e;
     }
   }
 
-  @XCOnFXThread
-  private static void opBringStageToFront(
-    final Node node)
+  @Override
+  public XCRobotAsyncType async()
   {
-    final var scene = node.getScene();
-    final var window = scene.getWindow();
-    final var stage = (Stage) window;
-
-    final var title = stage.getTitle();
-    LOG.trace("bringing stage {} ({}) to front", stage, title);
-    stage.toFront();
-    stage.requestFocus();
+    return this.async;
   }
 
-  @XCOnFXThread
-  private static boolean opStageIsFront(
-    final Node node)
+  @Override
+  public void execute(
+    final Runnable f)
+    throws Exception
   {
-    final var scene = node.getScene();
-    final var window = scene.getWindow();
-    return window.isShowing() && window.isFocused();
+    if (Platform.isFxApplicationThread()) {
+      f.run();
+      return;
+    }
+    this.await(() -> this.async.execute(f));
   }
 
-  @XCOnFXThread
-  private static <T> List<T> findAllInner(
-    final Class<T> clazz,
-    final Parent root)
+  @Override
+  public <T> T evaluate(
+    final XCFXThreadOperationType<T> f)
+    throws Exception
   {
-    final var results = new LinkedList<T>();
-    opSearchWithType(results, clazz, root);
-    return results;
+    if (Platform.isFxApplicationThread()) {
+      return f.execute();
+    }
+    return this.await(() -> this.async.evaluate(f));
   }
 
-
-  @XCOnFXThread
-  private static <T> List<T> findAllWithClassInner(
-    final Class<T> clazz,
-    final Parent root,
-    final String cssClass)
+  @Override
+  public void slowMotionDisable()
   {
-    final var results = new LinkedList<T>();
-    opSearchWithClass(results, clazz, root, cssClass);
-    return results;
+    this.async.slowMotionDisable();
   }
 
-  @XCOnFXThread
-  private void opPointMouseAt(
-    final Node node)
+  @Override
+  public void slowMotionEnable()
   {
-    final var bounds =
-      node.localToScreen(node.getBoundsInLocal());
-    final var centerX =
-      bounds.getCenterX();
-    final var centerY =
-      bounds.getCenterY();
-
-    LOG.trace(
-      "pointing mouse at {} ({}x{})",
-      node,
-      Double.valueOf(centerX),
-      Double.valueOf(centerY)
-    );
-
-    if (Double.isFinite(centerX) && Double.isFinite(centerY)) {
-      this.robot.mouseMove(new Point2D(centerX, centerY));
-      return;
-    }
-
-    throw new IllegalStateException(
-      "CenterX: %s CenterY: %s"
-        .formatted(Double.valueOf(centerX), Double.valueOf(centerY))
-    );
+    this.async.slowMotionEnable();
   }
 
-  @XCOnFXThread
-  private void opKeyPress(
-    final KeyCode code)
+  @Override
+  public long timeoutMilliseconds()
   {
-    LOG.trace("pressing {}", code);
-    this.robot.keyPress(code);
+    return this.async.timeoutMilliseconds();
   }
 
-  @XCOnFXThread
-  private void opKeyRelease(
-    final KeyCode code)
+  @Override
+  public void setTimeoutMilliseconds(
+    final long ms)
   {
-    LOG.trace("releasing {}", code);
-    this.robot.keyRelease(code);
+    this.async.setTimeoutMilliseconds(ms);
   }
 
-  @XCOnFXThread
-  private void opKeyType(
-    final KeyCode code)
+  @Override
+  public long timePauseAfterMouseOperationMilliseconds()
   {
-    LOG.trace("typing {}", code);
-    this.robot.keyType(code);
+    return this.async.timePauseAfterMouseOperationMilliseconds();
   }
 
-  @XCOnFXThread
-  private void opMousePress(
-    final MouseButton button)
+  @Override
+  public void setTimePauseAfterMouseOperationMilliseconds(
+    final long ms)
   {
-    LOG.trace("pressing mouse {}", button);
-    this.robot.mouseClick(button);
+    this.async.setTimePauseAfterMouseOperationMilliseconds(ms);
   }
 
-  @XCOnFXThread
-  private void opMouseRelease(
-    final MouseButton button)
+  @Override
+  public long timePauseAfterKeyboardOperationMilliseconds()
   {
-    LOG.trace("releasing mouse {}", button);
-    this.robot.mouseRelease(button);
+    return this.async.timePauseAfterKeyboardOperationMilliseconds();
   }
 
-  private void typeKey(
-    final XCKey code)
+  @Override
+  public void setTimePauseAfterKeyboardOperationMilliseconds(
+    final long ms)
   {
-    if (code.isShift()) {
-      Platform.runLater(() -> this.opKeyPress(SHIFT));
-    }
-    if (code.isAlt()) {
-      Platform.runLater(() -> this.opKeyPress(ALT));
-    }
-    if (code.isControl()) {
-      Platform.runLater(() -> this.opKeyPress(CONTROL));
-    }
+    this.async.setTimePauseAfterKeyboardOperationMilliseconds(ms);
+  }
 
-    Platform.runLater(() -> this.opKeyType(code.code()));
+  @Override
+  public long timePauseBetweenDoubleClickMilliseconds()
+  {
+    return this.async.timePauseBetweenDoubleClickMilliseconds();
+  }
 
-    if (code.isControl()) {
-      Platform.runLater(() -> this.opKeyRelease(CONTROL));
-    }
-    if (code.isAlt()) {
-      Platform.runLater(() -> this.opKeyRelease(ALT));
-    }
-    if (code.isShift()) {
-      Platform.runLater(() -> this.opKeyRelease(SHIFT));
-    }
+  @Override
+  public void setTimePauseBetweenDoubleClickMilliseconds(
+    final long ms)
+  {
+    this.async.setTimePauseBetweenDoubleClickMilliseconds(ms);
+  }
 
-    this.pauseAfterKeyboardOp();
+  @Override
+  public boolean isInputAcknowledgementEnabled()
+  {
+    return this.async.isInputAcknowledgementEnabled();
   }
 
   @Override
-  public void execute(
-    final Runnable f)
-    throws Exception
+  public void setInputAcknowledgementEnabled(
+    final boolean enabled)
   {
-    Objects.requireNonNull(f, "f");
-    XCFXThread.runVWait(this.timeout, MILLISECONDS, f);
+    this.async.setInputAcknowledgementEnabled(enabled);
   }
 
   @Override
-  public <T> T evaluate(
-    final XCFXThreadOperationType<T> f)
-    throws Exception
+  public int typingBatchSize()
   {
-    Objects.requireNonNull(f, "f");
-    return XCFXThread.runAndWait(this.timeout, MILLISECONDS, f);
+    return this.async.typingBatchSize();
   }
 
   @Override
-  public void slowMotionDisable()
+  public void setTypingBatchSize(
+    final int keys)
   {
-    this.slowMotion.set(false);
+    this.async.setTypingBatchSize(keys);
   }
 
   @Override
-  public void slowMotionEnable()
+  public double typingCharactersPerSecond()
   {
-    this.slowMotion.set(true);
+    return this.async.typingCharactersPerSecond();
   }
 
   @Override
-  public long timeoutMilliseconds()
+  public void waitForStageToClose(
+    final Stage stage,
+    final long milliseconds)
+    throws Exception
   {
-    return this.timeout;
+    this.await(() -> this.async.waitForStageToClose(stage, milliseconds));
   }
 
   @Override
-  public void setTimeoutMilliseconds(
-    final long ms)
+  public void waitForStageToShow(
+    final Stage stage,
+    final long milliseconds)
+    throws Exception
   {
-    this.timeout = Math.max(1L, ms);
+    this.await(() -> this.async.waitForStageToShow(stage, milliseconds));
   }
 
   @Override
-  public long timePauseAfterMouseOperationMilliseconds()
+  public void waitForStageFocused(
+    final Stage stage,
+    final long milliseconds)
+    throws Exception
   {
-    return this.timePauseAfterMouseOp;
+    this.await(() -> this.async.waitForStageFocused(stage, milliseconds));
   }
 
   @Override
-  public void setTimePauseAfterMouseOperationMilliseconds(
-    final long ms)
+  public Robot robot()
   {
-    this.timePauseAfterMouseOp = Math.max(1L, ms);
+    return this.robot;
   }
 
   @Override
-  public long timePauseAfterKeyboardOperationMilliseconds()
+  public XCFocusStatistics focusStatistics()
   {
-    return this.timePauseAfterKeyboardOp;
+    return this.async.focusStatistics();
   }
 
   @Override
-  public void setTimePauseAfterKeyboardOperationMilliseconds(
-    final long ms)
+  public XCSceneIndexStatistics sceneIndexStatistics()
   {
-    this.timePauseAfterKeyboardOp = Math.max(1L, ms);
+    return this.async.sceneIndexStatistics();
   }
 
   @Override
-  public long timePauseBetweenDoubleClickMilliseconds()
+  public boolean isSceneIndexEnabled()
   {
-    return this.timePauseBetweenDoubleClick;
+    return this.async.isSceneIndexEnabled();
   }
 
   @Override
-  public void setTimePauseBetweenDoubleClickMilliseconds(
-    final long ms)
+  public void setSceneIndexEnabled(
+    final boolean enabled)
   {
-    this.timePauseBetweenDoubleClick = Math.max(1L, ms);
+    this.async.setSceneIndexEnabled(enabled);
   }
 
   @Override
-  public void waitForStageToClose(
-    final Stage stage,
-    final long milliseconds)
-    throws Exception
+  public String backendName()
   {
-    for (var t = 0L; t < milliseconds; ++t) {
-      if (stage.isShowing()) {
-        Thread.sleep(1L);
-      } else {
-        return;
-      }
-    }
+    return this.async.backendName();
+  }
 
-    throw new TimeoutException(
-      "Timed out waiting for the stage to close."
-    );
+  /**
+   * Remove all listeners installed by the robot. The robot should not be
+   * used afterwards.
+   */
+
+  public void close()
+  {
+    this.async.close();
   }
 
   @Override
-  public Robot robot()
+  public WritableImage screenCapture(
+    final Node node)
+    throws Exception
   {
-    return this.robot;
+    return this.await(() -> this.async.screenCapture(node));
   }
 
   @Override
@@ -425,13 +394,7 @@ public final class XCRobot implements XCRobotType
     final Stage stage)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var scene = stage.getScene();
-      if (scene != null) {
-        return findAllInner(clazz, scene.getRoot());
-      }
-      return List.of();
-    });
+    return this.await(() -> this.async.findAllInStage(clazz, stage));
   }
 
   @Override
@@ -440,7 +403,7 @@ public final class XCRobot implements XCRobotType
     final Parent parent)
     throws Exception
   {
-    return this.evaluate(() -> findAllInner(clazz, parent));
+    return this.await(() -> this.async.findAll(clazz, parent));
   }
 
   @Override
@@ -450,19 +413,7 @@ public final class XCRobot implements XCRobotType
     final String id)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var scene = stage.getScene();
-      if (scene != null) {
-        final var result = scene.getRoot().lookup("#" + id);
-        if (result != null) {
-          return clazz.cast(result);
-        }
-      }
-
-      throw new NoSuchElementException(
-        "No element with id '%s'".formatted(id)
-      );
-    });
+    return this.await(() -> this.async.findWithId(clazz, stage, id));
   }
 
   @Override
@@ -472,16 +423,7 @@ public final class XCRobot implements XCRobotType
     final String id)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var result = root.lookup("#" + id);
-      if (result != null) {
-        return clazz.cast(result);
-      }
-
-      throw new NoSuchElementException(
-        "No element with id '%s'".formatted(id)
-      );
-    });
+    return this.await(() -> this.async.findWithId(clazz, root, id));
   }
 
   @Override
@@ -490,28 +432,7 @@ public final class XCRobot implements XCRobotType
     final String text)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var windows =
-        Window.getWindows()
-          .stream()
-          .map(w -> (Stage) w)
-          .filter(Window::isShowing)
-          .toList();
-
-      for (final var window : windows) {
-        final var scene = window.getScene();
-        if (scene != null) {
-          final var result = opSearchWithText(scene.getRoot(), text);
-          if (result != null) {
-            return clazz.cast(result);
-          }
-        }
-      }
-
-      throw new NoSuchElementException(
-        "No element with text '%s'".formatted(text)
-      );
-    });
+    return this.await(() -> this.async.findWithTextInAnyStage(clazz, text));
   }
 
   @Override
@@ -521,19 +442,7 @@ public final class XCRobot implements XCRobotType
     final String text)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var scene = stage.getScene();
-      if (scene != null) {
-        final var result = opSearchWithText(scene.getRoot(), text);
-        if (result != null) {
-          return clazz.cast(result);
-        }
-      }
-
-      throw new NoSuchElementException(
-        "No element with text '%s'".formatted(text)
-      );
-    });
+    return this.await(() -> this.async.findWithText(clazz, stage, text));
   }
 
   @Override
@@ -543,16 +452,7 @@ public final class XCRobot implements XCRobotType
     final String text)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var result = opSearchWithText(parent, text);
-      if (result != null) {
-        return clazz.cast(result);
-      }
-
-      throw new NoSuchElementException(
-        "No element with text '%s'".formatted(text)
-      );
-    });
+    return this.await(() -> this.async.findWithText(clazz, parent, text));
   }
 
   @Override
@@ -561,28 +461,7 @@ public final class XCRobot implements XCRobotType
     final String id)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var windows =
-        Window.getWindows()
-          .stream()
-          .map(w -> (Stage) w)
-          .filter(Window::isShowing)
-          .toList();
-
-      for (final var window : windows) {
-        final var scene = window.getScene();
-        if (scene != null) {
-          final var result = scene.getRoot().lookup("#" + id);
-          if (result != null) {
-            return clazz.cast(result);
-          }
-        }
-      }
-
-      throw new NoSuchElementException(
-        "No element with id '%s'".formatted(id)
-      );
-    });
+    return this.await(() -> this.async.findWithIdInAnyStage(clazz, id));
   }
 
   @Override
@@ -592,12 +471,8 @@ public final class XCRobot implements XCRobotType
     final String cssClass)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var scene = stage.getScene();
-      if (scene != null) {
-        return findAllWithClassInner(clazz, scene.getRoot(), cssClass);
-      }
-      return List.of();
+    return this.await(() -> {
+      return this.async.findAllWithClassInStage(clazz, stage, cssClass);
     });
   }
 
@@ -608,7 +483,9 @@ public final class XCRobot implements XCRobotType
     final String cssClass)
     throws Exception
   {
-    return this.evaluate(() -> findAllWithClassInner(clazz, parent, cssClass));
+    return this.await(() -> {
+      return this.async.findAllWithClass(clazz, parent, cssClass);
+    });
   }
 
   @Override
@@ -617,86 +494,166 @@ public final class XCRobot implements XCRobotType
     final String cssClass)
     throws Exception
   {
-    return this.evaluate(() -> {
-      final var windows =
-        Window.getWindows()
-          .stream()
-          .map(w -> (Stage) w)
-          .filter(Window::isShowing)
-          .toList();
-
-      final var results = new LinkedList<T>();
-      for (final var window : windows) {
-        final var scene = window.getScene();
-        if (scene != null) {
-          opSearchWithClass(results, clazz, scene.getRoot(), cssClass);
-        }
-      }
-      return results;
+    return this.await(() -> {
+      return this.async.findAllWithClassInAnyStage(clazz, cssClass);
     });
   }
 
   @Override
-  public void click(
-    final Node node)
+  public <T extends Node> XCNodeQueryResult<T> query(
+    final XCNodeQuery<T> query,
+    final Parent root)
     throws Exception
   {
-    Platform.runLater(() -> opBringStageToFront(node));
-    this.waitUntil(this.timeout, () -> opStageIsFront(node));
-    this.execute(() -> this.opPointMouseAt(node));
-    this.pauseAfterMouseOp();
-    this.execute(() -> this.opMousePress(MouseButton.PRIMARY));
-    this.execute(() -> this.opMouseRelease(MouseButton.PRIMARY));
-    this.pauseAfterMouseOp();
+    return this.await(() -> this.async.query(query, root));
   }
 
   @Override
-  public void doubleClick(
-    final Node node)
+  public <T extends Node> XCNodeQueryResult<T> queryInStage(
+    final XCNodeQuery<T> query,
+    final Stage stage)
     throws Exception
   {
-    Platform.runLater(() -> opBringStageToFront(node));
-    this.waitUntil(this.timeout, () -> opStageIsFront(node));
-    this.execute(() -> this.opPointMouseAt(node));
-    this.execute(() -> this.opMousePress(MouseButton.PRIMARY));
-    this.execute(() -> this.opMouseRelease(MouseButton.PRIMARY));
-    Thread.sleep(this.timePauseBetweenDoubleClick);
-    this.execute(() -> this.opMousePress(MouseButton.PRIMARY));
-    this.execute(() -> this.opMouseRelease(MouseButton.PRIMARY));
-    this.pauseAfterMouseOp();
+    return this.await(() -> this.async.queryInStage(query, stage));
   }
 
   @Override
-  public void pointAt(
+  public <T extends Node> XCNodeQueryResult<T> queryInAnyStage(
+    final XCNodeQuery<T> query)
+    throws Exception
+  {
+    return this.await(() -> this.async.queryInAnyStage(query));
+  }
+
+  @Override
+  public XCNodeBatchResult queryBatch(
+    final List<? extends XCNodeQuery<?>> queries,
+    final Parent root)
+    throws Exception
+  {
+    return this.await(() -> this.async.queryBatch(queries, root));
+  }
+
+  @Override
+  public XCNodeBatchResult queryBatchInStage(
+    final List<? extends XCNodeQuery<?>> queries,
+    final Stage stage)
+    throws Exception
+  {
+    return this.await(() -> this.async.queryBatchInStage(queries, stage));
+  }
+
+  @Override
+  public XCNodeBatchResult queryBatchInAnyStage(
+    final List<? extends XCNodeQuery<?>> queries)
+    throws Exception
+  {
+    return this.await(() -> this.async.queryBatchInAnyStage(queries));
+  }
+
+  @Override
+  public XCNodeQueryCount count(
+    final XCNodeQuery<?> query,
+    final Parent root)
+    throws Exception
+  {
+    return this.await(() -> this.async.count(query, root));
+  }
+
+  @Override
+  public XCNodeQueryCount countInStage(
+    final XCNodeQuery<?> query,
+    final Stage stage)
+    throws Exception
+  {
+    return this.await(() -> this.async.countInStage(query, stage));
+  }
+
+  @Override
+  public XCNodeQueryCount countInAnyStage(
+    final XCNodeQuery<?> query)
+    throws Exception
+  {
+    return this.await(() -> this.async.countInAnyStage(query));
+  }
+
+  @Override
+  public <T extends Node> XCNodeQueryCount visit(
+    final XCNodeQuery<T> query,
+    final Parent root,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    return this.await(() -> this.async.visit(query, root, visitor));
+  }
+
+  @Override
+  public <T extends Node> XCNodeQueryCount visitInStage(
+    final XCNodeQuery<T> query,
+    final Stage stage,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    return this.await(() -> this.async.visitInStage(query, stage, visitor));
+  }
+
+  @Override
+  public <T extends Node> XCNodeQueryCount visitInAnyStage(
+    final XCNodeQuery<T> query,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    return this.await(() -> this.async.visitInAnyStage(query, visitor));
+  }
+
+  @Override
+  public XCSceneSnapshot snapshot(
+    final Stage stage)
+    throws Exception
+  {
+    return this.await(() -> this.async.snapshot(stage));
+  }
+
+  @Override
+  public IndexedCell<?> cellAt(
+    final Control control,
+    final int index)
+    throws Exception
+  {
+    return this.await(() -> this.async.cellAt(control, index));
+  }
+
+  @Override
+  public IndexedCell<?> cellWhere(
+    final Control control,
+    final Predicate<Object> predicate)
+    throws Exception
+  {
+    return this.await(() -> this.async.cellWhere(control, predicate));
+  }
+
+  @Override
+  public void click(
     final Node node)
     throws Exception
   {
-    Platform.runLater(() -> opBringStageToFront(node));
-    this.waitUntil(this.timeout, () -> opStageIsFront(node));
-    this.execute(() -> this.opPointMouseAt(node));
-    this.pauseAfterMouseOp();
+    this.await(() -> this.async.click(node));
   }
 
-  private void pauseAfterKeyboardOp()
+  @Override
+  public void doubleClick(
+    final Node node)
+    throws Exception
   {
-    try {
-      final var time =
-        this.slowMotion.get() ? 1000L : this.timePauseAfterKeyboardOp;
-      Thread.sleep(time);
-    } catch (final InterruptedException e) {
-      Thread.currentThread().interrupt();
-    }
+    this.await(() -> this.async.doubleClick(node));
   }
 
-  private void pauseAfterMouseOp()
+  @Override
+  public void pointAt(
+    final Node node)
+    throws Exception
   {
-    try {
-      final var time =
-        this.slowMotion.get() ? 1000L : this.timePauseAfterMouseOp;
-      Thread.sleep(time);
-    } catch (final InterruptedException e) {
-      Thread.currentThread().interrupt();
-    }
+    this.await(() -> this.async.pointAt(node));
   }
 
   @Override
@@ -705,18 +662,7 @@ public final class XCRobot implements XCRobotType
     final List<XCKey> codes)
     throws Exception
   {
-    Platform.runLater(() -> opBringStageToFront(node));
-    this.waitUntil(this.timeout, () -> opStageIsFront(node));
-    this.execute(() -> this.opPointMouseAt(node));
-    this.pauseAfterMouseOp();
-
-    for (final var code : codes) {
-      LOG.trace("code {}", code);
-    }
-
-    for (final var code : codes) {
-      this.typeKey(code);
-    }
+    this.await(() -> this.async.type(node, codes));
   }
 
   @Override
@@ -725,37 +671,23 @@ public final class XCRobot implements XCRobotType
     final String text)
     throws Exception
   {
-    final var characters =
-      text.chars()
-        .mapToObj(i -> Character.valueOf((char) i))
-        .toList();
-
-    this.type(node, this.keyMap.toCodes(characters));
+    this.type(node, this.keyCodesOf(text));
   }
 
   @Override
   public void type(
     final List<XCKey> codes)
+    throws Exception
   {
-    for (final var code : codes) {
-      LOG.trace("code {}", code);
-    }
-
-    for (final var code : codes) {
-      this.typeKey(code);
-    }
+    this.await(() -> this.async.type(codes));
   }
 
   @Override
   public void typeText(
     final String text)
+    throws Exception
   {
-    final var characters =
-      text.chars()
-        .mapToObj(i -> Character.valueOf((char) i))
-        .toList();
-
-    this.type(this.keyMap.toCodes(characters));
+    this.type(this.keyCodesOf(text));
   }
 
   @Override
@@ -763,8 +695,7 @@ public final class XCRobot implements XCRobotType
     final KeyCode code)
     throws Exception
   {
-    this.execute(() -> this.robot.keyType(code));
-    this.pauseAfterKeyboardOp();
+    this.await(() -> this.async.typeRaw(code));
   }
 
   @Override
@@ -773,82 +704,62 @@ public final class XCRobot implements XCRobotType
     final KeyCode code)
     throws Exception
   {
-    Platform.runLater(() -> opBringStageToFront(node));
-    this.waitUntil(this.timeout, () -> opStageIsFront(node));
-    this.execute(() -> this.opPointMouseAt(node));
-    this.pauseAfterMouseOp();
-    this.execute(() -> this.robot.keyType(code));
-    this.pauseAfterKeyboardOp();
+    this.await(() -> this.async.typeRaw(node, code));
   }
 
   @Override
-  public void waitForFrames(
-    final int frames)
+  public XCPulseTimestamps waitForPulseCount(
+    final int pulses)
     throws Exception
   {
-    for (var index = 0; index < frames; ++index) {
-      XCFXThread.run(() -> {
-        Thread.sleep(1L);
-        return null;
-      }).get(this.timeout, MILLISECONDS);
-    }
+    return this.await(() -> this.async.waitForPulseCount(pulses));
   }
 
   @Override
-  public void waitUntil(
+  public <T extends Node> T awaitNode(
+    final XCNodeQuery<T> query,
+    final long milliseconds)
+    throws Exception
+  {
+    return this.await(() -> this.async.awaitNode(query, milliseconds));
+  }
+
+  @Override
+  public void awaitNodeGone(
+    final XCNodeQuery<?> query,
+    final long milliseconds)
+    throws Exception
+  {
+    this.await(() -> this.async.awaitNodeGone(query, milliseconds));
+  }
+
+  @Override
+  public XCIdleStatistics waitForIdle(
+    final long milliseconds,
+    final List<? extends Worker<?>> workers)
+    throws TimeoutException, Exception
+  {
+    return this.await(() -> this.async.waitForIdle(milliseconds, workers));
+  }
+
+  @Override
+  public XCWaitStatistics waitUntilObserving(
     final long ms,
+    final List<? extends Observable> observables,
     final BooleanSupplier predicate)
     throws TimeoutException, Exception
   {
-    final var duration =
-      Duration.of(ms, ChronoUnit.MILLIS);
-    final var timeThen =
-      Instant.now();
-
-    while (true) {
-      try {
-        final var isTrue =
-          XCFXThread.run(() -> Boolean.valueOf(predicate.getAsBoolean()))
-            .get(1L, MILLISECONDS);
-
-        if (isTrue.booleanValue()) {
-          return;
-        }
-      } catch (final TimeoutException e) {
-        // Ignore.
-      }
-      final var timeNow = Instant.now();
-      if (Duration.between(timeThen, timeNow).compareTo(duration) >= 0) {
-        throw new TimeoutException(
-          "Condition did not become true before the desired timeout.");
-      }
-    }
+    return this.await(() -> {
+      return this.async.waitUntilObserving(ms, observables, predicate);
+    });
   }
 
   @Override
   public void reset(
-    final Optional<Window> window)
+    final Optional<Window> window,
+    final XCRobotResetMode mode)
     throws Exception
   {
-    this.slowMotionDisable();
-
-    if (window.isPresent()) {
-      this.execute(() -> {
-        final var actual = window.get();
-        final var scene = actual.getScene();
-        final var root = scene.getRoot();
-        opBringStageToFront(root);
-        this.opPointMouseAt(root);
-      });
-    }
-
-    for (final var code : ALL_KEY_CODES) {
-      Platform.runLater(() -> this.opKeyRelease(code));
-      Platform.requestNextPulse();
-    }
-    for (final var button : ALL_MOUSE_BUTTONS) {
-      Platform.runLater(() -> this.opMouseRelease(button));
-      Platform.requestNextPulse();
-    }
+    this.await(() -> this.async.reset(window, mode));
   }
 }
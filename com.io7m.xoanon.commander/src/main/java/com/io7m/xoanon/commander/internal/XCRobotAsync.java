@@ -0,0 +1,1632 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCFXThreadOperationType;
+import com.io7m.xoanon.commander.api.XCFocusStatistics;
+import com.io7m.xoanon.commander.api.XCIdleStatistics;
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCNodeBatchResult;
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCNodeQueryCount;
+import com.io7m.xoanon.commander.api.XCNodeQueryResult;
+import com.io7m.xoanon.commander.api.XCNodeVisitorType;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCPulseTimestamps;
+import com.io7m.xoanon.commander.api.XCRobotAsyncType;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import com.io7m.xoanon.commander.api.XCRobotResetMode;
+import com.io7m.xoanon.commander.api.XCSceneSnapshot;
+import com.io7m.xoanon.commander.api.XCSceneIndexStatistics;
+import com.io7m.xoanon.commander.api.XCWaitStatistics;
+import javafx.beans.Observable;
+import javafx.concurrent.Worker;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Control;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * <p>The asynchronous robot implementation.</p>
+ *
+ * <p>Each operation is expressed as a chain of futures, and operations are
+ * serialized by appending each new operation to the tail of a queue. No
+ * thread is ever blocked: pauses are implemented with delayed executors, and
+ * waits are driven by the {@link XCWaitEngine}.</p>
+ */
+
+public final class XCRobotAsync implements XCRobotAsyncType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(XCRobotAsync.class);
+
+  private static final KeyCode[] ALL_KEY_CODES =
+    KeyCode.values();
+
+  private static final List<MouseButton> ALL_MOUSE_BUTTONS =
+    Stream.of(MouseButton.values())
+      .filter(b -> b != MouseButton.NONE)
+      .toList();
+
+  private final XCKeyMapIncremental keyMap;
+  private final XCInputLedger backend;
+  private final AtomicBoolean slowMotion;
+  private final XCWaitEngine waits;
+  private final XCInputAcknowledger acknowledger;
+  private final XCFocusTracker focus;
+  private final XCSceneIndexRegistry indexes;
+  private final Object queueLock;
+  private CompletableFuture<?> queueTail;
+  private volatile long timeout;
+  private volatile long timePauseAfterMouseOp;
+  private volatile long timePauseBetweenDoubleClick;
+  private volatile long timePauseAfterKeyboardOp;
+  private volatile boolean inputAcknowledgement;
+  private volatile int typingBatchSize;
+  private volatile double typingThroughput;
+
+  /**
+   * The asynchronous robot implementation.
+   *
+   * @param inKeyMap  The keyboard map
+   * @param inBackend The backend used to deliver input
+   */
+
+  public XCRobotAsync(
+    final XCKeyMapIncremental inKeyMap,
+    final XCRobotBackendType inBackend)
+  {
+    this.keyMap =
+      Objects.requireNonNull(inKeyMap, "keyMap");
+    this.backend =
+      new XCInputLedger(Objects.requireNonNull(inBackend, "inBackend"));
+    this.timeout =
+      1000L;
+    this.timePauseAfterMouseOp =
+      150L;
+    this.timePauseAfterKeyboardOp =
+      48L;
+    this.timePauseBetweenDoubleClick =
+      50L;
+
+    this.slowMotion =
+      new AtomicBoolean(false);
+    this.waits =
+      new XCWaitEngine();
+    this.acknowledger =
+      new XCInputAcknowledger(this.backend);
+    this.focus =
+      new XCFocusTracker();
+    this.indexes =
+      new XCSceneIndexRegistry();
+    this.inputAcknowledgement =
+      false;
+    this.typingBatchSize =
+      8;
+    this.typingThroughput =
+      0.0;
+    this.queueLock =
+      new Object();
+    this.queueTail =
+      CompletableFuture.completedFuture(null);
+  }
+
+  @XCOnFXThread
+  private static void opBringStageToFront(
+    final Node node)
+  {
+    final var scene = node.getScene();
+    final var window = scene.getWindow();
+    final var stage = (Stage) window;
+
+    final var title = stage.getTitle();
+    LOG.trace("bringing stage {} ({}) to front", stage, title);
+    stage.toFront();
+    stage.requestFocus();
+  }
+
+  @XCOnFXThread
+  private static boolean opStageIsFront(
+    final Node node)
+  {
+    final var scene = node.getScene();
+    final var window = scene.getWindow();
+    return window.isShowing() && window.isFocused();
+  }
+
+  @XCOnFXThread
+  private static <T extends Node> T firstOf(
+    final XCNodeQuery<T> query,
+    final XCNodeQueryResult<T> result)
+  {
+    final var nodes = result.nodes();
+    if (nodes.isEmpty()) {
+      throw new NoSuchElementException(
+        "No element matching %s".formatted(query)
+      );
+    }
+    return nodes.get(0);
+  }
+
+  /*
+   * The find-by-ID and find-by-text operations search for nodes of any type,
+   * and fail with a ClassCastException if the node found does not have the
+   * requested type. This preserves the behaviour of the original lookup-based
+   * implementations, which failed in the same way.
+   */
+
+  @XCOnFXThread
+  private static <T extends Node> T firstOfType(
+    final Class<T> clazz,
+    final XCNodeQuery<Node> query,
+    final XCNodeQueryResult<Node> result)
+  {
+    return clazz.cast(firstOf(query, result));
+  }
+
+  private static CompletableFuture<Void> delay(
+    final long milliseconds)
+  {
+    final var future = new CompletableFuture<Void>();
+    CompletableFuture.delayedExecutor(milliseconds, MILLISECONDS)
+      .execute(() -> future.complete(null));
+    return future;
+  }
+
+  /*
+   * Return a future that completes with the result of the given future, or
+   * fails with a TimeoutException if the given future does not complete in
+   * time. The given future is cancelled when the returned future completes,
+   * so that any waits registered with the wait engine are removed promptly.
+   */
+
+  private static <T> CompletableFuture<T> withTimeout(
+    final CompletableFuture<T> future,
+    final long milliseconds,
+    final String message)
+  {
+    final var result = new CompletableFuture<T>();
+    future.whenComplete((value, exception) -> {
+      if (exception != null) {
+        result.completeExceptionally(exception);
+      } else {
+        result.complete(value);
+      }
+    });
+
+    CompletableFuture.delayedExecutor(milliseconds, MILLISECONDS)
+      .execute(() -> {
+        result.completeExceptionally(new TimeoutException(message));
+      });
+
+    result.whenComplete((value, exception) -> future.cancel(false));
+    return result;
+  }
+
+  /*
+   * Append an operation to the queue. The operation is started when the
+   * operation before it completes, regardless of whether that operation
+   * succeeded.
+   */
+
+  private <T> CompletableFuture<T> enqueue(
+    final Supplier<CompletableFuture<T>> operation)
+  {
+    synchronized (this.queueLock) {
+      final CompletableFuture<T> next =
+        this.queueTail
+          .handle((value, exception) -> null)
+          .thenCompose(ignored -> operation.get());
+      this.queueTail = next;
+      return next;
+    }
+  }
+
+  private <T> CompletableFuture<T> fx(
+    final XCFXThreadOperationType<T> f)
+  {
+    return withTimeout(
+      XCFXThread.run(f),
+      this.timeout,
+      "Operation did not complete on the FX thread before the timeout."
+    );
+  }
+
+  private CompletableFuture<Void> fxV(
+    final Runnable f)
+  {
+    return this.fx(() -> {
+      f.run();
+      return null;
+    });
+  }
+
+  @XCOnFXThread
+  private void opPointMouseAt(
+    final Node node)
+  {
+    final var bounds =
+      node.localToScreen(node.getBoundsInLocal());
+    final var centerX =
+      bounds.getCenterX();
+    final var centerY =
+      bounds.getCenterY();
+
+    LOG.trace(
+      "pointing mouse at {} ({}x{})",
+      node,
+      Double.valueOf(centerX),
+      Double.valueOf(centerY)
+    );
+
+    if (Double.isFinite(centerX) && Double.isFinite(centerY)) {
+      this.backend.mouseMove(new Point2D(centerX, centerY));
+      return;
+    }
+
+    throw new IllegalStateException(
+      "CenterX: %s CenterY: %s"
+        .formatted(Double.valueOf(centerX), Double.valueOf(centerY))
+    );
+  }
+
+  @XCOnFXThread
+  private void opKeyPress(
+    final KeyCode code)
+  {
+    LOG.trace("pressing {}", code);
+    this.backend.keyPress(code);
+  }
+
+  @XCOnFXThread
+  private void opKeyRelease(
+    final KeyCode code)
+  {
+    LOG.trace("releasing {}", code);
+    this.backend.keyRelease(code);
+  }
+
+  @XCOnFXThread
+  private void opKeyType(
+    final KeyCode code)
+  {
+    LOG.trace("typing {}", code);
+    this.backend.keyType(code);
+  }
+
+  @XCOnFXThread
+  private void opMousePress(
+    final MouseButton button)
+  {
+    LOG.trace("pressing mouse {}", button);
+    this.backend.mousePress(button);
+  }
+
+  @XCOnFXThread
+  private void opMouseRelease(
+    final MouseButton button)
+  {
+    LOG.trace("releasing mouse {}", button);
+    this.backend.mouseRelease(button);
+  }
+
+  @XCOnFXThread
+  private void opMouseClick(
+    final MouseButton button)
+  {
+    this.opMousePress(button);
+    this.opMouseRelease(button);
+  }
+
+  @XCOnFXThread
+  private void opExecuteBatch(
+    final XCKeySequence.Batch batch)
+  {
+    for (final var operation : batch.operations()) {
+      switch (operation.kind()) {
+        case PRESS -> this.opKeyPress(operation.code());
+        case RELEASE -> this.opKeyRelease(operation.code());
+        case TYPE -> this.opKeyType(operation.code());
+      }
+    }
+  }
+
+  /*
+   * Type the given keys. The keys are compiled into a single sequence of
+   * operations, and the sequence is executed in batches, each of which is
+   * executed in a single task on the FX thread. In slow motion mode, each
+   * key is executed in its own batch.
+   */
+
+  private CompletableFuture<Void> typeKeys(
+    final Optional<Node> node,
+    final List<XCKey> codes)
+  {
+    for (final var code : codes) {
+      LOG.trace("code {}", code);
+    }
+
+    final var timeThen =
+      System.nanoTime();
+    final var sequence =
+      XCKeySequence.compile(codes);
+    final var batchSize =
+      this.slowMotion.get() ? 1 : this.typingBatchSize;
+
+    var chain = CompletableFuture.<Void>completedFuture(null);
+    for (final var batch : sequence.batches(batchSize)) {
+      chain = chain.thenCompose(ignored -> {
+        final var code =
+          batch.lastReleased();
+        final var acknowledgement =
+          this.acknowledgeKey(node, code, batch.releaseCount(code));
+        return this.fxV(() -> this.opExecuteBatch(batch))
+          .thenCompose(x -> this.pauseAfterKeyboardOp(acknowledgement));
+      });
+    }
+
+    return chain.thenRun(() -> {
+      final var timeElapsed =
+        System.nanoTime() - timeThen;
+
+      if (sequence.keyCount() > 0 && timeElapsed > 0L) {
+        this.typingThroughput =
+          (double) sequence.keyCount() / ((double) timeElapsed / 1.0e9);
+      }
+    });
+  }
+
+  private boolean isAcknowledging()
+  {
+    return this.inputAcknowledgement && !this.slowMotion.get();
+  }
+
+  private CompletableFuture<Void> acknowledgeKey(
+    final Optional<Node> node,
+    final KeyCode code)
+  {
+    return this.acknowledgeKey(node, code, 1);
+  }
+
+  private CompletableFuture<Void> acknowledgeKey(
+    final Optional<Node> node,
+    final KeyCode code,
+    final int count)
+  {
+    if (this.isAcknowledging()) {
+      return this.acknowledger.expectKeyReleased(node, code, count);
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private CompletableFuture<Void> acknowledgeMouseReleased(
+    final Node node,
+    final MouseButton button)
+  {
+    if (this.isAcknowledging()) {
+      return this.acknowledger.expectMouseReleased(node, button);
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private CompletableFuture<Void> acknowledgeMouseMovedTo(
+    final Node node)
+  {
+    if (this.isAcknowledging()) {
+      return this.acknowledger.expectMouseMovedTo(node);
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /*
+   * Bring the stage containing the given node to the front and wait for it
+   * to become focused. Backends that do not deliver input through the
+   * windowing system do not care which window is focused, and so the
+   * operation is skipped entirely for them. The wait is also skipped if the
+   * focus tracker reports that the stage is already focused.
+   */
+
+  private CompletableFuture<Void> bringStageToFront(
+    final Node node)
+  {
+    if (!this.backend.requiresWindowFocus()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return this.fx(() -> {
+      if (this.focus.checkFocused(node)) {
+        return Boolean.TRUE;
+      }
+      opBringStageToFront(node);
+      return Boolean.FALSE;
+    }).thenCompose(focused -> {
+      if (focused.booleanValue()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return this.waitUntilNow(
+        this.timeout,
+        List.of(),
+        () -> opStageIsFront(node)
+      ).thenApply(statistics -> null);
+    });
+  }
+
+  private CompletableFuture<Void> pointMouseAt(
+    final Node node)
+  {
+    final var acknowledgement = this.acknowledgeMouseMovedTo(node);
+    return this.fxV(() -> this.opPointMouseAt(node))
+      .thenCompose(ignored -> this.pauseAfterMouseOp(acknowledgement));
+  }
+
+  private CompletableFuture<Void> pauseAfterKeyboardOp(
+    final CompletableFuture<Void> acknowledgement)
+  {
+    return this.pauseUntilAcknowledged(
+      acknowledgement,
+      this.timePauseAfterKeyboardOp
+    );
+  }
+
+  private CompletableFuture<Void> pauseAfterMouseOp(
+    final CompletableFuture<Void> acknowledgement)
+  {
+    return this.pauseUntilAcknowledged(
+      acknowledgement,
+      this.timePauseAfterMouseOp
+    );
+  }
+
+  /*
+   * Pause after an operation. If input acknowledgement is enabled, the
+   * pause time is an upper bound on the time spent waiting for the
+   * operation's events to be dispatched. If the events cannot be observed
+   * for any reason, the robot falls back to pausing for the full time.
+   * Synchronous backends have already dispatched every event by the time
+   * the operation's task on the FX thread has completed, and so there is
+   * no pause at all.
+   */
+
+  private CompletableFuture<Void> pauseUntilAcknowledged(
+    final CompletableFuture<Void> acknowledgement,
+    final long time)
+  {
+    if (this.slowMotion.get()) {
+      acknowledgement.cancel(false);
+      return delay(1000L);
+    }
+
+    if (this.backend.isSynchronous()) {
+      acknowledgement.cancel(false);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    if (!this.inputAcknowledgement) {
+      acknowledgement.cancel(false);
+      return delay(time);
+    }
+
+    final var result = new CompletableFuture<Void>();
+    acknowledgement.thenRun(() -> result.complete(null));
+    result.completeOnTimeout(null, time, MILLISECONDS);
+    result.whenComplete((ignored, exception) -> {
+      acknowledgement.cancel(false);
+    });
+    return result;
+  }
+
+  /*
+   * Pause between the two clicks of a double click. The pause is never
+   * extended in slow motion mode, because the clicks would then no longer
+   * be recognized as a double click.
+   */
+
+  private CompletableFuture<Void> pauseBetweenDoubleClick(
+    final CompletableFuture<Void> acknowledgement)
+  {
+    if (this.slowMotion.get()) {
+      acknowledgement.cancel(false);
+      return delay(this.timePauseBetweenDoubleClick);
+    }
+    return this.pauseUntilAcknowledged(
+      acknowledgement,
+      this.timePauseBetweenDoubleClick
+    );
+  }
+
+  private CompletableFuture<XCWaitStatistics> waitUntilNow(
+    final long ms,
+    final List<? extends Observable> observables,
+    final BooleanSupplier predicate)
+  {
+    return withTimeout(
+      this.waits.waitUntil(observables, predicate),
+      ms,
+      "Condition did not become true before the desired timeout."
+    );
+  }
+
+  private CompletableFuture<Void> waitForStageCondition(
+    final long milliseconds,
+    final List<? extends Observable> observables,
+    final BooleanSupplier condition,
+    final String message)
+  {
+    return this.enqueue(() -> {
+      return withTimeout(
+        this.waits.waitUntilChanged(observables, condition),
+        milliseconds,
+        message
+      ).thenApply(statistics -> null);
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> execute(
+    final Runnable f)
+  {
+    Objects.requireNonNull(f, "f");
+    return this.enqueue(() -> this.fxV(f));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> evaluate(
+    final XCFXThreadOperationType<T> f)
+  {
+    Objects.requireNonNull(f, "f");
+    return this.enqueue(() -> this.fx(f));
+  }
+
+  @Override
+  public CompletableFuture<Void> click(
+    final Node node)
+  {
+    Objects.requireNonNull(node, "node");
+
+    return this.enqueue(() -> {
+      return this.bringStageToFront(node)
+        .thenCompose(ignored -> this.pointMouseAt(node))
+        .thenCompose(ignored -> {
+          final var acknowledgement =
+            this.acknowledgeMouseReleased(node, MouseButton.PRIMARY);
+          return this.fxV(() -> this.opMouseClick(MouseButton.PRIMARY))
+            .thenCompose(x -> this.pauseAfterMouseOp(acknowledgement));
+        });
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> doubleClick(
+    final Node node)
+  {
+    Objects.requireNonNull(node, "node");
+
+    /*
+     * The first click is acknowledged before the second is sent, so that
+     * the first click's release cannot be mistaken for the second's.
+     */
+
+    return this.enqueue(() -> {
+      return this.bringStageToFront(node)
+        .thenCompose(ignored -> {
+          final var acknowledgement =
+            this.acknowledgeMouseReleased(node, MouseButton.PRIMARY);
+          return this.fxV(() -> {
+            this.opPointMouseAt(node);
+            this.opMouseClick(MouseButton.PRIMARY);
+          }).thenCompose(x -> this.pauseBetweenDoubleClick(acknowledgement));
+        })
+        .thenCompose(ignored -> {
+          final var acknowledgement =
+            this.acknowledgeMouseReleased(node, MouseButton.PRIMARY);
+          return this.fxV(() -> this.opMouseClick(MouseButton.PRIMARY))
+            .thenCompose(x -> this.pauseAfterMouseOp(acknowledgement));
+        });
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> pointAt(
+    final Node node)
+  {
+    Objects.requireNonNull(node, "node");
+
+    return this.enqueue(() -> {
+      return this.bringStageToFront(node)
+        .thenCompose(ignored -> this.pointMouseAt(node));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> type(
+    final Node node,
+    final List<XCKey> codes)
+  {
+    Objects.requireNonNull(node, "node");
+    Objects.requireNonNull(codes, "codes");
+
+    return this.enqueue(() -> this.typeInto(node, codes));
+  }
+
+  private CompletableFuture<Void> typeInto(
+    final Node node,
+    final List<XCKey> codes)
+  {
+    return this.bringStageToFront(node)
+      .thenCompose(ignored -> this.pointMouseAt(node))
+      .thenCompose(ignored -> this.typeKeys(Optional.of(node), codes));
+  }
+
+  /*
+   * Text is mapped to keys inside the queued operation, so that any probing
+   * required for characters not yet in the key map does not allow later
+   * operations to overtake this one.
+   */
+
+  @Override
+  public CompletableFuture<Void> typeText(
+    final Node node,
+    final String text)
+  {
+    Objects.requireNonNull(node, "node");
+    Objects.requireNonNull(text, "text");
+
+    return this.enqueue(() -> {
+      return this.keyMap.toCodes(text)
+        .thenCompose(codes -> this.typeInto(node, codes));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> type(
+    final List<XCKey> codes)
+  {
+    Objects.requireNonNull(codes, "codes");
+    return this.enqueue(() -> this.typeKeys(Optional.empty(), codes));
+  }
+
+  @Override
+  public CompletableFuture<Void> typeText(
+    final String text)
+  {
+    Objects.requireNonNull(text, "text");
+
+    return this.enqueue(() -> {
+      return this.keyMap.toCodes(text)
+        .thenCompose(codes -> this.typeKeys(Optional.empty(), codes));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> typeRaw(
+    final KeyCode code)
+  {
+    Objects.requireNonNull(code, "code");
+
+    return this.enqueue(() -> {
+      final var acknowledgement =
+        this.acknowledgeKey(Optional.empty(), code);
+      return this.fxV(() -> this.opKeyType(code))
+        .thenCompose(ignored -> this.pauseAfterKeyboardOp(acknowledgement));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> typeRaw(
+    final Node node,
+    final KeyCode code)
+  {
+    Objects.requireNonNull(node, "node");
+    Objects.requireNonNull(code, "code");
+
+    return this.enqueue(() -> {
+      return this.bringStageToFront(node)
+        .thenCompose(ignored -> this.pointMouseAt(node))
+        .thenCompose(ignored -> {
+          final var acknowledgement =
+            this.acknowledgeKey(Optional.of(node), code);
+          return this.fxV(() -> this.opKeyType(code))
+            .thenCompose(x -> this.pauseAfterKeyboardOp(acknowledgement));
+        });
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<XCNodeQueryResult<T>> query(
+    final XCNodeQuery<T> query,
+    final Parent root)
+  {
+    return this.evaluate(() -> XCNodeQueryEngine.execute(query, root));
+  }
+
+  @XCOnFXThread
+  private <T extends Node> XCNodeQueryResult<T> opQueryInStage(
+    final XCNodeQuery<T> query,
+    final Stage stage)
+  {
+    final var scene = stage.getScene();
+    if (scene == null) {
+      return XCNodeQueryEngine.execute(query, List.of());
+    }
+
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var index = this.indexes.indexFor(scene);
+      return XCNodeQueryEngine.executeIndexed(query, List.of(index));
+    }
+    return XCNodeQueryEngine.execute(query, scene.getRoot());
+  }
+
+  @XCOnFXThread
+  private <T extends Node> XCNodeQueryResult<T> opQueryInAnyStage(
+    final XCNodeQuery<T> query)
+  {
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var showing = this.indexes.indexesForShowingWindows();
+      return XCNodeQueryEngine.executeIndexed(query, showing);
+    }
+    return XCNodeQueryEngine.execute(query, XCNodeQueryEngine.showingRoots());
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<XCNodeQueryResult<T>> queryInStage(
+    final XCNodeQuery<T> query,
+    final Stage stage)
+  {
+    return this.evaluate(() -> this.opQueryInStage(query, stage));
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<XCNodeQueryResult<T>>
+  queryInAnyStage(
+    final XCNodeQuery<T> query)
+  {
+    return this.evaluate(() -> this.opQueryInAnyStage(query));
+  }
+
+  @XCOnFXThread
+  private XCNodeBatchResult opQueryBatchInStage(
+    final List<? extends XCNodeQuery<?>> queries,
+    final Stage stage)
+  {
+    final var scene = stage.getScene();
+    if (scene == null) {
+      return XCNodeQueryEngine.executeBatch(queries, List.of());
+    }
+
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var index = this.indexes.indexFor(scene);
+      return XCNodeQueryEngine.executeBatchIndexed(queries, List.of(index));
+    }
+    return XCNodeQueryEngine.executeBatch(queries, List.of(scene.getRoot()));
+  }
+
+  @XCOnFXThread
+  private XCNodeBatchResult opQueryBatchInAnyStage(
+    final List<? extends XCNodeQuery<?>> queries)
+  {
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var showing = this.indexes.indexesForShowingWindows();
+      return XCNodeQueryEngine.executeBatchIndexed(queries, showing);
+    }
+    final var roots = XCNodeQueryEngine.showingRoots();
+    return XCNodeQueryEngine.executeBatch(queries, roots);
+  }
+
+  @Override
+  public CompletableFuture<XCNodeBatchResult> queryBatch(
+    final List<? extends XCNodeQuery<?>> queries,
+    final Parent root)
+  {
+    final var copy = List.copyOf(queries);
+    return this.evaluate(() -> {
+      return XCNodeQueryEngine.executeBatch(copy, List.of(root));
+    });
+  }
+
+  @Override
+  public CompletableFuture<XCNodeBatchResult> queryBatchInStage(
+    final List<? extends XCNodeQuery<?>> queries,
+    final Stage stage)
+  {
+    final var copy = List.copyOf(queries);
+    return this.evaluate(() -> this.opQueryBatchInStage(copy, stage));
+  }
+
+  @Override
+  public CompletableFuture<XCNodeBatchResult> queryBatchInAnyStage(
+    final List<? extends XCNodeQuery<?>> queries)
+  {
+    final var copy = List.copyOf(queries);
+    return this.evaluate(() -> this.opQueryBatchInAnyStage(copy));
+  }
+
+  @XCOnFXThread
+  private <T extends Node> XCNodeQueryCount opVisitInStage(
+    final XCNodeQuery<T> query,
+    final Stage stage,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    final var scene = stage.getScene();
+    if (scene == null) {
+      return XCNodeQueryEngine.visit(query, List.of(), visitor);
+    }
+
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var index = this.indexes.indexFor(scene);
+      return XCNodeQueryEngine.visitIndexed(query, List.of(index), visitor);
+    }
+    return XCNodeQueryEngine.visit(query, List.of(scene.getRoot()), visitor);
+  }
+
+  @XCOnFXThread
+  private <T extends Node> XCNodeQueryCount opVisitInAnyStage(
+    final XCNodeQuery<T> query,
+    final XCNodeVisitorType<? super T> visitor)
+    throws Exception
+  {
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var showing = this.indexes.indexesForShowingWindows();
+      return XCNodeQueryEngine.visitIndexed(query, showing, visitor);
+    }
+    final var roots = XCNodeQueryEngine.showingRoots();
+    return XCNodeQueryEngine.visit(query, roots, visitor);
+  }
+
+  @XCOnFXThread
+  private XCNodeQueryCount opCountInStage(
+    final XCNodeQuery<?> query,
+    final Stage stage)
+  {
+    final var scene = stage.getScene();
+    if (scene == null) {
+      return XCNodeQueryEngine.count(query, List.of());
+    }
+
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var index = this.indexes.indexFor(scene);
+      return XCNodeQueryEngine.countIndexed(query, List.of(index));
+    }
+    return XCNodeQueryEngine.count(query, List.of(scene.getRoot()));
+  }
+
+  @XCOnFXThread
+  private XCNodeQueryCount opCountInAnyStage(
+    final XCNodeQuery<?> query)
+  {
+    if (this.indexes.isEnabled()) {
+      this.indexes.recordQuery();
+      final var showing = this.indexes.indexesForShowingWindows();
+      return XCNodeQueryEngine.countIndexed(query, showing);
+    }
+    return XCNodeQueryEngine.count(query, XCNodeQueryEngine.showingRoots());
+  }
+
+  @Override
+  public CompletableFuture<XCNodeQueryCount> count(
+    final XCNodeQuery<?> query,
+    final Parent root)
+  {
+    return this.evaluate(() -> {
+      return XCNodeQueryEngine.count(query, List.of(root));
+    });
+  }
+
+  @Override
+  public CompletableFuture<XCNodeQueryCount> countInStage(
+    final XCNodeQuery<?> query,
+    final Stage stage)
+  {
+    return this.evaluate(() -> this.opCountInStage(query, stage));
+  }
+
+  @Override
+  public CompletableFuture<XCNodeQueryCount> countInAnyStage(
+    final XCNodeQuery<?> query)
+  {
+    return this.evaluate(() -> this.opCountInAnyStage(query));
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<XCNodeQueryCount> visit(
+    final XCNodeQuery<T> query,
+    final Parent root,
+    final XCNodeVisitorType<? super T> visitor)
+  {
+    Objects.requireNonNull(visitor, "visitor");
+    return this.evaluate(() -> {
+      return XCNodeQueryEngine.visit(query, List.of(root), visitor);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<XCNodeQueryCount> visitInStage(
+    final XCNodeQuery<T> query,
+    final Stage stage,
+    final XCNodeVisitorType<? super T> visitor)
+  {
+    Objects.requireNonNull(visitor, "visitor");
+    return this.evaluate(() -> this.opVisitInStage(query, stage, visitor));
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<XCNodeQueryCount> visitInAnyStage(
+    final XCNodeQuery<T> query,
+    final XCNodeVisitorType<? super T> visitor)
+  {
+    Objects.requireNonNull(visitor, "visitor");
+    return this.evaluate(() -> this.opVisitInAnyStage(query, visitor));
+  }
+
+  private CompletableFuture<IndexedCell<?>> cellNow(
+    final Control control,
+    final ToIntFunction<Control> resolve)
+  {
+    return this.fx(() -> {
+      final var index = resolve.applyAsInt(control);
+      XCVirtualizedControls.scrollTo(control, index);
+      final var cell = XCVirtualizedControls.visibleCell(control, index);
+      return new CellAttempt(index, cell);
+    }).thenCompose(attempt -> {
+      if (attempt.cell().isPresent()) {
+        return CompletableFuture.<IndexedCell<?>>completedFuture(
+          attempt.cell().get()
+        );
+      }
+
+      /*
+       * Layout did not produce the cell; give the control one pulse to
+       * create it.
+       */
+
+      final var index = attempt.index();
+      return withTimeout(
+        this.waits.waitForPulses(1),
+        this.timeout,
+        "Timed out waiting for a pulse."
+      ).thenCompose(ignored -> {
+        return this.<IndexedCell<?>>fx(() -> {
+          return XCVirtualizedControls.visibleCell(control, index)
+            .orElseThrow(() -> {
+              return new NoSuchElementException(
+                "No cell is visible for index %d".formatted(
+                  Integer.valueOf(index))
+              );
+            });
+        });
+      });
+    });
+  }
+
+  @Override
+  public CompletableFuture<IndexedCell<?>> cellAt(
+    final Control control,
+    final int index)
+  {
+    Objects.requireNonNull(control, "control");
+
+    return this.enqueue(() -> {
+      return this.cellNow(control, c -> {
+        return Objects.checkIndex(index, XCVirtualizedControls.itemCount(c));
+      });
+    });
+  }
+
+  @Override
+  public CompletableFuture<IndexedCell<?>> cellWhere(
+    final Control control,
+    final Predicate<Object> predicate)
+  {
+    Objects.requireNonNull(control, "control");
+    Objects.requireNonNull(predicate, "predicate");
+
+    return this.enqueue(() -> {
+      return this.cellNow(control, c -> {
+        final var index = XCVirtualizedControls.indexWhere(c, predicate);
+        if (index < 0) {
+          throw new NoSuchElementException(
+            "No item in %s matches the predicate".formatted(c)
+          );
+        }
+        return index;
+      });
+    });
+  }
+
+  @Override
+  public CompletableFuture<XCSceneSnapshot> snapshot(
+    final Stage stage)
+  {
+    Objects.requireNonNull(stage, "stage");
+
+    return this.evaluate(() -> {
+      final var scene = stage.getScene();
+      if (scene == null) {
+        return XCSceneSnapshot.empty();
+      }
+      return XCSceneSnapshot.capture(scene.getRoot());
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<List<T>> findAllInStage(
+    final Class<T> clazz,
+    final Stage stage)
+  {
+    return this.queryInStage(XCNodeQuery.of(clazz), stage)
+      .thenApply(XCNodeQueryResult::nodes);
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<List<T>> findAll(
+    final Class<T> clazz,
+    final Parent parent)
+  {
+    return this.query(XCNodeQuery.of(clazz), parent)
+      .thenApply(XCNodeQueryResult::nodes);
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> findWithId(
+    final Class<T> clazz,
+    final Stage stage,
+    final String id)
+  {
+    final var query = XCNodeQuery.any().withId(id);
+    return this.evaluate(() -> {
+      final var result = this.opQueryInStage(query.first(), stage);
+      return firstOfType(clazz, query, result);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> findWithId(
+    final Class<T> clazz,
+    final Parent root,
+    final String id)
+  {
+    final var query = XCNodeQuery.any().withId(id);
+    return this.evaluate(() -> {
+      final var result = XCNodeQueryEngine.execute(query.first(), root);
+      return firstOfType(clazz, query, result);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> findWithTextInAnyStage(
+    final Class<T> clazz,
+    final String text)
+  {
+    final var query = XCNodeQuery.any().withText(text);
+    return this.evaluate(() -> {
+      final var result = this.opQueryInAnyStage(query.first());
+      return firstOfType(clazz, query, result);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> findWithText(
+    final Class<T> clazz,
+    final Stage stage,
+    final String text)
+  {
+    final var query = XCNodeQuery.any().withText(text);
+    return this.evaluate(() -> {
+      final var result = this.opQueryInStage(query.first(), stage);
+      return firstOfType(clazz, query, result);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> findWithText(
+    final Class<T> clazz,
+    final Parent parent,
+    final String text)
+  {
+    final var query = XCNodeQuery.any().withText(text);
+    return this.evaluate(() -> {
+      final var result = XCNodeQueryEngine.execute(query.first(), parent);
+      return firstOfType(clazz, query, result);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> findWithIdInAnyStage(
+    final Class<T> clazz,
+    final String id)
+  {
+    final var query = XCNodeQuery.any().withId(id);
+    return this.evaluate(() -> {
+      final var result = this.opQueryInAnyStage(query.first());
+      return firstOfType(clazz, query, result);
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<List<T>> findAllWithClassInStage(
+    final Class<T> clazz,
+    final Stage stage,
+    final String cssClass)
+  {
+    final var query = XCNodeQuery.of(clazz).withStyleClass(cssClass);
+    return this.queryInStage(query, stage)
+      .thenApply(XCNodeQueryResult::nodes);
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<List<T>> findAllWithClass(
+    final Class<T> clazz,
+    final Parent parent,
+    final String cssClass)
+  {
+    final var query = XCNodeQuery.of(clazz).withStyleClass(cssClass);
+    return this.query(query, parent)
+      .thenApply(XCNodeQueryResult::nodes);
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<List<T>> findAllWithClassInAnyStage(
+    final Class<T> clazz,
+    final String cssClass)
+  {
+    final var query = XCNodeQuery.of(clazz).withStyleClass(cssClass);
+    return this.queryInAnyStage(query)
+      .thenApply(XCNodeQueryResult::nodes);
+  }
+
+  @Override
+  public CompletableFuture<Void> waitForStageToClose(
+    final Stage stage,
+    final long milliseconds)
+  {
+    return this.waitForStageCondition(
+      milliseconds,
+      List.of(stage.showingProperty()),
+      () -> !stage.isShowing(),
+      "Timed out waiting for the stage to close."
+    );
+  }
+
+  @Override
+  public CompletableFuture<Void> waitForStageToShow(
+    final Stage stage,
+    final long milliseconds)
+  {
+    return this.waitForStageCondition(
+      milliseconds,
+      List.of(stage.showingProperty()),
+      stage::isShowing,
+      "Timed out waiting for the stage to show."
+    );
+  }
+
+  @Override
+  public CompletableFuture<Void> waitForStageFocused(
+    final Stage stage,
+    final long milliseconds)
+  {
+    return this.enqueue(() -> {
+      return withTimeout(
+        this.waits.waitUntilFocused(stage),
+        milliseconds,
+        "Timed out waiting for the stage to become focused."
+      ).thenApply(statistics -> null);
+    });
+  }
+
+  @Override
+  public CompletableFuture<XCPulseTimestamps> waitForPulseCount(
+    final int pulses)
+  {
+    return this.enqueue(() -> {
+      return withTimeout(
+        this.waits.waitForPulses(pulses),
+        this.timeout * Math.max(1L, pulses),
+        "Timed out waiting for %d pulses.".formatted(Integer.valueOf(pulses))
+      );
+    });
+  }
+
+  @Override
+  public <T extends Node> CompletableFuture<T> awaitNode(
+    final XCNodeQuery<T> query,
+    final long milliseconds)
+  {
+    Objects.requireNonNull(query, "query");
+
+    return this.enqueue(() -> {
+      return withTimeout(
+        this.waits.awaitNode(query),
+        milliseconds,
+        "Timed out waiting for a node matching %s".formatted(query)
+      );
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> awaitNodeGone(
+    final XCNodeQuery<?> query,
+    final long milliseconds)
+  {
+    Objects.requireNonNull(query, "query");
+
+    return this.enqueue(() -> {
+      return withTimeout(
+        this.waits.awaitNodeGone(query),
+        milliseconds,
+        "Timed out waiting for nodes matching %s to go".formatted(query)
+      );
+    });
+  }
+
+  @Override
+  public CompletableFuture<XCIdleStatistics> waitForIdle(
+    final long milliseconds,
+    final List<? extends Worker<?>> workers)
+  {
+    Objects.requireNonNull(workers, "workers");
+
+    return this.enqueue(() -> {
+      return withTimeout(
+        this.waits.waitForIdle(workers),
+        milliseconds,
+        "Timed out waiting for the application to become idle."
+      );
+    });
+  }
+
+  @Override
+  public CompletableFuture<XCWaitStatistics> waitUntilObserving(
+    final long ms,
+    final List<? extends Observable> observables,
+    final BooleanSupplier predicate)
+  {
+    Objects.requireNonNull(observables, "observables");
+    Objects.requireNonNull(predicate, "predicate");
+    return this.enqueue(() -> this.waitUntilNow(ms, observables, predicate));
+  }
+
+  @Override
+  public CompletableFuture<WritableImage> screenCapture(
+    final Node node)
+  {
+    Objects.requireNonNull(node, "node");
+
+    return this.evaluate(() -> {
+      final var bounds = node.localToScreen(node.getBoundsInLocal());
+      return this.backend.screenCapture(
+        new Rectangle2D(
+          bounds.getMinX(),
+          bounds.getMinY(),
+          bounds.getWidth(),
+          bounds.getHeight()
+        )
+      );
+    });
+  }
+
+  /**
+   * Release keys and mouse buttons, and optionally point the mouse at the
+   * given window.
+   *
+   * @param window The window
+   * @param mode   The reset mode
+   *
+   * @return The operation in progress
+   */
+
+  public CompletableFuture<Void> reset(
+    final Optional<Window> window,
+    final XCRobotResetMode mode)
+  {
+    Objects.requireNonNull(window, "window");
+    Objects.requireNonNull(mode, "mode");
+
+    this.slowMotionDisable();
+
+    return this.enqueue(() -> {
+      return this.fxV(() -> {
+        this.indexes.prune();
+
+        if (window.isPresent()) {
+          final var actual = window.get();
+          final var scene = actual.getScene();
+          final var root = scene.getRoot();
+          if (this.backend.requiresWindowFocus()) {
+            opBringStageToFront(root);
+          }
+          this.opPointMouseAt(root);
+        }
+
+        switch (mode) {
+          case RELEASE_PRESSED -> {
+            final var released = this.backend.releasePressed();
+            LOG.trace("released {} pressed inputs", Integer.valueOf(released));
+          }
+          case RELEASE_ALL -> {
+            for (final var code : ALL_KEY_CODES) {
+              this.opKeyRelease(code);
+            }
+            for (final var button : ALL_MOUSE_BUTTONS) {
+              this.opMouseRelease(button);
+            }
+          }
+        }
+      });
+    });
+  }
+
+  /**
+   * @return Statistics on how often stages needed to be brought to the front
+   */
+
+  public XCFocusStatistics focusStatistics()
+  {
+    return this.focus.statistics();
+  }
+
+  /**
+   * @return Statistics on the scene graph indexes
+   */
+
+  public XCSceneIndexStatistics sceneIndexStatistics()
+  {
+    return this.indexes.statistics();
+  }
+
+  /**
+   * @return The ledger of the keys and mouse buttons held by the robot
+   */
+
+  public XCInputLedger ledger()
+  {
+    return this.backend;
+  }
+
+  /**
+   * @return {@code true} if scene graph indexing is enabled
+   */
+
+  public boolean isSceneIndexEnabled()
+  {
+    return this.indexes.isEnabled();
+  }
+
+  /**
+   * Enable or disable scene graph indexing.
+   *
+   * @param enabled {@code true} if indexing should be enabled
+   */
+
+  public void setSceneIndexEnabled(
+    final boolean enabled)
+  {
+    this.indexes.setEnabled(enabled);
+  }
+
+  /**
+   * Remove all listeners installed by the robot. The robot should not be
+   * used afterwards.
+   */
+
+  public void close()
+  {
+    this.focus.close();
+    this.indexes.setEnabled(false);
+  }
+
+  /**
+   * @return The name of the backend
+   */
+
+  public String backendName()
+  {
+    return this.backend.name();
+  }
+
+  /**
+   * Disable slow motion.
+   */
+
+  public void slowMotionDisable()
+  {
+    this.slowMotion.set(false);
+  }
+
+  /**
+   * Enable slow motion.
+   */
+
+  public void slowMotionEnable()
+  {
+    this.slowMotion.set(true);
+  }
+
+  /**
+   * @return The timeout for operations
+   */
+
+  public long timeoutMilliseconds()
+  {
+    return this.timeout;
+  }
+
+  /**
+   * Set the timeout for operations.
+   *
+   * @param ms The timeout
+   */
+
+  public void setTimeoutMilliseconds(
+    final long ms)
+  {
+    this.timeout = Math.max(1L, ms);
+  }
+
+  /**
+   * @return The pause after mouse operations
+   */
+
+  public long timePauseAfterMouseOperationMilliseconds()
+  {
+    return this.timePauseAfterMouseOp;
+  }
+
+  /**
+   * Set the pause after mouse operations.
+   *
+   * @param ms The time
+   */
+
+  public void setTimePauseAfterMouseOperationMilliseconds(
+    final long ms)
+  {
+    this.timePauseAfterMouseOp = Math.max(1L, ms);
+  }
+
+  /**
+   * @return The pause after keyboard operations
+   */
+
+  public long timePauseAfterKeyboardOperationMilliseconds()
+  {
+    return this.timePauseAfterKeyboardOp;
+  }
+
+  /**
+   * Set the pause after keyboard operations.
+   *
+   * @param ms The time
+   */
+
+  public void setTimePauseAfterKeyboardOperationMilliseconds(
+    final long ms)
+  {
+    this.timePauseAfterKeyboardOp = Math.max(1L, ms);
+  }
+
+  /**
+   * @return The pause between the clicks of a double click
+   */
+
+  public long timePauseBetweenDoubleClickMilliseconds()
+  {
+    return this.timePauseBetweenDoubleClick;
+  }
+
+  /**
+   * Set the pause between the clicks of a double click.
+   *
+   * @param ms The time
+   */
+
+  public void setTimePauseBetweenDoubleClickMilliseconds(
+    final long ms)
+  {
+    this.timePauseBetweenDoubleClick = Math.max(1L, ms);
+  }
+
+  /**
+   * @return {@code true} if input acknowledgement is enabled
+   */
+
+  public boolean isInputAcknowledgementEnabled()
+  {
+    return this.inputAcknowledgement;
+  }
+
+  /**
+   * Enable or disable input acknowledgement.
+   *
+   * @param enabled {@code true} if acknowledgement should be enabled
+   */
+
+  public void setInputAcknowledgementEnabled(
+    final boolean enabled)
+  {
+    this.inputAcknowledgement = enabled;
+  }
+
+  /**
+   * @return The number of keys typed per batch
+   */
+
+  public int typingBatchSize()
+  {
+    return this.typingBatchSize;
+  }
+
+  /**
+   * Set the number of keys typed per batch.
+   *
+   * @param keys The number of keys
+   */
+
+  public void setTypingBatchSize(
+    final int keys)
+  {
+    this.typingBatchSize = Math.max(1, keys);
+  }
+
+  /**
+   * @return The most recently measured typing throughput
+   */
+
+  public double typingCharactersPerSecond()
+  {
+    return this.typingThroughput;
+  }
+
+  private record CellAttempt(
+    int index,
+    Optional<IndexedCell<?>> cell)
+  {
+
+  }
+}
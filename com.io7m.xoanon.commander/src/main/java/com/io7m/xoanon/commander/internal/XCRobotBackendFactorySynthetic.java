@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCRobotBackendContext;
+import com.io7m.xoanon.commander.api.XCRobotBackendFactoryType;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import com.io7m.xoanon.commander.api.XCRobotBackends;
+
+import java.util.Objects;
+
+/**
+ * A factory of backends that deliver input using synthetic events.
+ */
+
+public final class XCRobotBackendFactorySynthetic
+  implements XCRobotBackendFactoryType
+{
+  /**
+   * A factory of backends that deliver input using synthetic events.
+   */
+
+  public XCRobotBackendFactorySynthetic()
+  {
+
+  }
+
+  @Override
+  public String name()
+  {
+    return XCRobotBackends.SYNTHETIC;
+  }
+
+  @Override
+  public XCRobotBackendType create(
+    final XCRobotBackendContext context)
+  {
+    Objects.requireNonNull(context, "context");
+    return new XCRobotBackendSynthetic(context.keyMap());
+  }
+}
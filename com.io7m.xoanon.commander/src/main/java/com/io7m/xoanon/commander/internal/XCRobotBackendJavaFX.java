@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import com.io7m.xoanon.commander.api.XCRobotBackends;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.robot.Robot;
+
+import java.util.Objects;
+
+/**
+ * A backend that delivers input through the operating system using the
+ * standard JavaFX {@link Robot}.
+ */
+
+public final class XCRobotBackendJavaFX implements XCRobotBackendType
+{
+  private final Robot robot;
+
+  /**
+   * A backend that delivers input through the operating system.
+   *
+   * @param inRobot The JavaFX robot
+   */
+
+  public XCRobotBackendJavaFX(
+    final Robot inRobot)
+  {
+    this.robot = Objects.requireNonNull(inRobot, "robot");
+  }
+
+  @Override
+  public String name()
+  {
+    return XCRobotBackends.JAVAFX;
+  }
+
+  @Override
+  public boolean requiresWindowFocus()
+  {
+    return true;
+  }
+
+  @Override
+  public boolean isSynchronous()
+  {
+    return false;
+  }
+
+  @Override
+  public Point2D mousePosition()
+  {
+    return this.robot.getMousePosition();
+  }
+
+  @Override
+  public void mouseMove(
+    final Point2D position)
+  {
+    this.robot.mouseMove(position);
+  }
+
+  @Override
+  public void mousePress(
+    final MouseButton button)
+  {
+    this.robot.mousePress(button);
+  }
+
+  @Override
+  public void mouseRelease(
+    final MouseButton button)
+  {
+    this.robot.mouseRelease(button);
+  }
+
+  @Override
+  public void keyPress(
+    final KeyCode code)
+  {
+    this.robot.keyPress(code);
+  }
+
+  @Override
+  public void keyRelease(
+    final KeyCode code)
+  {
+    this.robot.keyRelease(code);
+  }
+
+  @Override
+  public void keyType(
+    final KeyCode code)
+  {
+    this.robot.keyType(code);
+  }
+
+  @Override
+  public WritableImage screenCapture(
+    final Rectangle2D bounds)
+  {
+    return this.robot.getScreenCapture(null, bounds);
+  }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.api.XCRobotBackendType;
+import com.io7m.xoanon.commander.api.XCRobotBackends;
+import javafx.event.Event;
+import javafx.event.EventTarget;
+import javafx.event.EventType;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.PickResult;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * <p>A backend that constructs mouse and keyboard events and fires them
+ * directly at nodes on the JavaFX application thread.</p>
+ *
+ * <p>Mouse events are delivered to the topmost node under the (virtual)
+ * pointer position in the topmost window containing that position. Key events
+ * are delivered to the focus owner of the scene that most recently received
+ * mouse events or, if no such scene exists, the scene of the focused window.
+ * Because events never pass through the windowing system, window focus and the
+ * real pointer position are irrelevant.</p>
+ *
+ * <p>Screen captures are produced by taking a snapshot of the scene of the
+ * window containing the requested area, and so do not include any window
+ * decorations or overlapping windows.</p>
+ */
+
+public final class XCRobotBackendSynthetic implements XCRobotBackendType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(XCRobotBackendSynthetic.class);
+
+  private static final long MULTI_CLICK_NANOS =
+    500_000_000L;
+  private static final double MULTI_CLICK_DISTANCE =
+    5.0;
+
+  private final Supplier<XCKeyMap> keyMap;
+  private XCKeyMap charactersSource;
+  private Map<XCKey, String> characters;
+  private final EnumSet<KeyCode> keysPressed;
+  private final EnumSet<MouseButton> buttonsPressed;
+  private Point2D position;
+  private Scene sceneLast;
+  private EventTarget pressTarget;
+  private Point2D pressPosition;
+  private MouseButton pressButton;
+  private long pressTime;
+  private int clickCount;
+
+  /**
+   * A backend that fires events directly at nodes.
+   *
+   * @param inKeyMap A supplier of the key map used to determine the
+   *                 characters produced by typed keys; the key map is
+   *                 obtained each time a key is typed
+   */
+
+  public XCRobotBackendSynthetic(
+    final Supplier<XCKeyMap> inKeyMap)
+  {
+    this.keyMap =
+      Objects.requireNonNull(inKeyMap, "keyMap");
+    this.charactersSource = null;
+    this.characters = Map.of();
+
+    this.keysPressed = EnumSet.noneOf(KeyCode.class);
+    this.buttonsPressed = EnumSet.noneOf(MouseButton.class);
+    this.position = Point2D.ZERO;
+    this.pressPosition = Point2D.ZERO;
+    this.pressButton = MouseButton.NONE;
+  }
+
+  private static Window windowAt(
+    final Point2D screen)
+  {
+    final List<Window> windows = Window.getWindows();
+    Window result = null;
+    for (final var window : windows) {
+      if (!window.isShowing() || window.getScene() == null) {
+        continue;
+      }
+
+      final var inside =
+        screen.getX() >= window.getX()
+        && screen.getY() >= window.getY()
+        && screen.getX() < window.getX() + window.getWidth()
+        && screen.getY() < window.getY() + window.getHeight();
+
+      if (inside) {
+        if (window.isFocused()) {
+          return window;
+        }
+        result = window;
+      }
+    }
+    return result;
+  }
+
+  private static Node pick(
+    final Node node,
+    final double sceneX,
+    final double sceneY)
+  {
+    if (!node.isVisible() || node.isMouseTransparent() || node.isDisabled()) {
+      return null;
+    }
+
+    if (node instanceof final Parent parent) {
+      final var children = parent.getChildrenUnmodifiable();
+      for (int index = children.size() - 1; index >= 0; --index) {
+        final var result = pick(children.get(index), sceneX, sceneY);
+        if (result != null) {
+          return result;
+        }
+      }
+    }
+
+    final var local = node.sceneToLocal(sceneX, sceneY);
+    if (local != null && node.contains(local)) {
+      return node;
+    }
+    return null;
+  }
+
+  private static Scene focusedScene()
+  {
+    for (final var window : Window.getWindows()) {
+      if (window.isShowing() && window.isFocused()) {
+        return window.getScene();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String name()
+  {
+    return XCRobotBackends.SYNTHETIC;
+  }
+
+  @Override
+  public boolean requiresWindowFocus()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean isSynchronous()
+  {
+    return true;
+  }
+
+  @Override
+  public Point2D mousePosition()
+  {
+    return this.position;
+  }
+
+  @Override
+  public void mouseMove(
+    final Point2D newPosition)
+  {
+    this.position = Objects.requireNonNull(newPosition, "position");
+
+    final EventType<MouseEvent> type;
+    if (this.buttonsPressed.isEmpty()) {
+      type = MouseEvent.MOUSE_MOVED;
+    } else {
+      type = MouseEvent.MOUSE_DRAGGED;
+    }
+    this.fireMouse(type, MouseButton.NONE, 0);
+  }
+
+  @Override
+  public void mousePress(
+    final MouseButton button)
+  {
+    final var now = System.nanoTime();
+    final var target = this.targetAtPointer();
+
+    final var repeated =
+      button == this.pressButton
+      && Objects.equals(target, this.pressTarget)
+      && now - this.pressTime < MULTI_CLICK_NANOS
+      && this.position.distance(this.pressPosition) < MULTI_CLICK_DISTANCE;
+
+    this.clickCount = repeated ? this.clickCount + 1 : 1;
+    this.pressTarget = target;
+    this.pressPosition = this.position;
+    this.pressButton = button;
+    this.pressTime = now;
+
+    this.buttonsPressed.add(button);
+    this.fireMouse(MouseEvent.MOUSE_PRESSED, button, this.clickCount);
+  }
+
+  @Override
+  public void mouseRelease(
+    final MouseButton button)
+  {
+    if (!this.buttonsPressed.remove(button)) {
+      return;
+    }
+
+    final var target = this.targetAtPointer();
+    this.fireMouse(MouseEvent.MOUSE_RELEASED, button, this.clickCount);
+
+    if (Objects.equals(target, this.pressTarget)) {
+      this.fireMouse(MouseEvent.MOUSE_CLICKED, button, this.clickCount);
+    }
+  }
+
+  @Override
+  public void keyPress(
+    final KeyCode code)
+  {
+    this.keysPressed.add(code);
+    this.fireKey(KeyEvent.KEY_PRESSED, code);
+  }
+
+  @Override
+  public void keyRelease(
+    final KeyCode code)
+  {
+    if (!this.keysPressed.remove(code)) {
+      return;
+    }
+    this.fireKey(KeyEvent.KEY_RELEASED, code);
+  }
+
+  @Override
+  public void keyType(
+    final KeyCode code)
+  {
+    this.keyPress(code);
+    this.fireTyped(code);
+    this.keyRelease(code);
+  }
+
+  private EventTarget targetAtPointer()
+  {
+    final var window = windowAt(this.position);
+    if (window == null) {
+      return null;
+    }
+
+    final var scene = window.getScene();
+    final var sceneX = this.position.getX() - window.getX() - scene.getX();
+    final var sceneY = this.position.getY() - window.getY() - scene.getY();
+    final var root = scene.getRoot();
+    if (root != null) {
+      final var node = pick(root, sceneX, sceneY);
+      if (node != null) {
+        return node;
+      }
+    }
+    return scene;
+  }
+
+  private void fireMouse(
+    final EventType<MouseEvent> type,
+    final MouseButton button,
+    final int clicks)
+  {
+    final var window = windowAt(this.position);
+    if (window == null) {
+      LOG.trace("no window at {}", this.position);
+      return;
+    }
+
+    final var scene = window.getScene();
+    this.sceneLast = scene;
+
+    final var sceneX = this.position.getX() - window.getX() - scene.getX();
+    final var sceneY = this.position.getY() - window.getY() - scene.getY();
+    final var target = this.targetAtPointer();
+    final var node = target instanceof final Node n ? n : null;
+
+    final var event =
+      new MouseEvent(
+        type,
+        sceneX,
+        sceneY,
+        this.position.getX(),
+        this.position.getY(),
+        button,
+        clicks,
+        this.keysPressed.contains(KeyCode.SHIFT),
+        this.keysPressed.contains(KeyCode.CONTROL),
+        this.keysPressed.contains(KeyCode.ALT),
+        this.keysPressed.contains(KeyCode.META),
+        this.buttonsPressed.contains(MouseButton.PRIMARY),
+        this.buttonsPressed.contains(MouseButton.MIDDLE),
+        this.buttonsPressed.contains(MouseButton.SECONDARY),
+        false,
+        false,
+        this.position.distance(this.pressPosition) < MULTI_CLICK_DISTANCE,
+        new PickResult(node, sceneX, sceneY)
+      );
+
+    LOG.trace("fire {} -> {}", type, target);
+    Event.fireEvent(target, event);
+  }
+
+  private EventTarget keyTarget()
+  {
+    var scene = this.sceneLast;
+    if (scene == null || scene.getWindow() == null
+        || !scene.getWindow().isShowing()) {
+      scene = focusedScene();
+    }
+    if (scene == null) {
+      return null;
+    }
+
+    final var owner = scene.getFocusOwner();
+    if (owner != null) {
+      return owner;
+    }
+    if (scene.getRoot() != null) {
+      return scene.getRoot();
+    }
+    return scene;
+  }
+
+  private void fireKey(
+    final EventType<KeyEvent> type,
+    final KeyCode code)
+  {
+    final var target = this.keyTarget();
+    if (target == null) {
+      LOG.trace("no target for key {}", code);
+      return;
+    }
+
+    final var event =
+      new KeyEvent(
+        type,
+        KeyEvent.CHAR_UNDEFINED,
+        code.getChar(),
+        code,
+        this.keysPressed.contains(KeyCode.SHIFT),
+        this.keysPressed.contains(KeyCode.CONTROL),
+        this.keysPressed.contains(KeyCode.ALT),
+        this.keysPressed.contains(KeyCode.META)
+      );
+
+    LOG.trace("fire {} {} -> {}", type, code, target);
+    Event.fireEvent(target, event);
+  }
+
+  /*
+   * The key map is replaced (rather than modified) whenever characters are
+   * probed, so the reverse mapping is only rebuilt when the key map is a
+   * different instance from the one it was last built from.
+   */
+
+  private Map<XCKey, String> characters()
+  {
+    final var current = this.keyMap.get();
+    if (current != this.charactersSource) {
+      final var keys = current.keys();
+      final var results = new HashMap<XCKey, String>(keys.size());
+      for (final var entry : keys.entrySet()) {
+        results.put(entry.getValue(), entry.getKey().toString());
+      }
+      this.characters = results;
+      this.charactersSource = current;
+    }
+    return this.characters;
+  }
+
+  private void fireTyped(
+    final KeyCode code)
+  {
+    final var shift = this.keysPressed.contains(KeyCode.SHIFT);
+    final var control = this.keysPressed.contains(KeyCode.CONTROL);
+    final var alt = this.keysPressed.contains(KeyCode.ALT);
+
+    final var character =
+      this.characters().get(new XCKey(code, shift, alt, control));
+    if (character == null) {
+      return;
+    }
+
+    final var target = this.keyTarget();
+    if (target == null) {
+      return;
+    }
+
+    final var event =
+      new KeyEvent(
+        KeyEvent.KEY_TYPED,
+        character,
+        "",
+        KeyCode.UNDEFINED,
+        shift,
+        control,
+        alt,
+        this.keysPressed.contains(KeyCode.META)
+      );
+
+    Event.fireEvent(target, event);
+  }
+
+  @Override
+  public WritableImage screenCapture(
+    final Rectangle2D bounds)
+  {
+    final var width =
+      Math.max(1, (int) Math.ceil(bounds.getWidth()));
+    final var height =
+      Math.max(1, (int) Math.ceil(bounds.getHeight()));
+
+    final var window =
+      windowAt(new Point2D(bounds.getMinX(), bounds.getMinY()));
+    if (window == null) {
+      return new WritableImage(width, height);
+    }
+
+    final var scene = window.getScene();
+    final var snapshot = scene.snapshot(null);
+    final var x0 =
+      (int) Math.floor(bounds.getMinX() - window.getX() - scene.getX());
+    final var y0 =
+      (int) Math.floor(bounds.getMinY() - window.getY() - scene.getY());
+
+    final var result = new WritableImage(width, height);
+    final var reader = snapshot.getPixelReader();
+    final var writer = result.getPixelWriter();
+    final var snapW = (int) snapshot.getWidth();
+    final var snapH = (int) snapshot.getHeight();
+
+    for (int y = 0; y < height; ++y) {
+      final var sy = y0 + y;
+      if (sy < 0 || sy >= snapH) {
+        continue;
+      }
+      for (int x = 0; x < width; ++x) {
+        final var sx = x0 + x;
+        if (sx < 0 || sx >= snapW) {
+          continue;
+        }
+        writer.setArgb(x, y, reader.getArgb(sx, sy));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Labeled;
+import javafx.stage.Window;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * <p>A watcher that reports structural changes to the scene graphs of all
+ * windows.</p>
+ *
+ * <p>The watcher listens to {@link Window#getWindows()}, to the
+ * {@code showing} and {@code scene} properties of every window, to the root
+ * of every scene, and to the children of every parent. It reports each
+ * subtree that becomes attached to a showing window, and each subtree that
+ * stops being attached to a showing window.</p>
+ *
+ * <p>The watcher also listens to the ID, the style classes, and (for
+ * {@link Labeled} nodes) the text of every node in a watched scene, and
+ * reports each node whose ID, style classes, or text changes, so that callers
+ * need only re-examine that node. No other properties are observed; a caller
+ * that matches nodes on anything else (such as an arbitrary predicate) sees
+ * the effects of changes to it only when the node is next attached.</p>
+ *
+ * <p>All methods must be called on the JavaFX application thread.</p>
+ */
+
+public final class XCSceneGraphWatcher
+{
+  private final Consumer<Node> onAttached;
+  private final Consumer<Node> onDetached;
+  private final Consumer<Node> onChanged;
+  private final Set<Window> windows;
+  private final Set<Scene> scenes;
+  private final Map<Node, NodeListeners> nodes;
+  private final ListChangeListener<Window> onWindowsChanged;
+  private final ChangeListener<Boolean> onShowingChanged;
+  private final ChangeListener<Scene> onSceneChanged;
+  private final ChangeListener<Parent> onRootChanged;
+  private final ListChangeListener<Node> onChildrenChanged;
+  private boolean stopped;
+
+  /**
+   * A watcher that reports structural changes to the scene graphs of all
+   * windows.
+   *
+   * @param inOnAttached Called with each subtree that becomes attached to a
+   *                     showing window
+   * @param inOnDetached Called with each subtree that stops being attached
+   *                     to a showing window
+   * @param inOnChanged  Called with each watched node whose ID, style
+   *                     classes, or text changes
+   */
+
+  public XCSceneGraphWatcher(
+    final Consumer<Node> inOnAttached,
+    final Consumer<Node> inOnDetached,
+    final Consumer<Node> inOnChanged)
+  {
+    this.onAttached =
+      Objects.requireNonNull(inOnAttached, "onAttached");
+    this.onDetached =
+      Objects.requireNonNull(inOnDetached, "onDetached");
+    this.onChanged =
+      Objects.requireNonNull(inOnChanged, "onChanged");
+
+    this.windows = identitySet();
+    this.scenes = identitySet();
+    this.nodes = new IdentityHashMap<>();
+
+    this.onWindowsChanged = this::windowsChanged;
+    this.onShowingChanged = (observable, wasShowing, isShowing) -> {
+      final var property = (ReadOnlyProperty<?>) observable;
+      final var window = (Window) property.getBean();
+      this.showingChanged(window, isShowing.booleanValue());
+    };
+    this.onSceneChanged = (observable, oldScene, newScene) -> {
+      this.sceneChanged(oldScene, newScene);
+    };
+    this.onRootChanged = (observable, oldRoot, newRoot) -> {
+      this.rootChanged(oldRoot, newRoot);
+    };
+    this.onChildrenChanged = this::childrenChanged;
+  }
+
+  private static <T> Set<T> identitySet()
+  {
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  private static boolean isShowing(
+    final Node node)
+  {
+    final var scene = node.getScene();
+    if (scene == null) {
+      return false;
+    }
+    final var window = scene.getWindow();
+    return window != null && window.isShowing();
+  }
+
+  /**
+   * Start watching.
+   */
+
+  @XCOnFXThread
+  public void start()
+  {
+    final var all = Window.getWindows();
+    all.addListener(this.onWindowsChanged);
+    for (final var window : List.copyOf(all)) {
+      this.watchWindow(window);
+    }
+  }
+
+  /**
+   * Stop watching, and remove all listeners. No further changes are
+   * reported, even if the watcher is stopped from within a callback.
+   */
+
+  @XCOnFXThread
+  public void stop()
+  {
+    this.stopped = true;
+    Window.getWindows().removeListener(this.onWindowsChanged);
+
+    for (final var window : this.windows) {
+      window.showingProperty().removeListener(this.onShowingChanged);
+      window.sceneProperty().removeListener(this.onSceneChanged);
+    }
+    for (final var scene : this.scenes) {
+      scene.rootProperty().removeListener(this.onRootChanged);
+    }
+    for (final var entry : this.nodes.entrySet()) {
+      this.unlisten(entry.getKey(), entry.getValue());
+    }
+
+    this.windows.clear();
+    this.scenes.clear();
+    this.nodes.clear();
+  }
+
+  private void watchWindow(
+    final Window window)
+  {
+    if (this.stopped) {
+      return;
+    }
+
+    if (!this.windows.add(window)) {
+      return;
+    }
+
+    window.showingProperty().addListener(this.onShowingChanged);
+    window.sceneProperty().addListener(this.onSceneChanged);
+
+    final var scene = window.getScene();
+    if (scene != null) {
+      this.watchScene(scene);
+    }
+  }
+
+  private void unwatchWindow(
+    final Window window)
+  {
+    if (!this.windows.remove(window)) {
+      return;
+    }
+
+    window.showingProperty().removeListener(this.onShowingChanged);
+    window.sceneProperty().removeListener(this.onSceneChanged);
+
+    final var scene = window.getScene();
+    if (scene != null) {
+      this.unwatchScene(scene);
+    }
+  }
+
+  private void watchScene(
+    final Scene scene)
+  {
+    if (this.stopped) {
+      return;
+    }
+
+    if (!this.scenes.add(scene)) {
+      return;
+    }
+
+    scene.rootProperty().addListener(this.onRootChanged);
+    final var root = scene.getRoot();
+    if (root != null) {
+      this.watchSubtree(root);
+    }
+  }
+
+  private void unwatchScene(
+    final Scene scene)
+  {
+    if (!this.scenes.remove(scene)) {
+      return;
+    }
+
+    scene.rootProperty().removeListener(this.onRootChanged);
+    final var root = scene.getRoot();
+    if (root != null) {
+      this.unwatchSubtree(root);
+    }
+  }
+
+  private void watchSubtree(
+    final Node root)
+  {
+    if (this.stopped) {
+      return;
+    }
+
+    final var stack = new ArrayDeque<Node>();
+    stack.push(root);
+
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      if (!this.nodes.containsKey(node)) {
+        this.nodes.put(node, this.listen(node));
+      }
+      if (node instanceof final Parent parent) {
+        for (final var child : parent.getChildrenUnmodifiable()) {
+          stack.push(child);
+        }
+      }
+    }
+  }
+
+  private void unwatchSubtree(
+    final Node root)
+  {
+    final var stack = new ArrayDeque<Node>();
+    stack.push(root);
+
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      final var listeners = this.nodes.remove(node);
+      if (listeners != null) {
+        this.unlisten(node, listeners);
+      }
+      if (node instanceof final Parent parent) {
+        for (final var child : parent.getChildrenUnmodifiable()) {
+          stack.push(child);
+        }
+      }
+    }
+  }
+
+  private NodeListeners listen(
+    final Node node)
+  {
+    final var listeners = new NodeListeners(node);
+    node.idProperty().addListener(listeners.onPropertyChanged);
+    node.getStyleClass().addListener(listeners.onClassesChanged);
+    if (node instanceof final Labeled labeled) {
+      labeled.textProperty().addListener(listeners.onPropertyChanged);
+    }
+    if (node instanceof final Parent parent) {
+      parent.getChildrenUnmodifiable().addListener(this.onChildrenChanged);
+    }
+    return listeners;
+  }
+
+  private void unlisten(
+    final Node node,
+    final NodeListeners listeners)
+  {
+    node.idProperty().removeListener(listeners.onPropertyChanged);
+    node.getStyleClass().removeListener(listeners.onClassesChanged);
+    if (node instanceof final Labeled labeled) {
+      labeled.textProperty().removeListener(listeners.onPropertyChanged);
+    }
+    if (node instanceof final Parent parent) {
+      parent.getChildrenUnmodifiable().removeListener(this.onChildrenChanged);
+    }
+  }
+
+  private void attached(
+    final Node root)
+  {
+    if (!this.stopped) {
+      this.onAttached.accept(root);
+    }
+  }
+
+  private void detached(
+    final Node root)
+  {
+    if (!this.stopped) {
+      this.onDetached.accept(root);
+    }
+  }
+
+  private void changed(
+    final Node node)
+  {
+    if (!this.stopped && isShowing(node)) {
+      this.onChanged.accept(node);
+    }
+  }
+
+  private void windowsChanged(
+    final ListChangeListener.Change<? extends Window> change)
+  {
+    while (change.next()) {
+      for (final var window : change.getRemoved()) {
+        this.unwatchWindow(window);
+        final var scene = window.getScene();
+        if (scene != null && scene.getRoot() != null) {
+          this.detached(scene.getRoot());
+        }
+      }
+      for (final var window : change.getAddedSubList()) {
+        this.watchWindow(window);
+        final var scene = window.getScene();
+        if (window.isShowing() && scene != null && scene.getRoot() != null) {
+          this.attached(scene.getRoot());
+        }
+      }
+    }
+  }
+
+  private void showingChanged(
+    final Window window,
+    final boolean showing)
+  {
+    final var scene = window.getScene();
+    if (scene == null || scene.getRoot() == null) {
+      return;
+    }
+
+    if (showing) {
+      this.attached(scene.getRoot());
+    } else {
+      this.detached(scene.getRoot());
+    }
+  }
+
+  private void sceneChanged(
+    final Scene oldScene,
+    final Scene newScene)
+  {
+    if (oldScene != null) {
+      this.unwatchScene(oldScene);
+      if (oldScene.getRoot() != null) {
+        this.detached(oldScene.getRoot());
+      }
+    }
+
+    if (newScene != null) {
+      this.watchScene(newScene);
+      final var root = newScene.getRoot();
+      if (root != null && isShowing(root)) {
+        this.attached(root);
+      }
+    }
+  }
+
+  private void rootChanged(
+    final Parent oldRoot,
+    final Parent newRoot)
+  {
+    if (oldRoot != null) {
+      this.unwatchSubtree(oldRoot);
+      this.detached(oldRoot);
+    }
+
+    if (newRoot != null) {
+      this.watchSubtree(newRoot);
+      if (isShowing(newRoot)) {
+        this.attached(newRoot);
+      }
+    }
+  }
+
+  private void childrenChanged(
+    final ListChangeListener.Change<? extends Node> change)
+  {
+    while (change.next()) {
+      for (final var removed : change.getRemoved()) {
+        this.unwatchSubtree(removed);
+        this.detached(removed);
+      }
+      for (final var added : change.getAddedSubList()) {
+        this.watchSubtree(added);
+        if (isShowing(added)) {
+          this.attached(added);
+        }
+      }
+    }
+  }
+
+  /*
+   * The listeners installed on a single node. Change listeners (rather than
+   * invalidation listeners) are used for the ID and text so that every
+   * change is reported, whether or not anything reads the new values.
+   */
+
+  private final class NodeListeners
+  {
+    private final ChangeListener<Object> onPropertyChanged;
+    private final InvalidationListener onClassesChanged;
+
+    NodeListeners(
+      final Node node)
+    {
+      this.onPropertyChanged = (observable, oldValue, newValue) -> {
+        XCSceneGraphWatcher.this.changed(node);
+      };
+      this.onClassesChanged = observable -> {
+        XCSceneGraphWatcher.this.changed(node);
+      };
+    }
+  }
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Labeled;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>An index over the nodes of a single scene.</p>
+ *
+ * <p>The index maps IDs, style classes, node types, and the text of
+ * {@link Labeled} nodes to the nodes that currently have them. The index is
+ * built with a single traversal when it is created, and is then kept current
+ * by listeners on the children, ID, style classes, and text of every indexed
+ * node, and on the root of the scene. Candidate nodes are returned in the
+ * same depth-first order in which an unindexed query visits them, so that an
+ * indexed query returns the same first match as an unindexed one.</p>
+ *
+ * <p>All methods must be called on the JavaFX application thread.</p>
+ */
+
+public final class XCSceneIndex
+{
+  private final XCSceneIndexRegistry registry;
+  private final Scene scene;
+  private final Map<Node, Registration> registrations;
+  private final Map<String, Set<Node>> byId;
+  private final Map<String, Set<Node>> byClass;
+  private final Map<String, Set<Node>> byText;
+  private final Map<Class<?>, Set<Node>> byType;
+  private final ChangeListener<Parent> onRootChanged;
+
+  /**
+   * An index over the nodes of a single scene.
+   *
+   * @param inRegistry The registry that owns the index
+   * @param inScene    The scene
+   */
+
+  @XCOnFXThread
+  XCSceneIndex(
+    final XCSceneIndexRegistry inRegistry,
+    final Scene inScene)
+  {
+    this.registry =
+      Objects.requireNonNull(inRegistry, "registry");
+    this.scene =
+      Objects.requireNonNull(inScene, "scene");
+
+    this.registrations = new LinkedHashMap<>();
+    this.byId = new HashMap<>();
+    this.byClass = new HashMap<>();
+    this.byText = new HashMap<>();
+    this.byType = new HashMap<>();
+
+    this.onRootChanged = (observable, oldRoot, newRoot) -> {
+      final var timeThen = System.nanoTime();
+      if (oldRoot != null) {
+        this.removeSubtree(oldRoot);
+      }
+      if (newRoot != null) {
+        this.addSubtree(newRoot);
+      }
+      this.registry.recordUpdate(System.nanoTime() - timeThen);
+    };
+
+    this.scene.rootProperty().addListener(this.onRootChanged);
+    final var root = this.scene.getRoot();
+    if (root != null) {
+      this.addSubtree(root);
+    }
+  }
+
+  private static <K> int put(
+    final Map<K, Set<Node>> map,
+    final K key,
+    final Node node)
+  {
+    if (key == null) {
+      return 0;
+    }
+    return map.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(node)
+      ? 1 : 0;
+  }
+
+  private static <K> int take(
+    final Map<K, Set<Node>> map,
+    final K key,
+    final Node node)
+  {
+    if (key == null) {
+      return 0;
+    }
+
+    final var nodes = map.get(key);
+    if (nodes == null) {
+      return 0;
+    }
+
+    final var removed = nodes.remove(node);
+    if (nodes.isEmpty()) {
+      map.remove(key);
+    }
+    return removed ? 1 : 0;
+  }
+
+  /**
+   * @return The indexed scene
+   */
+
+  public Scene scene()
+  {
+    return this.scene;
+  }
+
+  /**
+   * Find the smallest set of indexed nodes that could possibly match the
+   * given query. The query must still be applied to each returned node. The
+   * nodes are returned in depth-first scene graph order.
+   *
+   * @param query The query
+   *
+   * @return The candidate nodes
+   */
+
+  @XCOnFXThread
+  public List<Node> candidates(
+    final XCNodeQuery<?> query)
+  {
+    if (query.type() == Node.class
+        && query.id().isEmpty()
+        && query.text().isEmpty()
+        && query.styleClasses().isEmpty()) {
+      return this.allInSceneOrder();
+    }
+    return inSceneOrder(this.candidatesUnordered(query));
+  }
+
+  @XCOnFXThread
+  private Collection<Node> candidatesUnordered(
+    final XCNodeQuery<?> query)
+  {
+    final var id = query.id();
+    if (id.isPresent()) {
+      return this.byId.getOrDefault(id.get(), Set.of());
+    }
+
+    final var text = query.text();
+    if (text.isPresent()) {
+      return this.byText.getOrDefault(text.get(), Set.of());
+    }
+
+    final var styleClasses = query.styleClasses();
+    if (!styleClasses.isEmpty()) {
+      Set<Node> smallest = null;
+      for (final var styleClass : styleClasses) {
+        final var nodes = this.byClass.getOrDefault(styleClass, Set.of());
+        if (smallest == null || nodes.size() < smallest.size()) {
+          smallest = nodes;
+        }
+      }
+      return smallest;
+    }
+
+    final var type = query.type();
+    final var results = new ArrayList<Node>();
+    for (final var entry : this.byType.entrySet()) {
+      if (type.isAssignableFrom(entry.getKey())) {
+        results.addAll(entry.getValue());
+      }
+    }
+    return results;
+  }
+
+  /*
+   * Every node in the scene is a candidate, and so the scene graph is simply
+   * traversed in order.
+   */
+
+  @XCOnFXThread
+  private List<Node> allInSceneOrder()
+  {
+    final var root = this.scene.getRoot();
+    if (root == null) {
+      return List.of();
+    }
+
+    final var results = new ArrayList<Node>(this.registrations.size());
+    final var stack = new ArrayDeque<Node>();
+    stack.push(root);
+
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      results.add(node);
+      if (node instanceof final Parent parent) {
+        final var children = parent.getChildrenUnmodifiable();
+        for (int index = children.size() - 1; index >= 0; --index) {
+          stack.push(children.get(index));
+        }
+      }
+    }
+    return results;
+  }
+
+  /*
+   * Sort the given nodes into depth-first scene graph order. Each node is
+   * assigned the path of child indices leading to it from the root, and the
+   * paths are compared lexicographically; a parent's path is a prefix of its
+   * children's paths, and so it sorts before them. The child indices of each
+   * parent are computed at most once.
+   */
+
+  @XCOnFXThread
+  private static List<Node> inSceneOrder(
+    final Collection<Node> nodes)
+  {
+    if (nodes.size() <= 1) {
+      return List.copyOf(nodes);
+    }
+
+    final var childIndices =
+      new IdentityHashMap<Parent, Map<Node, Integer>>();
+    final var paths =
+      new IdentityHashMap<Node, int[]>(nodes.size());
+
+    for (final var node : nodes) {
+      paths.put(node, pathOf(node, childIndices));
+    }
+
+    final var results = new ArrayList<>(nodes);
+    results.sort((x, y) -> Arrays.compare(paths.get(x), paths.get(y)));
+    return results;
+  }
+
+  private static int[] pathOf(
+    final Node node,
+    final Map<Parent, Map<Node, Integer>> childIndices)
+  {
+    final var path = new ArrayList<Integer>();
+    var current = node;
+    var parent = current.getParent();
+    while (parent != null) {
+      final var indices =
+        childIndices.computeIfAbsent(parent, XCSceneIndex::indicesOf);
+      path.add(indices.getOrDefault(current, Integer.valueOf(-1)));
+      current = parent;
+      parent = current.getParent();
+    }
+
+    final var size = path.size();
+    final var result = new int[size];
+    for (int index = 0; index < size; ++index) {
+      result[index] = path.get(size - 1 - index).intValue();
+    }
+    return result;
+  }
+
+  private static Map<Node, Integer> indicesOf(
+    final Parent parent)
+  {
+    final var children = parent.getChildrenUnmodifiable();
+    final var indices = new IdentityHashMap<Node, Integer>(children.size());
+    for (int index = 0; index < children.size(); ++index) {
+      indices.put(children.get(index), Integer.valueOf(index));
+    }
+    return indices;
+  }
+
+  /**
+   * Remove all listeners installed by the index, and discard its contents.
+   */
+
+  @XCOnFXThread
+  public void dispose()
+  {
+    this.scene.rootProperty().removeListener(this.onRootChanged);
+    for (final var registration : this.registrations.values()) {
+      this.unregister(registration);
+    }
+    this.registrations.clear();
+  }
+
+  @XCOnFXThread
+  private void addSubtree(
+    final Node root)
+  {
+    final var stack = new ArrayDeque<Node>();
+    stack.push(root);
+
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      if (this.registrations.containsKey(node)) {
+        continue;
+      }
+
+      this.registrations.put(node, this.register(node));
+      if (node instanceof final Parent parent) {
+        final var children = parent.getChildrenUnmodifiable();
+        for (int index = children.size() - 1; index >= 0; --index) {
+          stack.push(children.get(index));
+        }
+      }
+    }
+  }
+
+  @XCOnFXThread
+  private void removeSubtree(
+    final Node root)
+  {
+    final var stack = new ArrayDeque<Node>();
+    stack.push(root);
+
+    while (!stack.isEmpty()) {
+      final var node = stack.pop();
+      final var registration = this.registrations.remove(node);
+      if (registration == null) {
+        continue;
+      }
+
+      this.unregister(registration);
+      if (node instanceof final Parent parent) {
+        for (final var child : parent.getChildrenUnmodifiable()) {
+          stack.push(child);
+        }
+      }
+    }
+  }
+
+  @XCOnFXThread
+  private Registration register(
+    final Node node)
+  {
+    final var registration = new Registration(node);
+
+    var entries = 0;
+    entries += put(this.byType, node.getClass(), node);
+    entries += put(this.byId, registration.id, node);
+    for (final var styleClass : registration.classes) {
+      entries += put(this.byClass, styleClass, node);
+    }
+    entries += put(this.byText, registration.text, node);
+
+    var listeners = 2;
+    node.idProperty().addListener(registration.onIdChanged);
+    node.getStyleClass().addListener(registration.onClassesChanged);
+    if (node instanceof final Labeled labeled) {
+      labeled.textProperty().addListener(registration.onTextChanged);
+      ++listeners;
+    }
+    if (node instanceof final Parent parent) {
+      parent.getChildrenUnmodifiable()
+        .addListener(registration.onChildrenChanged);
+      ++listeners;
+    }
+
+    this.registry.recordNodeAdded(entries, listeners);
+    return registration;
+  }
+
+  @XCOnFXThread
+  private void unregister(
+    final Registration registration)
+  {
+    final var node = registration.node;
+
+    var entries = 0;
+    entries += take(this.byType, node.getClass(), node);
+    entries += take(this.byId, registration.id, node);
+    for (final var styleClass : registration.classes) {
+      entries += take(this.byClass, styleClass, node);
+    }
+    entries += take(this.byText, registration.text, node);
+
+    var listeners = 2;
+    node.idProperty().removeListener(registration.onIdChanged);
+    node.getStyleClass().removeListener(registration.onClassesChanged);
+    if (node instanceof final Labeled labeled) {
+      labeled.textProperty().removeListener(registration.onTextChanged);
+      ++listeners;
+    }
+    if (node instanceof final Parent parent) {
+      parent.getChildrenUnmodifiable()
+        .removeListener(registration.onChildrenChanged);
+      ++listeners;
+    }
+
+    this.registry.recordNodeRemoved(entries, listeners);
+  }
+
+  @XCOnFXThread
+  private void onIdChanged(
+    final Registration registration)
+  {
+    final var timeThen = System.nanoTime();
+    final var node = registration.node;
+
+    var delta = 0;
+    delta -= take(this.byId, registration.id, node);
+    registration.id = node.getId();
+    delta += put(this.byId, registration.id, node);
+
+    this.registry.recordEntries(delta);
+    this.registry.recordUpdate(System.nanoTime() - timeThen);
+  }
+
+  @XCOnFXThread
+  private void onClassesChanged(
+    final Registration registration)
+  {
+    final var timeThen = System.nanoTime();
+    final var node = registration.node;
+    final var oldClasses = registration.classes;
+    final var newClasses = new HashSet<>(node.getStyleClass());
+
+    var delta = 0;
+    for (final var styleClass : oldClasses) {
+      if (!newClasses.contains(styleClass)) {
+        delta -= take(this.byClass, styleClass, node);
+      }
+    }
+    for (final var styleClass : newClasses) {
+      if (!oldClasses.contains(styleClass)) {
+        delta += put(this.byClass, styleClass, node);
+      }
+    }
+    registration.classes = newClasses;
+
+    this.registry.recordEntries(delta);
+    this.registry.recordUpdate(System.nanoTime() - timeThen);
+  }
+
+  @XCOnFXThread
+  private void onTextChanged(
+    final Registration registration)
+  {
+    final var timeThen = System.nanoTime();
+    final var node = registration.node;
+
+    var delta = 0;
+    delta -= take(this.byText, registration.text, node);
+    registration.text = ((Labeled) node).getText();
+    delta += put(this.byText, registration.text, node);
+
+    this.registry.recordEntries(delta);
+    this.registry.recordUpdate(System.nanoTime() - timeThen);
+  }
+
+  @XCOnFXThread
+  private void onChildrenChanged(
+    final ListChangeListener.Change<? extends Node> change)
+  {
+    final var timeThen = System.nanoTime();
+
+    /*
+     * A node that is moved to another parent in the same scene may be
+     * reported as added to its new parent before it is reported as removed
+     * from its old parent. The addition is ignored because the node is
+     * already registered, and so the removal must also be ignored.
+     */
+
+    while (change.next()) {
+      for (final var removed : change.getRemoved()) {
+        if (!this.isInScene(removed)) {
+          this.removeSubtree(removed);
+        }
+      }
+      for (final var added : change.getAddedSubList()) {
+        this.addSubtree(added);
+      }
+    }
+
+    this.registry.recordUpdate(System.nanoTime() - timeThen);
+  }
+
+  @XCOnFXThread
+  private boolean isInScene(
+    final Node node)
+  {
+    var current = node;
+    while (current.getParent() != null) {
+      current = current.getParent();
+    }
+    return current == this.scene.getRoot();
+  }
+
+  private final class Registration
+  {
+    private final Node node;
+    private final InvalidationListener onIdChanged;
+    private final ListChangeListener<String> onClassesChanged;
+    private final InvalidationListener onTextChanged;
+    private final ListChangeListener<Node> onChildrenChanged;
+    private String id;
+    private Set<String> classes;
+    private String text;
+
+    Registration(
+      final Node inNode)
+    {
+      this.node = inNode;
+      this.id = inNode.getId();
+      this.classes = new HashSet<>(inNode.getStyleClass());
+      this.text = null;
+
+      if (inNode instanceof final Labeled labeled) {
+        this.text = labeled.getText();
+      }
+
+      this.onIdChanged =
+        observable -> XCSceneIndex.this.onIdChanged(this);
+      this.onClassesChanged =
+        change -> XCSceneIndex.this.onClassesChanged(this);
+      this.onTextChanged =
+        observable -> XCSceneIndex.this.onTextChanged(this);
+      this.onChildrenChanged =
+        XCSceneIndex.this::onChildrenChanged;
+    }
+  }
+}
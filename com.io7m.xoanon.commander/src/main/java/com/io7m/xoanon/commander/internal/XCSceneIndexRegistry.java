@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCOnAnyThread;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCSceneIndexStatistics;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>The set of scene indexes maintained by a robot.</p>
+ *
+ * <p>Indexing is disabled by default. When enabled, an index is created
+ * lazily for each scene the first time that scene is queried. Indexes for
+ * scenes whose windows are no longer showing are discarded when a window is
+ * hidden, when an index is created for a new scene (which covers windows
+ * whose scenes have been replaced), and on reset.</p>
+ */
+
+public final class XCSceneIndexRegistry
+{
+  private final Map<Scene, XCSceneIndex> indexes;
+  private final AtomicInteger scenes;
+  private final AtomicLong nodes;
+  private final AtomicLong entries;
+  private final AtomicLong listeners;
+  private final AtomicLong updates;
+  private final AtomicLong updateNanos;
+  private final AtomicLong queries;
+  private final ListChangeListener<Window> onWindowsChanged;
+  private volatile boolean enabled;
+  private boolean watching;
+
+  /**
+   * The set of scene indexes maintained by a robot.
+   */
+
+  public XCSceneIndexRegistry()
+  {
+    this.indexes = new HashMap<>();
+    this.scenes = new AtomicInteger();
+    this.nodes = new AtomicLong();
+    this.entries = new AtomicLong();
+    this.listeners = new AtomicLong();
+    this.updates = new AtomicLong();
+    this.updateNanos = new AtomicLong();
+    this.queries = new AtomicLong();
+    this.enabled = false;
+    this.watching = false;
+
+    this.onWindowsChanged = change -> {
+      while (change.next()) {
+        if (change.wasRemoved()) {
+          this.prune();
+          return;
+        }
+      }
+    };
+  }
+
+  /**
+   * @return {@code true} if indexing is enabled
+   */
+
+  @XCOnAnyThread
+  public boolean isEnabled()
+  {
+    return this.enabled;
+  }
+
+  /**
+   * Enable or disable indexing. Disabling indexing discards all existing
+   * indexes and removes their listeners.
+   *
+   * @param enable {@code true} if indexing should be enabled
+   */
+
+  @XCOnAnyThread
+  public void setEnabled(
+    final boolean enable)
+  {
+    this.enabled = enable;
+    if (enable) {
+      XCFXThread.runV(this::watchWindows);
+    } else {
+      XCFXThread.runV(() -> {
+        this.unwatchWindows();
+        this.clear();
+      });
+    }
+  }
+
+  @XCOnFXThread
+  private void watchWindows()
+  {
+    if (!this.watching) {
+      Window.getWindows().addListener(this.onWindowsChanged);
+      this.watching = true;
+    }
+  }
+
+  @XCOnFXThread
+  private void unwatchWindows()
+  {
+    if (this.watching) {
+      Window.getWindows().removeListener(this.onWindowsChanged);
+      this.watching = false;
+    }
+  }
+
+  /**
+   * Retrieve the index for the given scene, creating it if necessary.
+   *
+   * @param scene The scene
+   *
+   * @return The index
+   */
+
+  @XCOnFXThread
+  public XCSceneIndex indexFor(
+    final Scene scene)
+  {
+    var index = this.indexes.get(scene);
+    if (index == null) {
+      this.prune();
+      index = new XCSceneIndex(this, scene);
+      this.indexes.put(scene, index);
+      this.scenes.set(this.indexes.size());
+    }
+    return index;
+  }
+
+  /**
+   * @return The indexes for the scenes of all showing windows
+   */
+
+  @XCOnFXThread
+  public List<XCSceneIndex> indexesForShowingWindows()
+  {
+    final var results = new ArrayList<XCSceneIndex>();
+    for (final var window : Window.getWindows()) {
+      if (!window.isShowing()) {
+        continue;
+      }
+      final var scene = window.getScene();
+      if (scene != null) {
+        results.add(this.indexFor(scene));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Discard the indexes for all scenes that are no longer attached to a
+   * showing window.
+   */
+
+  @XCOnFXThread
+  public void prune()
+  {
+    final var iterator = this.indexes.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final var entry = iterator.next();
+      final var window = entry.getKey().getWindow();
+      if (window == null || !window.isShowing()) {
+        entry.getValue().dispose();
+        iterator.remove();
+      }
+    }
+    this.scenes.set(this.indexes.size());
+  }
+
+  /**
+   * Discard all indexes.
+   */
+
+  @XCOnFXThread
+  public void clear()
+  {
+    for (final var index : this.indexes.values()) {
+      index.dispose();
+    }
+    this.indexes.clear();
+    this.scenes.set(0);
+  }
+
+  void recordNodeAdded(
+    final int nodeEntries,
+    final int nodeListeners)
+  {
+    this.nodes.incrementAndGet();
+    this.entries.addAndGet(nodeEntries);
+    this.listeners.addAndGet(nodeListeners);
+  }
+
+  void recordNodeRemoved(
+    final int nodeEntries,
+    final int nodeListeners)
+  {
+    this.nodes.decrementAndGet();
+    this.entries.addAndGet(-nodeEntries);
+    this.listeners.addAndGet(-nodeListeners);
+  }
+
+  void recordEntries(
+    final int delta)
+  {
+    this.entries.addAndGet(delta);
+  }
+
+  void recordUpdate(
+    final long nanos)
+  {
+    this.updates.incrementAndGet();
+    this.updateNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Record that a query was answered from an index.
+   */
+
+  @XCOnAnyThread
+  public void recordQuery()
+  {
+    this.queries.incrementAndGet();
+  }
+
+  /**
+   * @return The current index statistics
+   */
+
+  @XCOnAnyThread
+  public XCSceneIndexStatistics statistics()
+  {
+    return new XCSceneIndexStatistics(
+      this.scenes.get(),
+      this.nodes.get(),
+      this.entries.get(),
+      this.listeners.get(),
+      this.updates.get(),
+      Duration.ofNanos(this.updateNanos.get()),
+      this.queries.get()
+    );
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import javafx.scene.control.Control;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TreeTableView;
+import javafx.scene.control.TreeView;
+import javafx.scene.control.skin.VirtualFlow;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Functions over the virtualized controls ({@link ListView},
+ * {@link TableView}, {@link TreeView}, and {@link TreeTableView}).
+ */
+
+public final class XCVirtualizedControls
+{
+  @SuppressWarnings("rawtypes")
+  private static final XCNodeQuery<VirtualFlow> FLOW =
+    XCNodeQuery.of(VirtualFlow.class).first();
+
+  private XCVirtualizedControls()
+  {
+
+  }
+
+  /**
+   * @param control The control
+   *
+   * @return The number of items (or visible rows) in the control
+   *
+   * @throws IllegalArgumentException If the control is not supported
+   */
+
+  @XCOnFXThread
+  public static int itemCount(
+    final Control control)
+  {
+    if (control instanceof final ListView<?> list) {
+      return list.getItems() == null ? 0 : list.getItems().size();
+    }
+    if (control instanceof final TableView<?> table) {
+      return table.getItems() == null ? 0 : table.getItems().size();
+    }
+    if (control instanceof final TreeView<?> tree) {
+      return tree.getExpandedItemCount();
+    }
+    if (control instanceof final TreeTableView<?> treeTable) {
+      return treeTable.getExpandedItemCount();
+    }
+    throw unsupported(control);
+  }
+
+  /**
+   * @param control The control
+   * @param index   The index
+   *
+   * @return The item at the given index; the value of the tree item for
+   * tree controls
+   *
+   * @throws IllegalArgumentException If the control is not supported
+   */
+
+  @XCOnFXThread
+  public static Object itemAt(
+    final Control control,
+    final int index)
+  {
+    if (control instanceof final ListView<?> list) {
+      return list.getItems().get(index);
+    }
+    if (control instanceof final TableView<?> table) {
+      return table.getItems().get(index);
+    }
+    if (control instanceof final TreeView<?> tree) {
+      final var item = tree.getTreeItem(index);
+      return item == null ? null : item.getValue();
+    }
+    if (control instanceof final TreeTableView<?> treeTable) {
+      final var item = treeTable.getTreeItem(index);
+      return item == null ? null : item.getValue();
+    }
+    throw unsupported(control);
+  }
+
+  /**
+   * @param control   The control
+   * @param predicate The predicate
+   *
+   * @return The index of the first item matching the predicate, or
+   * {@code -1}
+   */
+
+  @XCOnFXThread
+  public static int indexWhere(
+    final Control control,
+    final Predicate<Object> predicate)
+  {
+    final var count = itemCount(control);
+    for (int index = 0; index < count; ++index) {
+      if (predicate.test(itemAt(control, index))) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Scroll the control so that the given index is in view, and lay out the
+   * control so that the cell is created.
+   *
+   * @param control The control
+   * @param index   The index
+   *
+   * @throws IllegalArgumentException If the control is not supported
+   */
+
+  @XCOnFXThread
+  public static void scrollTo(
+    final Control control,
+    final int index)
+  {
+    if (control instanceof final ListView<?> list) {
+      list.scrollTo(index);
+    } else if (control instanceof final TableView<?> table) {
+      table.scrollTo(index);
+    } else if (control instanceof final TreeView<?> tree) {
+      tree.scrollTo(index);
+    } else if (control instanceof final TreeTableView<?> treeTable) {
+      treeTable.scrollTo(index);
+    } else {
+      throw unsupported(control);
+    }
+
+    control.applyCss();
+    control.layout();
+  }
+
+  /**
+   * @param control The control
+   * @param index   The index
+   *
+   * @return The cell currently displaying the given index, if the cell is
+   * in view
+   */
+
+  @XCOnFXThread
+  public static Optional<IndexedCell<?>> visibleCell(
+    final Control control,
+    final int index)
+  {
+    final var flows = XCNodeQueryEngine.execute(FLOW, control).nodes();
+    if (flows.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final IndexedCell<?> cell = flows.get(0).getVisibleCell(index);
+    if (cell == null || cell.isEmpty() || cell.getIndex() != index) {
+      return Optional.empty();
+    }
+    return Optional.of(cell);
+  }
+
+  private static IllegalArgumentException unsupported(
+    final Control control)
+  {
+    return new IllegalArgumentException(
+      "Control %s is not a supported virtualized control."
+        .formatted(control.getClass().getName())
+    );
+  }
+}
@@ -0,0 +1,800 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCIdleStatistics;
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCNodeQueryResult;
+import com.io7m.xoanon.commander.api.XCOnAnyThread;
+import com.io7m.xoanon.commander.api.XCOnFXThread;
+import com.io7m.xoanon.commander.api.XCPulseTimestamps;
+import com.io7m.xoanon.commander.api.XCWaitStatistics;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.concurrent.Worker;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>An engine that evaluates conditions on the JavaFX application thread.</p>
+ *
+ * <p>Rather than repeatedly submitting tasks to the JavaFX event queue, the
+ * engine runs a single {@link AnimationTimer} while (and only while) there are
+ * outstanding tasks, and evaluates each task once per pulse. Tasks may
+ * additionally be evaluated when any observables they watch are
+ * invalidated.</p>
+ */
+
+public final class XCWaitEngine
+{
+  /**
+   * The length of time for which no pulses may occur before the application
+   * is considered to be idle. This is three frames at the default JavaFX
+   * pulse rate of 60Hz.
+   */
+
+  public static final Duration IDLE_QUIET_PERIOD =
+    Duration.ofMillis(50L);
+
+  private static final Executor IDLE_CHECK_DELAY =
+    CompletableFuture.delayedExecutor(10L, TimeUnit.MILLISECONDS);
+
+  private final ArrayList<Task<?>> tasks;
+  private final AnimationTimer timer;
+  private boolean timerRunning;
+
+  /**
+   * An engine that evaluates conditions on the JavaFX application thread.
+   */
+
+  public XCWaitEngine()
+  {
+    this.tasks = new ArrayList<>();
+    this.timer = new AnimationTimer()
+    {
+      @Override
+      public void handle(
+        final long now)
+      {
+        XCWaitEngine.this.onPulse(now);
+      }
+    };
+  }
+
+  /**
+   * Wait until the given predicate returns {@code true}. The predicate is
+   * evaluated once when the task is registered, once per pulse, and whenever
+   * any of the given observables are invalidated. The returned future may be
+   * cancelled (or completed) by the caller in order to abandon the wait.
+   *
+   * @param observables The observables that can affect the predicate
+   * @param predicate   The predicate
+   *
+   * @return The wait in progress
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<XCWaitStatistics> waitUntil(
+    final List<? extends Observable> observables,
+    final BooleanSupplier predicate)
+  {
+    Objects.requireNonNull(observables, "observables");
+    Objects.requireNonNull(predicate, "predicate");
+
+    final var task =
+      new PredicateTask(List.copyOf(observables), predicate, true);
+
+    this.submit(task);
+    return task.future;
+  }
+
+  /**
+   * Wait until the given predicate returns {@code true}. The predicate is
+   * evaluated once when the task is registered, and then only when any of
+   * the given observables are invalidated. This is appropriate for
+   * conditions that depend solely on the given observables, and has the
+   * advantage of not causing any extra pulses.
+   *
+   * @param observables The observables that affect the predicate
+   * @param predicate   The predicate
+   *
+   * @return The wait in progress
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<XCWaitStatistics> waitUntilChanged(
+    final List<? extends Observable> observables,
+    final BooleanSupplier predicate)
+  {
+    Objects.requireNonNull(observables, "observables");
+    Objects.requireNonNull(predicate, "predicate");
+
+    final var task =
+      new PredicateTask(List.copyOf(observables), predicate, false);
+
+    this.submit(task);
+    return task.future;
+  }
+
+  /**
+   * Wait until the given window is showing and focused. The wait observes
+   * the window's {@code showing} and {@code focused} properties, and causes
+   * no extra pulses.
+   *
+   * @param window The window
+   *
+   * @return The wait in progress
+   *
+   * @see #waitUntilChanged(List, BooleanSupplier)
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<XCWaitStatistics> waitUntilFocused(
+    final Window window)
+  {
+    Objects.requireNonNull(window, "window");
+
+    return this.waitUntilChanged(
+      List.of(window.showingProperty(), window.focusedProperty()),
+      () -> window.isShowing() && window.isFocused()
+    );
+  }
+
+  /**
+   * Wait for the given number of pulses to occur.
+   *
+   * @param pulses The number of pulses
+   *
+   * @return The wait in progress
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<XCPulseTimestamps> waitForPulses(
+    final int pulses)
+  {
+    if (pulses <= 0) {
+      return CompletableFuture.completedFuture(
+        new XCPulseTimestamps(List.of()));
+    }
+
+    final var task = new PulseTask(pulses);
+    this.submit(task);
+    return task.future;
+  }
+
+  /**
+   * Wait until a node matching the given query is attached to the scene of
+   * a showing window. The query is executed once over all showing windows
+   * when the task is registered, then over each subtree that subsequently
+   * becomes attached to a showing window. An attached node whose ID, style
+   * classes, or text changes is checked again on its own; arbitrary
+   * predicates are only re-checked when nodes are attached. No pulses are
+   * requested.
+   *
+   * @param query The query
+   * @param <T>   The type of node
+   *
+   * @return The wait in progress
+   *
+   * @see XCSceneGraphWatcher
+   */
+
+  @XCOnAnyThread
+  public <T extends Node> CompletableFuture<T> awaitNode(
+    final XCNodeQuery<T> query)
+  {
+    Objects.requireNonNull(query, "query");
+
+    final var task = new NodeAppearTask<>(query.first());
+    this.submit(task);
+    return task.future;
+  }
+
+  /**
+   * Wait until no node matching the given query is attached to the scene of
+   * a showing window. The matching nodes are found once when the task is
+   * registered, and are then tracked as subtrees are attached and detached.
+   * An attached node whose ID, style classes, or text changes is checked
+   * again on its own; arbitrary predicates are only re-checked when nodes
+   * are attached. No pulses are requested.
+   *
+   * @param query The query
+   *
+   * @return The wait in progress
+   *
+   * @see XCSceneGraphWatcher
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<Void> awaitNodeGone(
+    final XCNodeQuery<?> query)
+  {
+    Objects.requireNonNull(query, "query");
+
+    final var task = new NodeGoneTask(query);
+    this.submit(task);
+    return task.future;
+  }
+
+  /**
+   * Wait until the application is idle. The application is idle when no
+   * functions submitted through {@link XCFXThread} are waiting to execute,
+   * the root of every showing scene has been laid out, none of the given
+   * workers are running, and no JavaFX pulse has occurred for
+   * {@link #IDLE_QUIET_PERIOD}. JavaFX only schedules pulses while an
+   * animation or animation timer is running, or while a scene has a pending
+   * CSS or layout pass. The task observes pulses using the scenes' pre-layout
+   * pulse listeners, and checks the other conditions from a timer that does
+   * not itself cause pulses. Consequently, the wait cannot settle while any
+   * pulse-driven wait is in progress on this engine.
+   *
+   * @param workers The workers that must not be running
+   *
+   * @return The wait in progress
+   */
+
+  @XCOnAnyThread
+  public CompletableFuture<XCIdleStatistics> waitForIdle(
+    final List<? extends Worker<?>> workers)
+  {
+    Objects.requireNonNull(workers, "workers");
+
+    final var task = new IdleTask(List.copyOf(workers));
+    this.submit(task);
+    return task.future;
+  }
+
+  private void submit(
+    final Task<?> task)
+  {
+    XCFXThread.runV(() -> this.taskAdd(task))
+      .whenComplete((ignored, exception) -> {
+        if (exception != null) {
+          task.future.completeExceptionally(exception);
+        }
+      });
+
+    task.future.whenComplete((ignored, exception) -> {
+      XCFXThread.runV(() -> this.taskRemove(task));
+    });
+  }
+
+  @XCOnFXThread
+  private void taskAdd(
+    final Task<?> task)
+  {
+    if (task.future.isDone()) {
+      return;
+    }
+
+    task.start();
+    if (task.future.isDone() || !task.isPulseDriven()) {
+      return;
+    }
+
+    this.tasks.add(task);
+    if (!this.timerRunning) {
+      this.timer.start();
+      this.timerRunning = true;
+    }
+  }
+
+  @XCOnFXThread
+  private void taskRemove(
+    final Task<?> task)
+  {
+    task.stop();
+    this.tasks.remove(task);
+
+    if (this.tasks.isEmpty() && this.timerRunning) {
+      this.timer.stop();
+      this.timerRunning = false;
+    }
+  }
+
+  @XCOnFXThread
+  private void onPulse(
+    final long now)
+  {
+    for (final var task : List.copyOf(this.tasks)) {
+      if (!task.future.isDone()) {
+        task.onPulse(now);
+      }
+    }
+  }
+
+  private abstract static class Task<T>
+  {
+    private final CompletableFuture<T> future;
+    private final long timeStarted;
+
+    Task()
+    {
+      this.future = new CompletableFuture<>();
+      this.timeStarted = System.nanoTime();
+    }
+
+    protected final CompletableFuture<T> future()
+    {
+      return this.future;
+    }
+
+    protected final Duration timeElapsed()
+    {
+      return Duration.ofNanos(System.nanoTime() - this.timeStarted);
+    }
+
+    abstract boolean isPulseDriven();
+
+    @XCOnFXThread
+    abstract void start();
+
+    @XCOnFXThread
+    abstract void onPulse(long now);
+
+    @XCOnFXThread
+    abstract void stop();
+  }
+
+  private static final class PulseTask
+    extends Task<XCPulseTimestamps>
+  {
+    private final int pulses;
+    private final ArrayList<Long> timestamps;
+
+    PulseTask(
+      final int inPulses)
+    {
+      this.pulses = inPulses;
+      this.timestamps = new ArrayList<>(inPulses);
+    }
+
+    @Override
+    boolean isPulseDriven()
+    {
+      return true;
+    }
+
+    @Override
+    void start()
+    {
+      Platform.requestNextPulse();
+    }
+
+    @Override
+    void onPulse(
+      final long now)
+    {
+      this.timestamps.add(Long.valueOf(now));
+      if (this.timestamps.size() >= this.pulses) {
+        this.future().complete(new XCPulseTimestamps(this.timestamps));
+      }
+    }
+
+    @Override
+    void stop()
+    {
+      /*
+       * The task holds no listeners; the pulse timer is stopped by the
+       * engine once no tasks remain.
+       */
+    }
+  }
+
+  private static final class PredicateTask
+    extends Task<XCWaitStatistics>
+  {
+    private final List<Observable> observables;
+    private final BooleanSupplier predicate;
+    private final InvalidationListener listener;
+    private final boolean pulseDriven;
+    private long evaluations;
+    private long timeEvaluating;
+
+    PredicateTask(
+      final List<Observable> inObservables,
+      final BooleanSupplier inPredicate,
+      final boolean inPulseDriven)
+    {
+      this.observables = inObservables;
+      this.predicate = inPredicate;
+      this.pulseDriven = inPulseDriven;
+      this.listener = observable -> {
+        if (Platform.isFxApplicationThread()) {
+          this.evaluate();
+        } else {
+          Platform.runLater(this::evaluate);
+        }
+      };
+    }
+
+    @Override
+    boolean isPulseDriven()
+    {
+      return this.pulseDriven;
+    }
+
+    @Override
+    void start()
+    {
+      for (final var observable : this.observables) {
+        observable.addListener(this.listener);
+      }
+      this.evaluate();
+    }
+
+    @Override
+    void onPulse(
+      final long now)
+    {
+      this.evaluate();
+    }
+
+    @Override
+    void stop()
+    {
+      for (final var observable : this.observables) {
+        observable.removeListener(this.listener);
+      }
+    }
+
+    @XCOnFXThread
+    private void evaluate()
+    {
+      final var future = this.future();
+      if (future.isDone()) {
+        return;
+      }
+
+      final var timeThen = System.nanoTime();
+      final boolean result;
+      try {
+        result = this.predicate.getAsBoolean();
+      } catch (final Throwable e) {
+        future.completeExceptionally(e);
+        return;
+      } finally {
+        ++this.evaluations;
+        this.timeEvaluating += System.nanoTime() - timeThen;
+      }
+
+      if (result) {
+        future.complete(
+          new XCWaitStatistics(
+            this.evaluations,
+            Duration.ofNanos(this.timeEvaluating),
+            this.timeElapsed()
+          )
+        );
+      }
+    }
+  }
+
+  private static boolean isAttachedAndShowing(
+    final Node node)
+  {
+    final var scene = node.getScene();
+    if (scene == null) {
+      return false;
+    }
+    final var window = scene.getWindow();
+    return window != null && window.isShowing();
+  }
+
+  private static final class NodeAppearTask<T extends Node>
+    extends Task<T>
+  {
+    private final XCNodeQuery<T> query;
+    private final XCSceneGraphWatcher watcher;
+
+    NodeAppearTask(
+      final XCNodeQuery<T> inQuery)
+    {
+      this.query = inQuery;
+      this.watcher =
+        new XCSceneGraphWatcher(this::search, node -> {
+
+        }, this::changed);
+    }
+
+    @Override
+    boolean isPulseDriven()
+    {
+      return false;
+    }
+
+    @Override
+    void start()
+    {
+      this.watcher.start();
+      this.complete(
+        XCNodeQueryEngine.execute(this.query, XCNodeQueryEngine.showingRoots())
+      );
+    }
+
+    @Override
+    void onPulse(
+      final long now)
+    {
+
+    }
+
+    @Override
+    void stop()
+    {
+      this.watcher.stop();
+    }
+
+    @XCOnFXThread
+    private void search(
+      final Node root)
+    {
+      if (this.future().isDone()) {
+        return;
+      }
+      this.complete(XCNodeQueryEngine.execute(this.query, root));
+    }
+
+    /*
+     * A node that is already attached may become a match without any
+     * structural change (its text or ID may change, for example), so only
+     * that node is checked again.
+     */
+
+    @XCOnFXThread
+    private void changed(
+      final Node node)
+    {
+      if (this.future().isDone()) {
+        return;
+      }
+      if (this.query.matches(node)) {
+        this.future().complete(this.query.type().cast(node));
+      }
+    }
+
+    private void complete(
+      final XCNodeQueryResult<T> result)
+    {
+      final var nodes = result.nodes();
+      if (!nodes.isEmpty()) {
+        this.future().complete(nodes.get(0));
+      }
+    }
+  }
+
+  private static final class NodeGoneTask
+    extends Task<Void>
+  {
+    private final XCNodeQuery<?> query;
+    private final XCSceneGraphWatcher watcher;
+    private final Set<Node> present;
+
+    NodeGoneTask(
+      final XCNodeQuery<?> inQuery)
+    {
+      this.query = inQuery;
+      this.present = Collections.newSetFromMap(new IdentityHashMap<>());
+      this.watcher =
+        new XCSceneGraphWatcher(this::attached, this::detached, this::changed);
+    }
+
+    @Override
+    boolean isPulseDriven()
+    {
+      return false;
+    }
+
+    @Override
+    void start()
+    {
+      this.watcher.start();
+      final var roots = XCNodeQueryEngine.showingRoots();
+      this.present.addAll(
+        XCNodeQueryEngine.execute(this.query, roots).nodes());
+      this.check();
+    }
+
+    @Override
+    void onPulse(
+      final long now)
+    {
+
+    }
+
+    @Override
+    void stop()
+    {
+      this.watcher.stop();
+      this.present.clear();
+    }
+
+    @XCOnFXThread
+    private void attached(
+      final Node root)
+    {
+      this.present.addAll(
+        XCNodeQueryEngine.execute(this.query, root).nodes());
+    }
+
+    @XCOnFXThread
+    private void detached(
+      final Node root)
+    {
+      this.present.removeIf(node -> !isAttachedAndShowing(node));
+      this.check();
+    }
+
+    /*
+     * A node may start or stop matching without being attached or detached
+     * (its text or ID may change, for example), so that node is checked
+     * again.
+     */
+
+    @XCOnFXThread
+    private void changed(
+      final Node node)
+    {
+      if (this.query.matches(node)) {
+        this.present.add(node);
+      } else {
+        this.present.remove(node);
+      }
+      this.check();
+    }
+
+    private void check()
+    {
+      if (this.present.isEmpty()) {
+        this.future().complete(null);
+      }
+    }
+  }
+
+  private static final class IdleTask
+    extends Task<XCIdleStatistics>
+  {
+    private final List<Worker<?>> workers;
+    private final IdentityHashMap<Scene, Runnable> scenes;
+    private long pulses;
+    private long checks;
+    private long timeLastActivity;
+
+    IdleTask(
+      final List<Worker<?>> inWorkers)
+    {
+      this.workers = inWorkers;
+      this.scenes = new IdentityHashMap<>();
+      this.timeLastActivity = System.nanoTime();
+    }
+
+    @Override
+    boolean isPulseDriven()
+    {
+      return false;
+    }
+
+    @Override
+    void start()
+    {
+      this.check();
+    }
+
+    @Override
+    void onPulse(
+      final long now)
+    {
+
+    }
+
+    @Override
+    void stop()
+    {
+      for (final var entry : this.scenes.entrySet()) {
+        entry.getKey().removePreLayoutPulseListener(entry.getValue());
+      }
+      this.scenes.clear();
+    }
+
+    @XCOnFXThread
+    private void onScenePulse()
+    {
+      ++this.pulses;
+      this.timeLastActivity = System.nanoTime();
+    }
+
+    @XCOnFXThread
+    private boolean isBusy()
+    {
+      if (XCFXThread.pendingTasks() > 0L) {
+        return true;
+      }
+
+      for (final var window : Window.getWindows()) {
+        final var scene = window.getScene();
+        if (!window.isShowing() || scene == null) {
+          continue;
+        }
+
+        if (!this.scenes.containsKey(scene)) {
+          final Runnable listener = this::onScenePulse;
+          scene.addPreLayoutPulseListener(listener);
+          this.scenes.put(scene, listener);
+        }
+
+        final var root = scene.getRoot();
+        if (root != null && root.isNeedsLayout()) {
+          return true;
+        }
+      }
+
+      for (final var worker : this.workers) {
+        if (worker.isRunning()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @XCOnFXThread
+    private void check()
+    {
+      final var future = this.future();
+      if (future.isDone()) {
+        return;
+      }
+
+      ++this.checks;
+
+      final var timeNow = System.nanoTime();
+      if (this.isBusy()) {
+        this.timeLastActivity = timeNow;
+      }
+
+      final var quiet = timeNow - this.timeLastActivity;
+      if (quiet >= IDLE_QUIET_PERIOD.toNanos()) {
+        future.complete(
+          new XCIdleStatistics(this.pulses, this.checks, this.timeElapsed())
+        );
+        return;
+      }
+
+      /*
+       * Platform.runLater() is used directly so that the check does not
+       * count as a pending task, and does not request a pulse.
+       */
+
+      IDLE_CHECK_DELAY.execute(() -> Platform.runLater(this::check));
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import javafx.scene.input.KeyCode;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The result of deriving key mappings statically from an XKB layout,
+ * without pressing any keys.
+ *
+ * @param keys       The derived mappings
+ * @param unresolved The key codes whose output could not be derived, and
+ *                   that must therefore be probed
+ */
+
+public record XCXKBDerivation(
+  Map<Character, XCKey> keys,
+  Set<KeyCode> unresolved)
+{
+  /**
+   * The name of the system property that, if set to {@code false},
+   * disables static derivation and causes every key to be probed.
+   */
+
+  public static final String PROPERTY_XKB = "xoanon.keymap.xkb";
+
+  /*
+   * Key codes that duplicate keys found elsewhere on the keyboard. There is
+   * no need to probe these if the character they nominally produce is
+   * already mapped.
+   */
+
+  private static final Set<KeyCode> SUPPLEMENTARY_KEYS =
+    Set.of(
+      KeyCode.ADD,
+      KeyCode.DECIMAL,
+      KeyCode.DIVIDE,
+      KeyCode.POUND,
+      KeyCode.STAR,
+      KeyCode.SUBTRACT
+    );
+
+  /**
+   * The result of deriving key mappings statically from an XKB layout.
+   *
+   * @param keys       The derived mappings
+   * @param unresolved The key codes whose output could not be derived
+   */
+
+  public XCXKBDerivation
+  {
+    keys = Map.copyOf(keys);
+    unresolved = Set.copyOf(unresolved);
+  }
+
+  /**
+   * Derive mappings for the given key codes from the layout that is active
+   * on the X display. If the layout cannot be determined (because this is
+   * not Linux, or because there is no X display), every key code is
+   * unresolved.
+   *
+   * @param codes The key codes
+   *
+   * @return The derivation
+   */
+
+  public static XCXKBDerivation ofActiveLayout(
+    final Set<KeyCode> codes)
+  {
+    Objects.requireNonNull(codes, "codes");
+
+    final var none = new XCXKBDerivation(Map.of(), codes);
+    if (!isEnabled()) {
+      return none;
+    }
+    return XCXKBResolver.resolveActiveLayout()
+      .map(keymap -> derive(keymap, codes))
+      .orElse(none);
+  }
+
+  private static boolean isEnabled()
+  {
+    if ("false".equals(System.getProperty(PROPERTY_XKB))) {
+      return false;
+    }
+
+    final var os = System.getProperty("os.name", "");
+    if (!os.toLowerCase(Locale.ROOT).contains("linux")) {
+      return false;
+    }
+    return System.getenv("DISPLAY") != null;
+  }
+
+  /**
+   * Derive mappings for the given key codes from the given layout. A key
+   * code typed without modifiers produces the first level of the key that
+   * carries its keysym, and typed with shift produces the second level.
+   *
+   * @param keymap The layout
+   * @param codes  The key codes
+   *
+   * @return The derivation
+   */
+
+  public static XCXKBDerivation derive(
+    final XCXKBKeymap keymap,
+    final Set<KeyCode> codes)
+  {
+    Objects.requireNonNull(keymap, "keymap");
+    Objects.requireNonNull(codes, "codes");
+
+    final var plain = new EnumMap<KeyCode, Character>(KeyCode.class);
+    final var shifted = new EnumMap<KeyCode, Character>(KeyCode.class);
+    final var unresolved = new HashSet<KeyCode>();
+
+    for (final var code : codes) {
+      final var levels =
+        XCXKBKeysyms.keysymOf(code)
+          .flatMap(keymap::findKeysym)
+          .map(keymap::levels)
+          .orElse(List.of());
+
+      if (levels.isEmpty()) {
+        unresolved.add(code);
+        continue;
+      }
+
+      final var first = XCXKBKeysyms.character(levels.get(0));
+      if (first.isEmpty()) {
+        unresolved.add(code);
+        continue;
+      }
+
+      final Optional<Character> second;
+      if (levels.size() > 1) {
+        second = XCXKBKeysyms.character(levels.get(1));
+      } else {
+        second = Optional.of(shiftedSingleLevel(first.get()));
+      }
+
+      plain.put(code, first.get());
+      second.ifPresent(c -> shifted.put(code, c));
+    }
+
+    /*
+     * Unshifted mappings are preferred over shifted mappings for the same
+     * character, as they involve fewer key events.
+     */
+
+    final var keys = new HashMap<Character, XCKey>();
+    plain.forEach((code, c) -> {
+      keys.putIfAbsent(c, new XCKey(code, false, false, false));
+    });
+    shifted.forEach((code, c) -> {
+      keys.putIfAbsent(c, new XCKey(code, true, false, false));
+    });
+
+    unresolved.removeIf(code -> {
+      return SUPPLEMENTARY_KEYS.contains(code)
+             && XCXKBKeysyms.nominalCharacter(code)
+               .map(keys::containsKey)
+               .orElse(Boolean.FALSE)
+               .booleanValue();
+    });
+    return new XCXKBDerivation(keys, unresolved);
+  }
+
+  /*
+   * A key with a single lowercase letter is given the ALPHABETIC type by
+   * XKB, and produces the uppercase letter when shifted. Any other single
+   * level key produces the same character regardless of shift.
+   */
+
+  private static Character shiftedSingleLevel(
+    final Character c)
+  {
+    final var value = c.charValue();
+    if (Character.isLowerCase(value)) {
+      return Character.valueOf(Character.toUpperCase(value));
+    }
+    return c;
+  }
+}
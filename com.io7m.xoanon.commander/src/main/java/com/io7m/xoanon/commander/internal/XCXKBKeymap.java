@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A resolved XKB keyboard layout: the X keycode of each named key, and the
+ * keysyms produced by each key at each level, for each group.
+ *
+ * @param keycodes The X keycodes of the keys (including aliases)
+ * @param keys     The keysyms of each key, by group and then level, in the
+ *                 order in which the keys were defined
+ */
+
+public record XCXKBKeymap(
+  Map<String, Integer> keycodes,
+  Map<String, Map<Integer, List<String>>> keys)
+{
+  /**
+   * A resolved XKB keyboard layout.
+   *
+   * @param keycodes The X keycodes of the keys (including aliases)
+   * @param keys     The keysyms of each key, by group and then level, in the
+   *                 order in which the keys were defined
+   */
+
+  public XCXKBKeymap
+  {
+    keycodes = Map.copyOf(keycodes);
+    keys = Collections.unmodifiableMap(new LinkedHashMap<>(keys));
+  }
+
+  /**
+   * Find the key that the X server will choose when asked for a key that
+   * produces the given keysym. Keys are considered in keycode order, and the
+   * first key that produces the keysym at any level of any group is
+   * returned; this matches the behaviour of
+   * {@code gdk_keymap_get_entries_for_keyval()}, which the JavaFX robot
+   * uses to translate key codes into X keycodes.
+   *
+   * @param keysym The keysym name
+   *
+   * @return The key name, if any key produces the keysym
+   */
+
+  public Optional<String> findKeysym(
+    final String keysym)
+  {
+    Objects.requireNonNull(keysym, "keysym");
+
+    return this.keys.entrySet()
+      .stream()
+      .filter(e -> e.getValue().values().stream().anyMatch(levels -> {
+        return levels.contains(keysym);
+      }))
+      .min(Comparator.comparingInt(e -> this.keycodeOf(e.getKey())))
+      .map(Map.Entry::getKey);
+  }
+
+  private int keycodeOf(
+    final String key)
+  {
+    return this.keycodes.getOrDefault(key, Integer.MAX_VALUE).intValue();
+  }
+
+  /**
+   * @param key The key name
+   *
+   * @return The keysyms produced by the key in the first group, by level
+   */
+
+  public List<String> levels(
+    final String key)
+  {
+    Objects.requireNonNull(key, "key");
+
+    final var groups = this.keys.get(key);
+    if (groups == null) {
+      return List.of();
+    }
+    return groups.getOrDefault(Integer.valueOf(1), List.of());
+  }
+}
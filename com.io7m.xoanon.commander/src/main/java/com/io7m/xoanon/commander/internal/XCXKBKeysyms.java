@@ -0,0 +1,369 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import javafx.scene.input.KeyCode;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Functions relating X keysym names to characters, and to the JavaFX key
+ * codes that produce them.
+ */
+
+public final class XCXKBKeysyms
+{
+  /*
+   * The names of the keysyms 0x20 to 0x7e, which are identical to the
+   * ASCII characters with the same values.
+   */
+
+  private static final String[] NAMES_ASCII = {
+    "space",
+    "exclam",
+    "quotedbl",
+    "numbersign",
+    "dollar",
+    "percent",
+    "ampersand",
+    "apostrophe",
+    "parenleft",
+    "parenright",
+    "asterisk",
+    "plus",
+    "comma",
+    "minus",
+    "period",
+    "slash",
+    "0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+    "colon",
+    "semicolon",
+    "less",
+    "equal",
+    "greater",
+    "question",
+    "at",
+    "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M",
+    "N", "O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z",
+    "bracketleft",
+    "backslash",
+    "bracketright",
+    "asciicircum",
+    "underscore",
+    "grave",
+    "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m",
+    "n", "o", "p", "q", "r", "s", "t", "u", "v", "w", "x", "y", "z",
+    "braceleft",
+    "bar",
+    "braceright",
+    "asciitilde",
+  };
+
+  /*
+   * The names of the keysyms 0xa0 to 0xff, which are identical to the
+   * Latin-1 characters with the same values.
+   */
+
+  private static final String[] NAMES_LATIN1 = {
+    "nobreakspace",
+    "exclamdown",
+    "cent",
+    "sterling",
+    "currency",
+    "yen",
+    "brokenbar",
+    "section",
+    "diaeresis",
+    "copyright",
+    "ordfeminine",
+    "guillemotleft",
+    "notsign",
+    "hyphen",
+    "registered",
+    "macron",
+    "degree",
+    "plusminus",
+    "twosuperior",
+    "threesuperior",
+    "acute",
+    "mu",
+    "paragraph",
+    "periodcentered",
+    "cedilla",
+    "onesuperior",
+    "masculine",
+    "guillemotright",
+    "onequarter",
+    "onehalf",
+    "threequarters",
+    "questiondown",
+    "Agrave",
+    "Aacute",
+    "Acircumflex",
+    "Atilde",
+    "Adiaeresis",
+    "Aring",
+    "AE",
+    "Ccedilla",
+    "Egrave",
+    "Eacute",
+    "Ecircumflex",
+    "Ediaeresis",
+    "Igrave",
+    "Iacute",
+    "Icircumflex",
+    "Idiaeresis",
+    "ETH",
+    "Ntilde",
+    "Ograve",
+    "Oacute",
+    "Ocircumflex",
+    "Otilde",
+    "Odiaeresis",
+    "multiply",
+    "Oslash",
+    "Ugrave",
+    "Uacute",
+    "Ucircumflex",
+    "Udiaeresis",
+    "Yacute",
+    "THORN",
+    "ssharp",
+    "agrave",
+    "aacute",
+    "acircumflex",
+    "atilde",
+    "adiaeresis",
+    "aring",
+    "ae",
+    "ccedilla",
+    "egrave",
+    "eacute",
+    "ecircumflex",
+    "ediaeresis",
+    "igrave",
+    "iacute",
+    "icircumflex",
+    "idiaeresis",
+    "eth",
+    "ntilde",
+    "ograve",
+    "oacute",
+    "ocircumflex",
+    "otilde",
+    "odiaeresis",
+    "division",
+    "oslash",
+    "ugrave",
+    "uacute",
+    "ucircumflex",
+    "udiaeresis",
+    "yacute",
+    "thorn",
+    "ydiaeresis",
+  };
+
+  private static final Map<String, Character> CHARACTERS =
+    generateCharacters();
+
+  private static final Map<KeyCode, String> KEY_CODE_KEYSYMS =
+    generateKeyCodeKeysyms();
+
+  /*
+   * The characters nominally produced by key codes that have no keysym in
+   * the table above.
+   */
+
+  private static final Map<KeyCode, Character> KEY_CODE_CHARACTERS =
+    Map.ofEntries(
+      Map.entry(KeyCode.ADD, Character.valueOf('+')),
+      Map.entry(KeyCode.DECIMAL, Character.valueOf('.')),
+      Map.entry(KeyCode.DIVIDE, Character.valueOf('/')),
+      Map.entry(KeyCode.POUND, Character.valueOf('#')),
+      Map.entry(KeyCode.STAR, Character.valueOf('*')),
+      Map.entry(KeyCode.SUBTRACT, Character.valueOf('-'))
+    );
+
+  private XCXKBKeysyms()
+  {
+
+  }
+
+  private static Map<String, Character> generateCharacters()
+  {
+    final var m = new HashMap<String, Character>(256);
+    for (int index = 0; index < NAMES_ASCII.length; ++index) {
+      m.put(NAMES_ASCII[index], Character.valueOf((char) (0x20 + index)));
+    }
+    for (int index = 0; index < NAMES_LATIN1.length; ++index) {
+      m.put(NAMES_LATIN1[index], Character.valueOf((char) (0xa0 + index)));
+    }
+
+    /*
+     * Deprecated names that still appear in older symbol files.
+     */
+
+    m.put("quoteright", Character.valueOf('\''));
+    m.put("quoteleft", Character.valueOf('`'));
+    m.put("guillemetleft", Character.valueOf('«'));
+    m.put("guillemetright", Character.valueOf('»'));
+    m.put("ordmasculine", Character.valueOf('º'));
+    m.put("Ooblique", Character.valueOf('Ø'));
+    m.put("ooblique", Character.valueOf('ø'));
+    m.put("Eth", Character.valueOf('Ð'));
+    m.put("Thorn", Character.valueOf('Þ'));
+    m.put("EuroSign", Character.valueOf('€'));
+    return Map.copyOf(m);
+  }
+
+  /*
+   * The keysyms that the GTK glass implementation sends for each of the
+   * key codes that keymap generation uses. Key codes that are not listed
+   * here are left for probing: POUND and STAR have no reliable keysym, and
+   * the keypad keys (ADD, DECIMAL, and so on) produce characters that
+   * depend on the state of Num Lock.
+   */
+
+  private static Map<KeyCode, String> generateKeyCodeKeysyms()
+  {
+    final var m = new HashMap<KeyCode, String>(128);
+    for (final var code : KeyCode.values()) {
+      if (code.isLetterKey()) {
+        m.put(code, code.getName().toLowerCase(Locale.ROOT));
+      }
+      if (code.isDigitKey() && !code.isKeypadKey()) {
+        m.put(code, code.getName());
+      }
+    }
+
+    m.put(KeyCode.AMPERSAND, "ampersand");
+    m.put(KeyCode.ASTERISK, "asterisk");
+    m.put(KeyCode.BACK_QUOTE, "grave");
+    m.put(KeyCode.BACK_SLASH, "backslash");
+    m.put(KeyCode.BRACELEFT, "braceleft");
+    m.put(KeyCode.BRACERIGHT, "braceright");
+    m.put(KeyCode.CIRCUMFLEX, "asciicircum");
+    m.put(KeyCode.CLOSE_BRACKET, "bracketright");
+    m.put(KeyCode.COLON, "colon");
+    m.put(KeyCode.COMMA, "comma");
+    m.put(KeyCode.DOLLAR, "dollar");
+    m.put(KeyCode.EQUALS, "equal");
+    m.put(KeyCode.EURO_SIGN, "EuroSign");
+    m.put(KeyCode.EXCLAMATION_MARK, "exclam");
+    m.put(KeyCode.GREATER, "greater");
+    m.put(KeyCode.LEFT_PARENTHESIS, "parenleft");
+    m.put(KeyCode.LESS, "less");
+    m.put(KeyCode.MINUS, "minus");
+    m.put(KeyCode.NUMBER_SIGN, "numbersign");
+    m.put(KeyCode.OPEN_BRACKET, "bracketleft");
+    m.put(KeyCode.PERIOD, "period");
+    m.put(KeyCode.PLUS, "plus");
+    m.put(KeyCode.QUOTE, "apostrophe");
+    m.put(KeyCode.QUOTEDBL, "quotedbl");
+    m.put(KeyCode.RIGHT_PARENTHESIS, "parenright");
+    m.put(KeyCode.SEMICOLON, "semicolon");
+    m.put(KeyCode.SLASH, "slash");
+    m.put(KeyCode.UNDERSCORE, "underscore");
+    return Map.copyOf(m);
+  }
+
+  /**
+   * Determine the character produced by the given keysym.
+   *
+   * @param keysym The keysym name, such as {@code exclam} or {@code U20AC}
+   *
+   * @return The character, if the keysym produces a single character
+   */
+
+  public static Optional<Character> character(
+    final String keysym)
+  {
+    Objects.requireNonNull(keysym, "keysym");
+
+    final var known = CHARACTERS.get(keysym);
+    if (known != null) {
+      return Optional.of(known);
+    }
+
+    if (keysym.length() > 1 && keysym.startsWith("U")) {
+      return codePoint(keysym.substring(1), 16);
+    }
+    if (keysym.startsWith("0x100")) {
+      return codePoint(keysym.substring(5), 16);
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<Character> codePoint(
+    final String text,
+    final int radix)
+  {
+    try {
+      final var point = Integer.parseInt(text, radix);
+      if (point < 0x20 || !Character.isBmpCodePoint(point)) {
+        return Optional.empty();
+      }
+      return Optional.of(Character.valueOf((char) point));
+    } catch (final NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Determine the keysym that the JavaFX robot asks the X server for when
+   * told to type the given key code.
+   *
+   * @param code The key code
+   *
+   * @return The keysym name, if the key code has a known keysym
+   */
+
+  public static Optional<String> keysymOf(
+    final KeyCode code)
+  {
+    return Optional.ofNullable(
+      KEY_CODE_KEYSYMS.get(Objects.requireNonNull(code, "code"))
+    );
+  }
+
+  /**
+   * Determine the character that the given key code nominally produces on
+   * a US layout without modifiers, such as {@code 1} for {@code DIGIT1} or
+   * {@code +} for {@code ADD}. This says nothing about the character that
+   * the key code actually produces on the current layout.
+   *
+   * @param code The key code
+   *
+   * @return The character, if the key code nominally produces one
+   */
+
+  public static Optional<Character> nominalCharacter(
+    final KeyCode code)
+  {
+    Objects.requireNonNull(code, "code");
+
+    final var known = KEY_CODE_CHARACTERS.get(code);
+    if (known != null) {
+      return Optional.of(known);
+    }
+    return keysymOf(code).flatMap(XCXKBKeysyms::character);
+  }
+}
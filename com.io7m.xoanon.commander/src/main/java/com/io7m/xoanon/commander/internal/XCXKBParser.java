@@ -0,0 +1,551 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.internal.XCXKBSection.Alias;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Include;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Key;
+import com.io7m.xoanon.commander.internal.XCXKBSection.KeyNumber;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Kind;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Merge;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * <p>A tolerant parser for the XKB text format, as produced by
+ * {@code xkbcomp} and {@code setxkbmap -print}, and as found in the files
+ * under {@code /usr/share/X11/xkb}.</p>
+ *
+ * <p>Only {@code xkb_keycodes} and {@code xkb_symbols} sections are
+ * interpreted, and only the statements within them that define keycodes,
+ * aliases, key symbols, and includes. Everything else is skipped by
+ * matching brackets, so unfamiliar syntax degrades to missing keys rather
+ * than to failure.</p>
+ */
+
+public final class XCXKBParser
+{
+  private final List<String> tokens;
+  private final ArrayList<XCXKBSection> sections;
+  private int position;
+
+  private XCXKBParser(
+    final List<String> inTokens)
+  {
+    this.tokens = inTokens;
+    this.sections = new ArrayList<>();
+    this.position = 0;
+  }
+
+  /**
+   * Parse the given XKB text.
+   *
+   * @param text The text
+   *
+   * @return The keycodes and symbols sections, in the order they appear
+   */
+
+  public static List<XCXKBSection> parse(
+    final String text)
+  {
+    Objects.requireNonNull(text, "text");
+
+    final var parser = new XCXKBParser(tokenize(text));
+    parser.parseFile();
+    return List.copyOf(parser.sections);
+  }
+
+  /**
+   * Split the given XKB text into tokens. Strings retain their quotes, and
+   * key names retain their angle brackets. Comments are discarded.
+   *
+   * @param text The text
+   *
+   * @return The tokens
+   */
+
+  public static List<String> tokenize(
+    final String text)
+  {
+    final var result = new ArrayList<String>();
+    final var length = text.length();
+
+    var index = 0;
+    while (index < length) {
+      final var c = text.charAt(index);
+
+      if (Character.isWhitespace(c)) {
+        ++index;
+        continue;
+      }
+
+      if (text.startsWith("//", index)) {
+        index = skipToLineEnd(text, index);
+        continue;
+      }
+
+      if (text.startsWith("/*", index)) {
+        final var end = text.indexOf("*/", index + 2);
+        index = end < 0 ? length : end + 2;
+        continue;
+      }
+
+      if (c == '"') {
+        final var end = text.indexOf('"', index + 1);
+        final var stop = end < 0 ? length : end + 1;
+        result.add(text.substring(index, stop));
+        index = stop;
+        continue;
+      }
+
+      if (c == '<') {
+        final var end = keyNameEnd(text, index + 1);
+        if (end > index) {
+          result.add(text.substring(index, end + 1));
+          index = end + 1;
+          continue;
+        }
+      }
+
+      if (isIdentifierCharacter(c)) {
+        final var start = index;
+        while (index < length && isIdentifierCharacter(text.charAt(index))) {
+          ++index;
+        }
+        result.add(text.substring(start, index));
+        continue;
+      }
+
+      result.add(String.valueOf(c));
+      ++index;
+    }
+    return List.copyOf(result);
+  }
+
+  private static int keyNameEnd(
+    final String text,
+    final int start)
+  {
+    for (int index = start; index < text.length(); ++index) {
+      final var c = text.charAt(index);
+      if (c == '>') {
+        return index;
+      }
+      if (Character.isWhitespace(c) || c == '<') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static int skipToLineEnd(
+    final String text,
+    final int index)
+  {
+    final var end = text.indexOf('\n', index);
+    return end < 0 ? text.length() : end + 1;
+  }
+
+  private static boolean isIdentifierCharacter(
+    final char c)
+  {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+  }
+
+  private static boolean isString(
+    final String token)
+  {
+    return token.length() >= 2 && token.startsWith("\"");
+  }
+
+  private static String unquote(
+    final String token)
+  {
+    final var end = token.endsWith("\"") ? token.length() - 1 : token.length();
+    return token.substring(1, Math.max(1, end));
+  }
+
+  private static boolean isKeyName(
+    final String token)
+  {
+    return token.length() >= 2 && token.startsWith("<");
+  }
+
+  private static String keyName(
+    final String token)
+  {
+    return token.substring(1, token.length() - 1);
+  }
+
+  private static Optional<Kind> sectionKind(
+    final String token)
+  {
+    return switch (token) {
+      case "xkb_keycodes" -> Optional.of(Kind.KEYCODES);
+      case "xkb_symbols" -> Optional.of(Kind.SYMBOLS);
+      default -> Optional.empty();
+    };
+  }
+
+  private static boolean isOtherSection(
+    final String token)
+  {
+    return switch (token) {
+      case "xkb_types",
+           "xkb_compat",
+           "xkb_compatibility",
+           "xkb_compatibility_map",
+           "xkb_geometry" -> true;
+      default -> false;
+    };
+  }
+
+  private static boolean isContainer(
+    final String token)
+  {
+    return switch (token) {
+      case "xkb_keymap", "xkb_semantics", "xkb_layout" -> true;
+      default -> false;
+    };
+  }
+
+  private static Optional<Merge> mergeMode(
+    final String token)
+  {
+    return switch (token) {
+      case "include", "override", "replace" -> Optional.of(Merge.OVERRIDE);
+      case "augment" -> Optional.of(Merge.AUGMENT);
+      default -> Optional.empty();
+    };
+  }
+
+  private boolean atEnd()
+  {
+    return this.position >= this.tokens.size();
+  }
+
+  private String peek()
+  {
+    return this.atEnd() ? "" : this.tokens.get(this.position);
+  }
+
+  private String peekAt(
+    final int offset)
+  {
+    final var index = this.position + offset;
+    return index < this.tokens.size() ? this.tokens.get(index) : "";
+  }
+
+  private String next()
+  {
+    final var token = this.peek();
+    ++this.position;
+    return token;
+  }
+
+  private boolean accept(
+    final String token)
+  {
+    if (this.peek().equals(token)) {
+      ++this.position;
+      return true;
+    }
+    return false;
+  }
+
+  private void parseFile()
+  {
+    var isDefault = false;
+
+    while (!this.atEnd()) {
+      final var token = this.peek();
+
+      if (token.equals("default")) {
+        isDefault = true;
+        this.next();
+        continue;
+      }
+
+      final var kind = sectionKind(token);
+      if (kind.isPresent()) {
+        this.next();
+        this.parseSection(kind.get(), isDefault);
+        isDefault = false;
+        continue;
+      }
+
+      if (isOtherSection(token)) {
+        this.next();
+        this.acceptName();
+        if (this.accept("{")) {
+          this.skipToClose("}");
+        }
+        this.accept(";");
+        isDefault = false;
+        continue;
+      }
+
+      if (isContainer(token)) {
+        this.next();
+        this.acceptName();
+        this.accept("{");
+        isDefault = false;
+        continue;
+      }
+
+      /*
+       * Section flags (such as "partial" or "alphanumeric_keys"), the
+       * closing brackets of containers, and anything unrecognized.
+       */
+
+      this.next();
+    }
+  }
+
+  private String acceptName()
+  {
+    if (isString(this.peek())) {
+      return unquote(this.next());
+    }
+    return "";
+  }
+
+  private void parseSection(
+    final Kind kind,
+    final boolean isDefault)
+  {
+    final var name = this.acceptName();
+    if (!this.accept("{")) {
+      return;
+    }
+
+    final var statements = new ArrayList<Statement>();
+    while (!this.atEnd() && !this.accept("}")) {
+      this.parseStatement(kind, statements);
+    }
+    this.accept(";");
+
+    this.sections.add(new XCXKBSection(kind, name, isDefault, statements));
+  }
+
+  private void parseStatement(
+    final Kind kind,
+    final List<Statement> statements)
+  {
+    var merge = Merge.OVERRIDE;
+
+    final var mode = mergeMode(this.peek());
+    if (mode.isPresent()) {
+      this.next();
+      merge = mode.get();
+      if (isString(this.peek())) {
+        statements.add(new Include(merge, unquote(this.next())));
+        this.accept(";");
+        return;
+      }
+    }
+
+    final var token = this.peek();
+    if (kind == Kind.SYMBOLS && token.equals("key")) {
+      this.next();
+      if (isKeyName(this.peek()) && this.peekAt(1).equals("{")) {
+        final var name = keyName(this.next());
+        this.next();
+        statements.add(new Key(merge, name, this.parseKeyBody()));
+        this.accept(";");
+        return;
+      }
+    }
+
+    if (kind == Kind.KEYCODES && isKeyName(token)) {
+      final var name = keyName(this.next());
+      if (this.accept("=")) {
+        final var code = parseInteger(this.next());
+        if (code.isPresent()) {
+          statements.add(new KeyNumber(name, code.get().intValue()));
+        }
+      }
+      this.skipStatement();
+      return;
+    }
+
+    if (kind == Kind.KEYCODES && token.equals("alias")) {
+      this.next();
+      if (isKeyName(this.peek())) {
+        final var alias = keyName(this.next());
+        if (this.accept("=") && isKeyName(this.peek())) {
+          statements.add(new Alias(alias, keyName(this.next())));
+        }
+      }
+      this.skipStatement();
+      return;
+    }
+
+    this.skipStatement();
+  }
+
+  private static Optional<Integer> parseInteger(
+    final String token)
+  {
+    try {
+      return Optional.of(Integer.decode(token));
+    } catch (final NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /*
+   * Parse the body of a key definition, up to and including the closing
+   * brace. Bare level lists ("[ 1, exclam ]") are assigned to consecutive
+   * groups, and "symbols[GroupN] = [ ... ]" assigns to group N.
+   */
+
+  private Map<Integer, List<String>> parseKeyBody()
+  {
+    final var groups = new TreeMap<Integer, List<String>>();
+    var implicitGroup = 1;
+
+    while (!this.atEnd() && !this.accept("}")) {
+      final var token = this.peek();
+
+      if (token.equals("[")) {
+        groups.put(Integer.valueOf(implicitGroup), this.parseLevels());
+        ++implicitGroup;
+      } else if (token.equals("symbols")) {
+        this.next();
+        var group = 1;
+        if (this.accept("[")) {
+          group = parseGroup(this.next());
+          this.accept("]");
+        }
+        if (this.accept("=") && this.peek().equals("[")) {
+          groups.put(Integer.valueOf(group), this.parseLevels());
+        }
+      } else {
+        this.skipElement();
+      }
+
+      this.accept(",");
+    }
+    return groups;
+  }
+
+  private static int parseGroup(
+    final String token)
+  {
+    final var digits = token.replaceAll("[^0-9]", "");
+    if (digits.isEmpty()) {
+      return 1;
+    }
+    return Integer.parseInt(digits);
+  }
+
+  private List<String> parseLevels()
+  {
+    final var levels = new ArrayList<String>();
+    this.accept("[");
+
+    while (!this.atEnd() && !this.accept("]")) {
+      final var token = this.next();
+      if (token.equals(",")) {
+        continue;
+      }
+
+      /*
+       * A level that produces multiple keysyms ("{ a, b }") cannot be
+       * described by a single character.
+       */
+
+      if (token.equals("{")) {
+        this.skipToClose("}");
+        levels.add("NoSymbol");
+        continue;
+      }
+      levels.add(token);
+    }
+    return List.copyOf(levels);
+  }
+
+  /*
+   * Skip to the end of the current element of a key body: the next comma
+   * or closing brace at depth zero. The closing brace is not consumed.
+   */
+
+  private void skipElement()
+  {
+    var depth = 0;
+    while (!this.atEnd()) {
+      final var token = this.peek();
+      if (depth == 0 && (token.equals(",") || token.equals("}"))) {
+        return;
+      }
+      depth = Math.max(0, depth + depthChange(token));
+      this.next();
+    }
+  }
+
+  /*
+   * Skip to the end of the current statement: the next semicolon at depth
+   * zero, which is consumed, or the closing brace of the enclosing section,
+   * which is not.
+   */
+
+  private void skipStatement()
+  {
+    var depth = 0;
+    while (!this.atEnd()) {
+      final var token = this.peek();
+      if (depth == 0 && token.equals("}")) {
+        return;
+      }
+      this.next();
+      if (depth == 0 && token.equals(";")) {
+        return;
+      }
+      depth = Math.max(0, depth + depthChange(token));
+    }
+  }
+
+  private void skipToClose(
+    final String close)
+  {
+    var depth = 0;
+    while (!this.atEnd()) {
+      final var token = this.next();
+      if (depth == 0 && token.equals(close)) {
+        return;
+      }
+      depth = Math.max(0, depth + depthChange(token));
+    }
+  }
+
+  private static int depthChange(
+    final String token)
+  {
+    return switch (token) {
+      case "{", "[", "(" -> 1;
+      case "}", "]", ")" -> -1;
+      default -> 0;
+    };
+  }
+}
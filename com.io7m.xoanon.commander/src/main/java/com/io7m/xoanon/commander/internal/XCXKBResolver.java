@@ -0,0 +1,450 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import com.io7m.xoanon.commander.internal.XCXKBSection.Alias;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Include;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Key;
+import com.io7m.xoanon.commander.internal.XCXKBSection.KeyNumber;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Kind;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Merge;
+import com.io7m.xoanon.commander.internal.XCXKBSection.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Resolve an XKB keymap description into an {@link XCXKBKeymap} by
+ * following its includes into the XKB configuration directory.</p>
+ *
+ * <p>The description is typically the output of {@code setxkbmap -print},
+ * which names the keycodes and symbols files that make up the active layout
+ * ({@code evdev+aliases(qwerty)}, {@code pc+us+inet(evdev)}) rather than
+ * defining any keys itself. Fully expanded descriptions, such as those
+ * produced by {@code xkbcomp}, resolve without touching the filesystem.</p>
+ */
+
+public final class XCXKBResolver
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(XCXKBResolver.class);
+
+  /**
+   * The standard location of the XKB configuration directory.
+   */
+
+  public static final Path DEFAULT_ROOT =
+    Paths.get("/usr/share/X11/xkb");
+
+  private static final int INCLUDE_DEPTH_MAXIMUM = 16;
+
+  private final Path root;
+  private final HashMap<Path, List<XCXKBSection>> files;
+  private final LinkedHashMap<String, Integer> keycodes;
+  private final HashMap<String, String> aliases;
+  private final LinkedHashMap<String, TreeMap<Integer, List<String>>> keys;
+
+  /**
+   * Create a resolver.
+   *
+   * @param inRoot The XKB configuration directory
+   */
+
+  public XCXKBResolver(
+    final Path inRoot)
+  {
+    this.root =
+      Objects.requireNonNull(inRoot, "root");
+    this.files =
+      new HashMap<>();
+    this.keycodes =
+      new LinkedHashMap<>();
+    this.aliases =
+      new HashMap<>();
+    this.keys =
+      new LinkedHashMap<>();
+  }
+
+  /**
+   * Resolve the layout that is currently active on the X display, by asking
+   * {@code setxkbmap} for a description of it.
+   *
+   * @return The layout, or nothing if the layout could not be determined
+   */
+
+  public static Optional<XCXKBKeymap> resolveActiveLayout()
+  {
+    final var text = setxkbmap("-print");
+    if (text.isEmpty()) {
+      return Optional.empty();
+    }
+
+    try {
+      final var keymap = new XCXKBResolver(DEFAULT_ROOT).resolve(text.get());
+      if (keymap.keys().isEmpty()) {
+        LOG.debug("the active XKB layout defines no keys");
+        return Optional.empty();
+      }
+      return Optional.of(keymap);
+    } catch (final Exception e) {
+      LOG.debug("unable to determine the active XKB layout: ", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Run {@code setxkbmap} with the given option and return its output.
+   *
+   * @param option The option, such as {@code -print} or {@code -query}
+   *
+   * @return The output, or nothing if {@code setxkbmap} failed
+   */
+
+  static Optional<String> setxkbmap(
+    final String option)
+  {
+    /*
+     * The output goes to a file rather than a pipe, so that a process that
+     * never exits cannot block a read; the process is waited for (with a
+     * time limit) before any output is read.
+     */
+
+    Path output = null;
+    try {
+      output = Files.createTempFile("xoanon-setxkbmap-", ".txt");
+
+      final var process =
+        new ProcessBuilder("setxkbmap", option)
+          .redirectError(ProcessBuilder.Redirect.DISCARD)
+          .redirectOutput(output.toFile())
+          .start();
+
+      if (!process.waitFor(5L, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+        LOG.debug("setxkbmap did not exit in time");
+        return Optional.empty();
+      }
+      if (process.exitValue() != 0) {
+        LOG.debug("setxkbmap exited with status {}", process.exitValue());
+        return Optional.empty();
+      }
+      return Optional.of(
+        new String(Files.readAllBytes(output), StandardCharsets.UTF_8)
+      );
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    } catch (final Exception e) {
+      LOG.debug("unable to run setxkbmap: ", e);
+      return Optional.empty();
+    } finally {
+      if (output != null) {
+        try {
+          Files.deleteIfExists(output);
+        } catch (final IOException e) {
+          LOG.debug("unable to delete {}: ", output, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Resolve the given keymap description. Includes that cannot be found
+   * are ignored.
+   *
+   * @param text The keymap description
+   *
+   * @return The resolved keymap
+   */
+
+  public XCXKBKeymap resolve(
+    final String text)
+  {
+    Objects.requireNonNull(text, "text");
+
+    final var sections = XCXKBParser.parse(text);
+
+    /*
+     * The symbols may refer to keys by their aliases, and so all of the
+     * keycodes must be known before any of the symbols are applied.
+     */
+
+    for (final var section : sections) {
+      if (section.kind() == Kind.KEYCODES) {
+        this.applyKeycodes(section.statements(), Merge.OVERRIDE, 0);
+      }
+    }
+    for (final var section : sections) {
+      if (section.kind() == Kind.SYMBOLS) {
+        this.applySymbols(section.statements(), Merge.OVERRIDE, 0, 0);
+      }
+    }
+
+    final var resultCodes = new HashMap<String, Integer>(this.keycodes);
+    for (final var entry : this.aliases.entrySet()) {
+      final var code = this.keycodes.get(entry.getValue());
+      if (code != null) {
+        resultCodes.putIfAbsent(entry.getKey(), code);
+      }
+    }
+
+    final var resultKeys =
+      new LinkedHashMap<String, Map<Integer, List<String>>>();
+    for (final var entry : this.keys.entrySet()) {
+      resultKeys.put(entry.getKey(), Map.copyOf(entry.getValue()));
+    }
+    return new XCXKBKeymap(resultCodes, resultKeys);
+  }
+
+  private static Merge mergeOf(
+    final Merge outer,
+    final Merge inner)
+  {
+    return outer == Merge.AUGMENT ? Merge.AUGMENT : inner;
+  }
+
+  private void applyKeycodes(
+    final List<Statement> statements,
+    final Merge merge,
+    final int depth)
+  {
+    for (final var statement : statements) {
+      switch (statement) {
+        case final Include include -> {
+          this.include(
+            Kind.KEYCODES,
+            include.specification(),
+            mergeOf(merge, include.merge()),
+            0,
+            depth
+          );
+        }
+        case final KeyNumber number -> {
+          final var code = Integer.valueOf(number.code());
+          if (merge == Merge.AUGMENT) {
+            this.keycodes.putIfAbsent(number.key(), code);
+          } else {
+            this.keycodes.put(number.key(), code);
+          }
+        }
+        case final Alias alias -> {
+          if (merge == Merge.AUGMENT) {
+            this.aliases.putIfAbsent(alias.alias(), alias.key());
+          } else {
+            this.aliases.put(alias.alias(), alias.key());
+          }
+        }
+        case final Key ignored -> {
+
+        }
+      }
+    }
+  }
+
+  private void applySymbols(
+    final List<Statement> statements,
+    final Merge merge,
+    final int groupOffset,
+    final int depth)
+  {
+    for (final var statement : statements) {
+      switch (statement) {
+        case final Include include -> {
+          this.include(
+            Kind.SYMBOLS,
+            include.specification(),
+            mergeOf(merge, include.merge()),
+            groupOffset,
+            depth
+          );
+        }
+        case final Key key -> {
+          this.applyKey(key, mergeOf(merge, key.merge()), groupOffset);
+        }
+        case final KeyNumber ignored -> {
+
+        }
+        case final Alias ignored -> {
+
+        }
+      }
+    }
+  }
+
+  private void applyKey(
+    final Key key,
+    final Merge merge,
+    final int groupOffset)
+  {
+    final var name =
+      this.aliases.getOrDefault(key.key(), key.key());
+    final var existing =
+      this.keys.computeIfAbsent(name, k -> new TreeMap<>());
+
+    for (final var entry : key.groups().entrySet()) {
+      final var group =
+        Integer.valueOf(entry.getKey().intValue() + groupOffset);
+
+      if (merge == Merge.AUGMENT) {
+        existing.putIfAbsent(group, entry.getValue());
+      } else {
+        existing.put(group, entry.getValue());
+      }
+    }
+  }
+
+  /*
+   * Apply an include specification such as "pc+us+ru:2|inet(evdev)". Each
+   * component names a file, optionally a section within the file, and
+   * (for symbols) the group into which the section's first group is placed.
+   * Components joined with "+" override, and those joined with "|" augment.
+   */
+
+  private void include(
+    final Kind kind,
+    final String specification,
+    final Merge merge,
+    final int groupOffset,
+    final int depth)
+  {
+    if (depth >= INCLUDE_DEPTH_MAXIMUM) {
+      LOG.debug("include depth exceeded at {}", specification);
+      return;
+    }
+
+    var componentMerge = merge;
+    var start = 0;
+    for (int index = 0; index <= specification.length(); ++index) {
+      final var atEnd = index == specification.length();
+      final var c = atEnd ? '+' : specification.charAt(index);
+      if (c != '+' && c != '|') {
+        continue;
+      }
+
+      final var component = specification.substring(start, index).trim();
+      if (!component.isEmpty()) {
+        this.includeComponent(
+          kind,
+          component,
+          componentMerge,
+          groupOffset,
+          depth
+        );
+      }
+
+      componentMerge =
+        mergeOf(merge, c == '|' ? Merge.AUGMENT : Merge.OVERRIDE);
+      start = index + 1;
+    }
+  }
+
+  private void includeComponent(
+    final Kind kind,
+    final String component,
+    final Merge merge,
+    final int groupOffset,
+    final int depth)
+  {
+    var text = component;
+    var offset = groupOffset;
+
+    final var colon = text.indexOf(':');
+    if (colon >= 0) {
+      try {
+        offset = Integer.parseInt(text.substring(colon + 1).trim()) - 1;
+      } catch (final NumberFormatException e) {
+        LOG.debug("unparseable group in include {}", component);
+      }
+      text = text.substring(0, colon);
+    }
+
+    var file = text;
+    var name = "";
+    final var open = text.indexOf('(');
+    if (open >= 0) {
+      final var close = text.indexOf(')', open);
+      file = text.substring(0, open);
+      name = text.substring(open + 1, close < 0 ? text.length() : close);
+    }
+
+    final var section = this.findSection(kind, file, name);
+    if (section.isEmpty()) {
+      LOG.debug("no {} section for include {}", kind, component);
+      return;
+    }
+
+    final var statements = section.get().statements();
+    switch (kind) {
+      case KEYCODES -> this.applyKeycodes(statements, merge, depth + 1);
+      case SYMBOLS -> this.applySymbols(statements, merge, offset, depth + 1);
+    }
+  }
+
+  private Optional<XCXKBSection> findSection(
+    final Kind kind,
+    final String file,
+    final String name)
+  {
+    if (file.isEmpty() || file.contains("/") || file.contains("..")) {
+      return Optional.empty();
+    }
+
+    final var directory = switch (kind) {
+      case KEYCODES -> "keycodes";
+      case SYMBOLS -> "symbols";
+    };
+
+    final var path = this.root.resolve(directory).resolve(file);
+    final var sections = this.files.computeIfAbsent(path, p -> {
+      try {
+        return XCXKBParser.parse(Files.readString(p, StandardCharsets.UTF_8));
+      } catch (final IOException e) {
+        LOG.debug("unable to read {}: ", p, e);
+        return List.of();
+      }
+    });
+
+    final var candidates =
+      sections.stream()
+        .filter(s -> s.kind() == kind)
+        .toList();
+
+    if (!name.isEmpty()) {
+      return candidates.stream()
+        .filter(s -> Objects.equals(s.name(), name))
+        .findFirst();
+    }
+
+    return candidates.stream()
+      .filter(XCXKBSection::isDefault)
+      .findFirst()
+      .or(() -> candidates.stream().findFirst());
+  }
+}
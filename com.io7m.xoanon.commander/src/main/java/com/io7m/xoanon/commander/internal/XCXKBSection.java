@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.commander.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A section of an XKB keymap description, such as an {@code xkb_symbols} or
+ * {@code xkb_keycodes} block. Only the statements that are needed to work
+ * out which characters each key produces are retained.
+ *
+ * @param kind       The kind of section
+ * @param name       The section name (possibly empty)
+ * @param isDefault  {@code true} if the section is marked {@code default}
+ * @param statements The statements in the section
+ *
+ * @see XCXKBParser
+ */
+
+public record XCXKBSection(
+  Kind kind,
+  String name,
+  boolean isDefault,
+  List<Statement> statements)
+{
+  /**
+   * A section of an XKB keymap description.
+   *
+   * @param kind       The kind of section
+   * @param name       The section name (possibly empty)
+   * @param isDefault  {@code true} if the section is marked {@code default}
+   * @param statements The statements in the section
+   */
+
+  public XCXKBSection
+  {
+    Objects.requireNonNull(kind, "kind");
+    Objects.requireNonNull(name, "name");
+    statements = List.copyOf(statements);
+  }
+
+  /**
+   * The kinds of sections.
+   */
+
+  public enum Kind
+  {
+    /**
+     * An {@code xkb_keycodes} section.
+     */
+
+    KEYCODES,
+
+    /**
+     * An {@code xkb_symbols} section.
+     */
+
+    SYMBOLS
+  }
+
+  /**
+   * The ways in which definitions are merged with existing definitions.
+   */
+
+  public enum Merge
+  {
+    /**
+     * New definitions replace existing definitions.
+     */
+
+    OVERRIDE,
+
+    /**
+     * New definitions are only used where no definition exists.
+     */
+
+    AUGMENT
+  }
+
+  /**
+   * The type of statements.
+   */
+
+  public sealed interface Statement
+    permits Include, KeyNumber, Alias, Key
+  {
+
+  }
+
+  /**
+   * An {@code include}, {@code augment}, {@code override}, or
+   * {@code replace} statement.
+   *
+   * @param merge         The merge mode
+   * @param specification The included specification, such as
+   *                      {@code pc+us+inet(evdev)}
+   */
+
+  public record Include(
+    Merge merge,
+    String specification)
+    implements Statement
+  {
+    /**
+     * An {@code include} statement.
+     *
+     * @param merge         The merge mode
+     * @param specification The included specification
+     */
+
+    public Include
+    {
+      Objects.requireNonNull(merge, "merge");
+      Objects.requireNonNull(specification, "specification");
+    }
+  }
+
+  /**
+   * A keycode definition such as {@code <AE01> = 10;}.
+   *
+   * @param key  The key name, without angle brackets
+   * @param code The X keycode
+   */
+
+  public record KeyNumber(
+    String key,
+    int code)
+    implements Statement
+  {
+    /**
+     * A keycode definition.
+     *
+     * @param key  The key name, without angle brackets
+     * @param code The X keycode
+     */
+
+    public KeyNumber
+    {
+      Objects.requireNonNull(key, "key");
+    }
+  }
+
+  /**
+   * A keycode alias such as {@code alias <AC12> = <BKSL>;}.
+   *
+   * @param alias The alias name, without angle brackets
+   * @param key   The aliased key name, without angle brackets
+   */
+
+  public record Alias(
+    String alias,
+    String key)
+    implements Statement
+  {
+    /**
+     * A keycode alias.
+     *
+     * @param alias The alias name, without angle brackets
+     * @param key   The aliased key name, without angle brackets
+     */
+
+    public Alias
+    {
+      Objects.requireNonNull(alias, "alias");
+      Objects.requireNonNull(key, "key");
+    }
+  }
+
+  /**
+   * A key symbol definition such as
+   * {@code key <AE01> { [ 1, exclam ] };}.
+   *
+   * @param merge  The merge mode
+   * @param key    The key name, without angle brackets
+   * @param groups The keysym names for each level, by group number
+   *               (starting at 1)
+   */
+
+  public record Key(
+    Merge merge,
+    String key,
+    Map<Integer, List<String>> groups)
+    implements Statement
+  {
+    /**
+     * A key symbol definition.
+     *
+     * @param merge  The merge mode
+     * @param key    The key name, without angle brackets
+     * @param groups The keysym names for each level, by group number
+     *               (starting at 1)
+     */
+
+    public Key
+    {
+      Objects.requireNonNull(merge, "merge");
+      Objects.requireNonNull(key, "key");
+      groups = Map.copyOf(groups);
+    }
+  }
+}
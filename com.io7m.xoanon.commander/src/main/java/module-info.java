@@ -33,6 +33,12 @@ open module com.io7m.xoanon.commander
   requires javafx.graphics;
   requires org.slf4j;
 
+  uses com.io7m.xoanon.commander.api.XCRobotBackendFactoryType;
+
+  provides com.io7m.xoanon.commander.api.XCRobotBackendFactoryType
+    with com.io7m.xoanon.commander.internal.XCRobotBackendFactoryJavaFX,
+      com.io7m.xoanon.commander.internal.XCRobotBackendFactorySynthetic;
+
   exports com.io7m.xoanon.commander;
 
   exports com.io7m.xoanon.commander.internal
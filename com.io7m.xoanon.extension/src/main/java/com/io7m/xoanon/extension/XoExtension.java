@@ -17,10 +17,12 @@
 package com.io7m.xoanon.extension;
 
 import com.io7m.xoanon.commander.XCommanders;
+import com.io7m.xoanon.commander.api.XCAnimationClockMode;
 import com.io7m.xoanon.commander.api.XCApplicationInfo;
 import com.io7m.xoanon.commander.api.XCCommanderType;
 import com.io7m.xoanon.commander.api.XCFXThread;
 import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.api.XCRobotBackends;
 import com.io7m.xoanon.commander.api.XCRobotType;
 import com.io7m.xoanon.commander.api.XCTestInfo;
 import com.io7m.xoanon.commander.api.XCTestState;
@@ -46,6 +48,7 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.io7m.xoanon.commander.api.XCTestState.FAILED;
@@ -54,7 +57,18 @@ import static com.io7m.xoanon.commander.api.XCTestState.SUCCEEDED;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
- * A simple JavaFX extension for JUnit 5 tests.
+ * <p>A simple JavaFX extension for JUnit 5 tests.</p>
+ *
+ * <p>The robot backend used for injected {@link XCRobotType} parameters can
+ * be selected with the {@code xoanon.robot.backend} JUnit configuration
+ * parameter (or system property).</p>
+ *
+ * <p>The initial mode of the commander's animation clock can be selected with
+ * the {@code xoanon.animation.clock} JUnit configuration parameter (or system
+ * property).</p>
+ *
+ * @see XCRobotBackends#PROPERTY_BACKEND
+ * @see XCAnimationClockMode#PROPERTY_CLOCK
  */
 
 public final class XoExtension
@@ -98,6 +112,15 @@ public final class XoExtension
     COMMANDER.setApplicationInfo(info);
   }
 
+  private static CompletableFuture<XCRobotType> robotFor(
+    final ExtensionContext context)
+  {
+    return context.getConfigurationParameter(XCRobotBackends.PROPERTY_BACKEND)
+      .filter(name -> !name.isBlank())
+      .map(name -> COMMANDER.robot(name.trim()))
+      .orElseGet(COMMANDER::robot);
+  }
+
   @Override
   public void launcherSessionOpened(
     final LauncherSession session)
@@ -150,7 +173,26 @@ public final class XoExtension
       LOG.trace("starting JavaFX platform");
       Platform.setImplicitExit(false);
       COMMANDER = XCommanders.boot().get(30L, SECONDS);
-      Thread.sleep(2_000L);
+
+      final var clockMode =
+        context.getConfigurationParameter(XCAnimationClockMode.PROPERTY_CLOCK)
+          .filter(name -> !name.isBlank())
+          .map(XCAnimationClockMode::ofName);
+
+      if (clockMode.isPresent()) {
+        COMMANDER.animationClock()
+          .setMode(clockMode.get())
+          .get(5L, SECONDS);
+      }
+
+      /*
+       * Give the commander's splash screen time to fade out. With a virtual
+       * clock, the fade completes without any real time passing.
+       */
+
+      if (COMMANDER.animationClock().mode() != XCAnimationClockMode.VIRTUAL) {
+        Thread.sleep(2_000L);
+      }
 
       TESTS_EXPECTED.forEach(identifier -> {
         COMMANDER.setTestState(new XCTestInfo(
@@ -263,7 +305,7 @@ public final class XoExtension
 
     if (Objects.equals(requiredType, XCRobotType.class)) {
       try {
-        return COMMANDER.robot().get(30L, SECONDS);
+        return robotFor(extensionContext).get(30L, SECONDS);
       } catch (final Exception e) {
         throw new ParameterResolutionException(e.getMessage(), e);
       }
@@ -281,14 +323,22 @@ public final class XoExtension
   {
     /*
      * It's possible for tests to leave the current key and mouse state
-     * in a mess. Explicitly reset both the mouse and all keys.
+     * in a mess. Explicitly reset both the mouse and all keys, for every
+     * robot the tests have used, and not just the default robot.
      */
 
     try {
-      final var bot = COMMANDER.robot().get(5L, SECONDS);
-      bot.reset(Optional.of(COMMANDER.stage()));
+      robotFor(context).get(5L, SECONDS);
     } catch (final Exception e) {
-      LOG.error("error resetting input: ", e);
+      LOG.error("error creating robot: ", e);
+    }
+
+    for (final var bot : COMMANDER.robots()) {
+      try {
+        bot.reset(Optional.of(COMMANDER.stage()));
+      } catch (final Exception e) {
+        LOG.error("error resetting input: ", e);
+      }
     }
 
     /*
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.tests;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A program, run in a separate JVM, that holds a lock on a key map cache
+ * lock file for a given number of milliseconds.
+ */
+
+public final class XCKeyMapCacheLockHolder
+{
+  /**
+   * The line printed once the lock is held.
+   */
+
+  public static final String LOCKED = "LOCKED";
+
+  private XCKeyMapCacheLockHolder()
+  {
+
+  }
+
+  /**
+   * Start a JVM that holds the given lock file for the given time.
+   *
+   * @param file         The lock file
+   * @param milliseconds The time for which the lock is held
+   *
+   * @return The process
+   *
+   * @throws IOException On errors
+   */
+
+  public static Process start(
+    final Path file,
+    final long milliseconds)
+    throws IOException
+  {
+    final var command = new ArrayList<String>();
+    command.add(
+      Paths.get(System.getProperty("java.home"), "bin", "java").toString()
+    );
+
+    final var modulePath = System.getProperty("jdk.module.path");
+    if (modulePath != null && !modulePath.isBlank()) {
+      command.add("--module-path");
+      command.add(modulePath);
+      command.add("--module");
+      command.add(
+        "%s/%s".formatted(
+          XCKeyMapCacheLockHolder.class.getModule().getName(),
+          XCKeyMapCacheLockHolder.class.getName())
+      );
+    } else {
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(XCKeyMapCacheLockHolder.class.getName());
+    }
+
+    command.add(file.toString());
+    command.add(Long.toString(milliseconds));
+
+    return new ProcessBuilder(command)
+      .redirectError(ProcessBuilder.Redirect.INHERIT)
+      .start();
+  }
+
+  /**
+   * The main entry point.
+   *
+   * @param args The lock file, and the time for which the lock is held
+   *
+   * @throws Exception On errors
+   */
+
+  public static void main(
+    final String[] args)
+    throws Exception
+  {
+    final var file = Paths.get(args[0]);
+    final var milliseconds = Long.parseLong(args[1]);
+
+    try (var channel = FileChannel.open(file, CREATE, WRITE);
+         var ignored = channel.lock()) {
+      System.out.println(LOCKED);
+      System.out.flush();
+      Thread.sleep(milliseconds);
+    }
+  }
+}
@@ -14,50 +14,57 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
-
 package com.io7m.xoanon.tests;
 
 import com.io7m.xoanon.commander.api.XCKey;
 import com.io7m.xoanon.commander.api.XCKeyMap;
 import com.io7m.xoanon.commander.internal.XCKeyMapCache;
+import com.io7m.xoanon.commander.internal.XCKeyMapCacheLazy;
+import com.io7m.xoanon.commander.internal.XCKeyMapFingerprint;
 import javafx.scene.input.KeyCode;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.WRITE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public final class XCKeyMapCacheTest
 {
+  private static final XCKeyMapFingerprint FINGERPRINT_GB =
+    new XCKeyMapFingerprint(":0", "en-GB", "gb", "", "21.0.1");
+  private static final XCKeyMapFingerprint FINGERPRINT_DE =
+    new XCKeyMapFingerprint(":0", "de-DE", "de", "nodeadkeys", "21.0.1");
+
   private Path directory;
-  private XCFakeClock clock;
-  private Path cacheFile;
 
   @BeforeEach
   public void setup()
     throws IOException
   {
-    this.clock =
-      new XCFakeClock();
     this.directory =
       XCTestDirectories.createTempDirectory();
-    this.cacheFile =
-      this.directory
-        .resolve("xoanon")
-        .resolve("keymap.bin");
   }
 
   @AfterEach
@@ -69,46 +76,103 @@ public final class XCKeyMapCacheTest
 
   private static XCKeyMap bigMap()
   {
-    return  new XCKeyMap(
+    return new XCKeyMap(
       IntStream.range(10, 300)
-        .mapToObj(x -> Map.entry((char) x, new XCKey(KeyCode.T,false,false,false)))
+        .mapToObj(x -> Map.entry(
+          Character.valueOf((char) x),
+          new XCKey(KeyCode.T, x % 2 == 0, x % 3 == 0, x % 5 == 0)))
         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
     );
   }
 
   @Test
-  public void testCacheTooOld()
+  public void testCacheOldStillValid()
     throws IOException
   {
     final var cache =
-      new XCKeyMapCache(this.clock, this.directory);
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+
+    final var map = bigMap();
+    cache.save(map);
+    Files.setLastModifiedTime(
+      cache.file(),
+      FileTime.from(Instant.parse("2000-01-01T00:00:00+00:00")));
+    assertEquals(Optional.of(map), cache.load());
+  }
 
-    final Instant timeNow =
-      Instant.parse("2000-01-01T00:00:00+00:00");
-    final Instant timeThen =
-      timeNow.minus(24L, ChronoUnit.HOURS);
+  @Test
+  public void testCacheLazyCreatedOnce()
+    throws IOException
+  {
+    final var created = new AtomicInteger(0);
+    final var cache =
+      new XCKeyMapCacheLazy(() -> {
+        created.incrementAndGet();
+        return new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+      });
 
-    this.clock.setTime(timeNow);
+    assertEquals(0, created.get());
 
-    cache.save(bigMap());
-    Files.setLastModifiedTime(this.cacheFile, FileTime.from(timeThen));
-    assertEquals(Optional.empty(), cache.load());
+    final var map = bigMap();
+    try (var ignored = cache.lock()) {
+      cache.save(map);
+    }
+    assertEquals(Optional.of(map), cache.load());
+    assertEquals(1, created.get());
   }
 
   @Test
-  public void testCacheTooSmall()
+  public void testCacheOtherFingerprint()
+  {
+    final var cacheGB =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+    final var cacheDE =
+      new XCKeyMapCache(this.directory, FINGERPRINT_DE);
+
+    assertNotEquals(cacheGB.file(), cacheDE.file());
+
+    final var map = bigMap();
+    cacheGB.save(map);
+    assertEquals(Optional.empty(), cacheDE.load());
+    assertEquals(Optional.of(map), cacheGB.load());
+  }
+
+  @Test
+  public void testCacheFingerprintMismatch()
+    throws IOException
+  {
+    final var cacheGB =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+    final var cacheDE =
+      new XCKeyMapCache(this.directory, FINGERPRINT_DE);
+
+    cacheDE.save(bigMap());
+    Files.move(cacheDE.file(), cacheGB.file());
+    assertEquals(Optional.empty(), cacheGB.load());
+  }
+
+  @Test
+  public void testCacheCorrupt()
     throws IOException
   {
     final var cache =
-      new XCKeyMapCache(this.clock, this.directory);
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
 
-    final Instant timeNow =
-      Instant.parse("2000-01-01T00:00:00+00:00");
+    cache.save(bigMap());
 
-    this.clock.setTime(timeNow);
+    final var data = Files.readAllBytes(cache.file());
+    data[data.length / 2] ^= 0x1;
+    Files.write(cache.file(), data);
+    assertEquals(Optional.empty(), cache.load());
+  }
+
+  @Test
+  public void testCacheTooSmall()
+  {
+    final var cache =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
 
     cache.save(new XCKeyMap(Map.of()));
-    Files.setLastModifiedTime(this.cacheFile, FileTime.from(timeNow));
     assertEquals(Optional.empty(), cache.load());
   }
 
@@ -117,34 +181,138 @@ public final class XCKeyMapCacheTest
     throws IOException
   {
     final var cache =
-      new XCKeyMapCache(this.clock, this.directory);
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
 
-    final Instant timeNow =
-      Instant.parse("2000-01-01T00:00:00+00:00");
+    Files.createDirectories(cache.file().getParent());
+    Files.writeString(cache.file(), "Not a keymap.", CREATE, WRITE);
+    assertEquals(Optional.empty(), cache.load());
+  }
 
-    this.clock.setTime(timeNow);
+  @Test
+  public void testCacheMissing()
+  {
+    final var cache =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
 
-    Files.createDirectories(this.cacheFile.getParent());
-    Files.writeString(this.cacheFile, "Not a keymap.", CREATE, WRITE);
-    Files.setLastModifiedTime(this.cacheFile, FileTime.from(timeNow));
     assertEquals(Optional.empty(), cache.load());
   }
 
   @Test
-  public void testCacheGood()
-    throws IOException
+  public void testCacheLockExclusive()
+    throws Exception
   {
     final var cache =
-      new XCKeyMapCache(this.clock, this.directory);
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+    final var map =
+      bigMap();
+
+    final var acquired = new CountDownLatch(1);
+    final var loaded = new CompletableFuture<Optional<XCKeyMap>>();
+
+    try (var ignored = cache.lock()) {
+      assertTrue(Files.isRegularFile(cache.lockFile()));
+
+      final var thread = new Thread(() -> {
+        try (var ignoredOther = cache.lock()) {
+          acquired.countDown();
+          loaded.complete(cache.load());
+        } catch (final Exception e) {
+          loaded.completeExceptionally(e);
+        }
+      });
+      thread.start();
+
+      assertFalse(acquired.await(250L, TimeUnit.MILLISECONDS));
+      cache.save(map);
+    }
+
+    assertEquals(Optional.of(map), loaded.get(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCacheLockExclusiveInstances()
+    throws Exception
+  {
+    final var cache0 =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+    final var cache1 =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+
+    final var acquired = new CountDownLatch(1);
+    final var result = new CompletableFuture<Void>();
 
-    final Instant timeNow =
-      Instant.parse("2000-01-01T00:00:00+00:00");
+    try (var ignored = cache0.lock()) {
+      final var thread = new Thread(() -> {
+        try (var ignoredOther = cache1.lock()) {
+          acquired.countDown();
+          result.complete(null);
+        } catch (final Exception e) {
+          result.completeExceptionally(e);
+        }
+      });
+      thread.start();
 
-    this.clock.setTime(timeNow);
+      assertFalse(acquired.await(250L, TimeUnit.MILLISECONDS));
+    }
+
+    result.get(10L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testCacheLockReentrant()
+    throws Exception
+  {
+    final var cache =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+
+    try (var ignored = cache.lock()) {
+      assertThrows(OverlappingFileLockException.class, cache::lock);
+    }
+
+    try (var ignored = cache.lock()) {
+      assertTrue(Files.isRegularFile(cache.lockFile()));
+    }
+  }
+
+  @Test
+  public void testCacheLockOtherProcess()
+    throws Exception
+  {
+    final var cache =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
+
+    Files.createDirectories(cache.lockFile().getParent());
+
+    final var process =
+      XCKeyMapCacheLockHolder.start(cache.lockFile(), 1_000L);
+
+    try (var reader = process.inputReader()) {
+      assertEquals(XCKeyMapCacheLockHolder.LOCKED, reader.readLine());
+
+      final var timeThen = System.nanoTime();
+      try (var ignored = cache.lock()) {
+        final var waited =
+          Duration.ofNanos(System.nanoTime() - timeThen);
+        assertTrue(
+          waited.toMillis() >= 500L,
+          "Waited %s for the other process".formatted(waited)
+        );
+      }
+    } finally {
+      assertTrue(process.waitFor(10L, TimeUnit.SECONDS));
+    }
+
+    assertEquals(0, process.exitValue());
+  }
+
+  @Test
+  public void testCacheGood()
+  {
+    final var cache =
+      new XCKeyMapCache(this.directory, FINGERPRINT_GB);
 
     final var map = bigMap();
     cache.save(map);
-    Files.setLastModifiedTime(this.cacheFile, FileTime.from(timeNow));
     assertEquals(Optional.of(map), cache.load());
   }
 }
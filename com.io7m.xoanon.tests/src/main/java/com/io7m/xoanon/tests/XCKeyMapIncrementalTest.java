@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.tests;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.internal.XCKeyMapIncremental;
+import javafx.scene.input.KeyCode;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class XCKeyMapIncrementalTest
+{
+  private static final XCKey KEY_A =
+    new XCKey(KeyCode.A, false, false, false);
+  private static final XCKey KEY_B =
+    new XCKey(KeyCode.B, false, false, false);
+  private static final XCKey KEY_1 =
+    new XCKey(KeyCode.DIGIT1, false, false, false);
+
+  private final List<Set<KeyCode>> probes = new ArrayList<>();
+  private final List<XCKeyMap> updates = new ArrayList<>();
+  private Optional<XCKeyMap> stored = Optional.empty();
+  private int locks;
+
+  private XCKeyMapIncremental create()
+  {
+    return new XCKeyMapIncremental(
+      Set.of(KeyCode.A, KeyCode.B, KeyCode.DIGIT1),
+      codes -> {
+        this.probes.add(codes);
+        final var results = new HashMap<Character, XCKey>();
+        if (codes.contains(KeyCode.B)) {
+          results.put(Character.valueOf('b'), KEY_B);
+        }
+        if (codes.contains(KeyCode.DIGIT1)) {
+          results.put(Character.valueOf('1'), KEY_1);
+        }
+        return results;
+      },
+      new XCKeyMapIncremental.StoreType()
+      {
+        @Override
+        public Closeable lock()
+        {
+          ++XCKeyMapIncrementalTest.this.locks;
+          return () -> {
+
+          };
+        }
+
+        @Override
+        public Optional<XCKeyMap> load()
+        {
+          return XCKeyMapIncrementalTest.this.stored;
+        }
+
+        @Override
+        public void save(
+          final XCKeyMap keyMap)
+        {
+          XCKeyMapIncrementalTest.this.updates.add(keyMap);
+        }
+      },
+      Runnable::run
+    );
+  }
+
+  @Test
+  public void testKnownNoProbe()
+    throws Exception
+  {
+    final var map = this.create();
+    map.addAll(Map.of(Character.valueOf('a'), KEY_A));
+
+    assertEquals(List.of(KEY_A, KEY_A), map.toCodes("aa").get());
+    assertEquals(List.of(), this.probes);
+    assertEquals(List.of(), this.updates);
+    assertEquals(0, this.locks);
+  }
+
+  @Test
+  public void testUnknownFoundByOtherProcess()
+    throws Exception
+  {
+    final var map = this.create();
+
+    /*
+     * Another process probed for the character while this one was waiting
+     * for the lock.
+     */
+
+    this.stored = Optional.of(
+      new XCKeyMap(Map.of(Character.valueOf('b'), KEY_B))
+    );
+
+    assertEquals(List.of(KEY_B), map.toCodes("b").get());
+    assertEquals(List.of(), this.probes);
+    assertEquals(List.of(), this.updates);
+    assertEquals(1, this.locks);
+  }
+
+  @Test
+  public void testUnknownProbesCandidatesOnly()
+    throws Exception
+  {
+    final var map = this.create();
+    map.addAll(Map.of(Character.valueOf('a'), KEY_A));
+
+    assertEquals(List.of(KEY_A, KEY_B), map.toCodes("ab").get());
+    assertEquals(List.of(Set.of(KeyCode.B)), this.probes);
+    assertEquals(1, this.updates.size());
+
+    assertEquals(List.of(KEY_B), map.toCodes("b").get());
+    assertEquals(1, this.probes.size());
+  }
+
+  @Test
+  public void testUnknownMissIsPerCharacter()
+    throws Exception
+  {
+    final var map = this.create();
+
+    final var ex =
+      assertThrows(ExecutionException.class, () -> map.toCodes("?").get());
+    assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+
+    assertEquals(
+      List.of(Set.of(KeyCode.A, KeyCode.B, KeyCode.DIGIT1)),
+      this.probes
+    );
+
+    /*
+     * Every key has now been probed, so further misses do not probe.
+     */
+
+    assertThrows(ExecutionException.class, () -> map.toCodes("!").get());
+    assertEquals(1, this.probes.size());
+    assertEquals(List.of(KEY_1), map.toCodes("1").get());
+  }
+
+  @Test
+  public void testReplace()
+    throws Exception
+  {
+    final var map = this.create();
+    map.addAll(Map.of(
+      Character.valueOf('a'), KEY_A,
+      Character.valueOf('b'), KEY_A,
+      Character.valueOf('1'), KEY_1
+    ));
+
+    map.replace(
+      Set.of(KeyCode.A),
+      Map.of(Character.valueOf('a'), KEY_A)
+    );
+
+    assertEquals(
+      Map.of(
+        Character.valueOf('a'), KEY_A,
+        Character.valueOf('1'), KEY_1
+      ),
+      map.current().keys()
+    );
+
+    /*
+     * The stale mapping for 'b' is gone, and is probed again on demand.
+     */
+
+    assertEquals(List.of(KEY_B), map.toCodes("b").get());
+    assertEquals(List.of(Set.of(KeyCode.B)), this.probes);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.tests;
+
+import com.io7m.xoanon.commander.internal.XCKeyMapProber;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class XCKeyMapProberTest
+{
+  @Test
+  public void testDecodeEmpty()
+  {
+    assertEquals(Optional.of(List.of()), XCKeyMapProber.decode(0, ""));
+  }
+
+  @Test
+  public void testDecodeLines()
+  {
+    assertEquals(
+      Optional.of(List.of("a", "A", "", "1")),
+      XCKeyMapProber.decode(4, "a\nA\n\n1\n")
+    );
+  }
+
+  @Test
+  public void testDecodeAmbiguousLine()
+  {
+    assertEquals(
+      Optional.of(List.of("a", "`e")),
+      XCKeyMapProber.decode(2, "a\n`e\n")
+    );
+  }
+
+  @Test
+  public void testDecodeTooFewLines()
+  {
+    assertEquals(Optional.empty(), XCKeyMapProber.decode(3, "a\nA\n"));
+  }
+
+  @Test
+  public void testDecodeTooManyLines()
+  {
+    assertEquals(Optional.empty(), XCKeyMapProber.decode(1, "a\n\n"));
+  }
+
+  @Test
+  public void testDecodeUnterminated()
+  {
+    assertEquals(Optional.empty(), XCKeyMapProber.decode(2, "a\nA"));
+  }
+}
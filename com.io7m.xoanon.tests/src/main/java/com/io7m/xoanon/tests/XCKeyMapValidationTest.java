@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.tests;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.internal.XCKeyMapValidation;
+import javafx.scene.input.KeyCode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public final class XCKeyMapValidationTest
+{
+  private static final XCKey KEY_A =
+    new XCKey(KeyCode.A, false, false, false);
+  private static final XCKey KEY_A_SHIFT =
+    new XCKey(KeyCode.A, true, false, false);
+  private static final XCKey KEY_B =
+    new XCKey(KeyCode.B, false, false, false);
+  private static final XCKey KEY_B_SHIFT =
+    new XCKey(KeyCode.B, true, false, false);
+  private static final XCKey KEY_Q_ALT =
+    new XCKey(KeyCode.Q, false, true, false);
+
+  private static final XCKeyMap KEY_MAP =
+    new XCKeyMap(
+      Map.of(
+        Character.valueOf('a'), KEY_A,
+        Character.valueOf('A'), KEY_A_SHIFT,
+        Character.valueOf('b'), KEY_B,
+        Character.valueOf('B'), KEY_B_SHIFT,
+        Character.valueOf('@'), KEY_Q_ALT
+      )
+    );
+
+  @Test
+  public void testSampleLevels()
+  {
+    final var sample =
+      XCKeyMapValidation.sample(KEY_MAP, 1, new SplittableRandom(0L));
+
+    assertEquals(2, sample.size());
+    assertEquals(
+      1L,
+      sample.keySet().stream().filter(XCKey::isShift).count());
+    assertFalse(sample.containsKey(KEY_Q_ALT));
+  }
+
+  @Test
+  public void testSampleDeterministic()
+  {
+    assertEquals(
+      XCKeyMapValidation.sample(KEY_MAP, 1, new SplittableRandom(23L)),
+      XCKeyMapValidation.sample(KEY_MAP, 1, new SplittableRandom(23L))
+    );
+  }
+
+  @Test
+  public void testSampleAll()
+  {
+    final var sample =
+      XCKeyMapValidation.sample(KEY_MAP, 10, new SplittableRandom(0L));
+
+    assertEquals(
+      Map.of(
+        KEY_A, Character.valueOf('a'),
+        KEY_A_SHIFT, Character.valueOf('A'),
+        KEY_B, Character.valueOf('b'),
+        KEY_B_SHIFT, Character.valueOf('B')
+      ),
+      sample
+    );
+  }
+
+  @Test
+  public void testMismatches()
+  {
+    final var sample =
+      XCKeyMapValidation.sample(KEY_MAP, 10, new SplittableRandom(0L));
+
+    final var matching =
+      sample.values()
+        .stream()
+        .map(String::valueOf)
+        .toList();
+
+    assertEquals(
+      Set.of(),
+      XCKeyMapValidation.mismatches(sample, Optional.of(matching))
+    );
+
+    final var keys = List.copyOf(sample.keySet());
+    final var wrong =
+      keys.stream()
+        .map(key -> key.equals(KEY_B) ? "z" : String.valueOf(sample.get(key)))
+        .toList();
+
+    assertEquals(
+      Set.of(KEY_B),
+      XCKeyMapValidation.mismatches(sample, Optional.of(wrong))
+    );
+  }
+
+  @Test
+  public void testMismatchesUndecodable()
+  {
+    final var sample =
+      XCKeyMapValidation.sample(KEY_MAP, 10, new SplittableRandom(0L));
+
+    assertEquals(
+      sample.keySet(),
+      XCKeyMapValidation.mismatches(sample, Optional.empty())
+    );
+  }
+}
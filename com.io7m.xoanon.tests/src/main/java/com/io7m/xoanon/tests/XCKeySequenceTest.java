@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.tests;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.internal.XCKeySequence;
+import com.io7m.xoanon.commander.internal.XCKeySequence.Operation;
+import javafx.scene.input.KeyCode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.io7m.xoanon.commander.internal.XCKeySequence.OperationKind.PRESS;
+import static com.io7m.xoanon.commander.internal.XCKeySequence.OperationKind.RELEASE;
+import static com.io7m.xoanon.commander.internal.XCKeySequence.OperationKind.TYPE;
+import static javafx.scene.input.KeyCode.A;
+import static javafx.scene.input.KeyCode.B;
+import static javafx.scene.input.KeyCode.C;
+import static javafx.scene.input.KeyCode.CONTROL;
+import static javafx.scene.input.KeyCode.SHIFT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class XCKeySequenceTest
+{
+  private static XCKey plain(
+    final KeyCode code)
+  {
+    return new XCKey(code, false, false, false);
+  }
+
+  private static XCKey shifted(
+    final KeyCode code)
+  {
+    return new XCKey(code, true, false, false);
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final var sequence = XCKeySequence.compile(List.of());
+    assertEquals(List.of(), sequence.operations());
+    assertEquals(List.of(), sequence.batches(8));
+    assertEquals(0, sequence.keyCount());
+  }
+
+  @Test
+  public void testShiftMerged()
+  {
+    final var sequence =
+      XCKeySequence.compile(List.of(shifted(A), shifted(B), shifted(C)));
+
+    assertEquals(
+      List.of(
+        new Operation(PRESS, SHIFT),
+        new Operation(TYPE, A),
+        new Operation(TYPE, B),
+        new Operation(TYPE, C),
+        new Operation(RELEASE, SHIFT)
+      ),
+      sequence.operations()
+    );
+  }
+
+  @Test
+  public void testShiftRuns()
+  {
+    final var sequence =
+      XCKeySequence.compile(List.of(shifted(A), plain(B), shifted(C)));
+
+    assertEquals(
+      List.of(
+        new Operation(PRESS, SHIFT),
+        new Operation(TYPE, A),
+        new Operation(RELEASE, SHIFT),
+        new Operation(TYPE, B),
+        new Operation(PRESS, SHIFT),
+        new Operation(TYPE, C),
+        new Operation(RELEASE, SHIFT)
+      ),
+      sequence.operations()
+    );
+  }
+
+  @Test
+  public void testModifiersNested()
+  {
+    final var sequence =
+      XCKeySequence.compile(List.of(
+        new XCKey(A, true, false, true),
+        shifted(B)
+      ));
+
+    assertEquals(
+      List.of(
+        new Operation(PRESS, SHIFT),
+        new Operation(PRESS, CONTROL),
+        new Operation(TYPE, A),
+        new Operation(RELEASE, CONTROL),
+        new Operation(TYPE, B),
+        new Operation(RELEASE, SHIFT)
+      ),
+      sequence.operations()
+    );
+  }
+
+  @Test
+  public void testBatches()
+  {
+    final var sequence =
+      XCKeySequence.compile(List.of(
+        shifted(A), shifted(B), shifted(C), plain(A), plain(B)
+      ));
+
+    final var batches = sequence.batches(2);
+    assertEquals(3, batches.size());
+    assertEquals(B, batches.get(0).lastReleased());
+    assertEquals(A, batches.get(1).lastReleased());
+    assertEquals(B, batches.get(2).lastReleased());
+
+    final var count =
+      batches.stream()
+        .flatMap(b -> b.operations().stream())
+        .filter(o -> o.kind() == TYPE)
+        .count();
+    assertEquals(5L, count);
+  }
+
+  @Test
+  public void testBatchReleaseCount()
+  {
+    final var sequence =
+      XCKeySequence.compile(List.of(plain(A), plain(B), plain(A)));
+
+    final var batches = sequence.batches(3);
+    assertEquals(1, batches.size());
+
+    final var batch = batches.get(0);
+    assertEquals(A, batch.lastReleased());
+    assertEquals(2, batch.releaseCount(A));
+    assertEquals(1, batch.releaseCount(B));
+    assertEquals(0, batch.releaseCount(C));
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2023 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.xoanon.tests;
+
+import com.io7m.xoanon.commander.api.XCKey;
+import com.io7m.xoanon.commander.internal.XCXKBDerivation;
+import com.io7m.xoanon.commander.internal.XCXKBKeysyms;
+import com.io7m.xoanon.commander.internal.XCXKBParser;
+import com.io7m.xoanon.commander.internal.XCXKBResolver;
+import com.io7m.xoanon.commander.internal.XCXKBSection;
+import javafx.scene.input.KeyCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class XCXKBTest
+{
+  private static final String KEYMAP = """
+    xkb_keymap {
+      xkb_keycodes  { include "evdev+aliases(qwerty)" };
+      xkb_types     { include "complete" };
+      xkb_compat    { include "complete" };
+      xkb_symbols   { include "pc+us+inet(evdev)" };
+      xkb_geometry  { include "pc(pc105)" };
+    };
+    """;
+
+  private Path directory;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory =
+      XCTestDirectories.createTempDirectory();
+
+    Files.createDirectories(this.directory.resolve("keycodes"));
+    Files.createDirectories(this.directory.resolve("symbols"));
+
+    Files.writeString(this.directory.resolve("keycodes/evdev"), """
+      default xkb_keycodes "evdev" {
+        minimum = 8;
+        maximum = 255;
+        <AE01> = 10;
+        <AE02> = 11;
+        <AD01> = 24;
+        <AC01> = 38;
+        <BKSL> = 51;
+        indicator 1 = "Caps Lock";
+      };
+      """);
+
+    Files.writeString(this.directory.resolve("keycodes/aliases"), """
+      default xkb_keycodes "qwerty" {
+        alias <AC12> = <BKSL>;
+      };
+      """);
+
+    Files.writeString(this.directory.resolve("symbols/pc"), """
+      default partial alphanumeric_keys modifier_keys
+      xkb_symbols "pc" {
+        key <ESC> { [ Escape ] };
+        modifier_map Shift { Shift_L, Shift_R };
+      };
+      """);
+
+    Files.writeString(this.directory.resolve("symbols/us"), """
+      default partial alphanumeric_keys
+      xkb_symbols "basic" {
+        name[Group1] = "English (US)";
+        key <AE01> { [ 1, exclam ] };
+        key <AE02> { [ 2, at ] };
+        key <AD01> { [ q ] };
+        key <AC01> {
+          type[Group1] = "FOUR_LEVEL",
+          symbols[Group1] = [ a, A, aring, Aring ]
+        };
+        key <AC12> { [ backslash, bar ] };
+      };
+      """);
+
+    Files.writeString(this.directory.resolve("symbols/inet"), """
+      partial alphanumeric_keys
+      xkb_symbols "evdev" {
+        augment key <AE02> { [ 3, numbersign ] };
+      };
+      """);
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    XCTestDirectories.deleteDirectory(this.directory);
+  }
+
+  @Test
+  public void testParseKeymap()
+  {
+    final var sections = XCXKBParser.parse(KEYMAP);
+    assertEquals(2, sections.size());
+    assertEquals(
+      new XCXKBSection.Include(
+        XCXKBSection.Merge.OVERRIDE, "pc+us+inet(evdev)"),
+      sections.get(1).statements().get(0)
+    );
+  }
+
+  @Test
+  public void testResolve()
+  {
+    final var keymap =
+      new XCXKBResolver(this.directory).resolve(KEYMAP);
+
+    assertEquals(Integer.valueOf(51), keymap.keycodes().get("AC12"));
+    assertEquals(List.of("1", "exclam"), keymap.levels("AE01"));
+    assertEquals(List.of("2", "at"), keymap.levels("AE02"));
+    assertEquals(List.of("backslash", "bar"), keymap.levels("BKSL"));
+    assertEquals(Optional.of("AE01"), keymap.findKeysym("exclam"));
+  }
+
+  @Test
+  public void testDerive()
+  {
+    final var keymap =
+      new XCXKBResolver(this.directory).resolve(KEYMAP);
+    final var derivation =
+      XCXKBDerivation.derive(
+        keymap,
+        Set.of(
+          KeyCode.DIGIT1,
+          KeyCode.EXCLAMATION_MARK,
+          KeyCode.Q,
+          KeyCode.A,
+          KeyCode.BACK_SLASH,
+          KeyCode.SUBTRACT,
+          KeyCode.Z
+        )
+      );
+
+    final var keys = derivation.keys();
+    assertEquals(plain(KeyCode.DIGIT1), keys.get(Character.valueOf('1')));
+    assertEquals(shifted(KeyCode.DIGIT1), keys.get(Character.valueOf('!')));
+    assertEquals(plain(KeyCode.Q), keys.get(Character.valueOf('q')));
+    assertEquals(shifted(KeyCode.Q), keys.get(Character.valueOf('Q')));
+    assertEquals(shifted(KeyCode.A), keys.get(Character.valueOf('A')));
+    assertEquals(
+      shifted(KeyCode.BACK_SLASH),
+      keys.get(Character.valueOf('|')));
+
+    assertEquals(Set.of(KeyCode.SUBTRACT, KeyCode.Z), derivation.unresolved());
+  }
+
+  @Test
+  public void testKeysyms()
+  {
+    assertEquals(
+      Optional.of(Character.valueOf('!')),
+      XCXKBKeysyms.character("exclam"));
+    assertEquals(
+      Optional.of(Character.valueOf('ä')),
+      XCXKBKeysyms.character("adiaeresis"));
+    assertEquals(
+      Optional.of(Character.valueOf('€')),
+      XCXKBKeysyms.character("U20AC"));
+    assertTrue(XCXKBKeysyms.character("dead_grave").isEmpty());
+    assertTrue(XCXKBKeysyms.character("Escape").isEmpty());
+  }
+
+  private static XCKey plain(
+    final KeyCode code)
+  {
+    return new XCKey(code, false, false, false);
+  }
+
+  private static XCKey shifted(
+    final KeyCode code)
+  {
+    return new XCKey(code, true, false, false);
+  }
+}
@@ -18,19 +18,37 @@ package com.io7m.xoanon.tests;
 
 import com.io7m.percentpass.extension.PercentPassing;
 import com.io7m.xoanon.commander.XBVersion;
+import com.io7m.xoanon.commander.api.XCAnimationClockMode;
 import com.io7m.xoanon.commander.api.XCApplicationInfo;
 import com.io7m.xoanon.commander.api.XCCommanderType;
 import com.io7m.xoanon.commander.api.XCFXThread;
+import com.io7m.xoanon.commander.api.XCKey;
 import com.io7m.xoanon.commander.api.XCKeyMap;
+import com.io7m.xoanon.commander.api.XCNodeQuery;
+import com.io7m.xoanon.commander.api.XCRobotBackends;
+import com.io7m.xoanon.commander.api.XCRobotResetMode;
 import com.io7m.xoanon.commander.api.XCRobotType;
+import com.io7m.xoanon.commander.api.XCSceneSnapshotDifference;
+import com.io7m.xoanon.commander.internal.XCKeyMapIncremental;
+import com.io7m.xoanon.commander.internal.XCRobotAsync;
+import com.io7m.xoanon.commander.internal.XCRobotBackendSynthetic;
 import com.io7m.xoanon.extension.XoExtension;
+import javafx.animation.Animation;
+import javafx.animation.FadeTransition;
+import javafx.animation.Interpolator;
 import javafx.application.Platform;
+import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
@@ -41,9 +59,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -127,6 +151,38 @@ public final class XoExtensionTest
     assertEquals("Hello!", text.get());
   }
 
+  @Test
+  public void testTextFieldTextAcknowledged(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var text =
+      new AtomicReference<String>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var field = new TextField();
+        field.setId("x");
+        field.textProperty()
+          .addListener((observable, oldValue, newValue) -> {
+            text.set(newValue);
+          });
+        newStage.setScene(new Scene(field));
+      });
+
+    bot.setInputAcknowledgementEnabled(true);
+    try {
+      final var node = bot.findWithId(stage, "x");
+      bot.click(node);
+      bot.typeText(node, "Hello!");
+    } finally {
+      bot.setInputAcknowledgementEnabled(false);
+    }
+
+    assertEquals("Hello!", text.get());
+  }
+
   @Test
   public void testFindWithId(
     final XCRobotType bot,
@@ -258,6 +314,27 @@ public final class XoExtensionTest
     assertInstanceOf(NoSuchElementException.class, ex.getCause());
   }
 
+  @Test
+  public void testTextFieldTextFindWrongTypeId(
+    final XCCommanderType commander,
+    final XCRobotType bot)
+    throws Exception
+  {
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var label = new Label();
+        label.setId("x");
+        newStage.setScene(new Scene(label));
+      });
+
+    final var ex =
+      assertThrows(ExecutionException.class, () -> {
+        bot.findWithId(Button.class, stage, "x");
+      });
+
+    assertInstanceOf(ClassCastException.class, ex.getCause());
+  }
+
   @Test
   public void testTextFieldTextFindNonexistentText0(
     final XCCommanderType commander,
@@ -432,6 +509,39 @@ public final class XoExtensionTest
     bot.waitUntil(1_000L, check::isSelected);
   }
 
+  @Test
+  public void testWaitUntilObserving(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    commander.stageNewAndWait(newStage -> {
+      final var checkBox = new CheckBox();
+      checkBox.setSelected(false);
+      checkBox.setId("x");
+      newStage.setScene(new Scene(checkBox));
+    });
+
+    final var check =
+      bot.findWithIdInAnyStage(CheckBox.class, "x");
+
+    Platform.runLater(() -> {
+      check.setSelected(true);
+    });
+
+    final var statistics =
+      bot.waitUntilObserving(
+        1_000L,
+        List.of(check.selectedProperty()),
+        check::isSelected
+      );
+
+    assertTrue(statistics.evaluations() >= 1L);
+    assertTrue(
+      statistics.timeElapsed().compareTo(statistics.timeFXThread()) >= 0
+    );
+  }
+
   @Test
   public void testFindCheckbox(
     final XCRobotType bot,
@@ -484,6 +594,23 @@ public final class XoExtensionTest
     bot.waitForFrames(60);
   }
 
+  @Test
+  public void testWaitPulseCount(
+    final XCRobotType bot)
+    throws Exception
+  {
+    final var pulses = bot.waitForPulseCount(10);
+    assertEquals(10, pulses.count());
+
+    final var timestamps = pulses.timestamps();
+    for (int index = 1; index < timestamps.size(); ++index) {
+      assertTrue(
+        timestamps.get(index).longValue()
+        > timestamps.get(index - 1).longValue()
+      );
+    }
+  }
+
   @Test
   @Disabled("A disabled test, captured by the test runner.")
   public void testDisabled()
@@ -506,6 +633,7 @@ public final class XoExtensionTest
         cb0.getStyleClass().add("a-checkbox");
         final var cb1 = new CheckBox();
         cb1.getStyleClass().add("a-checkbox");
+        cb1.getStyleClass().add("a-checkbox");
         final var cb2 = new CheckBox();
         cb2.getStyleClass().add("a-checkbox");
 
@@ -721,4 +849,982 @@ public final class XoExtensionTest
     Platform.runLater(stage::close);
     bot.waitForStageToClose(stage, 1_000L);
   }
+
+  @Test
+  public void testWaitForStageToShow(
+    final XCRobotType bot)
+    throws Exception
+  {
+    final var stage =
+      XCFXThread.runAndWait(1L, TimeUnit.SECONDS, () -> {
+        final var newStage = new Stage();
+        newStage.setScene(new Scene(new TextField()));
+        return newStage;
+      });
+
+    Platform.runLater(stage::show);
+    bot.waitForStageToShow(stage, 1_000L);
+    bot.waitForStageFocused(stage, 1_000L);
+
+    Platform.runLater(stage::close);
+    bot.waitForStageToClose(stage, 1_000L);
+  }
+
+  @Test
+  public void testWaitForStageToCloseTimeout(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        newStage.setScene(new Scene(new TextField()));
+      });
+
+    assertThrows(TimeoutException.class, () -> {
+      bot.waitForStageToClose(stage, 100L);
+    });
+  }
+
+  @Test
+  public void testSyntheticButton(
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var bot =
+      commander.robot(XCRobotBackends.SYNTHETIC).get(5L, TimeUnit.SECONDS);
+    final var clicked =
+      new AtomicBoolean(false);
+
+    assertEquals(XCRobotBackends.SYNTHETIC, bot.backendName());
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var button = new Button("OK");
+        button.setId("x");
+        button.setOnMouseClicked(event -> clicked.set(true));
+        newStage.setScene(new Scene(button));
+      });
+
+    bot.click(bot.findWithId(stage, "x"));
+    assertTrue(clicked.get());
+  }
+
+  @Test
+  public void testSyntheticDoubleClick(
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var bot =
+      commander.robot(XCRobotBackends.SYNTHETIC).get(5L, TimeUnit.SECONDS);
+    final var doubleClicked =
+      new AtomicBoolean(false);
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var button = new Button("OK");
+        button.setId("x");
+        button.setOnMouseClicked(event -> {
+          if (event.getClickCount() == 2) {
+            doubleClicked.set(true);
+          }
+        });
+        newStage.setScene(new Scene(button));
+      });
+
+    bot.doubleClick(bot.findWithId(stage, "x"));
+    assertTrue(doubleClicked.get());
+  }
+
+  @Test
+  public void testSyntheticTextFieldText(
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var bot =
+      commander.robot(XCRobotBackends.SYNTHETIC).get(5L, TimeUnit.SECONDS);
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var field = new TextField();
+        field.setId("x");
+        newStage.setScene(new Scene(field));
+      });
+
+    final var field = bot.findWithId(TextField.class, stage, "x");
+    bot.click(field);
+    bot.typeText(field, "Hello!");
+
+    assertEquals("Hello!", bot.evaluate(field::getText));
+  }
+
+  @Test
+  public void testSyntheticTypesProbedCharacter(
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var keyQ =
+      new XCKey(KeyCode.Q, false, false, false);
+
+    /*
+     * The key map starts empty, so the character is only found when it is
+     * probed on demand, after the backend has been created.
+     */
+
+    final var keyMap =
+      new XCKeyMapIncremental(
+        Set.of(KeyCode.Q),
+        codes -> Map.of(Character.valueOf('q'), keyQ),
+        new XCKeyMapIncremental.StoreType()
+        {
+          @Override
+          public Closeable lock()
+          {
+            return () -> {
+
+            };
+          }
+
+          @Override
+          public Optional<XCKeyMap> load()
+          {
+            return Optional.empty();
+          }
+
+          @Override
+          public void save(
+            final XCKeyMap map)
+          {
+
+          }
+        },
+        Runnable::run
+      );
+
+    final var robot =
+      new XCRobotAsync(keyMap, new XCRobotBackendSynthetic(keyMap::current));
+
+    final var fieldRef =
+      new AtomicReference<TextField>();
+
+    commander.stageNewAndWait(newStage -> {
+      final var field = new TextField();
+      fieldRef.set(field);
+      newStage.setScene(new Scene(field));
+    });
+
+    final var field = fieldRef.get();
+    assertEquals(Map.of(), keyMap.current().keys());
+
+    try {
+      robot.click(field).get(5L, TimeUnit.SECONDS);
+      robot.typeText(field, "qq").get(5L, TimeUnit.SECONDS);
+      assertEquals(
+        "qq",
+        XCFXThread.run(field::getText).get(5L, TimeUnit.SECONDS)
+      );
+    } finally {
+      robot.close();
+    }
+  }
+
+  @Test
+  public void testRobotBackendNonexistent(
+    final XCCommanderType commander)
+  {
+    final var ex =
+      assertThrows(ExecutionException.class, () -> {
+        commander.robot("nonexistent").get(5L, TimeUnit.SECONDS);
+      });
+    assertInstanceOf(NoSuchElementException.class, ex.getCause());
+  }
+
+  @Test
+  public void testSyntheticScreenCapture(
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var bot =
+      commander.robot(XCRobotBackends.SYNTHETIC).get(5L, TimeUnit.SECONDS);
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var rectangle = new Rectangle(32.0, 32.0, Color.RED);
+        rectangle.setId("x");
+        newStage.setScene(new Scene(new VBox(rectangle)));
+      });
+
+    final var image =
+      bot.screenCapture(bot.findWithId(stage, "x"));
+
+    assertEquals(32, (int) image.getWidth());
+    assertEquals(32, (int) image.getHeight());
+    assertEquals(Color.RED, image.getPixelReader().getColor(16, 16));
+  }
+
+  @Test
+  public void testAsyncPipeline(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var field = new TextField();
+        field.setId("x");
+        newStage.setScene(new Scene(field));
+      });
+
+    final var async = bot.async();
+    final var field = new AtomicReference<TextField>();
+
+    async.findWithId(TextField.class, stage, "x")
+      .thenCompose(node -> {
+        field.set(node);
+        async.click(node);
+        return async.typeText(node, "Hello!");
+      })
+      .thenCompose(ignored -> {
+        return async.waitUntil(1_000L, () -> {
+          return "Hello!".equals(field.get().getText());
+        });
+      })
+      .get(10L, TimeUnit.SECONDS);
+
+    assertEquals("Hello!", bot.evaluate(() -> field.get().getText()));
+  }
+
+  @Test
+  public void testAsyncFindNonexistent(
+    final XCRobotType bot)
+  {
+    final var ex =
+      assertThrows(ExecutionException.class, () -> {
+        bot.async()
+          .findWithIdInAnyStage("x")
+          .get(10L, TimeUnit.SECONDS);
+      });
+
+    assertInstanceOf(NoSuchElementException.class, ex.getCause());
+  }
+
+  @Test
+  public void testFocusTrackerSkipsRaise(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var button = new Button("OK");
+        button.setId("x");
+        newStage.setScene(new Scene(button));
+      });
+
+    final var node = bot.findWithId(stage, "x");
+    bot.click(node);
+
+    final var before = bot.focusStatistics();
+    bot.click(node);
+    bot.click(node);
+    final var after = bot.focusStatistics();
+
+    assertEquals(before.hits() + 2L, after.hits());
+    assertEquals(before.misses(), after.misses());
+  }
+
+  @Test
+  public void testResetModes(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var released =
+      new CopyOnWriteArrayList<KeyCode>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var field = new TextField();
+        field.addEventFilter(KeyEvent.KEY_RELEASED, event -> {
+          released.add(event.getCode());
+        });
+        newStage.setScene(new Scene(field));
+      });
+
+    /*
+     * Press a key through the robot's ledger without releasing it, as an
+     * operation that failed halfway through would.
+     */
+
+    final var ledger = ((XCRobotAsync) bot.async()).ledger();
+    bot.execute(() -> ledger.keyPress(KeyCode.SHIFT));
+    assertEquals(List.of(KeyCode.SHIFT), bot.evaluate(ledger::keysPressed));
+
+    bot.reset(Optional.of(stage), XCRobotResetMode.RELEASE_PRESSED);
+    bot.waitForFrames(2);
+
+    assertEquals(List.of(), bot.evaluate(ledger::keysPressed));
+    assertEquals(List.of(), bot.evaluate(ledger::buttonsPressed));
+    assertTrue(released.contains(KeyCode.SHIFT));
+
+    /*
+     * Nothing is held, so a second reset releases nothing.
+     */
+
+    released.clear();
+    bot.reset(Optional.of(stage), XCRobotResetMode.RELEASE_PRESSED);
+    bot.waitForFrames(2);
+    assertEquals(List.of(), released);
+
+    bot.reset(Optional.of(stage), XCRobotResetMode.RELEASE_ALL);
+    assertEquals(List.of(), bot.evaluate(ledger::keysPressed));
+    bot.reset(Optional.empty());
+  }
+
+  @Test
+  public void testQueryFirstStopsEarly(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var checkRef =
+      new AtomicReference<List<CheckBox>>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var cb0 = new CheckBox();
+        cb0.getStyleClass().add("a-checkbox");
+        cb0.getStyleClass().add("b-checkbox");
+        final var cb1 = new CheckBox();
+        cb1.getStyleClass().add("a-checkbox");
+        final var cb2 = new CheckBox();
+        cb2.getStyleClass().add("a-checkbox");
+        cb2.getStyleClass().add("b-checkbox");
+
+        final var root = new VBox(cb0, cb1, cb2);
+        checkRef.set(List.of(cb0, cb1, cb2));
+        newStage.setScene(new Scene(root));
+      });
+
+    final var query =
+      XCNodeQuery.of(CheckBox.class)
+        .withStyleClass("a-checkbox")
+        .withStyleClass("b-checkbox");
+
+    final var all = bot.queryInStage(query, stage);
+    final var checks = checkRef.get();
+    assertEquals(List.of(checks.get(0), checks.get(2)), all.nodes());
+
+    final var first = bot.queryInStage(query.first(), stage);
+    assertEquals(List.of(checks.get(0)), first.nodes());
+    assertTrue(first.nodesVisited() < all.nodesVisited());
+  }
+
+  @Test
+  public void testQueryDeepGraph(
+    final XCRobotType bot)
+    throws Exception
+  {
+    final var root = new Group();
+    var parent = root;
+    for (int index = 0; index < 10_000; ++index) {
+      final var child = new Group();
+      parent.getChildren().add(child);
+      parent = child;
+    }
+    final var leaf = new Label("Deep!");
+    parent.getChildren().add(leaf);
+
+    final var result =
+      bot.query(XCNodeQuery.of(Label.class).withText("Deep!"), root);
+
+    assertEquals(List.of(leaf), result.nodes());
+    assertEquals(10_002L, result.nodesVisited());
+  }
+
+  @Test
+  public void testSceneIndex(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var rootRef =
+      new AtomicReference<VBox>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var cb0 = new CheckBox();
+        cb0.getStyleClass().add("a-checkbox");
+        final var cb1 = new CheckBox();
+        cb1.setId("cb1");
+
+        final var root = new VBox(cb0, cb1);
+        rootRef.set(root);
+        newStage.setScene(new Scene(root));
+      });
+
+    bot.setSceneIndexEnabled(true);
+    try {
+      assertEquals(
+        1,
+        bot.findAllWithClassInStage(CheckBox.class, stage, "a-checkbox")
+          .size()
+      );
+
+      final var cb2 = new CheckBox();
+      bot.execute(() -> {
+        cb2.getStyleClass().add("a-checkbox");
+        rootRef.get().getChildren().add(cb2);
+      });
+
+      final var found =
+        bot.findAllWithClassInStage(CheckBox.class, stage, "a-checkbox");
+      assertEquals(2, found.size());
+      assertTrue(found.contains(cb2));
+
+      bot.execute(() -> cb2.setId("cb2"));
+      assertEquals(cb2, bot.findWithId(CheckBox.class, stage, "cb2"));
+
+      bot.execute(() -> rootRef.get().getChildren().remove(cb2));
+      assertThrows(ExecutionException.class, () -> {
+        bot.findWithId(CheckBox.class, stage, "cb2");
+      });
+
+      final var statistics = bot.sceneIndexStatistics();
+      LOG.debug("statistics: {}", statistics);
+      assertEquals(1, statistics.scenes());
+      assertTrue(statistics.nodes() > 0L);
+      assertTrue(statistics.updates() >= 3L);
+      assertTrue(statistics.queries() >= 4L);
+    } finally {
+      bot.setSceneIndexEnabled(false);
+    }
+
+    bot.execute(() -> LOG.debug("index disabled"));
+    assertEquals(0L, bot.sceneIndexStatistics().nodes());
+  }
+
+  @Test
+  public void testSceneIndexOrder(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var rootRef =
+      new AtomicReference<VBox>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var cb0 = new CheckBox();
+        cb0.getStyleClass().add("a-checkbox");
+
+        final var root = new VBox(cb0);
+        rootRef.set(root);
+        newStage.setScene(new Scene(root));
+      });
+
+    final var query =
+      XCNodeQuery.of(CheckBox.class)
+        .withStyleClass("a-checkbox")
+        .first();
+
+    bot.setSceneIndexEnabled(true);
+    try {
+      assertEquals(1, bot.queryInStage(query, stage).nodes().size());
+
+      /*
+       * The new node is indexed after the existing node, but precedes it in
+       * the scene graph.
+       */
+
+      final var cb1 = new CheckBox();
+      bot.execute(() -> {
+        cb1.getStyleClass().add("a-checkbox");
+        rootRef.get().getChildren().add(0, cb1);
+      });
+
+      assertEquals(List.of(cb1), bot.queryInStage(query, stage).nodes());
+    } finally {
+      bot.setSceneIndexEnabled(false);
+    }
+  }
+
+  @Test
+  public void testSceneIndexReparent(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var checkRef =
+      new AtomicReference<CheckBox>();
+    final var targetRef =
+      new AtomicReference<VBox>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var cb = new CheckBox();
+        cb.setId("cb");
+        final var box0 = new VBox(cb);
+        final var box1 = new VBox();
+
+        checkRef.set(cb);
+        targetRef.set(box1);
+        newStage.setScene(new Scene(new VBox(box0, box1)));
+      });
+
+    bot.setSceneIndexEnabled(true);
+    try {
+      final var cb = checkRef.get();
+      assertEquals(cb, bot.findWithId(CheckBox.class, stage, "cb"));
+
+      bot.execute(() -> targetRef.get().getChildren().add(cb));
+      assertEquals(cb, bot.findWithId(CheckBox.class, stage, "cb"));
+
+      bot.execute(() -> cb.setId("moved"));
+      assertEquals(cb, bot.findWithId(CheckBox.class, stage, "moved"));
+    } finally {
+      bot.setSceneIndexEnabled(false);
+    }
+  }
+
+  @Test
+  public void testQueryBatch(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var f0 = new TextField();
+        f0.setId("f0");
+        final var f1 = new TextField();
+        f1.setId("f1");
+        final var f2 = new TextField();
+        f2.setId("f2");
+        newStage.setScene(new Scene(new VBox(f0, f1, f2)));
+      });
+
+    final var fields =
+      bot.findWithIds(stage, List.of("f0", "f1", "f2"));
+    assertEquals(List.of("f0", "f1", "f2"), List.copyOf(fields.keySet()));
+
+    final var q0 =
+      XCNodeQuery.of(TextField.class).withId("f1").first();
+    final var q1 =
+      XCNodeQuery.of(TextField.class).withId("nonexistent").first();
+    final var q2 =
+      XCNodeQuery.of(TextField.class);
+
+    final var batch =
+      bot.queryBatchInStage(List.of(q0, q1, q2), stage);
+
+    assertEquals(fields.get("f1"), batch.first(q0));
+    assertEquals(List.of(q1), batch.missing());
+    assertEquals(3, batch.result(q2).nodes().size());
+    assertThrows(NoSuchElementException.class, batch::requireComplete);
+    assertThrows(NoSuchElementException.class, () -> batch.first(q1));
+  }
+
+  @Test
+  public void testSceneSnapshot(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var labelRef =
+      new AtomicReference<Label>();
+
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var label = new Label("Before");
+        label.setId("label");
+        label.getStyleClass().add("a-label");
+        labelRef.set(label);
+
+        final var field = new TextField("Field");
+        newStage.setScene(new Scene(new VBox(label, field)));
+      });
+
+    final var before = bot.snapshot(stage);
+    LOG.debug("snapshot: {} ({} bytes)",
+              before, Long.valueOf(before.estimatedSizeBytes()));
+
+    assertTrue(before.size() > 3);
+    assertEquals(0, before.depth(0));
+    assertEquals(-1, before.parent(0));
+    assertEquals(before.size() - 1, before.descendantCount(0));
+    assertEquals(2, before.children(0).length);
+
+    final var labels = before.findWithId("label");
+    assertEquals(1, labels.length);
+    assertEquals(Label.class, before.type(labels[0]));
+    assertEquals(Optional.of("Before"), before.text(labels[0]));
+    assertTrue(before.styleClasses(labels[0]).contains("a-label"));
+    assertEquals(0, before.parent(labels[0]));
+    assertEquals(1, before.findWithText("Field").length);
+    assertEquals(1, before.findWithType(TextField.class).length);
+    assertEquals(0, before.findWithStyleClass("nonexistent").length);
+    assertEquals("VBox/Label[0]", before.path(labels[0]));
+    assertEquals(before.path(labels[0]), before.path(labels[0]));
+
+    final var outside = before.size();
+    assertThrows(IndexOutOfBoundsException.class, () -> before.type(outside));
+    assertThrows(IndexOutOfBoundsException.class, () -> before.id(outside));
+    assertThrows(IndexOutOfBoundsException.class, () -> before.text(outside));
+    assertThrows(IndexOutOfBoundsException.class, () -> before.parent(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> before.bounds(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> before.path(outside));
+
+    bot.execute(() -> labelRef.get().setText("After"));
+    final var after = bot.snapshot(stage);
+
+    final var differences = before.differences(after);
+    LOG.debug("differences: {}", differences);
+    assertTrue(differences.stream().anyMatch(d -> {
+      return d.kind() == XCSceneSnapshotDifference.Kind.CHANGED
+             && d.path().equals(before.path(labels[0]))
+             && d.description().contains("After");
+    }));
+    assertEquals(List.of(), before.differences(before));
+  }
+
+  @Test
+  public void testAwaitNode(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var rootRef =
+      new AtomicReference<VBox>();
+
+    commander.stageNewAndWait(newStage -> {
+      final var root = new VBox();
+      rootRef.set(root);
+      newStage.setScene(new Scene(root));
+    });
+
+    final var button = new Button("Late");
+    button.setId("late");
+
+    CompletableFuture.delayedExecutor(250L, TimeUnit.MILLISECONDS)
+      .execute(() -> {
+        Platform.runLater(() -> {
+          rootRef.get().getChildren().add(new VBox(button));
+        });
+      });
+
+    final var query =
+      XCNodeQuery.of(Button.class).withId("late");
+
+    assertEquals(button, bot.awaitNode(query, 5_000L));
+
+    CompletableFuture.delayedExecutor(250L, TimeUnit.MILLISECONDS)
+      .execute(() -> {
+        Platform.runLater(() -> rootRef.get().getChildren().clear());
+      });
+
+    bot.awaitNodeGone(query, 5_000L);
+    assertThrows(TimeoutException.class, () -> {
+      bot.awaitNode(query, 250L);
+    });
+  }
+
+  @Test
+  public void testAwaitNodePropertyChanged(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var label = new Label("Working");
+
+    commander.stageNewAndWait(newStage -> {
+      newStage.setScene(new Scene(new VBox(label)));
+    });
+
+    final var query =
+      XCNodeQuery.of(Label.class).withText("Done");
+
+    CompletableFuture.delayedExecutor(250L, TimeUnit.MILLISECONDS)
+      .execute(() -> Platform.runLater(() -> label.setText("Done")));
+
+    assertEquals(label, bot.awaitNode(query, 5_000L));
+
+    CompletableFuture.delayedExecutor(250L, TimeUnit.MILLISECONDS)
+      .execute(() -> Platform.runLater(() -> label.setText("Working")));
+
+    bot.awaitNodeGone(query, 5_000L);
+    assertEquals("Working", bot.evaluate(label::getText));
+
+    final var queryClass =
+      XCNodeQuery.of(Label.class).withStyleClass("ready");
+
+    CompletableFuture.delayedExecutor(250L, TimeUnit.MILLISECONDS)
+      .execute(() -> {
+        Platform.runLater(() -> label.getStyleClass().add("ready"));
+      });
+
+    assertEquals(label, bot.awaitNode(queryClass, 5_000L));
+
+    CompletableFuture.delayedExecutor(250L, TimeUnit.MILLISECONDS)
+      .execute(() -> {
+        Platform.runLater(() -> label.getStyleClass().remove("ready"));
+      });
+
+    bot.awaitNodeGone(queryClass, 5_000L);
+  }
+
+  @Test
+  public void testCountAndVisit(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var stage =
+      commander.stageNewAndWait(newStage -> {
+        final var root = new VBox();
+        for (int index = 0; index < 1000; ++index) {
+          final var label = new Label(Integer.toString(index));
+          label.getStyleClass().add("cell");
+          root.getChildren().add(label);
+        }
+        newStage.setScene(new Scene(root));
+      });
+
+    final var cells =
+      XCNodeQuery.of(Label.class).withStyleClass("cell");
+
+    assertEquals(1000L, bot.countInStage(cells, stage).matches());
+    assertEquals(10, bot.findAllInStage(Label.class, stage, 10).size());
+    assertTrue(bot.existsInStage(cells, stage));
+    assertTrue(!bot.existsInStage(cells.withText("nonexistent"), stage));
+
+    final var seen = new ArrayList<String>();
+    final var visited =
+      bot.visitInStage(cells, stage, label -> {
+        seen.add(label.getText());
+        return seen.size() < 3;
+      });
+
+    assertEquals(List.of("0", "1", "2"), seen);
+    assertEquals(3L, visited.matches());
+
+    final var limited =
+      bot.countInStage(cells.withLimit(5), stage);
+    assertEquals(5L, limited.matches());
+    assertTrue(limited.nodesVisited() < 1000L);
+  }
+
+  @Test
+  public void testVirtualizedCells(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var list = new AtomicReference<ListView<String>>();
+
+    commander.stageNewAndWait(newStage -> {
+      final var view = new ListView<String>();
+      for (int index = 0; index < 100_000; ++index) {
+        view.getItems().add("item " + index);
+      }
+      list.set(view);
+      newStage.setScene(new Scene(view, 320.0, 240.0));
+    });
+
+    final var view = list.get();
+    final var cell0 = bot.cellAt(view, 50_000);
+    assertEquals(50_000, cell0.getIndex());
+    assertEquals("item 50000", cell0.getItem());
+
+    final var cell1 = bot.cellWhere(view, "item 70000"::equals);
+    assertEquals(70_000, cell1.getIndex());
+    assertEquals("item 70000", cell1.getItem());
+
+    final var ex0 =
+      assertThrows(ExecutionException.class, () -> {
+        bot.cellAt(view, 100_000);
+      });
+    assertInstanceOf(IndexOutOfBoundsException.class, ex0.getCause());
+
+    final var ex1 =
+      assertThrows(ExecutionException.class, () -> {
+        bot.cellWhere(view, "nonexistent"::equals);
+      });
+    assertInstanceOf(NoSuchElementException.class, ex1.getCause());
+  }
+
+  @Test
+  public void testWaitForIdle(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var rectangle = new AtomicReference<Rectangle>();
+
+    commander.stageNewAndWait(newStage -> {
+      final var shape = new Rectangle(32.0, 32.0, Color.RED);
+      rectangle.set(shape);
+      newStage.setScene(new Scene(new Group(shape)));
+    });
+
+    bot.waitForIdle(5_000L);
+
+    final var fade =
+      new FadeTransition(javafx.util.Duration.millis(300.0), rectangle.get());
+    fade.setToValue(0.0);
+
+    final var worker = new javafx.concurrent.Task<Void>()
+    {
+      @Override
+      protected Void call()
+        throws Exception
+      {
+        Thread.sleep(200L);
+        return null;
+      }
+    };
+
+    bot.evaluate(() -> {
+      fade.play();
+      Thread.ofVirtual().start(worker);
+      return null;
+    });
+
+    final var statistics = bot.waitForIdle(5_000L, List.of(worker));
+    assertEquals(Animation.Status.STOPPED, bot.evaluate(fade::getStatus));
+    final double opacity = bot.evaluate(() -> rectangle.get().getOpacity());
+    assertEquals(0.0, opacity);
+    assertTrue(bot.evaluate(worker::isDone));
+    assertTrue(statistics.pulses() > 0L);
+  }
+
+  @Test
+  public void testAnimationClockVirtual(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var clock = commander.animationClock();
+    final var modeThen = clock.mode();
+    clock.setMode(XCAnimationClockMode.VIRTUAL).get(5L, TimeUnit.SECONDS);
+
+    try {
+      final var rectangle = new AtomicReference<Rectangle>();
+      commander.stageNewAndWait(newStage -> {
+        final var shape = new Rectangle(32.0, 32.0, Color.RED);
+        rectangle.set(shape);
+        newStage.setScene(new Scene(new Group(shape)));
+      });
+
+      final var finished = new AtomicBoolean(false);
+      final var fade =
+        new FadeTransition(javafx.util.Duration.seconds(60.0), rectangle.get());
+      fade.setFromValue(1.0);
+      fade.setToValue(0.0);
+      fade.setInterpolator(Interpolator.LINEAR);
+      fade.setOnFinished(event -> finished.set(true));
+
+      final var timeThen = System.nanoTime();
+      bot.evaluate(() -> {
+        clock.track(fade).play();
+        return null;
+      });
+
+      clock.advance(java.time.Duration.ofSeconds(30L))
+        .get(5L, TimeUnit.SECONDS);
+
+      final double opacity = bot.evaluate(() -> rectangle.get().getOpacity());
+      assertEquals(0.5, opacity, 0.01);
+      assertEquals(Animation.Status.PAUSED, bot.evaluate(fade::getStatus));
+      assertTrue(!finished.get());
+
+      clock.advanceToEnd().get(5L, TimeUnit.SECONDS);
+
+      final double opacityEnd =
+        bot.evaluate(() -> rectangle.get().getOpacity());
+      assertEquals(0.0, opacityEnd);
+      assertEquals(Animation.Status.STOPPED, bot.evaluate(fade::getStatus));
+      assertTrue(finished.get());
+      assertTrue(System.nanoTime() - timeThen < 10_000_000_000L);
+    } finally {
+      clock.setMode(modeThen).get(5L, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testAnimationClockVirtualDirection(
+    final XCRobotType bot,
+    final XCCommanderType commander)
+    throws Exception
+  {
+    final var clock = commander.animationClock();
+    final var modeThen = clock.mode();
+    clock.setMode(XCAnimationClockMode.VIRTUAL).get(5L, TimeUnit.SECONDS);
+
+    try {
+      final var reversing = new AtomicReference<Rectangle>();
+      final var backwards = new AtomicReference<Rectangle>();
+      commander.stageNewAndWait(newStage -> {
+        final var shape0 = new Rectangle(32.0, 32.0, Color.RED);
+        final var shape1 = new Rectangle(32.0, 32.0, Color.BLUE);
+        reversing.set(shape0);
+        backwards.set(shape1);
+        newStage.setScene(new Scene(new Group(shape0, shape1)));
+      });
+
+      final var fadeReversing =
+        new FadeTransition(javafx.util.Duration.seconds(10.0), reversing.get());
+      fadeReversing.setFromValue(1.0);
+      fadeReversing.setToValue(0.0);
+      fadeReversing.setInterpolator(Interpolator.LINEAR);
+      fadeReversing.setCycleCount(2);
+      fadeReversing.setAutoReverse(true);
+
+      final var finishedBackwards = new AtomicBoolean(false);
+      final var fadeBackwards =
+        new FadeTransition(javafx.util.Duration.seconds(10.0), backwards.get());
+      fadeBackwards.setFromValue(1.0);
+      fadeBackwards.setToValue(0.0);
+      fadeBackwards.setInterpolator(Interpolator.LINEAR);
+      fadeBackwards.setRate(-1.0);
+      fadeBackwards.setOnFinished(event -> finishedBackwards.set(true));
+
+      bot.evaluate(() -> {
+        clock.track(fadeReversing).play();
+        fadeBackwards.jumpTo(javafx.util.Duration.seconds(10.0));
+        clock.track(fadeBackwards).play();
+        return null;
+      });
+
+      /*
+       * Twelve seconds in, the auto-reversing fade is two seconds into its
+       * reversed second cycle, and the backwards fade has run from the end
+       * of its timeline back to the start, and finished.
+       */
+
+      clock.advance(java.time.Duration.ofSeconds(12L))
+        .get(5L, TimeUnit.SECONDS);
+
+      final double opacityReversing =
+        bot.evaluate(() -> reversing.get().getOpacity());
+      assertEquals(0.2, opacityReversing, 0.01);
+      assertEquals(
+        Animation.Status.PAUSED, bot.evaluate(fadeReversing::getStatus));
+
+      assertEquals(
+        Animation.Status.STOPPED, bot.evaluate(fadeBackwards::getStatus));
+      assertTrue(finishedBackwards.get());
+      final double opacityBackwards =
+        bot.evaluate(() -> backwards.get().getOpacity());
+      assertEquals(1.0, opacityBackwards);
+
+      clock.advanceToEnd().get(5L, TimeUnit.SECONDS);
+
+      final double opacityReversingEnd =
+        bot.evaluate(() -> reversing.get().getOpacity());
+      assertEquals(1.0, opacityReversingEnd);
+    } finally {
+      clock.setMode(modeThen).get(5L, TimeUnit.SECONDS);
+    }
+  }
 }